@@ -0,0 +1,27 @@
+// ==== VERTEX SHADER ==== \\
+// Covers the viewport with a single triangle, for benchmarking fragment shaders
+// and for drawing them full-screen, without a model.
+// Provides every input that a user fragment shader may read, as if the viewport
+// were filled by a surface that faces the camera.
+
+// == Array inputs ==
+attribute vec2 vPosition;   // Normalized device coordinates
+
+// == Fragment shader outputs ==
+varying vec4 fPosition;
+varying vec3 fNormal;
+varying vec2 fTexture;
+
+void main()
+{
+    // A view-space point on a plane in front of the camera
+    fPosition = vec4(vPosition, -1.0, 1.0);
+
+    // The plane faces the camera
+    fNormal = vec3(0.0, 0.0, 1.0);
+
+    // Map the visible part of the triangle to texture coordinates 0..1
+    fTexture = vPosition * 0.5 + 0.5;
+
+    gl_Position = vec4(vPosition, 0.0, 1.0);
+}
@@ -0,0 +1,16 @@
+// ==== FRAGMENT SHADER ==== \\
+// Copies a region of a texture to the viewport, with bilinear filtering.
+precision mediump float;
+
+// == Uniform inputs ==
+uniform sampler2D texture;
+uniform vec2 uvScale;       // The fraction of the texture that holds the image
+uniform vec2 uvMax;         // Keeps bilinear samples inside that region
+
+// == Inputs from vertex shader ==
+varying vec2 fTexture;
+
+void main(void)
+{
+    gl_FragColor = texture2D(texture, min(fTexture * uvScale, uvMax));
+}
@@ -0,0 +1,9 @@
+// ==== DEPTH PRE-PASS FRAGMENT SHADER ==== \\
+// Colour writes are disabled; only depth is written.
+
+precision lowp float;
+
+void main()
+{
+    gl_FragColor = vec4(0.0);
+}
@@ -0,0 +1,17 @@
+// ==== DEPTH PRE-PASS VERTEX SHADER ==== \\
+
+// The position must be computed exactly as in phong_basic.vs.glsl,
+// so that the shading pass can test its depth for equality
+invariant gl_Position;
+
+// == Array inputs ==
+attribute vec4 vPosition;
+
+// == Uniform inputs ==
+uniform mat4 mv_matrix;     // Modelview matrix
+uniform mat4 projection;    // Projection matrix
+
+void main()
+{
+    gl_Position = projection * (mv_matrix * vPosition);
+}
@@ -0,0 +1,16 @@
+// ==== VERTEX SHADER ==== \\
+// Covers the viewport with a single triangle.
+
+// == Array inputs ==
+attribute vec2 vPosition;   // Normalized device coordinates
+
+// == Fragment shader outputs ==
+varying vec2 fTexture;
+
+void main()
+{
+    // Map the visible part of the triangle to texture coordinates 0..1
+    fTexture = vPosition * 0.5 + 0.5;
+
+    gl_Position = vec4(vPosition, 0.0, 1.0);
+}
@@ -0,0 +1,30 @@
+// ==== FRAGMENT SHADER ==== \\
+// Shows the number of fragments drawn at each pixel as a colour.
+precision mediump float;
+
+// == Uniform inputs ==
+uniform sampler2D texture;  // Fragment counts, in 255ths, in the red channel
+
+// == Inputs from vertex shader ==
+varying vec2 fTexture;
+
+void main(void)
+{
+    float count = floor(texture2D(texture, fTexture).r * 255.0 + 0.5);
+
+    // Nothing drawn: the renderer's clear colour
+    if(count < 0.5)
+    {
+        gl_FragColor = vec4(0.1, 0.1, 0.1, 1.0);
+        return;
+    }
+
+    // Once: blue; twice: green; 3: yellow; 4: orange; 6: red; 10 or more: white
+    vec3 colour = mix(vec3(0.0, 0.1, 0.6), vec3(0.0, 0.7, 0.0), clamp(count - 1.0, 0.0, 1.0));
+    colour = mix(colour, vec3(0.9, 0.9, 0.0), clamp(count - 2.0, 0.0, 1.0));
+    colour = mix(colour, vec3(1.0, 0.5, 0.0), clamp(count - 3.0, 0.0, 1.0));
+    colour = mix(colour, vec3(0.9, 0.0, 0.0), clamp((count - 4.0) / 2.0, 0.0, 1.0));
+    colour = mix(colour, vec3(1.0, 1.0, 1.0), clamp((count - 6.0) / 4.0, 0.0, 1.0));
+
+    gl_FragColor = vec4(colour, 1.0);
+}
@@ -0,0 +1,10 @@
+// ==== OVERDRAW FRAGMENT SHADER ==== \\
+// Adds one to the red channel of an 8-bit target, with additive
+// blending, for every fragment that passes the depth test.
+
+precision lowp float;
+
+void main()
+{
+    gl_FragColor = vec4(1.0 / 255.0);
+}
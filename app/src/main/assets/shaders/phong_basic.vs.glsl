@@ -1,5 +1,8 @@
 // ==== VERTEX SHADER ==== \\
 
+// The position must match the depth pre-pass (depth.vs.glsl) exactly
+invariant gl_Position;
+
 // == Array inputs ==
 attribute vec4 vPosition;
 attribute vec3 vNormal;
@@ -0,0 +1,20 @@
+// ==== FRAGMENT SHADER ==== \\
+// Drawn in place of a saved shader that hung the GPU, which is not compiled again
+precision mediump float;
+
+// == Inputs from vertex shader ==
+varying vec4 fPosition;
+varying vec3 fNormal;
+varying vec2 fTexture;
+
+void main()
+{
+    // Diagonal warning stripes, fixed to the screen
+    float stripe = step(0.5, fract((gl_FragCoord.x + gl_FragCoord.y) / 24.0));
+    vec3 colour = mix(vec3(0.35, 0.35, 0.35), vec3(0.75, 0.25, 0.2), stripe);
+
+    // Enough shading to show the model's shape
+    float shade = 0.4 + 0.6 * max(dot(normalize(fNormal), vec3(0.0, 0.0, 1.0)), 0.0);
+
+    gl_FragColor = vec4(colour * shade, 1.0);
+}
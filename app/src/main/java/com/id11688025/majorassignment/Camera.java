@@ -126,6 +126,16 @@ public class Camera
         this.up = up;
     }
 
+    /** The camera's field of view (viewing angle) in radians. */
+    public float getFieldOfView() {
+        return fieldOfView;
+    }
+
+    /** The ratio of the viewport's width to its height. */
+    public float getAspectRatio() {
+        return (float)viewportWidth / (float)viewportHeight;
+    }
+
     /** The width (in pixels) of the viewport. */
     public void setViewportWidth(int viewportWidth) {
         this.viewportWidth = viewportWidth;
@@ -27,6 +27,13 @@ public class CompileErrorReceiver extends BroadcastReceiver
     @Override
     public void onReceive(final Context context, Intent intent)
     {
+        // Does the user's shader hang the GPU?
+        if(intent.getBooleanExtra(Constants.EXTRA_UNSAFE_SHADER, false))
+        {
+            showUnsafeShader(context, intent.getFloatExtra(Constants.EXTRA_GPU_HANG_MILLIS, -1));
+            return;
+        }
+
         // Was there an error compiling the user's shader?
         final String compilerLog = intent.getStringExtra(Constants.EXTRA_COMPILER_LOG);
         boolean compilerError = !compilerLog.isEmpty();
@@ -78,4 +85,34 @@ public class CompileErrorReceiver extends BroadcastReceiver
             // Show that there are no errors
             btnErrors.setText(R.string.btn_no_compile_errors);
     }
-}
\ No newline at end of file
+
+    /** Highlight the "Errors" button, and explain that the shader hangs the GPU when it is clicked.
+     * @param hangMillis The time, in milliseconds, for which the shader has just hung the GPU,
+     *                   or -1 if it hung the GPU before, and was not compiled. */
+    private void showUnsafeShader(final Context context, float hangMillis)
+    {
+        btnErrors.setEnabled(true);
+        btnErrors.setTextAppearance(context, R.style.BoldRedText);
+        btnErrors.setText(R.string.btn_unsafe_shader);
+
+        final String message = hangMillis >= 0
+                ? String.format(context.getString(R.string.format_shader_hung_gpu), hangMillis)
+                : context.getString(R.string.unsafe_shader_not_compiled);
+
+        btnErrors.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                new AlertDialog.Builder(context)
+                        .setTitle(context.getString(R.string.btn_unsafe_shader))
+                        .setMessage(message)
+                        .setPositiveButton(R.string.dismiss, new DialogInterface.OnClickListener() {
+                            @Override
+                            public void onClick(DialogInterface dialog, int which) {
+                                dialog.dismiss();
+                            }
+                        })
+                        .show();
+            }
+        });
+    }
+}
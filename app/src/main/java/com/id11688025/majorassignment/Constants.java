@@ -19,15 +19,46 @@ public class Constants
 
     public static final String EXTRA_COMPILER_LOG = "compile_log";
 
+    /** Set on a compiler error broadcast when the shader is known to hang the GPU */
+    public static final String EXTRA_UNSAFE_SHADER = "unsafe_shader";
+
+    /** The time, in milliseconds, that the GPU was stuck on the shader, when it has just hung */
+    public static final String EXTRA_GPU_HANG_MILLIS = "gpu_hang_millis";
+
     public static final String PREFERENCE_MODEL = "model_preference";
     public static final String PREFERENCE_AUTO_ROTATE = "auto_rotate_preference";
+    public static final String PREFERENCE_RENDER_ON_DEMAND = "render_on_demand_preference";
+    public static final String PREFERENCE_RESOLUTION_SCALE = "resolution_scale_preference";
+    public static final String PREFERENCE_TRACING = "tracing_preference";
+    public static final String PREFERENCE_FRAME_RATE_CAP = "frame_rate_cap_preference";
+    public static final String PREFERENCE_EDITING_FRAME_RATE_CAP = "editing_frame_rate_cap_preference";
+
+    public static final String TRACING_OFF = "off";
+    public static final String TRACING_SYSTEM = "system";
+    public static final String TRACING_RECORD = "record";
+
+    /** The file, in the shader store directory, to which recorded traces are exported */
+    public static final String TRACE_FILE_NAME = "trace.json";
 
     public static final String FALLBACK_MODEL = "models/dbunny.obj";
     public static final String FALLBACK_SHADER = "shaders/phong_basic.fs.glsl";
 
+    /** Drawn in place of a saved shader that is known to hang the GPU */
+    public static final String PLACEHOLDER_SHADER = "shaders/placeholder.fs.glsl";
+
     public static final String KEY_SAMPLER_FILTER_MODE = "SAMPLER_FILTER_MODE";
     public static final String KEY_SAMPLER_TEXTURE_WRAP_MODE = "SAMPLER_TEXTURE_WRAP_MODE";
     public static final String KEY_TEXTURE_IMAGE_PATH = "TEXTURE_IMAGE_PATH";
+    public static final String KEY_UNSAFE_SHADERS = "UNSAFE_SHADERS";
+    public static final String KEY_FULL_SCREEN_MODE = "FULL_SCREEN_MODE";
     public static final String SHADER_STORE_DIRECTORY_NAME = "ProtoShade";
     public static final String SHADER_RENDER_IMAGE_FILE_SUFFIX = "_render.png";
+    public static final String SHADER_RENDER_JPEG_FILE_SUFFIX = "_render.jpg";
+    public static final String SHADER_BENCHMARK_FILE_SUFFIX = "_benchmark.json";
+
+    /** The width and height, in pixels, of the render that is saved with a shader */
+    public static final int THUMBNAIL_SIZE = 256;
+
+    /** The JPEG quality, from 0 to 100, at which saved renders are stored */
+    public static final int THUMBNAIL_JPEG_QUALITY = 85;
 }
@@ -14,6 +14,7 @@ import android.util.Log;
 import android.widget.Toast;
 
 import com.id11688025.majorassignment.graphics.Texture2D;
+import com.id11688025.majorassignment.profiling.BenchmarkReport;
 import com.id11688025.majorassignment.shaders.Shader;
 import com.id11688025.majorassignment.storage.ShaderDescription;
 
@@ -21,6 +22,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -76,7 +78,7 @@ public class ContentManager
     {
         // Use the same directory as the shader source code
         File shaderDirectory = getShaderStoreDirectory();
-        String renderPath = shaderDirectory + "/" + description.getPath() + Constants.SHADER_RENDER_IMAGE_FILE_SUFFIX;
+        String renderPath = shaderDirectory + "/" + description.getPath() + Constants.SHADER_RENDER_JPEG_FILE_SUFFIX;
 
         try
         {
@@ -84,11 +86,14 @@ public class ContentManager
             //FileOutputStream outStream = context.openFileOutput(renderPath, Context.MODE_PRIVATE);
             FileOutputStream outStream = new FileOutputStream(renderPath);
 
-            // Write the bitmap as a PNG
-            render.compress(Bitmap.CompressFormat.PNG, 100, outStream);
+            // Write the bitmap as a JPEG; renders are opaque, and a fraction of the size as a PNG
+            render.compress(Bitmap.CompressFormat.JPEG, Constants.THUMBNAIL_JPEG_QUALITY, outStream);
 
             // Close the stream
             outStream.close();
+
+            // A render saved as a PNG by an earlier version is now out of date
+            new File(shaderDirectory + "/" + description.getPath() + Constants.SHADER_RENDER_IMAGE_FILE_SUFFIX).delete();
         }
         catch (Exception e)
         {
@@ -96,6 +101,26 @@ public class ContentManager
         }
     }
 
+    /** Write a benchmark report beside a saved shader, as JSON. */
+    public static void saveBenchmarkReport(Context context, ShaderDescription description, BenchmarkReport report)
+    {
+        // Use the same directory as the shader source code
+        File shaderDirectory = getShaderStoreDirectory();
+        String reportPath = shaderDirectory + "/" + description.getPath() + Constants.SHADER_BENCHMARK_FILE_SUFFIX;
+
+        try
+        {
+            FileWriter writer = new FileWriter(reportPath);
+            try { report.writeJson(writer); }
+            finally { writer.close(); }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            Toast.makeText(context, context.getString(R.string.error_file_io_exception), Toast.LENGTH_LONG).show();
+        }
+    }
+
     public static String loadShader(Context context, String path) throws IOException
     {
         // Buffer
@@ -132,20 +157,32 @@ public class ContentManager
     {
         File shaderDirectory = getShaderStoreDirectory();
         String shaderPath = shaderDirectory + "/" + description.getPath();
-        String renderPath = shaderPath + Constants.SHADER_RENDER_IMAGE_FILE_SUFFIX;
+        String renderPath = shaderPath + Constants.SHADER_RENDER_JPEG_FILE_SUFFIX;
+        String legacyRenderPath = shaderPath + Constants.SHADER_RENDER_IMAGE_FILE_SUFFIX;
+        String benchmarkPath = shaderPath + Constants.SHADER_BENCHMARK_FILE_SUFFIX;
 
         File
                 shaderFile = new File(shaderPath),
-                renderFile = new File(renderPath);
+                renderFile = new File(renderPath),
+                legacyRenderFile = new File(legacyRenderPath),
+                benchmarkFile = new File(benchmarkPath);
 
         shaderFile.delete();
         renderFile.delete();
+        legacyRenderFile.delete();
+        benchmarkFile.delete();
     }
 
     public static Bitmap loadRender(Context context, String path)
     {
         File shaderDirectory = getShaderStoreDirectory();
-        return BitmapFactory.decodeFile(shaderDirectory + "/" + path + Constants.SHADER_RENDER_IMAGE_FILE_SUFFIX);
+        File render = new File(shaderDirectory + "/" + path + Constants.SHADER_RENDER_JPEG_FILE_SUFFIX);
+
+        // Shaders saved by earlier versions have their render as a PNG
+        if(!render.exists())
+            render = new File(shaderDirectory + "/" + path + Constants.SHADER_RENDER_IMAGE_FILE_SUFFIX);
+
+        return BitmapFactory.decodeFile(render.getPath());
     }
 
     public static Bitmap loadRenderAsset(Context context, String path)
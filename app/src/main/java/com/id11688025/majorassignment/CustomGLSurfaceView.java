@@ -1,28 +1,58 @@
 package com.id11688025.majorassignment;
 
 import android.content.Context;
-import android.graphics.Bitmap;
 import android.opengl.GLSurfaceView;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 
+import com.id11688025.majorassignment.graphics.FrameCapture;
 import com.id11688025.majorassignment.graphics.Model;
+import com.id11688025.majorassignment.graphics.OverdrawView;
 import com.id11688025.majorassignment.graphics.Texture2D;
-import com.id11688025.majorassignment.math.Vector2;
 import com.id11688025.majorassignment.objparser.OBJModel;
+import com.id11688025.majorassignment.profiling.ShaderBenchmark;
 import com.id11688025.majorassignment.shaders.Shader;
+import com.id11688025.majorassignment.storage.ThumbnailRegenerator;
+
+import java.util.List;
 
 /**
  * The specialized GL surface view which
  * is the drawing context for this application.
  */
 public class CustomGLSurfaceView extends GLSurfaceView
+    implements CustomRenderer.InvalidationListener
 {
     /** The renderer object that draws the scene onto the viewport */
     private CustomRenderer renderer;
 
-    /** The previous frame's motion input coordinates */
-    private Vector2 prevMotionPosition = null;
+    /** The first pointer's position as of the last motion event, in unit screen space */
+    private float prevMotionX, prevMotionY;
+
+    /** Is a drag in progress, from the previous position? */
+    private boolean dragging = false;
+
+    /** The distance, in pixels, between the first two pointers as of the last
+     * motion event, or 0 if no pinch is in progress */
+    private float prevPinchDistance = 0;
+
+    /** Should frames only be drawn when the image may have changed? */
+    private volatile boolean renderOnDemand = false;
+
+    /** Is the renderer's scene changing by itself over time? */
+    private volatile boolean animating = true;
+
+    /** How close, as a fraction of the view width, a touch must be to the divider to grab it */
+    private static final float DIVIDER_GRAB_DISTANCE = 0.05f;
+
+    /** Is the model drawn split between a reference shader and the editor's? */
+    private boolean splitScreen = false;
+
+    /** The split-screen divider's position, as a fraction of the view width */
+    private float splitDivider = 0.5f;
+
+    /** Is the current touch dragging the split-screen divider? */
+    private boolean draggingDivider = false;
 
     public CustomGLSurfaceView(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -30,11 +60,67 @@ public class CustomGLSurfaceView extends GLSurfaceView
         // Set the GL context version to ES 2.0
         setEGLContextClientVersion(2);
 
+        // Keep the context while paused where the device allows it;
+        // otherwise the renderer re-creates its objects on resume
+        setPreserveEGLContextOnPause(true);
+
         // Set the surface view's renderer to our custom renderer.
         setRenderer(renderer = new CustomRenderer(context));
 
-        // Draw only when the buffers are outdated
+        // Draw continuously until told that the scene is static
         setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+
+        // Draw on demand when the renderer invalidates the image
+        renderer.setInvalidationListener(this);
+    }
+
+    @Override
+    public void onResume()
+    {
+        renderer.markResumed();
+        super.onResume();
+    }
+
+    @Override
+    public void onInvalidated()
+    {
+        requestRender();
+    }
+
+    @Override
+    public void onAnimatingChanged(boolean animating)
+    {
+        this.animating = animating;
+        updateRenderMode();
+    }
+
+    /** Specify whether frames should only be drawn when the image may have
+     * changed (input, shader or texture changes, or animation), rather than
+     * continuously.
+     * @param renderOnDemand True to draw only when required.
+     */
+    public void setRenderOnDemand(boolean renderOnDemand)
+    {
+        this.renderOnDemand = renderOnDemand;
+        updateRenderMode();
+    }
+
+    /** Draw continuously while animating, otherwise draw only when invalidated. */
+    private void updateRenderMode()
+    {
+        if(renderOnDemand && !animating)
+            setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+        else
+            setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+    }
+
+    /** Queue an event on the renderer thread, and draw a frame
+     * afterwards so that the result becomes visible. */
+    @Override
+    public void queueEvent(Runnable r)
+    {
+        super.queueEvent(r);
+        requestRender();
     }
 
     /**
@@ -44,62 +130,122 @@ public class CustomGLSurfaceView extends GLSurfaceView
     @Override
     public boolean onTouchEvent (MotionEvent motion)
     {
-        // Reset the previous position if the action is not "drag"
-        if(motion.getAction() != MotionEvent.ACTION_MOVE)
-            prevMotionPosition = null;
+        // A touch that starts on the split-screen divider moves it, instead of the model
+        if(motion.getActionMasked() == MotionEvent.ACTION_DOWN)
+            draggingDivider = splitScreen
+                    && Math.abs(motion.getX() / (float)getWidth() - splitDivider) < DIVIDER_GRAB_DISTANCE;
+
+        if(draggingDivider)
+            return divider_motion(motion);
 
-        switch(motion.getAction())
+        // The full-screen shader reads the touch position, in pixels from the bottom-left
+        touch_motion(motion);
+
+        switch(motion.getActionMasked())
         {
+            case MotionEvent.ACTION_DOWN:
+                // A drag starts where the finger comes down
+                prevMotionX = motion.getX() / (float)getWidth() - 0.5f;
+                prevMotionY = motion.getY() / (float)getHeight() - 0.5f;
+                dragging = true;
+                break;
             case MotionEvent.ACTION_POINTER_DOWN:
-                // Perform a "pinch" (zoom) operation
-                pinch_motion(motion);
+                // Perform a "pinch" (zoom) operation, instead of a drag, from here on
+                prevPinchDistance = pinchDistance(motion);
                 break;
             case MotionEvent.ACTION_MOVE:
-                // Perform a "drag" operation
-                drag_motion(motion);
+                if(prevPinchDistance > 0 && motion.getPointerCount() > 1)
+                    pinch_motion(motion);
+                else
+                    drag_motion(motion);
+                break;
+            default:
+                // The first pointer may now be another finger, so any drag starts afresh
+                dragging = false;
+                prevPinchDistance = 0;
                 break;
         }
 
         return true;
     }
 
-    /** Respond to simple dragging motion events */
+    /** Respond to simple dragging motion events. The renderer sums the deltas, so only
+     * the motion since the previous event is passed, not each of its historical samples. */
     private boolean drag_motion(MotionEvent motion)
     {
+        // A drag that starts mid-gesture starts from the oldest sample batched into this event
+        if(!dragging && motion.getHistorySize() > 0)
+        {
+            prevMotionX = motion.getHistoricalX(0) / (float)getWidth() - 0.5f;
+            prevMotionY = motion.getHistoricalY(0) / (float)getHeight() - 0.5f;
+            dragging = true;
+        }
+
         // Get the current touch position in unit screen space
-        Vector2 position = new Vector2(
-                motion.getX() / (float)this.getWidth() - 0.5f,
-                motion.getY() / (float)this.getHeight() - 0.5f);
+        float x = motion.getX() / (float)getWidth() - 0.5f;
+        float y = motion.getY() / (float)getHeight() - 0.5f;
+
+        if(dragging)
+            renderer.dragInput(x - prevMotionX, y - prevMotionY);
+
+        prevMotionX = x;
+        prevMotionY = y;
+        dragging = true;
+        return true;
+    }
+
+    /** Pass the position of the first pointer to the renderer */
+    private boolean touch_motion(MotionEvent motion)
+    {
+        renderer.touchInput(motion.getX(), getHeight() - motion.getY());
+        return true;
+    }
 
-        if(prevMotionPosition == null)
-            prevMotionPosition = position;
+    /** Respond to motion events that drag the split-screen divider */
+    private boolean divider_motion(MotionEvent motion)
+    {
+        splitDivider = Math.max(0, Math.min(1, motion.getX() / (float)getWidth()));
 
-        renderer.dragInput(position, prevMotionPosition);
+        final float divider = splitDivider;
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setSplitDivider(divider);
+            }
+        });
+
+        if(motion.getActionMasked() == MotionEvent.ACTION_UP)
+            draggingDivider = false;
 
-        prevMotionPosition = position;
         return true;
     }
 
     /** Respond to pinching motion events */
     private boolean pinch_motion(MotionEvent motion)
     {
-        // Get the current touch positions in unit screen space
-        Vector2 positionA = new Vector2(
-                motion.getX(0) / (float)this.getWidth() - 0.5f,
-                motion.getY(0) / (float)this.getHeight() - 0.5f);
-        Vector2 positionB = new Vector2(
-                motion.getX(1) / (float)this.getWidth() - 0.5f,
-                motion.getY(1) / (float)this.getHeight() - 0.5f);
+        float distance = pinchDistance(motion);
 
-        // Get the distance between the two points ( |B-A| )
-        float distance = Vector2.subtract(positionB, positionA).magnitude();
-
-        // Notify renderer
-        renderer.pinchInput(distance);
+        // Notify renderer of the change in the fingers' spread
+        if(distance > 0)
+        {
+            renderer.pinchInput(distance / prevPinchDistance);
+            prevPinchDistance = distance;
+        }
 
         return true;
     }
 
+    /** @return The distance, in pixels, between the first two pointers, or 0 if there is one. */
+    private static float pinchDistance(MotionEvent motion)
+    {
+        if(motion.getPointerCount() < 2)
+            return 0;
+
+        float dx = motion.getX(1) - motion.getX(0);
+        float dy = motion.getY(1) - motion.getY(0);
+        return (float)Math.sqrt(dx * dx + dy * dy);
+    }
+
     /** Supply a fragment shader to use on the object (from the user).
      * @param fragmentSource The fragment shader source as a String.
      */
@@ -151,21 +297,227 @@ public class CustomGLSurfaceView extends GLSurfaceView
         return renderer.getCurrentShader();
     }
 
-    /** Copy the display buffer to a bitmap. */
-    public Bitmap renderToBitmap()
+    /** Copy the display buffer to a bitmap, without blocking.
+     * @param callback Receives the bitmap on the UI thread once it is ready.
+     */
+    public void renderToBitmap(final FrameCapture.Callback callback)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.requestCapture(callback);
+            }
+        });
+    }
+
+    /** Render the model offscreen to a small square bitmap, without blocking.
+     * @param size The width and height of the thumbnail, in pixels.
+     * @param callback Receives the bitmap on the UI thread once it is ready, or null if no model is loaded.
+     */
+    public void renderThumbnail(final int size, final FrameCapture.Callback callback)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.requestThumbnail(size, callback);
+            }
+        });
+    }
+
+    /** Measure the GPU cost of the current shader per megapixel, offscreen. While the
+     * split screen is shown, the reference shader is compared with the edited one.
+     * @param listener Receives the report on the UI thread.
+     */
+    public void runBenchmark(final ShaderBenchmark.Listener listener)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.runBenchmark(listener);
+            }
+        });
+    }
+
+    /** Stop the running benchmark, if any. */
+    public void cancelBenchmark()
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.cancelBenchmark();
+            }
+        });
+    }
+
+    /** Re-render the thumbnails of all saved user shaders in the background.
+     * @param listener Receives progress on the UI thread. May be null.
+     */
+    public void regenerateThumbnails(final ThumbnailRegenerator.Listener listener)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.regenerateThumbnails(listener);
+            }
+        });
+    }
+
+    /** Re-render the thumbnails of all saved user shaders in the background,
+     * once the next model has been loaded. */
+    public void regenerateThumbnailsForNextModel()
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.regenerateThumbnailsForNextModel();
+            }
+        });
+    }
+
+    /** Stop re-rendering thumbnails, if a job is running. */
+    public void cancelThumbnailRegeneration()
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.cancelThumbnailRegeneration();
+            }
+        });
+    }
+
+    /** Draw the model in a grid, with its own shader and with each of the given shaders.
+     * @param fragmentSources The fragment shaders to compare, with null for a placeholder.
+     */
+    public void showComparisonGrid(final List<String> fragmentSources)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.showComparisonGrid(fragmentSources);
+            }
+        });
+    }
+
+    /** Return to drawing the model alone. */
+    public void hideComparisonGrid()
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.hideComparisonGrid();
+            }
+        });
+    }
+
+    /** Draw the model split by a draggable divider: with the current program to the
+     * left, and with the program as it is edited to the right.
+     * @param enabled True to start comparing, false to return to drawing the model alone.
+     */
+    public void setSplitScreen(final boolean enabled)
+    {
+        splitScreen = enabled;
+
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setSplitScreen(enabled);
+            }
+        });
+    }
+
+    /**
+     * Draw the model's depth before shading it, so that each pixel is shaded at most once.
+     * @param enabled True to draw in two passes, false to draw in one.
+     */
+    public void setDepthPrePass(final boolean enabled)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setDepthPrePass(enabled);
+            }
+        });
+    }
+
+    /**
+     * Show how many fragments are shaded at each pixel, as a heatmap in place of the model.
+     * @param enabled True to show the heatmap, false to return to shading the model.
+     * @param listener Receives summary statistics on the UI thread while the heatmap is shown.
+     */
+    public void setOverdrawView(final boolean enabled, final OverdrawView.Listener listener)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setOverdrawView(enabled, listener);
+            }
+        });
+    }
+
+    /**
+     * Compile a screen-space effect, and draw it over the scene after any others.
+     * @param fragmentSource The fragment shader source.
+     */
+    public void addPostPass(final String fragmentSource)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.addPostPass(fragmentSource);
+            }
+        });
+    }
+
+    /** Remove every screen-space effect. */
+    public void clearPostPasses()
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.clearPostPasses();
+            }
+        });
+    }
+
+    /**
+     * Draw the user's shader over the whole viewport, without the model, or return to the model.
+     * @param enabled True to draw the shader full-screen.
+     */
+    public void setFullScreenMode(final boolean enabled)
     {
         queueEvent(new Runnable() {
             @Override
             public void run() {
-                renderer.renderToBitmap();
+                renderer.setFullScreenMode(enabled);
             }
         });
+    }
 
-        // Wait for the image to render (should take 1/60 seconds)
-        Bitmap render = null;
-        while((render = renderer.getLastRenderedBitmap()) == null) ;
+    /**
+     * Limit the frame rate.
+     * @param fps The cap, in frames per second, or FramePacer.UNCAPPED.
+     * @param editingFps The cap while the user edits code, or FramePacer.UNCAPPED
+     *                   to use the same cap as otherwise.
+     */
+    public void setFrameRateCap(final int fps, final int editingFps)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setFrameRateCap(fps, editingFps);
+            }
+        });
+    }
 
-        return render;
+    /** @param editing True while the user edits code, so that the editing frame rate cap applies. */
+    public void setEditing(final boolean editing)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setEditing(editing);
+            }
+        });
     }
 
     /** Reset the renderer's timer. */
@@ -193,6 +545,60 @@ public class CustomGLSurfaceView extends GLSurfaceView
         });
     }
 
+    /**
+     * Advance time by exactly the same amount every frame.
+     * @param frameSeconds The time step applied per frame, in seconds.
+     */
+    public void setDeterministicTime(final float frameSeconds)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setDeterministicTime(frameSeconds);
+            }
+        });
+    }
+
+    /**
+     * Enable or disable the explicit profiling mode.
+     * @param profiling True to enable profiling mode.
+     */
+    public void setProfiling(final boolean profiling)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setProfiling(profiling);
+            }
+        });
+    }
+
+    /**
+     * Render the scene at a fixed fraction of the viewport resolution,
+     * or adapt the fraction to the frame time.
+     * @param scale The fraction of the width and height (0 to 1], or 0 for automatic.
+     */
+    public void setResolutionScale(final float scale)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setResolutionScale(scale);
+            }
+        });
+    }
+
+    /** Return to advancing time by the measured frame duration. */
+    public void setRealTime()
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setRealTime();
+            }
+        });
+    }
+
     /**
      * @return True if the animation is paused.
      */
@@ -2,25 +2,55 @@ package com.id11688025.majorassignment;
 
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.net.Uri;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
+import android.util.Log;
 
 import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
 import javax.microedition.khronos.opengles.GL10;
 
+import com.id11688025.majorassignment.graphics.BandwidthCounters;
+import com.id11688025.majorassignment.graphics.CommandList;
+import com.id11688025.majorassignment.graphics.CommandListPipeline;
+import com.id11688025.majorassignment.graphics.DepthPrePass;
+import com.id11688025.majorassignment.graphics.DynamicResolution;
+import com.id11688025.majorassignment.graphics.FrameCapture;
+import com.id11688025.majorassignment.graphics.FullScreenCanvas;
+import com.id11688025.majorassignment.graphics.FullScreenTriangle;
+import com.id11688025.majorassignment.graphics.GL;
+import com.id11688025.majorassignment.graphics.GLBackend;
+import com.id11688025.majorassignment.graphics.GLStateCache;
+import com.id11688025.majorassignment.graphics.GpuResourceRegistry;
+import com.id11688025.majorassignment.graphics.LoadAction;
 import com.id11688025.majorassignment.graphics.Model;
+import com.id11688025.majorassignment.graphics.OverdrawView;
+import com.id11688025.majorassignment.graphics.PostProcessChain;
+import com.id11688025.majorassignment.graphics.RenderPass;
+import com.id11688025.majorassignment.graphics.RenderTarget2D;
+import com.id11688025.majorassignment.graphics.RenderTargetPool;
+import com.id11688025.majorassignment.graphics.Scene;
+import com.id11688025.majorassignment.graphics.SharedEGLContext;
+import com.id11688025.majorassignment.graphics.SplitScreenComparison;
+import com.id11688025.majorassignment.graphics.StoreAction;
+import com.id11688025.majorassignment.graphics.Texture2D;
 import com.id11688025.majorassignment.graphics.TextureFilteringMode;
 import com.id11688025.majorassignment.graphics.TextureWrapMode;
 import com.id11688025.majorassignment.math.*;
+import com.id11688025.majorassignment.profiling.FrameProfiler;
+import com.id11688025.majorassignment.profiling.GpuWatchdog;
+import com.id11688025.majorassignment.profiling.ShaderBenchmark;
+import com.id11688025.majorassignment.profiling.Tracing;
 import com.id11688025.majorassignment.shaders.Shader;
+import com.id11688025.majorassignment.storage.ThumbnailRegenerator;
+import com.id11688025.majorassignment.storage.UnsafeShaders;
+import com.id11688025.majorassignment.timing.FramePacer;
+import com.id11688025.majorassignment.timing.FrameScheduler;
 
 import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.ShortBuffer;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The class that makes rendering / drawing calls for
@@ -28,6 +58,27 @@ import java.util.ArrayList;
  */
 public class CustomRenderer implements GLSurfaceView.Renderer
 {
+    /**
+     * Notified when the rendered image becomes out of date.
+     * Allows the owning view to draw only when something may have changed.
+     */
+    public interface InvalidationListener
+    {
+        /** A new frame must be drawn, because the scene or its inputs changed. */
+        void onInvalidated();
+
+        /** The scene has started or stopped changing by itself over time.
+         * @param animating True if frames must be drawn continuously.
+         */
+        void onAnimatingChanged(boolean animating);
+    }
+
+    /** The class tag for Logcat tracing */
+    private static final String TAG = "CUSTOM_RENDERER";
+
+    /** The number of nanoseconds in one millisecond */
+    private static final float NANOS_PER_MILLI = 1000000.0f;
+
     /** An application context */
     private Context context;
 
@@ -37,20 +88,176 @@ public class CustomRenderer implements GLSurfaceView.Renderer
     /** The single model in the world */
     private Model model;
 
-    /** The time, in milliseconds since 1970, that the program was started */
-    private double programStartTime = 0;
+    /** The number of shader time units that elapse per real second.
+     * Time used to advance by 0.001 per frame, so this keeps existing
+     * shaders animating at the speed they were written for (at 60 fps). */
+    private static final float TIME_UNITS_PER_SECOND = 0.06f;
 
-    /** The time, in seconds, since the program started */
-    private float currentTime = 0;
+    /** Keeps time, and schedules fixed-step model updates */
+    private FrameScheduler scheduler;
+
+    /** Measures the CPU and GPU cost of each frame */
+    private FrameProfiler profiler;
+
+    /** Limits the frame rate, so that the GPU does not draw flat out */
+    private FramePacer pacer;
+
+    /** Detects newly compiled programs that hang the GPU, so that they can be reverted */
+    private GpuWatchdog watchdog;
 
     /** The size of the viewport in screen pixels. Updated when the viewport changes */
     private Vector2 viewportSize;
 
-    /** Stores a "screenshot" of the display buffer when requested. */
-    private Bitmap displayRender;
+    /** Reads rendered frames back into bitmaps */
+    private FrameCapture frameCapture;
+
+    /** Receives a capture of the current frame once it is drawn, or null if none is requested */
+    private FrameCapture.Callback captureCallback;
+
+    /** The offscreen surface onto which thumbnails are rendered. Created on demand. */
+    private RenderTarget2D thumbnailTarget;
+
+    /** A camera with a square viewport, for rendering thumbnails */
+    private Camera thumbnailCamera;
+
+    /** Receives the next thumbnail once it is rendered, or null if none is requested */
+    private FrameCapture.Callback thumbnailCallback;
+
+    /** The width and height, in pixels, of the requested thumbnail */
+    private int thumbnailSize;
+
+    /** The asset path of the fragment shader that upscales the scene */
+    private static final String BLIT_SHADER_PATH = "shaders/blit.fs.glsl";
+
+    /** Chooses the resolution at which the scene is rendered */
+    private DynamicResolution dynamicResolution;
+
+    /** The offscreen surface onto which the scene is rendered below native resolution.
+     * Sized to the viewport; only its bottom-left part is used. Created on demand. */
+    private RenderTarget2D sceneTarget;
+
+    /** Upscales the scene from the scene target onto the screen */
+    private FullScreenTriangle blit;
+
+    /** The locations of the upscaling shader's uniforms */
+    private int blitTextureLocation, blitUVScaleLocation, blitUVMaxLocation;
+
+    /** The size, in pixels, of the part of the scene target used by the current frame */
+    private int sceneWidth, sceneHeight;
+
+    /** The model drawn with several shaders side by side, or null if the comparison grid is hidden */
+    private Scene comparisonScene;
+
+    /** The fragment shader sources compared in the grid, alongside the model's own shader */
+    private List<String> comparisonSources;
+
+    /** Draws the model with a reference shader beside the editor's, or null if not comparing */
+    private SplitScreenComparison splitComparison;
+
+    /** The fragment shader drawn to the left of the split-screen divider, or null if not comparing */
+    private String splitReferenceSource;
+
+    /** The split-screen divider's position, as a fraction of the viewport width */
+    private float splitDivider = 0.5f;
+
+    /** The closest and furthest that pinching may bring the camera to the origin */
+    private static final float MIN_CAMERA_DISTANCE = 0.5f, MAX_CAMERA_DISTANCE = 6.0f;
+
+    /** The colour, and thickness in pixels, of the split-screen divider */
+    private static final float DIVIDER_BRIGHTNESS = 0.9f;
+    private static final int DIVIDER_THICKNESS = 2;
+
+    /** Draws the model's depth before shading it, or null if the model is drawn in one pass */
+    private DepthPrePass depthPrePass;
+
+    /** Shows how many times each pixel is shaded, in place of the model, or null if the model is shown */
+    private OverdrawView overdrawView;
+
+    /** Screen-space effects drawn over the scene, in order. Empty if there are none */
+    private PostProcessChain postChain;
 
-    /** Determines whether a new "screenshot" of the display buffer is available. */
-    private boolean newScreenshot = false;
+    /** Lends out the intermediate images of post-processing, re-used from frame to frame */
+    private final RenderTargetPool targetPool = new RenderTargetPool();
+
+    /** Draws the user's shader over the whole viewport without the model, or null if the model is drawn */
+    private FullScreenCanvas fullScreenCanvas;
+
+    /** The texture given to the full-screen shader when no model, with its own texture, was loaded */
+    private Texture2D fullScreenTexture;
+
+    /** The input from the UI thread, taken once per frame: the rotation dragged into
+     * the model, and the touch position for the full-screen shader */
+    private final RenderState renderState = new RenderState();
+
+    /** The rotation dragged into the model this frame, re-used so that dragging allocates nothing */
+    private final Matrix dragRotation = new Matrix();
+
+    /** The last fragment shader supplied by the user, or null if none has been */
+    private String userSource;
+
+    /** The ways in which the scene is drawn from a command list: the model alone, the
+     * comparison grid, the split screen, with a depth pre-pass, or as overdraw counts */
+    private static final int PATH_MODEL = 0, PATH_GRID = 1, PATH_SPLIT = 2, PATH_PRE_PASS = 3,
+            PATH_OVERDRAW = 4;
+
+    /** Records the scene's draw commands, off this thread while frames are drawn continuously */
+    private final CommandListPipeline commandPipeline;
+
+    /** What the next command list draws: the camera, time, path and viewport of the frame
+     * in which it was requested. Set on this thread only while no list is being recorded. */
+    private final Matrix recordView = new Matrix(), recordProjection = new Matrix();
+    private float recordTime;
+    private int recordPath, recordWidth, recordHeight;
+    private boolean recordFinishTiming;
+
+    /** Measures the cost of fragment shaders offscreen, or null if no benchmark is running */
+    private ShaderBenchmark benchmark;
+
+    /** The grey level to which the colour buffer is cleared */
+    private static final float CLEAR_GREY = 0.1f;
+
+    /** Draws the scene on the screen. The depth is not needed once the frame is drawn */
+    private final RenderPass screenPass = new RenderPass(LoadAction.CLEAR, StoreAction.STORE,
+            LoadAction.CLEAR, StoreAction.DONT_CARE);
+
+    /** Draws on the screen over an image that covers it, such as the upscaled scene,
+     * so neither the previous colour nor any depth is needed */
+    private final RenderPass coveredScreenPass = new RenderPass(LoadAction.DONT_CARE, StoreAction.STORE,
+            LoadAction.DONT_CARE, StoreAction.DONT_CARE);
+
+    /** Draws the scene into a render target, to be sampled or read back */
+    private final RenderPass offscreenPass = new RenderPass(LoadAction.CLEAR, StoreAction.STORE,
+            LoadAction.CLEAR, StoreAction.DONT_CARE);
+
+    /** Estimates the framebuffer traffic of the passes on the renderer thread */
+    private BandwidthCounters bandwidth;
+
+    /** The OpenGL objects in use, which are re-created from CPU-side copies when the context is lost */
+    private final GpuResourceRegistry resources = new GpuResourceRegistry();
+
+    /** The time at which the view was resumed, or 0 once the first frame since has been drawn */
+    private volatile long resumeNanos = 0;
+
+    /** The time, in milliseconds, from the last resume until its first frame was drawn, or -1 if none */
+    private volatile float timeToFirstFrameMillis = -1;
+
+    /** The time, in milliseconds, spent re-creating OpenGL objects for the current context */
+    private volatile float restoreMillis = 0;
+
+    /** Drops redundant OpenGL state changes on the renderer thread */
+    private GLStateCache glState;
+
+    /** The renderer's EGL context, with which background contexts share resources */
+    private EGLContext eglContext;
+
+    /** Re-renders saved thumbnails in the background, or null if no job is running */
+    private ThumbnailRegenerator thumbnailRegenerator;
+
+    /** Should thumbnails be regenerated when the next model is provided? */
+    private boolean regenerateThumbnailsForNextModel = false;
+
+    /** Receives progress of the current thumbnail regeneration job */
+    private ThumbnailRegenerator.Listener thumbnailRegeneratorListener;
 
     /** A list of executable tasks to run in the OpenGL draw function */
     private ArrayList<Runnable> tasks;
@@ -58,6 +265,13 @@ public class CustomRenderer implements GLSurfaceView.Renderer
     /** Is the animation paused? */
     private boolean isPaused = false;
 
+    /** Notified when the rendered image becomes out of date */
+    private InvalidationListener invalidationListener;
+
+    /** Was the scene animating at the end of the previous frame?
+     * Starts as true so that the first frame always reports its state. */
+    private boolean wasAnimating = true;
+
     /**
      * Create a new custom OpenGL renderer
      * @param context The application context
@@ -67,99 +281,745 @@ public class CustomRenderer implements GLSurfaceView.Renderer
         this.context = context;
 
         tasks = new ArrayList<Runnable>();
+
+        scheduler = new FrameScheduler();
+        scheduler.setTimeScale(TIME_UNITS_PER_SECOND);
+
+        profiler = new FrameProfiler(scheduler.getClock());
+
+        pacer = new FramePacer(scheduler.getClock());
+
+        watchdog = new GpuWatchdog(GpuWatchdog.DEFAULT_THRESHOLD_MILLIS,
+                GpuWatchdog.DEFAULT_PROBATION_FRAMES, scheduler.getClock());
+
+        dynamicResolution = new DynamicResolution();
+
+        postChain = new PostProcessChain(scheduler.getClock());
+
+        frameCapture = new FrameCapture();
+
+        commandPipeline = new CommandListPipeline(new CommandListPipeline.Recorder() {
+            @Override
+            public void record(CommandList list) {
+                recordScene(list);
+            }
+        });
+
+        screenPass.setClearColor(CLEAR_GREY, CLEAR_GREY, CLEAR_GREY, 1.0f);
+        offscreenPass.setClearColor(CLEAR_GREY, CLEAR_GREY, CLEAR_GREY, 1.0f);
     }
 
     @Override
     public void onSurfaceCreated(GL10 deprecated, EGLConfig config)
     {
+        // Programs are re-created below, so a list being recorded must not read them
+        commandPipeline.discard();
+
+        GL gl = GLBackend.get();
+        // A new context starts with default state, whatever the cache remembers
+        glState = GLStateCache.get();
+        glState.reset();
+        bandwidth = BandwidthCounters.get();
+        bandwidth.reset();
+
         // Create a camera at (0,0,1.5) that faces (0,0,0).
         camera = new Camera(new Vector3(0,0,1.5f), Vector3.zero, Vector3.up);
 
-        // Set the clear colour
-        GLES20.glClearColor(0.1f, 0.1f, 0.1f, 1.0f);
+        // The thumbnail camera's viewport is square (1x1 by default)
+        thumbnailCamera = new Camera(new Vector3(0,0,1.5f), Vector3.zero, Vector3.up);
+
+        // Render targets from any previous context are no longer valid, and are re-created on demand
+        thumbnailTarget = null;
+        sceneTarget = null;
+
+        // Re-create the model, shaders and textures of any previous context from their
+        // CPU-side copies, without reading or parsing any files
+        long restoreStart = scheduler.getClock().nanoTime();
+        int restored = resources.restoreAll();
+        restoreMillis = (scheduler.getClock().nanoTime() - restoreStart) / NANOS_PER_MILLI;
+        if(restored > 0)
+            Log.i(TAG, String.format("Restored %d OpenGL resources in %.1f ms", restored, restoreMillis));
+
+        // The program that upscales reduced-resolution frames
+        if(blit == null)
+        {
+            ContentManager content = new ContentManager(context);
+            blit = new FullScreenTriangle(content, content.fileAsString(BLIT_SHADER_PATH));
+        }
+        else
+            blit.restore();
+        blitTextureLocation = blit.getUniformLocation("texture");
+        blitUVScaleLocation = blit.getUniformLocation("uvScale");
+        blitUVMaxLocation = blit.getUniformLocation("uvMax");
+
+        // A benchmark's targets and programs were lost with the previous context
+        if(benchmark != null)
+        {
+            benchmark.abandon();
+            benchmark = null;
+        }
+
+        // Background jobs share resources with this context
+        eglContext = SharedEGLContext.getCurrentContext();
 
         // Enable backface culling
-        GLES20.glEnable(GLES20.GL_CULL_FACE);
-        GLES20.glFrontFace(GLES20.GL_CCW);
+        glState.enable(GLES20.GL_CULL_FACE);
+        gl.glFrontFace(GLES20.GL_CCW);
 
         // Enable Z-buffering
-        GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-        GLES20.glDepthFunc(GLES20.GL_LEQUAL);
+        glState.enable(GLES20.GL_DEPTH_TEST);
+        gl.glDepthFunc(GLES20.GL_LEQUAL);
+
+        // GPU timers from any previous context are no longer valid
+        profiler.onSurfaceCreated();
+        watchdog.onSurfaceCreated();
     }
 
     @Override
     public void onSurfaceChanged(GL10 deprecated, int width, int height)
     {
+        // The grid is laid out again for the new shape, which a list being recorded must not see
+        commandPipeline.discard();
+
         this.viewportSize = new Vector2(width, height);
 
         // Reshape the viewport to map normalized coordinates to device coordinates
-        GLES20.glViewport(0, 0, width, height);
+        glState.viewport(0, 0, width, height);
 
         // Set viewport dimensions for NDC coordinate mapping
         camera.setViewportWidth(width);
         camera.setViewportHeight(height);
         camera.createPerspectiveProjection();
+
+        if(comparisonScene != null)
+            comparisonScene.setAspectRatio(camera.getAspectRatio());
     }
 
     @Override
     public void onDrawFrame(GL10 deprecated)
     {
+        // Wait for this frame's slot at the capped rate, outside the frame's own timings
+        waitForFrameSlot();
+
+        Tracing.begin("CustomRenderer.onDrawFrame");
+        profiler.beginFrame();
+        glState.beginFrame();
+        bandwidth.beginFrame();
+        targetPool.beginFrame();
+
         // Execute runnables, sent from other threads, on the OpenGL thread.
-        for(int i=0; i<tasks.size(); i++)
+        // Tasks may queue further tasks, which also run in this frame.
+        Tracing.begin("tasks");
+        if(!tasks.isEmpty())
         {
-            tasks.get(i).run();
-            tasks.remove(i);
+            // A task may change what is drawn, so a list recorded beforehand is out of date,
+            // and one being recorded must be finished before anything changes
+            commandPipeline.discard();
+            while(!tasks.isEmpty())
+                tasks.remove(0).run();
         }
+        Tracing.end();
+
+        // Take the input received since the last frame
+        applyInput();
+
+        // Measure shaders offscreen, a step per frame, before drawing the frame
+        if(benchmark != null)
+            stepBenchmark();
+
+        // Advance time
+        scheduler.beginFrame();
 
-        // Clear the colour buffer with pre-set clear colour
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+        // The pass in which the frame is drawn on the screen
+        RenderPass onScreen = screenPass;
 
-        // Update time
-        if(!isPaused)
-            currentTime += 0.001f;
+        // A full-screen shader needs no model, and is drawn in its place
+        if(fullScreenCanvas != null)
+        {
+            Tracing.begin("draw");
+            drawFullScreen();
+            Tracing.end();
 
+            onScreen = coveredScreenPass;
+            checkForGpuHang();
+        }
         // Be sure that the model is not still being parsed
-        if(model != null)
+        else if(model != null)
         {
-            model.update(currentTime);
-            model.draw(camera, currentTime);
+            // Run the fixed-step updates that are due, then draw once
+            Tracing.begin("Model.update");
+            while(scheduler.consumeUpdate())
+                model.update(scheduler.getUpdateTime());
+            Tracing.end();
+
+            Tracing.begin("draw");
+
+            // Overdraw is counted at its own resolution, and not shaded
+            boolean countingOverdraw = overdrawView != null && comparisonScene == null;
+
+            // Screen-space effects read the scene from a pooled target, at native resolution
+            boolean postProcessing = !countingOverdraw && postChain.size() > 0;
+            RenderTarget2D sceneImage = null;
+            if(postProcessing)
+            {
+                sceneImage = targetPool.acquire((int)viewportSize.x, (int)viewportSize.y, true);
+                offscreenPass.begin(sceneImage);
+            }
+
+            // Heavy shaders are drawn offscreen at a reduced resolution
+            boolean scaled = !countingOverdraw && !postProcessing && beginScaledScene();
+
+            // Each is then drawn over the whole screen, once its offscreen pass has ended
+            if(countingOverdraw || scaled || postProcessing)
+                onScreen = coveredScreenPass;
+            else
+                screenPass.beginOnScreen((int)viewportSize.x, (int)viewportSize.y);
+
+            int path = countingOverdraw ? PATH_OVERDRAW
+                    : comparisonScene != null ? PATH_GRID
+                    : splitComparison != null ? PATH_SPLIT
+                    : depthPrePass != null ? PATH_PRE_PASS
+                    : PATH_MODEL;
+            int width = scaled ? sceneWidth : (int)viewportSize.x;
+            int height = scaled ? sceneHeight : (int)viewportSize.y;
+            CommandList commands = prepareCommandList(path, width, height);
+
+            Tracing.begin("CommandList.replay");
+            if(path == PATH_OVERDRAW)
+                drawOverdraw(commands);
+            else if(path == PATH_SPLIT)
+            {
+                // Each half is timed by itself, and timer queries cannot be nested,
+                // so the frame's draw is not timed
+                commands.replay();
+                addGpuDrawTime(splitComparison.getNewTime());
+            }
+            else if(path == PATH_PRE_PASS)
+            {
+                // Likewise, the depth and shading passes are each timed by themselves
+                commands.replay();
+                addGpuDrawTime(depthPrePass.getNewTime());
+            }
+            else
+            {
+                profiler.beginDraw();
+                commands.replay();
+                profiler.endDraw();
+            }
+            Tracing.end();
+
+            if(scaled)
+                endScaledScene();
+            else if(postProcessing)
+                drawPostProcessing(sceneImage, offscreenPass);
+
+            if(splitComparison != null && comparisonScene == null && !countingOverdraw)
+                drawSplitDivider();
+            Tracing.end();
+
+            // A program on probation is only judged by frames that it drew
+            if(!countingOverdraw)
+                checkForGpuHang();
+
+            updateResolutionScale();
+        }
+        else
+            screenPass.beginOnScreen((int)viewportSize.x, (int)viewportSize.y);
+
+        // Read back the frame before it is presented, if a capture was requested
+        if(captureCallback != null)
+        {
+            frameCapture.capture(0, 0, (int)viewportSize.x, (int)viewportSize.y, captureCallback);
+            captureCallback = null;
+        }
+
+        // Nothing more is drawn on the screen this frame
+        onScreen.end();
+
+        // Render a thumbnail offscreen, if one was requested
+        if(thumbnailCallback != null)
+        {
+            Tracing.begin("renderThumbnail");
+            // Without a model, there is nothing to render; say so rather than leave the caller waiting
+            if(model != null)
+                renderThumbnail(thumbnailSize, thumbnailCallback);
+            else
+                frameCapture.captureNothing(thumbnailCallback);
+            thumbnailCallback = null;
+            Tracing.end();
+        }
+
+        // Tell the view whether the next frame can differ from this one
+        updateAnimatingState();
+
+        profiler.endFrame();
+        Tracing.end();
+
+        // Report how long the first frame after resuming took to draw
+        if(resumeNanos != 0 && (model != null || fullScreenCanvas != null))
+        {
+            timeToFirstFrameMillis = (scheduler.getClock().nanoTime() - resumeNanos) / NANOS_PER_MILLI;
+            resumeNanos = 0;
+            Log.i(TAG, String.format("First frame drawn %.1f ms after resume", timeToFirstFrameMillis));
         }
     }
 
-    /** Respond to drag motion input on the parent surface
-     * @param position The touch input position as a unit vector.
-     * @param prevPosition The touch input position as of the last call.*/
-    public void dragInput (Vector2 position, Vector2 prevPosition)
+    /** Take a consistent copy of the input received since the last frame, zoom
+     * the camera, and rotate the model by the rotation dragged into it. */
+    private void applyInput()
     {
+        renderState.swap();
+
+        if(renderState.getZoom() != 1)
+            zoomCamera(renderState.getZoom());
+
         // Be sure that the model is not still being parsed
-        if(model == null)
+        if(!renderState.isRotated() || model == null)
             return;
 
-        // Compute the difference (delta) between this and the previous position
-        Vector2 posDelta = position.subtract(prevPosition);
+        // Applied in place, so that dragging allocates nothing
+        model.transform(dragRotation.set(renderState.getRotation()));
+    }
 
-        // Compute the two rotation angles (360-degrees across the view dimensions)
-        float theta = posDelta.y * 2f * (float)Math.PI;
-        float phi = posDelta.x * 2f * (float)Math.PI;
+    /** Move the camera toward the origin, or away from it, within limits.
+     * @param zoom The factor by which the model's apparent size grows. */
+    private void zoomCamera(float zoom)
+    {
+        Vector3 position = camera.getPosition();
+        float distance = position.magnitude();
+        float newDistance = Math.max(MIN_CAMERA_DISTANCE, Math.min(MAX_CAMERA_DISTANCE, distance / zoom));
+        if(newDistance == distance)
+            return;
 
-        model.transform(Matrix.multiply(
-                Matrix.createRotationX(theta),
-                Matrix.createRotationY(phi)
-        ));
+        camera.setPosition(position.scale(newDistance / distance));
+        camera.createLookAt();
     }
 
-    /** Respond to pinch motion input on the parent surface
-     * @param distance The magnitude of the vector between the two fingers
+    /**
+     * Get the command list that draws the scene this frame. While frames are drawn
+     * continuously, the list was recorded in the background during the previous frame,
+     * and the list for the next frame is started now, from this frame's state. Otherwise,
+     * or if the list was recorded for another path or viewport, the list is recorded now.
+     * @param path The way in which the scene is drawn.
+     * @param width The width of the viewport, in pixels.
+     * @param height The height of the viewport, in pixels.
      */
-    public void pinchInput (float distance)
+    private CommandList prepareCommandList(int path, int width, int height)
     {
-        //TODO: Make pinch work, or kill it
+        Tracing.begin("CommandListPipeline");
+        // Also waits for the worker, after which this frame's state may be published
+        CommandList commands = commandPipeline.takeRecorded();
+        if(!wasAnimating || path != recordPath || width != recordWidth || height != recordHeight)
+            commands = null;
+
+        // The recorder reads these copies while this thread changes the originals
+        model.publish();
+        recordView.set(camera.getView());
+        recordProjection.set(camera.getProjection());
+        recordTime = scheduler.getTime();
+        recordPath = path;
+        recordWidth = width;
+        recordHeight = height;
+        recordFinishTiming = profiler.isProfiling();
+
+        // The first frame drawn continuously has no list from the frame before
+        if(commands == null)
+            commands = commandPipeline.recordNow();
+        if(wasAnimating)
+            commandPipeline.recordInBackground();
+        Tracing.end();
+
+        return commands;
+    }
 
-        // Be sure that the model is not still being parsed
-        if(model == null)
+    /** Record the draws of the scene, from the state last set for recording. Called on the
+     * pipeline's worker thread, or on this thread, but never both at once. */
+    private void recordScene(CommandList list)
+    {
+        switch (recordPath)
+        {
+            case PATH_OVERDRAW:
+                overdrawView.record(list, model, depthPrePass, recordView, recordProjection);
+                break;
+            case PATH_GRID:
+                comparisonScene.record(list, recordView, recordProjection, recordTime);
+                break;
+            case PATH_SPLIT:
+                splitComparison.record(list, model, recordView, recordProjection, recordTime,
+                        recordWidth, recordHeight, recordFinishTiming);
+                break;
+            case PATH_PRE_PASS:
+                depthPrePass.record(list, model, recordView, recordProjection, recordTime,
+                        recordFinishTiming);
+                break;
+            default:
+                model.record(list, recordView, recordProjection, recordTime);
+        }
+    }
+
+    /** Sleep until the frame pacer lets the next frame start. */
+    private void waitForFrameSlot()
+    {
+        long waitNanos = pacer.beginFrame(wasAnimating);
+        if(waitNanos <= 0)
             return;
 
-        //model.transform(Matrix.createScale(distance));
+        Tracing.begin("FramePacer.wait");
+        try
+        {
+            Thread.sleep(waitNanos / 1000000, (int)(waitNanos % 1000000));
+        }
+        catch (InterruptedException e)
+        {
+            // Draw at once. The interrupt is not passed on, as it would end the renderer thread
+        }
+        Tracing.end();
+    }
+
+    /** Direct drawing to the scene target, at the resolution chosen for this frame.
+     * @return False if the scene is drawn at native resolution, straight to the screen. */
+    private boolean beginScaledScene()
+    {
+        float scale = dynamicResolution.getScale();
+        if(scale >= 1)
+            return false;
+
+        int width = (int)viewportSize.x, height = (int)viewportSize.y;
+
+        // Re-use the render target unless the viewport has changed
+        if(sceneTarget == null || sceneTarget.getWidth() != width || sceneTarget.getHeight() != height)
+        {
+            if(sceneTarget != null)
+                sceneTarget.release();
+            sceneTarget = new RenderTarget2D(width, height);
+        }
+
+        sceneWidth = Math.max(1, Math.round(width * scale));
+        sceneHeight = Math.max(1, Math.round(height * scale));
+
+        // The aspect ratio is unchanged, so the camera's projection still applies
+        offscreenPass.begin(sceneTarget);
+        glState.viewport(0, 0, sceneWidth, sceneHeight);
+
+        return true;
+    }
+
+    /** Upscale the scene from the scene target to the screen, with bilinear filtering. */
+    private void endScaledScene()
+    {
+        int width = sceneTarget.getWidth(), height = sceneTarget.getHeight();
+
+        offscreenPass.end();
+        sceneTarget.unbind();
+        coveredScreenPass.beginOnScreen(width, height);
+        glState.disable(GLES20.GL_DEPTH_TEST);
+
+        blit.use();
+        glState.activeTexture(GLES20.GL_TEXTURE0);
+        glState.bindTexture(sceneTarget.getColorTextureName());
+        blit.getUniforms().set1i(blitTextureLocation, 0);
+
+        // Sample only the part of the target that was drawn, and keep the filter
+        // from blending in texels beyond its top and right edges
+        blit.getUniforms().set2f(blitUVScaleLocation, sceneWidth / (float)width, sceneHeight / (float)height);
+        blit.getUniforms().set2f(blitUVMaxLocation, (sceneWidth - 0.5f) / width, (sceneHeight - 0.5f) / height);
+        blit.draw();
+
+        glState.enable(GLES20.GL_DEPTH_TEST);
+    }
+
+    /** Draw the user's shader over the whole screen, without depth, or into a pooled
+     * target that the screen-space effects then read. */
+    private void drawFullScreen()
+    {
+        int width = (int)viewportSize.x, height = (int)viewportSize.y;
+
+        // The shader covers every pixel, so nothing need be cleared or loaded
+        boolean postProcessing = postChain.size() > 0;
+        RenderTarget2D sceneImage = null;
+        if(postProcessing)
+        {
+            sceneImage = targetPool.acquire(width, height, false);
+            coveredScreenPass.begin(sceneImage);
+        }
+        else
+            coveredScreenPass.beginOnScreen(width, height);
+
+        profiler.beginDraw();
+        fullScreenCanvas.draw(model != null ? model.getTexture() : fullScreenTexture,
+                width, height, scheduler.getTime(), renderState.getTouchX(), renderState.getTouchY());
+        profiler.endDraw();
+
+        if(postProcessing)
+            drawPostProcessing(sceneImage, coveredScreenPass);
+    }
+
+    /** Draw the screen-space effects over the scene, the last of them onto the screen.
+     * @param scenePass The pass in which the scene was drawn into its image, which is ended here. */
+    private void drawPostProcessing(RenderTarget2D sceneImage, RenderPass scenePass)
+    {
+        scenePass.end();
+
+        // Each pass is timed by itself; the scene's own draw time excludes them
+        Tracing.begin("PostProcessChain.draw");
+        postChain.draw(sceneImage, targetPool, coveredScreenPass, scheduler.getTime(), profiler.isProfiling());
+        Tracing.end();
+    }
+
+    /** Draw the split-screen divider as a thin vertical line, at native resolution. */
+    private void drawSplitDivider()
+    {
+        GL gl = GLBackend.get();
+        int x = Math.round(viewportSize.x * splitComparison.getDivider());
+
+        glState.enable(GLES20.GL_SCISSOR_TEST);
+        gl.glScissor(x - DIVIDER_THICKNESS / 2, 0, DIVIDER_THICKNESS, (int)viewportSize.y);
+        gl.glClearColor(DIVIDER_BRIGHTNESS, DIVIDER_BRIGHTNESS, DIVIDER_BRIGHTNESS, 1.0f);
+        gl.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        glState.disable(GLES20.GL_SCISSOR_TEST);
+    }
+
+    /** Count the fragments shaded at each pixel, as the model would be drawn now,
+     * and show the counts as a heatmap at native resolution.
+     * @param commands The recorded counting draws. */
+    private void drawOverdraw(CommandList commands)
+    {
+        int width = (int)viewportSize.x, height = (int)viewportSize.y;
+
+        overdrawView.begin(width, height);
+        commands.replay();
+        overdrawView.end(width * height);
+        coveredScreenPass.beginOnScreen(width, height);
+        overdrawView.drawHeatmap();
+
+        // Keep drawing until the latest counts have been read back
+        if(overdrawView.isMeasurementPending())
+            invalidate();
+    }
+
+    /** Record the GPU time of a draw that was timed in passes, if one was measured this frame.
+     * @param millis The time of all passes, in milliseconds, or -1 if none was measured. */
+    private void addGpuDrawTime(float millis)
+    {
+        if(millis >= 0)
+            profiler.addGpuDrawTime(millis);
+    }
+
+    /** Wait for a frame drawn with a newly compiled program, and go back to the last
+     * trusted program if the frame hung the GPU. The hung source is remembered as
+     * unsafe, and reported to the main activity. */
+    private void checkForGpuHang()
+    {
+        watchdog.endFrame();
+        Shader shader = model != null ? model.getCurrentShader() : null;
+
+        String hungSource = (String)watchdog.getHungTag();
+        if(hungSource != null)
+        {
+            Log.w(TAG, String.format("A frame hung the GPU for %.0f ms; reverting its program",
+                    watchdog.getHungTime()));
+
+            UnsafeShaders.markUnsafe(context, hungSource);
+
+            // Reverting changes the program by which the grid is sorted while recording
+            commandPipeline.discard();
+            if(fullScreenCanvas != null && hungSource.equals(fullScreenCanvas.getCompiledFragmentSource()))
+                fullScreenCanvas.revertToTrustedProgram();
+            else if(shader != null && hungSource.equals(shader.getCompiledFragmentSource()))
+                shader.revertToTrustedProgram();
+            else
+                postChain.remove(hungSource);
+
+            Intent report = new Intent(MainActivity.TAG_COMPILER_ERROR);
+            report.putExtra(Constants.EXTRA_COMPILER_LOG, "");
+            report.putExtra(Constants.EXTRA_UNSAFE_SHADER, true);
+            report.putExtra(Constants.EXTRA_GPU_HANG_MILLIS, watchdog.getHungTime());
+            context.sendBroadcast(report);
+            invalidate();
+        }
+        else if(watchdog.getSafeTag() != null)
+        {
+            UnsafeShaders.endProbation(context, (String)watchdog.getSafeTag());
+            if(fullScreenCanvas != null)
+                fullScreenCanvas.trustProgram((String)watchdog.getSafeTag());
+            if(shader != null)
+                shader.trustProgram((String)watchdog.getSafeTag());
+        }
+
+        // Keep drawing until the program on probation has been judged
+        if(watchdog.isWatching())
+            invalidate();
+    }
+
+    /** Put a newly compiled program on probation. Its source counts as unsafe until it
+     * is found safe, so that a hang that kills the process is still remembered. A program
+     * replaced while on probation is no longer drawn, and did not hang; its mark is
+     * dropped in the same write. */
+    private void watchProgram(String fragmentSource)
+    {
+        UnsafeShaders.beginProbation(context, fragmentSource);
+        watchdog.watch(fragmentSource);
+    }
+
+    /** Make the next draws of the running benchmark, and release it once it finishes. */
+    private void stepBenchmark()
+    {
+        Tracing.begin("ShaderBenchmark.step");
+        if(benchmark.step())
+        {
+            benchmark.release();
+            benchmark = null;
+        }
+        glState.viewport(0, 0, (int)viewportSize.x, (int)viewportSize.y);
+        Tracing.end();
+
+        // Keep drawing frames until the benchmark has finished
+        invalidate();
+    }
+
+    /** Let the dynamic resolution controller respond to the latest frame time. */
+    private void updateResolutionScale()
+    {
+        if(!dynamicResolution.isAutomatic())
+            return;
+
+        float gpuMillis = profiler.getNewGpuFrameTime();
+
+        if(gpuMillis >= 0)
+            dynamicResolution.addFrameTime(gpuMillis);
+        else if(!profiler.hasGpuTimer() && wasAnimating)
+            // Without GPU timings, fall back to the interval between continuous frames,
+            // less the time spent waiting for the frame rate cap
+            dynamicResolution.addFrameInterval(
+                    (scheduler.getFrameDeltaNanos() - pacer.getLastWaitNanos()) / 1000000f);
+    }
+
+    /** Determine whether the scene changes by itself over time,
+     * and notify the listener when that changes. */
+    private void updateAnimatingState()
+    {
+        // A paused scene cannot change, as time does not advance.
+        // A full-screen shader is assumed to depend on time, as most do.
+        boolean animating = !isPaused && (fullScreenCanvas != null || (model != null
+                && (model.isAnimated() || (comparisonScene != null && comparisonScene.isAnimated()))));
+
+        if(animating != wasAnimating && invalidationListener != null)
+            invalidationListener.onAnimatingChanged(animating);
+
+        // A frame drawn continuously shows the state of the frame before it,
+        // so the latest state is drawn once more when frames stop
+        if(wasAnimating && !animating)
+            invalidate();
+
+        // The next frame may be drawn after an idle gap of any length, which must
+        // not be simulated when it starts animating again
+        if(!animating)
+            scheduler.resync();
+
+        wasAnimating = animating;
+    }
+
+    /** Start timing the first frame drawn after the view resumes.
+     * May be called from any thread. */
+    public void markResumed()
+    {
+        resumeNanos = scheduler.getClock().nanoTime();
+    }
+
+    /** @return The time, in milliseconds, from the last resume until its first frame was
+     * drawn, including re-creating OpenGL objects if the context was lost; -1 if not yet drawn. */
+    public float getTimeToFirstFrame()
+    {
+        return timeToFirstFrameMillis;
+    }
+
+    /** @return The time, in milliseconds, spent re-creating OpenGL objects when the current
+     * context was created; 0 if there was nothing to re-create. */
+    public float getRestoreTime()
+    {
+        return restoreMillis;
+    }
+
+    /** Register every OpenGL object in use, so that it is re-created if the context is lost.
+     * Must be called whenever the model, its texture, or the comparison shaders change. */
+    private void registerResources()
+    {
+        resources.clear();
+
+        if(model != null)
+            model.registerResources(resources);
+        if(comparisonScene != null)
+            comparisonScene.registerResources(resources);
+        resources.add(splitComparison);
+        resources.add(depthPrePass);
+        resources.add(overdrawView);
+        resources.add(postChain);
+        resources.add(targetPool);
+        resources.add(fullScreenCanvas);
+        resources.add(fullScreenTexture);
+    }
+
+    /** Request that a new frame be drawn, as the scene has changed. */
+    public void invalidate()
+    {
+        if(invalidationListener != null)
+            invalidationListener.onInvalidated();
+    }
+
+    /** Queue a task to be run on the OpenGL thread in the next frame,
+     * and make sure that the frame is drawn.
+     * @param task The task to run.
+     */
+    private void queueTask(Runnable task)
+    {
+        tasks.add(task);
+        invalidate();
+    }
+
+    /** @param listener Notified when the rendered image becomes out of date. */
+    public void setInvalidationListener(InvalidationListener listener)
+    {
+        this.invalidationListener = listener;
+    }
+
+    /** Respond to drag motion input on the parent surface. The drags received
+     * before a frame rotate the model at its start, as one. May be called from any thread.
+     * @param deltaX The distance moved across the view, as a fraction of its width.
+     * @param deltaY The distance moved down the view, as a fraction of its height. */
+    public void dragInput (float deltaX, float deltaY)
+    {
+        // Compute the two rotation angles (360-degrees across the view dimensions)
+        float theta = deltaY * 2f * (float)Math.PI;
+        float phi = deltaX * 2f * (float)Math.PI;
+
+        renderState.rotate(theta, phi);
+        invalidate();
+    }
+
+    /** Respond to pinch motion input on the parent surface, by moving the camera toward
+     * or away from the model. The pinches received before a frame zoom at its start,
+     * as one. May be called from any thread.
+     * @param scale The ratio of the distance between the two fingers to its previous value.
+     */
+    public void pinchInput (float scale)
+    {
+        renderState.zoom(scale);
+        invalidate();
+    }
+
+    /** Respond to touch input on the parent surface, for the full-screen shader's
+     * "touch" uniform. The position is taken at the start of the next frame.
+     * May be called from any thread.
+     * @param x The touch position, in pixels from the left of the viewport.
+     * @param y The touch position, in pixels from the bottom of the viewport.
+     */
+    public void touchInput(float x, float y)
+    {
+        renderState.touch(x, y);
+
+        // Only the full-screen shader reads the position, but whether it is drawn
+        // belongs to the OpenGL thread, and a spare frame is cheap
+        invalidate();
     }
 
     /** Supply a fragment shader to use on the object (from the user).
@@ -170,23 +1030,98 @@ public class CustomRenderer implements GLSurfaceView.Renderer
     {
         // The shader should (must) be compiled during OpenGL draw time,
         // and so we must have onDraw() execute this task.
-        tasks.add(new Runnable() {
+        queueTask(new Runnable() {
             @Override
             public void run() {
-                // Be sure that the model is not still being parsed
-                if (model != null)
+                userSource = fragmentSource;
+                compileUserShader();
+            }
+        });
+
+        return true;
+    }
+
+    /** Compile the last fragment shader supplied by the user, for the full-screen
+     * shader or the model, whichever is drawn, and report the compiler log to the
+     * main activity. Must be called on the OpenGL thread. */
+    private void compileUserShader()
+    {
+        if(userSource == null)
+            return;
+
+        String log;
+        if(fullScreenCanvas != null)
+        {
+            boolean compiled = fullScreenCanvas.provideUserShader(userSource);
+
+            // A new program is on probation until it draws frames in good time
+            if(compiled && fullScreenCanvas.isOnProbation())
+                watchProgram(fullScreenCanvas.getCompiledFragmentSource());
+
+            log = fullScreenCanvas.getFragmentShaderLog();
+        }
+        // Be sure that the model is not still being parsed
+        else if(model != null)
+        {
+            boolean compiled = model.provideUserShader(userSource);
+
+            // A new program is on probation until it draws frames in good time
+            if(compiled && model.getCurrentShader().isOnProbation())
+                watchProgram(model.getCurrentShader().getCompiledFragmentSource());
+
+            log = getFragmentShaderLog();
+        }
+        else
+            return;
+
+        // Tell the main activity about compiler errors
+        Intent errorMessage = new Intent(MainActivity.TAG_COMPILER_ERROR);
+        errorMessage.putExtra(Constants.EXTRA_COMPILER_LOG, log);
+        context.sendBroadcast(errorMessage);
+        invalidate();
+    }
+
+    /**
+     * Draw the user's fragment shader over the whole viewport, without the model or
+     * depth, or return to drawing the model. The last shader supplied is compiled for
+     * whichever is drawn. The full-screen shader needs no model to have been loaded.
+     * @param enabled True to draw the shader full-screen, false to draw the model.
+     */
+    public void setFullScreenMode(final boolean enabled)
+    {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                if(enabled == (fullScreenCanvas != null))
+                    return;
+
+                if(enabled)
                 {
-                    boolean compilerErrors = model.provideUserShader(fragmentSource);
+                    fullScreenCanvas = new FullScreenCanvas(new ContentManager(context));
 
-                    // Tell the main activity about compiler errors
-                    Intent errorMessage = new Intent(MainActivity.TAG_COMPILER_ERROR);
-                    errorMessage.putExtra(Constants.EXTRA_COMPILER_LOG, getFragmentShaderLog());
-                    context.sendBroadcast(errorMessage);
+                    // Without a model, the shader samples the preferred texture
+                    if(model == null && fullScreenTexture == null)
+                        fullScreenTexture = new ContentManager(context).getTextureFileFromPreference();
+                }
+                else
+                {
+                    fullScreenCanvas.release();
+                    fullScreenCanvas = null;
                 }
+
+                // Keep the draw times of the two modes apart
+                profiler.getGpuFrameTimes().clear();
+                registerResources();
+                compileUserShader();
+                invalidate();
             }
         });
+    }
 
-        return true;
+    /** @return True if the user's shader is drawn full-screen, in place of the model. */
+    public boolean isFullScreenMode()
+    {
+        return fullScreenCanvas != null;
     }
 
     /** Supply a Model to render.
@@ -194,7 +1129,32 @@ public class CustomRenderer implements GLSurfaceView.Renderer
      */
     public void provideUserModel(final Model model)
     {
+        // A list being recorded reads the previous model and the grid that is rebuilt here
+        commandPipeline.discard();
+
         this.model = model;
+        invalidate();
+
+        // The new model starts with its own shader; give it the editor's
+        if(fullScreenCanvas == null)
+            compileUserShader();
+
+        // The comparison grid must show the new model
+        buildComparisonScene();
+        if(splitComparison != null)
+            splitComparison.setModel(model);
+
+        registerResources();
+
+        // Thumbnails that are being regenerated must show the new model
+        if(regenerateThumbnailsForNextModel)
+        {
+            regenerateThumbnailsForNextModel = false;
+            thumbnailRegeneratorListener = null;
+            startThumbnailRegeneration();
+        }
+        else
+            restartThumbnailRegeneration();
     }
 
     /** Specify whether the model should rotate automatically,
@@ -204,12 +1164,14 @@ public class CustomRenderer implements GLSurfaceView.Renderer
     public void rotateModelAutomatically(final boolean condition)
     {
         model.rotateModelAutomatically(condition);
+        invalidate();
     }
 
     /** Reset the timer */
     public void resetTime()
     {
-        currentTime = 0;
+        scheduler.reset();
+        invalidate();
     }
 
     /**
@@ -219,6 +1181,8 @@ public class CustomRenderer implements GLSurfaceView.Renderer
     public void setPaused(boolean paused)
     {
         this.isPaused = paused;
+        scheduler.setPaused(paused);
+        invalidate();
     }
 
     /**
@@ -229,6 +1193,112 @@ public class CustomRenderer implements GLSurfaceView.Renderer
         return isPaused;
     }
 
+    /**
+     * Advance time by exactly the same amount every frame, regardless of
+     * the real frame rate, so that profiling runs are reproducible.
+     * @param frameSeconds The real-time step applied per frame, in seconds.
+     */
+    public void setDeterministicTime(float frameSeconds)
+    {
+        scheduler.setDeterministic((long)(frameSeconds * FrameScheduler.NANOS_PER_SECOND));
+    }
+
+    /**
+     * Render the scene at a fixed fraction of the viewport resolution,
+     * or let the fraction adapt to the frame time.
+     * @param scale The fraction of the width and height (0 to 1], or 0 for automatic.
+     *              A scale of 1 renders at native resolution.
+     */
+    public void setResolutionScale(float scale)
+    {
+        dynamicResolution.setManualScale(scale);
+        invalidate();
+    }
+
+    /**
+     * Limit the resolution scales that may be chosen automatically.
+     * @param minScale The lowest fraction of the viewport resolution, greater than 0.
+     * @param maxScale The highest fraction of the viewport resolution, at most 1.
+     */
+    public void setResolutionScaleBounds(float minScale, float maxScale)
+    {
+        dynamicResolution.setScaleBounds(minScale, maxScale);
+        invalidate();
+    }
+
+    /** @return The controller that chooses the resolution at which the scene is rendered */
+    public DynamicResolution getDynamicResolution()
+    {
+        return dynamicResolution;
+    }
+
+    /**
+     * Limit the frame rate.
+     * @param fps The cap, in frames per second, or FramePacer.UNCAPPED.
+     * @param editingFps The cap while the user edits code, or FramePacer.UNCAPPED
+     *                   to use the same cap as otherwise.
+     */
+    public void setFrameRateCap(int fps, int editingFps)
+    {
+        pacer.setTargetFps(fps);
+        pacer.setEditingFps(editingFps);
+        invalidate();
+    }
+
+    /** @param editing True while the user edits code, so that the editing frame rate cap applies. */
+    public void setEditing(boolean editing)
+    {
+        pacer.setEditing(editing);
+    }
+
+    /** @return The pacer that limits the frame rate */
+    public FramePacer getPacer()
+    {
+        return pacer;
+    }
+
+    /** Return to advancing time by the measured frame duration. */
+    public void setRealTime()
+    {
+        scheduler.setRealTime();
+    }
+
+    /**
+     * Enable or disable the explicit profiling mode. Where GPU timer queries are
+     * unavailable, GPU frame time is then sampled with glFinish, which stalls.
+     * @param profiling True to enable profiling mode.
+     */
+    public void setProfiling(boolean profiling)
+    {
+        profiler.setProfiling(profiling);
+    }
+
+    /** @return The profiler that measures the CPU and GPU cost of each frame */
+    public FrameProfiler getProfiler()
+    {
+        return profiler;
+    }
+
+    /** @return The cache that drops redundant OpenGL state changes, with its counts
+     * of issued and skipped calls in the previous frame. Null until the surface is created. */
+    public GLStateCache getGLStateCache()
+    {
+        return glState;
+    }
+
+    /** @return The estimated framebuffer traffic of the previous frame's render passes.
+     * Null until the surface is created. */
+    public BandwidthCounters getBandwidthCounters()
+    {
+        return bandwidth;
+    }
+
+    /** @return The scheduler that keeps the renderer's time */
+    public FrameScheduler getScheduler()
+    {
+        return scheduler;
+    }
+
     /** @return The shader currently used to render the model */
     public Shader getCurrentShader()
     {
@@ -242,105 +1312,421 @@ public class CustomRenderer implements GLSurfaceView.Renderer
     }
 
     /**
-     * Renders the current OpenGL viewport to an Android bitmap.
-     *
-     * This function contains code from StackOverflow user "Gordon",
-     * in response to the following StackOverflow question:
-     * http://stackoverflow.com/questions/3310990/taking-screenshot-of-android-opengl
-     *
-     * I have attempted to provide better names, and comment where necessary, to
-     * demonstrate my understanding of Gordon's code.
-     *
-     * @return The display rendered as a Bitmap.
+     * Draw the model several times in a grid, once with its own shader and once with
+     * each of the given fragment shaders, so that they can be compared side by side.
+     * The model's own shader continues to follow the editor.
+     * @param fragmentSources The fragment shaders to compare. Those that fail to compile are left out;
+     *                        a placeholder is drawn for each null.
      */
-    public Bitmap renderToBitmap ()
-    {
-        int width = (int)viewportSize.x;
-        int height = (int)viewportSize.y;
-        int totalSize = width * height;
-
-        // Create a Byte Buffer with size: (size of image) * (number of channels [RGBA])
-        ByteBuffer byteBuffer = ByteBuffer.allocateDirect(totalSize * 4);
-        byteBuffer.order(ByteOrder.nativeOrder());
-
-        // Read the current display buffer from video memory, into the byte buffer
-        GLES20.glReadPixels(
-                0, 0,                   // Viewport position
-                width, height,          // Viewport dimensions
-                GLES20.GL_RGBA,         // Image format (Include alpha)
-                GLES20.GL_UNSIGNED_BYTE,// Component format (one byte per channel)
-                byteBuffer);            // Buffer to copy pixels into
-
-        // Pack bytes into 4-byte integers
-        int pixels[] = new int[totalSize];
-        byteBuffer.asIntBuffer().get(pixels);
-
-        // Create an Android Bitmap to store the pixel buffer
-        displayRender = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
-
-        // Supply pixels to the bitmap
-        displayRender.setPixels(
-                pixels,                 // Pixel data
-                totalSize - width,      // Offset - Start at last row
-                -width,                 // Stride - Move up one row each stride
-                0, 0, width, height);   // Fill image from (0,0) to (w,h)
-
-        // Convert this BGR bitmap to RGB
-        displayRender = BGRtoRGB(displayRender, totalSize);
-
-        newScreenshot = true;
-        return displayRender;
-    }
-
-    /** Convert a BGR-565 (Blue, Green, Red) bitmap to an RGB-565 bitmap.
-     *
-     * This function contains code from StackOverflow user "Gordon",
-     * in response to the following StackOverflow question:
-     * http://stackoverflow.com/questions/3310990/taking-screenshot-of-android-opengl
-     *
-     * I have attempted to provide better names, and comment where necessary, to
-     * demonstrate my understanding of Gordon's code. */
-    private Bitmap BGRtoRGB (Bitmap inBitmap, int size)
-    {
-        // The final converted pixels
-        short[] finalPixels = new short[size];
-
-        // Copy the pixels from the bitmap into the short buffer
-        ShortBuffer shortBuffer = ShortBuffer.wrap(finalPixels);
-        inBitmap.copyPixelsToBuffer(shortBuffer);
-
-        // For each pixel
-        for(int i=0; i < size; i++)
+    public void showComparisonGrid(final List<String> fragmentSources)
+    {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                comparisonSources = fragmentSources;
+                buildComparisonScene();
+            }
+        });
+    }
+
+    /** Return to drawing the model alone. */
+    public void hideComparisonGrid()
+    {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                comparisonSources = null;
+                buildComparisonScene();
+            }
+        });
+    }
+
+    /** Compile the comparison grid's shaders and lay out its cells, releasing any
+     * previous grid. Must be called on the OpenGL thread. */
+    private void buildComparisonScene()
+    {
+        if(comparisonScene != null)
+            comparisonScene.release(model != null ? model.getCurrentShader() : null);
+        comparisonScene = null;
+        registerResources();
+
+        // Be sure that the model is not still being parsed
+        if(comparisonSources == null || model == null || camera == null)
+            return;
+
+        // Fit the grid to the region visible at the camera's distance from the origin
+        float halfHeight = camera.getPosition().magnitude() * (float)Math.tan(camera.getFieldOfView() / 2);
+        comparisonScene = new Scene(halfHeight);
+        comparisonScene.setAspectRatio(camera.getAspectRatio());
+
+        // Every shader shares the model's vertex buffer
+        comparisonScene.add(model, model.getCurrentShader());
+
+        ContentManager content = new ContentManager(context);
+        for(String source : comparisonSources)
         {
-            short pixel = finalPixels[i];
+            // A shader known to hang the GPU is not compiled; a placeholder takes its cell
+            if(source == null)
+                source = content.fileAsString(Constants.PLACEHOLDER_SHADER);
+
+            Shader shader = new Shader(content, source);
+            if(!shader.isCompiled())
+            {
+                shader.release();
+                continue;
+            }
+            shader.provideVertices(model.getVertexBuffer());
+            comparisonScene.add(model, shader);
+        }
+
+        registerResources();
+        invalidate();
+    }
 
-            // Flip channels by shifting bits
-            finalPixels[i] =
-                    (short) (((pixel&0x1f) << 11) | (pixel&0x7e0) | ((pixel&0xf800) >> 11));
+    /**
+     * Draw the model split by a divider: to the left, with the editor's program as
+     * it is now, and to the right, with the editor's program as it changes. The two
+     * halves are timed separately on the GPU.
+     * @param enabled True to start comparing, false to return to drawing the model alone.
+     */
+    public void setSplitScreen(final boolean enabled)
+    {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                // The last program that compiled is the reference
+                splitReferenceSource = enabled && model != null
+                        ? model.getCurrentShader().getCompiledFragmentSource() : null;
+                buildSplitComparison();
+            }
+        });
+    }
+
+    /**
+     * Move the split-screen divider.
+     * @param divider The divider's position, as a fraction of the viewport width from the left.
+     */
+    public void setSplitDivider(final float divider)
+    {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                splitDivider = divider;
+                if(splitComparison != null)
+                    splitComparison.setDivider(divider);
+            }
+        });
+    }
+
+    /** Compile the split-screen reference shader, releasing any previous one.
+     * Must be called on the OpenGL thread. */
+    private void buildSplitComparison()
+    {
+        if(splitComparison != null)
+            splitComparison.release();
+        splitComparison = null;
+        registerResources();
+
+        // Be sure that the model is not still being parsed
+        if(splitReferenceSource == null || model == null)
+            return;
+
+        splitComparison = new SplitScreenComparison(new ContentManager(context),
+                splitReferenceSource, model, scheduler.getClock());
+        splitComparison.setDivider(splitDivider);
+        registerResources();
+        invalidate();
+    }
+
+    /** @return The split-screen comparison, with the GPU times of each half,
+     * or null if not comparing. */
+    public SplitScreenComparison getSplitComparison()
+    {
+        return splitComparison;
+    }
+
+    /**
+     * Draw the model's depth alone before shading it, so that each pixel is shaded
+     * at most once. Pays off when the fragment shader is expensive and the model
+     * covers itself. The depth and shading passes are timed separately on the GPU.
+     * @param enabled True to draw in two passes, false to draw in one.
+     */
+    public void setDepthPrePass(final boolean enabled)
+    {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                if(enabled == (depthPrePass != null))
+                    return;
+
+                if(enabled)
+                    depthPrePass = new DepthPrePass(new ContentManager(context), scheduler.getClock());
+                else
+                {
+                    depthPrePass.release();
+                    depthPrePass = null;
+                }
+
+                // Keep one-pass and two-pass draw times apart
+                profiler.getGpuFrameTimes().clear();
+                registerResources();
+                invalidate();
+            }
+        });
+    }
+
+    /** @return The depth pre-pass, with the GPU times of each pass,
+     * or null if the model is drawn in one pass. */
+    public DepthPrePass getDepthPrePass()
+    {
+        return depthPrePass;
+    }
+
+    /**
+     * Compile a screen-space effect, and draw it over the scene after any others.
+     * The compiler log is reported to the main activity, as for the model's shader.
+     * @param fragmentSource The fragment shader source, which reads the previous
+     *                       image from the "texture" uniform.
+     */
+    public void addPostPass(final String fragmentSource)
+    {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                boolean compiled = postChain.add(new ContentManager(context), fragmentSource);
+
+                // A new pass is on probation, unless the model's program already is
+                if(compiled && !watchdog.isWatching())
+                    watchProgram(fragmentSource);
+
+                Intent errorMessage = new Intent(MainActivity.TAG_COMPILER_ERROR);
+                errorMessage.putExtra(Constants.EXTRA_COMPILER_LOG, postChain.getCompilerLog());
+                context.sendBroadcast(errorMessage);
+
+                registerResources();
+                invalidate();
+            }
+        });
+    }
+
+    /** Remove every screen-space effect. */
+    public void clearPostPasses()
+    {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                postChain.clear();
+                invalidate();
+            }
+        });
+    }
+
+    /** @return The screen-space effects drawn over the scene, with the GPU times of each pass. */
+    public PostProcessChain getPostChain()
+    {
+        return postChain;
+    }
+
+    /**
+     * Show how many fragments are shaded at each pixel when the model is drawn, as
+     * a heatmap in place of the model, to tell overdraw apart from the cost of the
+     * fragment shader. The depth pre-pass, if enabled, is taken into account.
+     * @param enabled True to show the heatmap, false to return to shading the model.
+     * @param listener Receives summary statistics on the UI thread while the heatmap is shown.
+     */
+    public void setOverdrawView(final boolean enabled, final OverdrawView.Listener listener)
+    {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                if(overdrawView != null)
+                    overdrawView.release();
+                overdrawView = enabled
+                        ? new OverdrawView(new ContentManager(context), scheduler.getClock(), listener)
+                        : null;
+
+                registerResources();
+                invalidate();
+            }
+        });
+    }
+
+    /**
+     * Measure the GPU cost of the model's program per megapixel, offscreen, without
+     * the model. While the split screen is shown, the reference program (A) is compared
+     * with the model's (B). Replaces any benchmark that is running.
+     * @param listener Receives the report on the UI thread.
+     */
+    public void runBenchmark(final ShaderBenchmark.Listener listener)
+    {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                if(benchmark != null)
+                    benchmark.release();
+                benchmark = null;
+
+                // Be sure that the model is not still being parsed
+                if(model == null)
+                    return;
+
+                String source = model.getCurrentShader().getCompiledFragmentSource();
+                String[] sources = splitComparison != null
+                        ? new String[] { splitComparison.getReferenceShader().getCompiledFragmentSource(), source }
+                        : new String[] { source };
+
+                benchmark = new ShaderBenchmark(new ContentManager(context), sources,
+                        model.getTexture(), scheduler.getTime(), scheduler.getClock(), listener);
+                invalidate();
+            }
+        });
+    }
+
+    /** Stop the running benchmark, if any. Its listener is not told. */
+    public void cancelBenchmark()
+    {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                if(benchmark != null)
+                    benchmark.release();
+                benchmark = null;
+            }
+        });
+    }
+
+    /** @return The grid in which shaders are compared, or null if it is hidden. */
+    public Scene getComparisonScene()
+    {
+        return comparisonScene;
+    }
+
+    /**
+     * Capture the next frame that is drawn, and convert it to a bitmap in the background.
+     * @param callback Receives the bitmap on the UI thread.
+     */
+    public void requestCapture(final FrameCapture.Callback callback)
+    {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                captureCallback = callback;
+            }
+        });
+    }
+
+    /**
+     * Render the model offscreen at a fixed, square resolution, and read back only
+     * those pixels. The cost of a thumbnail does not depend on the screen resolution.
+     * @param size The width and height of the thumbnail, in pixels.
+     * @param callback Receives the thumbnail on the UI thread, or null if no model is loaded.
+     */
+    public void requestThumbnail(final int size, final FrameCapture.Callback callback)
+    {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                thumbnailSize = size;
+                thumbnailCallback = callback;
+            }
+        });
+    }
+
+    /** Draw the model into the thumbnail render target, and capture it. */
+    private void renderThumbnail(int size, FrameCapture.Callback callback)
+    {
+        // Re-use the render target unless the size has changed
+        if(thumbnailTarget == null || thumbnailTarget.getWidth() != size)
+        {
+            if(thumbnailTarget != null)
+                thumbnailTarget.release();
+            thumbnailTarget = new RenderTarget2D(size, size);
         }
 
-        // Reset the buffer pointer, and copy pixels back into the bitmap
-        shortBuffer.rewind();
-        inBitmap.copyPixelsFromBuffer(shortBuffer);
+        offscreenPass.begin(thumbnailTarget);
+
+        model.draw(thumbnailCamera, scheduler.getTime());
+
+        // Read back while the render target is still bound
+        frameCapture.capture(0, 0, size, size, callback);
+        offscreenPass.end();
 
-        return inBitmap;
+        // Return to drawing on the screen
+        thumbnailTarget.unbind();
+        glState.viewport(0, 0, (int)viewportSize.x, (int)viewportSize.y);
     }
 
     /**
-     * @return The most recently rendered "screenshot" of the display buffer.
+     * Re-render the thumbnails of all saved user shaders with the current model and
+     * texture, on a background thread with its own OpenGL context. Any job that is
+     * already running is cancelled.
+     * @param listener Receives progress on the UI thread. May be null.
      */
-    public Bitmap getLastRenderedBitmap()
+    public void regenerateThumbnails(final ThumbnailRegenerator.Listener listener)
+    {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                thumbnailRegeneratorListener = listener;
+                startThumbnailRegeneration();
+            }
+        });
+    }
+
+    /** Re-render the thumbnails of all saved user shaders once the
+     * next model is provided, as they show the model being replaced. */
+    public void regenerateThumbnailsForNextModel()
     {
-        if(!newScreenshot)
-            return null;
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                regenerateThumbnailsForNextModel = true;
+            }
+        });
+    }
 
-        newScreenshot = false;
-        return displayRender;
+    /** Cancel the thumbnail regeneration job, if one is running. */
+    public void cancelThumbnailRegeneration()
+    {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                if(thumbnailRegenerator != null)
+                    thumbnailRegenerator.cancel();
+                thumbnailRegenerator = null;
+            }
+        });
+    }
+
+    /** Start a new thumbnail regeneration job, cancelling any running job.
+     * Must be called on the OpenGL thread. */
+    private void startThumbnailRegeneration()
+    {
+        if(thumbnailRegenerator != null)
+            thumbnailRegenerator.cancel();
+        thumbnailRegenerator = null;
+
+        // Be sure that the model is not still being parsed
+        if(model == null || eglContext == null)
+            return;
+
+        thumbnailRegenerator = new ThumbnailRegenerator(context, eglContext,
+                model.getVertexBuffer(), model.getTexture(),
+                Constants.THUMBNAIL_SIZE, thumbnailRegeneratorListener);
+        thumbnailRegenerator.start();
+    }
+
+    /** Restart the thumbnail regeneration job if it is still running,
+     * because the model or texture it renders with has been replaced. */
+    private void restartThumbnailRegeneration()
+    {
+        if(thumbnailRegenerator != null && thumbnailRegenerator.isAlive())
+            startThumbnailRegeneration();
     }
 
     public void setTextureFilteringMode(final TextureFilteringMode mode)
     {
-        tasks.add(new Runnable() {
+        queueTask(new Runnable() {
             @Override
             public void run() {
                 model.setTextureFilteringMode(mode);
@@ -349,7 +1735,7 @@ public class CustomRenderer implements GLSurfaceView.Renderer
     }
 
     public void setTextureWrapMode(final TextureWrapMode textureWrapMode) {
-        tasks.add(new Runnable() {
+        queueTask(new Runnable() {
             @Override
             public void run() {
                 model.setTextureWrapMode(textureWrapMode);
@@ -359,20 +1745,24 @@ public class CustomRenderer implements GLSurfaceView.Renderer
 
     public void setTexture(final InputStream texture)
     {
-        tasks.add(new Runnable() {
+        queueTask(new Runnable() {
             @Override
             public void run() {
                 model.setTexture(texture);
+                registerResources();
+                restartThumbnailRegeneration();
             }
         });
     }
 
     public void setTexture(final Uri uri, final ContentManager content)
     {
-        tasks.add(new Runnable() {
+        queueTask(new Runnable() {
             @Override
             public void run() {
                 model.setTexture(content.getFileFromUri(uri));
+                registerResources();
+                restartThumbnailRegeneration();
             }
         });
     }
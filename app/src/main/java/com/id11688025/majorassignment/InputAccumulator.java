@@ -0,0 +1,91 @@
+package com.id11688025.majorassignment;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sums input deltas, such as the motion of a drag, and multiplies scale factors,
+ * such as the steps of a pinch, from any thread without locking. A single consumer
+ * takes the totals once per frame, which start again from nothing.
+ *
+ * The two deltas are packed, as float bits, into one AtomicLong, so that they are
+ * added, and taken, together. The scale factor is kept as float bits in an
+ * AtomicInteger. Each change retries a compare-and-set until no other thread has
+ * changed the value in between. Nothing is allocated.
+ */
+public class InputAccumulator
+{
+    /** Deltas of (0, 0), packed */
+    private static final long NO_DELTA = 0;
+
+    /** A scale factor of 1, as float bits */
+    private static final int NO_SCALE = Float.floatToRawIntBits(1.0f);
+
+    /** The sums of the deltas since they were last taken: x in the high half, y in the low */
+    private final AtomicLong deltas = new AtomicLong(NO_DELTA);
+
+    /** The product of the scale factors since it was last taken, as float bits */
+    private final AtomicInteger scale = new AtomicInteger(NO_SCALE);
+
+    /** The totals as of the last take. Only read by the consumer */
+    private float takenX = 0, takenY = 0, takenScale = 1;
+
+    /** Add a pair of deltas. May be called from any thread. */
+    public void add(float x, float y)
+    {
+        while(true)
+        {
+            long current = deltas.get();
+            long sum = pack(Float.intBitsToFloat((int)(current >>> 32)) + x,
+                            Float.intBitsToFloat((int)current) + y);
+            if(deltas.compareAndSet(current, sum))
+                return;
+        }
+    }
+
+    /** Multiply the scale by a factor. May be called from any thread. */
+    public void multiply(float factor)
+    {
+        while(true)
+        {
+            int current = scale.get();
+            int product = Float.floatToRawIntBits(Float.intBitsToFloat(current) * factor);
+            if(scale.compareAndSet(current, product))
+                return;
+        }
+    }
+
+    /** Take the totals since the last take, to be read with the getters,
+     * and start again from nothing. Called by the consumer alone. */
+    public void take()
+    {
+        long taken = deltas.getAndSet(NO_DELTA);
+        takenX = Float.intBitsToFloat((int)(taken >>> 32));
+        takenY = Float.intBitsToFloat((int)taken);
+        takenScale = Float.intBitsToFloat(scale.getAndSet(NO_SCALE));
+    }
+
+    /** Pack two floats into a long: x in the high half, y in the low. */
+    private static long pack(float x, float y)
+    {
+        return ((long)Float.floatToRawIntBits(x) << 32) | (Float.floatToRawIntBits(y) & 0xFFFFFFFFL);
+    }
+
+    /** @return The sum of the x deltas as of the last take. */
+    public float getX()
+    {
+        return takenX;
+    }
+
+    /** @return The sum of the y deltas as of the last take. */
+    public float getY()
+    {
+        return takenY;
+    }
+
+    /** @return The product of the scale factors as of the last take; 1 if there were none. */
+    public float getScale()
+    {
+        return takenScale;
+    }
+}
@@ -1,6 +1,9 @@
 package com.id11688025.majorassignment;
 
 import android.app.Activity;
+import android.app.AlertDialog;
+import android.app.ProgressDialog;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
@@ -16,20 +19,48 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageButton;
+import android.widget.TextView;
+import android.widget.Toast;
 
 import com.google.android.gms.ads.AdRequest;
 import com.google.android.gms.ads.AdView;
+import com.id11688025.majorassignment.graphics.BandwidthCounters;
+import com.id11688025.majorassignment.graphics.DepthPrePass;
+import com.id11688025.majorassignment.graphics.FrameCapture;
+import com.id11688025.majorassignment.graphics.OverdrawView;
+import com.id11688025.majorassignment.graphics.PostProcessChain;
 import com.id11688025.majorassignment.objparser.OBJLoaderTask;
+import com.id11688025.majorassignment.profiling.BenchmarkReport;
+import com.id11688025.majorassignment.profiling.RingBufferTracer;
+import com.id11688025.majorassignment.profiling.RollingStatistics;
+import com.id11688025.majorassignment.profiling.ShaderBenchmark;
+import com.id11688025.majorassignment.profiling.SystraceTracer;
+import com.id11688025.majorassignment.profiling.Tracer;
+import com.id11688025.majorassignment.profiling.Tracing;
+import com.id11688025.majorassignment.shaders.Shader;
+import com.id11688025.majorassignment.storage.LocalShaderDatabase;
 import com.id11688025.majorassignment.storage.LocalShaderList;
 import com.id11688025.majorassignment.storage.SaveDialog;
-
+import com.id11688025.majorassignment.storage.ShaderDescription;
+import com.id11688025.majorassignment.storage.ThumbnailRegenerator;
+import com.id11688025.majorassignment.storage.UnsafeShaders;
+import com.id11688025.majorassignment.timing.FramePacer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MainActivity extends Activity {
 
     /** The compiler error tag for the broadcast receiver */
     public static final String TAG_COMPILER_ERROR = "com.id11688025.majorassignment.COMPILER_ERROR";
 
+    /** The number of bytes in one megabyte */
+    private static final float BYTES_PER_MEGABYTE = 1024 * 1024;
+
     /** The Surface View which manages the renderer thread */
     private CustomGLSurfaceView glSurface;
 
@@ -45,6 +76,27 @@ public class MainActivity extends Activity {
     /** The object that stores application-wide preferences */
     private SharedPreferences preferences;
 
+    /** Is the model drawn with every saved shader, side by side? */
+    private boolean comparingShaders = false;
+
+    /** Is the model drawn split between the current program and the edited one? */
+    private boolean splitScreen = false;
+
+    /** Is the model's depth drawn before it is shaded? */
+    private boolean depthPrePass = false;
+
+    /** Is the model replaced by a heatmap of the fragments shaded at each pixel? */
+    private boolean showingOverdraw = false;
+
+    /** Is the editor's shader drawn over the whole view, without the model? */
+    private boolean fullScreenMode = false;
+
+    /** Has the model been loaded, or is it being loaded, since the renderer was configured? */
+    private boolean modelRequested = false;
+
+    /** The most recent benchmark, saved beside the shader it measured, or null if none has run */
+    private BenchmarkReport benchmarkReport;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -85,8 +137,13 @@ public class MainActivity extends Activity {
         // Store a reference to the OpenGL view (renderer thread owner)
         glSurface = (CustomGLSurfaceView) findViewById(R.id.gl_viewport);
 
-        // Load the model specified in the preferences, or a bunny if none is specified
-        loadModel(preferences.getString(Constants.PREFERENCE_MODEL, Constants.FALLBACK_MODEL));
+        // A full-screen shader needs no model, so none is parsed until the model is shown
+        modelRequested = false;
+        fullScreenMode = preferences.getBoolean(Constants.KEY_FULL_SCREEN_MODE, false);
+        if(fullScreenMode)
+            glSurface.setFullScreenMode(true);
+        else
+            loadModel();
 
         // Load a sample shader when the activity starts
         loadShaderAsset(Constants.FALLBACK_SHADER);
@@ -106,6 +163,15 @@ public class MainActivity extends Activity {
         };
     }
 
+    @Override protected void onPause()
+    {
+        super.onPause();
+
+        // Pause the renderer thread; the OpenGL context may be released
+        if(glSurface != null)
+            glSurface.onPause();
+    }
+
     @Override protected void onResume()
     {
         super.onResume();
@@ -114,8 +180,48 @@ public class MainActivity extends Activity {
         if(glSurface == null)
             configureRenderer();
 
+        // Resume the renderer thread, which re-creates its OpenGL objects if the context was lost
+        glSurface.onResume();
+
         // Prevent the timer from losing precision
         glSurface.resetTime();
+
+        // Only redraw a static scene when it changes, if preferred
+        glSurface.setRenderOnDemand(preferences.getBoolean(Constants.PREFERENCE_RENDER_ON_DEMAND, true));
+
+        // Render at a fixed fraction of the resolution, or "0" to adapt it to the frame time
+        glSurface.setResolutionScale(Float.parseFloat(
+                preferences.getString(Constants.PREFERENCE_RESOLUTION_SCALE, "0")));
+
+        // Limit the frame rate, further while editing code, or "0" for no limit
+        glSurface.setFrameRateCap(
+                Integer.parseInt(preferences.getString(Constants.PREFERENCE_FRAME_RATE_CAP,
+                        String.valueOf(FramePacer.DEFAULT_FPS))),
+                Integer.parseInt(preferences.getString(Constants.PREFERENCE_EDITING_FRAME_RATE_CAP,
+                        String.valueOf(FramePacer.DEFAULT_EDITING_FPS))));
+
+        configureTracing(preferences.getString(Constants.PREFERENCE_TRACING, Constants.TRACING_OFF));
+    }
+
+    /** Send traced sections to the system trace, record them for export, or neither.
+     * @param mode One of the Constants.TRACING_ values. */
+    private void configureTracing(String mode)
+    {
+        Tracer tracer = Tracing.getTracer();
+
+        if(Constants.TRACING_SYSTEM.equals(mode) && SystraceTracer.isSupported())
+        {
+            if(!(tracer instanceof SystraceTracer))
+                Tracing.setTracer(new SystraceTracer());
+        }
+        else if(Constants.TRACING_RECORD.equals(mode))
+        {
+            // Keep the events recorded so far
+            if(!(tracer instanceof RingBufferTracer))
+                Tracing.setTracer(new RingBufferTracer());
+        }
+        else
+            Tracing.setTracer(null);
     }
 
     @Override protected void onDestroy()
@@ -161,10 +267,20 @@ public class MainActivity extends Activity {
                 // Rotate the model automatically when the code editor is selected
                 boolean rotatePreference = preferences.getBoolean(Constants.PREFERENCE_AUTO_ROTATE, true);
                 glSurface.rotateModelAutomatically(hasFocus && rotatePreference);
+
+                // The image matters less while code is edited, so fewer frames are drawn
+                glSurface.setEditing(hasFocus);
             }
         });
     }
 
+    /** Load the model specified in the preferences, or a bunny if none is specified. */
+    private void loadModel()
+    {
+        modelRequested = true;
+        loadModel(preferences.getString(Constants.PREFERENCE_MODEL, Constants.FALLBACK_MODEL));
+    }
+
     /** Load an OBJ model using an AsyncTask, and display a progress dialog.
      * @param asset The path to the *.OBJ asset to load.
      */
@@ -187,9 +303,25 @@ public class MainActivity extends Activity {
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.menu, menu);
+        menu.findItem(R.id.action_full_screen).setChecked(fullScreenMode);
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu)
+    {
+        // Actions on the model, its texture or its render are unavailable while it is not drawn
+        int[] modelActions = {
+                R.id.action_texture, R.id.action_save, R.id.action_refresh_thumbnails,
+                R.id.action_compare_shaders, R.id.action_split_screen, R.id.action_benchmark,
+                R.id.action_depth_prepass, R.id.action_overdraw
+        };
+        for(int id : modelActions)
+            menu.findItem(id).setEnabled(!fullScreenMode);
+
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item)
     {
@@ -207,18 +339,81 @@ public class MainActivity extends Activity {
                 break;
 
             case R.id.action_save:
-                // Copy the display buffer to a Bitmap
-                Bitmap render = glSurface.renderToBitmap();
+                saveShader();
+                break;
 
-                // Show the "save" dialog
-                SaveDialog saveDialog = new SaveDialog(this, glSurface.getCurrentShader(), render);
-                saveDialog.show();
+            case R.id.action_benchmark:
+                // Measure the shader's cost per megapixel, offscreen
+                runBenchmark();
                 break;
 
             case R.id.action_settings:
                 // Display the preferences activity
                 startActivityForResult(new Intent(this, MainPreferenceActivity.class), Constants.REQUEST_CODE_MODEL_CHANGED);
                 break;
+
+            case R.id.action_refresh_thumbnails:
+                // Re-render every saved thumbnail, and show progress
+                refreshThumbnails();
+                break;
+
+            case R.id.action_compare_shaders:
+                // Draw the model with every saved shader, or return to a single model
+                comparingShaders = !comparingShaders;
+                item.setChecked(comparingShaders);
+
+                if(comparingShaders)
+                    glSurface.showComparisonGrid(loadSavedShaderSources());
+                else
+                    glSurface.hideComparisonGrid();
+                break;
+
+            case R.id.action_depth_prepass:
+                // Shade only the nearest fragment at each pixel
+                depthPrePass = !depthPrePass;
+                item.setChecked(depthPrePass);
+                glSurface.setDepthPrePass(depthPrePass);
+                break;
+
+            case R.id.action_overdraw:
+                // Show how many times each pixel is shaded, instead of the shader's output
+                showingOverdraw = !showingOverdraw;
+                item.setChecked(showingOverdraw);
+                showOverdraw(showingOverdraw);
+                break;
+
+            case R.id.action_add_post_pass:
+                // Draw the editor's shader over the scene, as a screen-space effect
+                addPostPass();
+                break;
+
+            case R.id.action_clear_post_passes:
+                glSurface.clearPostPasses();
+                break;
+
+            case R.id.action_full_screen:
+                // Draw the editor's shader over the whole view, without parsing a model
+                fullScreenMode = !fullScreenMode;
+                item.setChecked(fullScreenMode);
+                setFullScreenMode(fullScreenMode);
+                break;
+
+            case R.id.action_gpu_timings:
+                // Show how long the GPU takes to draw, pass by pass
+                showGpuTimings();
+                break;
+
+            case R.id.action_export_trace:
+                // Save the recorded sections as a Chrome trace
+                exportTrace();
+                break;
+
+            case R.id.action_split_screen:
+                // Keep the current program to the left of a divider, and edit on the right
+                splitScreen = !splitScreen;
+                item.setChecked(splitScreen);
+                glSurface.setSplitScreen(splitScreen);
+                break;
         }
 
         return super.onOptionsItemSelected(item);
@@ -239,7 +434,12 @@ public class MainActivity extends Activity {
 
             case Constants.REQUEST_CODE_MODEL_CHANGED:
                 if(resultCode == Constants.RESULT_CODE_CHANGED)
+                {
+                    // Saved thumbnails show the old model; re-render them once the new one is loaded
+                    glSurface.regenerateThumbnailsForNextModel();
+
                     invalidateRenderer();
+                }
                 break;
 
             case Constants.REQUEST_CODE_PICK_SAMPLER_IMAGE:
@@ -258,6 +458,9 @@ public class MainActivity extends Activity {
 
             glSurface.getRenderer().setTexture(inputStream);
 
+            // Saved thumbnails show the old texture
+            glSurface.regenerateThumbnails(null);
+
             // Save image URI to preferences
             preferences.edit()
                     .putString(Constants.KEY_TEXTURE_IMAGE_PATH, data.getData().toString())
@@ -265,6 +468,283 @@ public class MainActivity extends Activity {
         }
     }
 
+    /** Render a thumbnail of the current shader, and show the "save" dialog. */
+    private void saveShader()
+    {
+        // The shader that is being saved
+        final Shader shader = glSurface.getCurrentShader();
+
+        // Save the latest benchmark beside the shader, if it measured this source
+        final BenchmarkReport report = benchmarkReport != null
+                && benchmarkReport.getSource(benchmarkReport.getSourceCount() - 1).equals(shader.getFragmentSource())
+                ? benchmarkReport : null;
+
+        // Render a thumbnail offscreen, and read it back in the background
+        glSurface.renderThumbnail(Constants.THUMBNAIL_SIZE, new FrameCapture.Callback() {
+            @Override
+            public void onCaptured(Bitmap render) {
+                if(isFinishing())
+                    return;
+
+                // Show the "save" dialog
+                SaveDialog saveDialog = new SaveDialog(MainActivity.this, shader, render, report);
+                saveDialog.show();
+            }
+        });
+    }
+
+    /** Benchmark the current shader (against the split-screen reference, if shown),
+     * and show the results once the benchmark has finished. */
+    private void runBenchmark()
+    {
+        final ProgressDialog dialog = new ProgressDialog(this);
+        dialog.setMessage(getString(splitScreen ? R.string.benchmarking_comparison : R.string.benchmarking_shader));
+        dialog.setIndeterminate(true);
+        dialog.setCanceledOnTouchOutside(false);
+
+        // Drawing continues on the renderer thread unless the dialog is cancelled
+        dialog.setOnCancelListener(new DialogInterface.OnCancelListener() {
+            @Override
+            public void onCancel(DialogInterface dialogInterface) {
+                glSurface.cancelBenchmark();
+            }
+        });
+        dialog.show();
+
+        glSurface.runBenchmark(new ShaderBenchmark.Listener() {
+            @Override
+            public void onFinished(BenchmarkReport report) {
+                if(isFinishing())
+                    return;
+
+                dialog.dismiss();
+                benchmarkReport = report;
+                showBenchmarkReport(report);
+            }
+
+            @Override
+            public void onFailed(String log) {
+                if(isFinishing())
+                    return;
+
+                dialog.dismiss();
+                Toast.makeText(MainActivity.this, log != null ? R.string.benchmark_failed
+                        : R.string.benchmark_interrupted, Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    /** Show a benchmark's cost per megapixel, with the option to save it beside the shader. */
+    private void showBenchmarkReport(BenchmarkReport report)
+    {
+        String message;
+        if(report.getSourceCount() == 2)
+        {
+            int verdict = !report.isDifferenceSignificant() ? R.string.benchmark_no_difference
+                    : report.getDifference() < 0 ? R.string.benchmark_b_cheaper : R.string.benchmark_b_dearer;
+
+            message = String.format(getString(R.string.format_benchmark_comparison),
+                    report.getMillisPerMegapixel(0), report.getMillisPerMegapixelConfidence(0),
+                    report.getMillisPerMegapixel(1), report.getMillisPerMegapixelConfidence(1),
+                    report.getDifference(), report.getDifferenceConfidence(), getString(verdict));
+        }
+        else
+            message = String.format(getString(R.string.format_benchmark_result),
+                    report.getMillisPerMegapixel(0), report.getMillisPerMegapixelConfidence(0));
+
+        message += String.format(getString(R.string.format_benchmark_details),
+                report.getMeasuredRounds(), report.getSizeCount(),
+                report.getSize(0), report.getSize(report.getSizeCount() - 1));
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.action_benchmark)
+                .setMessage(message)
+                .setPositiveButton(R.string.save_with_shader, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        saveShader();
+                    }
+                })
+                .setNegativeButton(R.string.dismiss, null)
+                .show();
+    }
+
+    /** Draw the editor's shader full-screen, or return to the model, loading it
+     * if it has not been. The mode is kept for the next time the app starts. */
+    private void setFullScreenMode(boolean enabled)
+    {
+        preferences.edit().putBoolean(Constants.KEY_FULL_SCREEN_MODE, enabled).apply();
+        glSurface.setFullScreenMode(enabled);
+
+        if(!enabled && !modelRequested)
+            loadModel();
+    }
+
+    /** Show or hide the overdraw heatmap, with its summary statistics above it. */
+    private void showOverdraw(boolean enabled)
+    {
+        final TextView statistics = (TextView)findViewById(R.id.tv_overdraw);
+        statistics.setText(R.string.overdraw_measuring);
+        statistics.setVisibility(enabled ? View.VISIBLE : View.GONE);
+
+        glSurface.setOverdrawView(enabled, new OverdrawView.Listener() {
+            @Override
+            public void onMeasured(float averageOverdraw, int maxOverdraw, float coverage, long fragments) {
+                // A late measurement may arrive after the heatmap was hidden
+                if(!showingOverdraw)
+                    return;
+
+                statistics.setText(String.format(getString(R.string.format_overdraw),
+                        averageOverdraw, maxOverdraw, coverage * 100, fragments / 1000000f));
+            }
+        });
+    }
+
+    /** Show the median GPU time of recent frames: of each pass if the depth
+     * pre-pass is drawn, or of the whole draw otherwise. */
+    private void showGpuTimings()
+    {
+        CustomRenderer renderer = glSurface.getRenderer();
+        DepthPrePass prePass = renderer.getDepthPrePass();
+        RollingStatistics drawTimes = renderer.getProfiler().getGpuFrameTimes();
+
+        String message;
+        if(prePass != null && prePass.getShadingTimes().count() > 0)
+        {
+            float depthMillis = prePass.getDepthTimes().p50();
+            float shadingMillis = prePass.getShadingTimes().p50();
+            message = String.format(getString(R.string.format_gpu_timings_prepass),
+                    depthMillis, shadingMillis, depthMillis + shadingMillis,
+                    prePass.getShadingTimes().count());
+        }
+        else if(prePass == null && drawTimes.count() > 0)
+            message = String.format(getString(R.string.format_gpu_timings_draw),
+                    drawTimes.p50(), drawTimes.count());
+        else
+            message = getString(R.string.gpu_timings_unavailable);
+
+        // Each screen-space effect is timed by itself
+        PostProcessChain postChain = renderer.getPostChain();
+        for(int i=0; i < postChain.size(); i++)
+            if(postChain.getTimes(i).count() > 0)
+                message += String.format(getString(R.string.format_gpu_timings_post_pass),
+                        i + 1, postChain.getTimes(i).p50());
+
+        // How much framebuffer memory the passes moved, and how much they avoided moving
+        BandwidthCounters bandwidth = renderer.getBandwidthCounters();
+        if(bandwidth != null)
+            message += String.format(getString(R.string.format_framebuffer_traffic),
+                    bandwidth.getLoadedBytes() / BYTES_PER_MEGABYTE,
+                    bandwidth.getStoredBytes() / BYTES_PER_MEGABYTE,
+                    bandwidth.getSavedBytes() / BYTES_PER_MEGABYTE);
+
+        // The frame rate limit in effect, which drops while frames keep running late
+        int fps = renderer.getPacer().getCurrentFps();
+        if(fps != FramePacer.UNCAPPED)
+            message += String.format(getString(R.string.format_frame_rate_cap), fps);
+
+        Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+    }
+
+    /** Write the recorded trace to the shader store directory, in the Chrome trace
+     * event format, which chrome://tracing and Perfetto open. */
+    private void exportTrace()
+    {
+        Tracer tracer = Tracing.getTracer();
+        if(!(tracer instanceof RingBufferTracer))
+        {
+            Toast.makeText(this, R.string.trace_not_recording, Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        File file = new File(ContentManager.getShaderStoreDirectory(), Constants.TRACE_FILE_NAME);
+        try
+        {
+            FileWriter writer = new FileWriter(file);
+            try { ((RingBufferTracer)tracer).writeChromeTrace(writer); }
+            finally { writer.close(); }
+
+            Toast.makeText(this, String.format(getString(R.string.format_trace_exported),
+                    file.getAbsolutePath()), Toast.LENGTH_LONG).show();
+        }
+        catch (IOException e)
+        {
+            Toast.makeText(this, R.string.trace_export_failed, Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /** @return The source code of every saved shader whose file can be read, with null
+     * in place of each that is known to hang the GPU, so that it is not compiled. */
+    private List<String> loadSavedShaderSources()
+    {
+        List<String> sources = new ArrayList<String>();
+        LocalShaderDatabase database = new LocalShaderDatabase(this);
+
+        for(int position = 0; position < database.count(); position++)
+        {
+            ShaderDescription description = database.load(database.getIdOfItemAtPosition(position));
+            if(description == null)
+                continue;
+
+            try
+            {
+                // Built-in shaders are stored in the assets
+                String source = description.isRequired()
+                        ? ContentManager.loadShaderAsset(this, description.getPath())
+                        : ContentManager.loadShader(this, description.getPath());
+
+                // The grid shows a placeholder in its cell
+                sources.add(UnsafeShaders.isUnsafe(this, source) ? null : source);
+            }
+            catch (IOException e)
+            {
+                // The source file is missing; leave it out of the comparison
+            }
+        }
+
+        return sources;
+    }
+
+    /** Re-render the thumbnails of all saved shaders with the current
+     * model and texture, and show the progress in a dialog. */
+    private void refreshThumbnails()
+    {
+        final ProgressDialog dialog = new ProgressDialog(this);
+        dialog.setMessage(getString(R.string.refreshing_thumbnails));
+        dialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+        dialog.setCanceledOnTouchOutside(false);
+
+        // Rendering continues in the background unless the dialog is cancelled
+        dialog.setOnCancelListener(new DialogInterface.OnCancelListener() {
+            @Override
+            public void onCancel(DialogInterface dialogInterface) {
+                glSurface.cancelThumbnailRegeneration();
+            }
+        });
+        dialog.show();
+
+        glSurface.regenerateThumbnails(new ThumbnailRegenerator.Listener() {
+            @Override
+            public void onProgress(int completed, int total) {
+                dialog.setMax(total);
+                dialog.setProgress(completed);
+            }
+
+            @Override
+            public void onFinished(int regenerated, boolean cancelled) {
+                if(isFinishing())
+                    return;
+
+                dialog.dismiss();
+
+                if(!cancelled)
+                    Toast.makeText(MainActivity.this,
+                            String.format(getString(R.string.format_thumbnails_refreshed), regenerated),
+                            Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
     /** Called when the 'edit' button is pressed.
      * Displays the code editor. */
     public void onClick_edit(View view)
@@ -294,10 +774,41 @@ public class MainActivity extends Activity {
         // Fragment shader source code
         String userSource = codeEditor.getText().toString();
 
+        // Do not compile a shader that has hung the GPU (such as one restored into the
+        // editor on startup) until it is changed
+        if(UnsafeShaders.isUnsafe(this, userSource))
+        {
+            reportUnsafeShader();
+            return;
+        }
+
         // Provide the source code to the custom OpenGL surface
         glSurface.provideUserShader(userSource);
     }
 
+    /** Add the editor's shader as a screen-space effect, drawn over the scene after
+     * any others. It reads the previous image from its "texture" uniform. */
+    private void addPostPass()
+    {
+        String userSource = codeEditor.getText().toString();
+
+        if(UnsafeShaders.isUnsafe(this, userSource))
+        {
+            reportUnsafeShader();
+            return;
+        }
+
+        glSurface.addPostPass(userSource);
+    }
+
+    /** Tell the compile error receiver that a shader was not compiled, as it has hung the GPU. */
+    private void reportUnsafeShader()
+    {
+        Intent report = new Intent(TAG_COMPILER_ERROR);
+        report.putExtra(Constants.EXTRA_UNSAFE_SHADER, true);
+        sendBroadcast(report);
+    }
+
     /** Reset the renderer's timer */
     public void onClick_resetTime(View view)
     {
@@ -0,0 +1,133 @@
+package com.id11688025.majorassignment;
+
+/**
+ * The part of the renderer's state that input changes: the rotation dragged into
+ * the model since the last frame, the zoom pinched since then, and the touch position.
+ *
+ * Input on the UI thread never races the renderer. Drags and pinches may arrive
+ * hundreds of times per frame, so they are summed without locking, and taken once
+ * per frame as a single rotation and a single zoom. The touch position is
+ * double-buffered: input writes into the back state, under a lock held for two
+ * assignments, and the renderer swaps it to the front. Nothing is allocated after
+ * construction.
+ */
+public class RenderState
+{
+    /** One side of the touch position's buffer */
+    private static class State
+    {
+        /** The last touch position, in pixels from the bottom-left */
+        float touchX, touchY;
+    }
+
+    /** The state that input writes into, and the state that the renderer reads */
+    private State back = new State(), front = new State();
+
+    /** The angles dragged about the X and Y axes, and the zoom pinched, since the last swap */
+    private final InputAccumulator input = new InputAccumulator();
+
+    /** The rotation taken at the last swap, as a row-major 4x4 matrix. Only read by the renderer */
+    private final float[] rotation = new float[16];
+
+    /** Was the model dragged before the last swap? */
+    private boolean rotated = false;
+
+    /**
+     * Rotate the model further about the X and Y axes. May be called from any thread.
+     * The angles are summed until the next swap, and then applied as one rotation, as
+     * Matrix.createRotationX(theta) * Matrix.createRotationY(phi). Over the few degrees
+     * dragged within a frame, this is indistinguishable from rotating by each in turn.
+     * @param theta The angle about the X axis, in radians.
+     * @param phi The angle about the Y axis, in radians.
+     */
+    public void rotate(float theta, float phi)
+    {
+        input.add(theta, phi);
+    }
+
+    /**
+     * Zoom further. May be called from any thread.
+     * @param factor The factor by which the model's apparent size grows.
+     */
+    public void zoom(float factor)
+    {
+        input.multiply(factor);
+    }
+
+    /**
+     * Record the touch position. May be called from any thread.
+     * @param x The position, in pixels from the left of the viewport.
+     * @param y The position, in pixels from the bottom of the viewport.
+     */
+    public synchronized void touch(float x, float y)
+    {
+        back.touchX = x;
+        back.touchY = y;
+    }
+
+    /** Take the input written since the last swap, to be read with the getters.
+     * Called by the renderer once per frame. */
+    public void swap()
+    {
+        synchronized (this)
+        {
+            State taken = back;
+            back = front;
+            front = taken;
+
+            // The touch position stays where it was until the next touch
+            back.touchX = front.touchX;
+            back.touchY = front.touchY;
+        }
+
+        input.take();
+        float theta = input.getX(), phi = input.getY();
+        rotated = theta != 0 || phi != 0;
+        if(!rotated)
+            return;
+
+        float s = (float)Math.sin(theta), c = (float)Math.cos(theta);
+        float sp = (float)Math.sin(phi), cp = (float)Math.cos(phi);
+
+        // The product of the two rotations, in the layout of the Matrix(float[]) constructor
+        float[] r = rotation;
+        r[0] = cp;       r[1] = 0;  r[2] = sp;       r[3] = 0;
+        r[4] = s * sp;   r[5] = c;  r[6] = -s * cp;  r[7] = 0;
+        r[8] = -c * sp;  r[9] = s;  r[10] = c * cp;  r[11] = 0;
+        r[12] = 0;       r[13] = 0; r[14] = 0;       r[15] = 1;
+    }
+
+    // The taken state is only read by the renderer, which swapped it in
+
+    /** @return True if the model was dragged before the last swap. */
+    public boolean isRotated()
+    {
+        return rotated;
+    }
+
+    /** @return The rotation dragged into the model before the last swap, as a row-major
+     * 4x4 matrix. Valid until the next swap. */
+    public float[] getRotation()
+    {
+        return rotation;
+    }
+
+    /** @return The factor by which the model's apparent size grew before the last swap;
+     * 1 if there was no pinch. */
+    public float getZoom()
+    {
+        return input.getScale();
+    }
+
+    /** @return The touch position as of the last swap, in pixels from the left of the viewport. */
+    public float getTouchX()
+    {
+        return front.touchX;
+    }
+
+    /** @return The touch position as of the last swap, in pixels from the bottom of the viewport. */
+    public float getTouchY()
+    {
+        return front.touchY;
+    }
+}
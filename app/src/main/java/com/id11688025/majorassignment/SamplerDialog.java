@@ -151,6 +151,9 @@ public class SamplerDialog extends AlertDialog
                 // Apply to model
                 renderer.setTexture(path, content);
 
+                // Saved thumbnails show the old texture
+                renderer.regenerateThumbnails(null);
+
                 // Hide dialog
                 dismiss();
             }
@@ -1,5 +1,11 @@
 package com.id11688025.majorassignment;
 
+import android.opengl.GLES20;
+
+import com.id11688025.majorassignment.graphics.GL;
+import com.id11688025.majorassignment.graphics.GLBackend;
+import com.id11688025.majorassignment.graphics.GLStateCache;
+import com.id11688025.majorassignment.graphics.GpuResourceRegistry;
 import com.id11688025.majorassignment.math.VertexPosition;
 
 import java.nio.ByteBuffer;
@@ -11,6 +17,7 @@ import java.nio.FloatBuffer;
  * an array of Vector3f vectors.
  */
 public class VertexBufferObject <VertexType extends VertexPosition>
+    implements GpuResourceRegistry.Resource
 {
     /** The vertices stored by this VBO */
     private FloatBuffer vertexBuffer;
@@ -18,6 +25,10 @@ public class VertexBufferObject <VertexType extends VertexPosition>
     /** The vertices in their original form */
     private VertexType[] vertices;
 
+    /** The name (ID) of the OpenGL buffer that holds the vertices, or 0 if not yet uploaded.
+     * Buffers are shared between contexts in a share group, so one upload serves them all. */
+    private int bufferName = 0;
+
     /** Create a Vertex Buffer Object from an array of Vector3f vectors */
     public VertexBufferObject(VertexType[] vertices)
     {
@@ -54,6 +65,60 @@ public class VertexBufferObject <VertexType extends VertexPosition>
         }
     }
 
+    /** Upload the vertices to OpenGL on first use. Must be called on an OpenGL thread.
+     * @return The name (ID) of the OpenGL buffer that holds the vertices. */
+    public int getBufferName()
+    {
+        GL gl = GLBackend.get();
+        if(bufferName == 0)
+        {
+            int[] names = new int[1];
+            gl.glGenBuffers(1, names, 0);
+            bufferName = names[0];
+
+            GLStateCache.get().bindBuffer(GLES20.GL_ARRAY_BUFFER, bufferName);
+            gl.glBufferData(
+                    GLES20.GL_ARRAY_BUFFER,
+                    sizeInBytes(),
+                    vertexBuffer,
+                    GLES20.GL_STATIC_DRAW);
+        }
+
+        return bufferName;
+    }
+
+    /** Delete the OpenGL buffer. The vertices are uploaded again if they are used later. */
+    public void release()
+    {
+        if(bufferName != 0)
+            GLStateCache.get().deleteBuffer(bufferName);
+        bufferName = 0;
+    }
+
+    @Override
+    public void discard()
+    {
+        bufferName = 0;
+    }
+
+    /** Upload the vertices again, from the float buffer, which is kept for this purpose. */
+    @Override
+    public void restore()
+    {
+        getBufferName();
+    }
+
+    /** @return A new buffer with only the positions of these vertices, for passes that need
+     * nothing else. Its vertices are a third of the size, or smaller, so they are fetched faster. */
+    public VertexBufferObject<VertexPosition> createPositionBuffer()
+    {
+        VertexPosition[] positions = new VertexPosition[vertices.length];
+        for(int i=0; i < vertices.length; i++)
+            positions[i] = new VertexPosition(vertices[i].position);
+
+        return new VertexBufferObject<VertexPosition>(positions);
+    }
+
     /** @return a float buffer that stores the vertex data */
     public FloatBuffer getFloatBuffer()
     {
@@ -69,6 +134,12 @@ public class VertexBufferObject <VertexType extends VertexPosition>
             return vertices[0].getLengthInBytes();
     }
 
+    /** @return The number of vertices that the buffer stores. */
+    public int vertexCount()
+    {
+        return vertices.length;
+    }
+
     /** @return the size of the buffer in bytes */
     public int sizeInBytes()
     {
@@ -0,0 +1,496 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.opengl.GLUtils;
+
+import java.nio.Buffer;
+
+/**
+ * Carries out OpenGL calls with the device's driver, through the Android bindings.
+ *
+ * The OpenGL ES 3.0 functions must only be called where the context supports them,
+ * as the callers already check.
+ */
+public class AndroidGL implements GL
+{
+    // == Shaders and programs ==
+    @Override
+    public int glCreateShader(int type)
+    {
+        return GLES20.glCreateShader(type);
+    }
+
+    @Override
+    public void glShaderSource(int shader, String string)
+    {
+        GLES20.glShaderSource(shader, string);
+    }
+
+    @Override
+    public void glCompileShader(int shader)
+    {
+        GLES20.glCompileShader(shader);
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset)
+    {
+        GLES20.glGetShaderiv(shader, pname, params, offset);
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader)
+    {
+        return GLES20.glGetShaderInfoLog(shader);
+    }
+
+    @Override
+    public void glDeleteShader(int shader)
+    {
+        GLES20.glDeleteShader(shader);
+    }
+
+    @Override
+    public int glCreateProgram()
+    {
+        return GLES20.glCreateProgram();
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader)
+    {
+        GLES20.glAttachShader(program, shader);
+    }
+
+    @Override
+    public void glLinkProgram(int program)
+    {
+        GLES20.glLinkProgram(program);
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset)
+    {
+        GLES20.glGetProgramiv(program, pname, params, offset);
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program)
+    {
+        return GLES20.glGetProgramInfoLog(program);
+    }
+
+    @Override
+    public void glUseProgram(int program)
+    {
+        GLES20.glUseProgram(program);
+    }
+
+    @Override
+    public void glDeleteProgram(int program)
+    {
+        GLES20.glDeleteProgram(program);
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name)
+    {
+        return GLES20.glGetAttribLocation(program, name);
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name)
+    {
+        return GLES20.glGetUniformLocation(program, name);
+    }
+
+    // == Uniforms ==
+    @Override
+    public void glUniform1f(int location, float x)
+    {
+        GLES20.glUniform1f(location, x);
+    }
+
+    @Override
+    public void glUniform2f(int location, float x, float y)
+    {
+        GLES20.glUniform2f(location, x, y);
+    }
+
+    @Override
+    public void glUniform3f(int location, float x, float y, float z)
+    {
+        GLES20.glUniform3f(location, x, y, z);
+    }
+
+    @Override
+    public void glUniform4f(int location, float x, float y, float z, float w)
+    {
+        GLES20.glUniform4f(location, x, y, z, w);
+    }
+
+    @Override
+    public void glUniform1i(int location, int x)
+    {
+        GLES20.glUniform1i(location, x);
+    }
+
+    @Override
+    public void glUniform2i(int location, int x, int y)
+    {
+        GLES20.glUniform2i(location, x, y);
+    }
+
+    @Override
+    public void glUniform3i(int location, int x, int y, int z)
+    {
+        GLES20.glUniform3i(location, x, y, z);
+    }
+
+    @Override
+    public void glUniform4i(int location, int x, int y, int z, int w)
+    {
+        GLES20.glUniform4i(location, x, y, z, w);
+    }
+
+    @Override
+    public void glUniform1fv(int location, int count, float[] v, int offset)
+    {
+        GLES20.glUniform1fv(location, count, v, offset);
+    }
+
+    @Override
+    public void glUniform2fv(int location, int count, float[] v, int offset)
+    {
+        GLES20.glUniform2fv(location, count, v, offset);
+    }
+
+    @Override
+    public void glUniform3fv(int location, int count, float[] v, int offset)
+    {
+        GLES20.glUniform3fv(location, count, v, offset);
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, float[] v, int offset)
+    {
+        GLES20.glUniform4fv(location, count, v, offset);
+    }
+
+    @Override
+    public void glUniformMatrix2fv(int location, int count, boolean transpose, float[] value, int offset)
+    {
+        GLES20.glUniformMatrix2fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void glUniformMatrix3fv(int location, int count, boolean transpose, float[] value, int offset)
+    {
+        GLES20.glUniformMatrix3fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset)
+    {
+        GLES20.glUniformMatrix4fv(location, count, transpose, value, offset);
+    }
+
+    // == Buffers and vertex attributes ==
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset)
+    {
+        GLES20.glGenBuffers(n, buffers, offset);
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer)
+    {
+        GLES20.glBindBuffer(target, buffer);
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage)
+    {
+        GLES20.glBufferData(target, size, data, usage);
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset)
+    {
+        GLES20.glDeleteBuffers(n, buffers, offset);
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index)
+    {
+        GLES20.glEnableVertexAttribArray(index);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride,
+                                      int offset)
+    {
+        GLES20.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    // == Textures ==
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset)
+    {
+        GLES20.glGenTextures(n, textures, offset);
+    }
+
+    @Override
+    public void glActiveTexture(int texture)
+    {
+        GLES20.glActiveTexture(texture);
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture)
+    {
+        GLES20.glBindTexture(target, texture);
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param)
+    {
+        GLES20.glTexParameteri(target, pname, param);
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height,
+                             int border, int format, int type, Buffer pixels)
+    {
+        GLES20.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+    }
+
+    @Override
+    public void texImage2D(int target, int level, Bitmap bitmap, int border)
+    {
+        GLUtils.texImage2D(target, level, bitmap, border);
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset)
+    {
+        GLES20.glDeleteTextures(n, textures, offset);
+    }
+
+    // == Framebuffers and renderbuffers ==
+    @Override
+    public void glGenFramebuffers(int n, int[] framebuffers, int offset)
+    {
+        GLES20.glGenFramebuffers(n, framebuffers, offset);
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer)
+    {
+        GLES20.glBindFramebuffer(target, framebuffer);
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level)
+    {
+        GLES20.glFramebufferTexture2D(target, attachment, textarget, texture, level);
+    }
+
+    @Override
+    public void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget,
+                                          int renderbuffer)
+    {
+        GLES20.glFramebufferRenderbuffer(target, attachment, renderbuffertarget, renderbuffer);
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target)
+    {
+        return GLES20.glCheckFramebufferStatus(target);
+    }
+
+    @Override
+    public void glInvalidateFramebuffer(int target, int numAttachments, int[] attachments, int offset)
+    {
+        GLES30.glInvalidateFramebuffer(target, numAttachments, attachments, offset);
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int n, int[] framebuffers, int offset)
+    {
+        GLES20.glDeleteFramebuffers(n, framebuffers, offset);
+    }
+
+    @Override
+    public void glGenRenderbuffers(int n, int[] renderbuffers, int offset)
+    {
+        GLES20.glGenRenderbuffers(n, renderbuffers, offset);
+    }
+
+    @Override
+    public void glBindRenderbuffer(int target, int renderbuffer)
+    {
+        GLES20.glBindRenderbuffer(target, renderbuffer);
+    }
+
+    @Override
+    public void glRenderbufferStorage(int target, int internalformat, int width, int height)
+    {
+        GLES20.glRenderbufferStorage(target, internalformat, width, height);
+    }
+
+    @Override
+    public void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset)
+    {
+        GLES20.glDeleteRenderbuffers(n, renderbuffers, offset);
+    }
+
+    // == Fixed-function state ==
+    @Override
+    public void glEnable(int cap)
+    {
+        GLES20.glEnable(cap);
+    }
+
+    @Override
+    public void glDisable(int cap)
+    {
+        GLES20.glDisable(cap);
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height)
+    {
+        GLES20.glViewport(x, y, width, height);
+    }
+
+    @Override
+    public void glScissor(int x, int y, int width, int height)
+    {
+        GLES20.glScissor(x, y, width, height);
+    }
+
+    @Override
+    public void glFrontFace(int mode)
+    {
+        GLES20.glFrontFace(mode);
+    }
+
+    @Override
+    public void glDepthFunc(int func)
+    {
+        GLES20.glDepthFunc(func);
+    }
+
+    @Override
+    public void glDepthMask(boolean flag)
+    {
+        GLES20.glDepthMask(flag);
+    }
+
+    @Override
+    public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha)
+    {
+        GLES20.glColorMask(red, green, blue, alpha);
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor)
+    {
+        GLES20.glBlendFunc(sfactor, dfactor);
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha)
+    {
+        GLES20.glClearColor(red, green, blue, alpha);
+    }
+
+    // == Drawing and reading back ==
+    @Override
+    public void glClear(int mask)
+    {
+        GLES20.glClear(mask);
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count)
+    {
+        GLES20.glDrawArrays(mode, first, count);
+    }
+
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels)
+    {
+        GLES20.glReadPixels(x, y, width, height, format, type, pixels);
+    }
+
+    @Override
+    public void glFinish()
+    {
+        GLES20.glFinish();
+    }
+
+    // == Queries and synchronization ==
+    @Override
+    public String glGetString(int name)
+    {
+        return GLES20.glGetString(name);
+    }
+
+    @Override
+    public void glGetIntegerv(int pname, int[] params, int offset)
+    {
+        GLES20.glGetIntegerv(pname, params, offset);
+    }
+
+    @Override
+    public void glGenQueries(int n, int[] ids, int offset)
+    {
+        GLES30.glGenQueries(n, ids, offset);
+    }
+
+    @Override
+    public void glBeginQuery(int target, int id)
+    {
+        GLES30.glBeginQuery(target, id);
+    }
+
+    @Override
+    public void glEndQuery(int target)
+    {
+        GLES30.glEndQuery(target);
+    }
+
+    @Override
+    public void glGetQueryObjectuiv(int id, int pname, int[] params, int offset)
+    {
+        GLES30.glGetQueryObjectuiv(id, pname, params, offset);
+    }
+
+    @Override
+    public void glDeleteQueries(int n, int[] ids, int offset)
+    {
+        GLES30.glDeleteQueries(n, ids, offset);
+    }
+
+    @Override
+    public long glFenceSync(int condition, int flags)
+    {
+        return GLES30.glFenceSync(condition, flags);
+    }
+
+    @Override
+    public int glClientWaitSync(long sync, int flags, long timeout)
+    {
+        return GLES30.glClientWaitSync(sync, flags, timeout);
+    }
+
+    @Override
+    public void glDeleteSync(long sync)
+    {
+        GLES30.glDeleteSync(sync);
+    }
+}
@@ -0,0 +1,112 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.opengl.GLES20;
+import android.os.Build;
+
+/**
+ * Estimates the framebuffer memory traffic of the render passes in each frame.
+ *
+ * A tile-based GPU keeps each tile of the framebuffer in on-chip memory while
+ * it draws, loading the tile's previous contents from memory before a pass
+ * and storing them back after it. A pass that clears or does not care about an
+ * attachment avoids the load, and one that discards an attachment avoids the
+ * store. The counters add up the bytes loaded, stored, and avoided by those
+ * actions, assuming the whole attachment is moved. They are estimates: the
+ * driver's own compression and tile elimination are not visible.
+ *
+ * Attachments are discarded with glInvalidateFramebuffer, which the OpenGL ES
+ * 3.0 bindings expose. EXT_discard_framebuffer, its OpenGL ES 2.0 equivalent,
+ * has no Java binding; there, attachments are always stored.
+ *
+ * Like GLStateCache, there is one set of counters per thread, and so per context,
+ * obtained with get(). reset() must be called when a new context is made current.
+ */
+public class BandwidthCounters
+{
+    /** One set of counters per thread, and so per context */
+    private static final ThreadLocal<BandwidthCounters> counters = new ThreadLocal<BandwidthCounters>() {
+        @Override
+        protected BandwidthCounters initialValue() {
+            return new BandwidthCounters();
+        }
+    };
+
+    /** Can attachments be discarded in the current context? */
+    private boolean canInvalidate = false;
+
+    /** Bytes loaded, stored, and avoided in the current frame */
+    private long loadedBytes, storedBytes, savedBytes;
+
+    /** Bytes loaded, stored, and avoided in the previous frame */
+    private volatile long lastLoadedBytes, lastStoredBytes, lastSavedBytes;
+
+    private BandwidthCounters()
+    {
+    }
+
+    /** @return The counters for the calling thread's OpenGL context. */
+    public static BandwidthCounters get()
+    {
+        return counters.get();
+    }
+
+    /** Check whether attachments can be discarded in a new context.
+     * Must be called whenever one is made current. */
+    public void reset()
+    {
+        String version = GLBackend.get().glGetString(GLES20.GL_VERSION);
+        canInvalidate = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2
+                && version != null && version.startsWith("OpenGL ES 3");
+    }
+
+    /** Start counting for a new frame, keeping the previous frame's counts. */
+    public void beginFrame()
+    {
+        lastLoadedBytes = loadedBytes;
+        lastStoredBytes = storedBytes;
+        lastSavedBytes = savedBytes;
+        loadedBytes = storedBytes = savedBytes = 0;
+    }
+
+    /** @return True if attachments can be discarded with glInvalidateFramebuffer. */
+    boolean canInvalidate()
+    {
+        return canInvalidate;
+    }
+
+    /** Count an attachment loaded from memory at the start of a pass. */
+    void addLoaded(long bytes)
+    {
+        loadedBytes += bytes;
+    }
+
+    /** Count an attachment stored to memory at the end of a pass. */
+    void addStored(long bytes)
+    {
+        storedBytes += bytes;
+    }
+
+    /** Count a load or store avoided by a pass's actions. */
+    void addSaved(long bytes)
+    {
+        savedBytes += bytes;
+    }
+
+    /** @return The estimated bytes loaded from memory by passes in the previous frame. */
+    public long getLoadedBytes()
+    {
+        return lastLoadedBytes;
+    }
+
+    /** @return The estimated bytes stored to memory by passes in the previous frame. */
+    public long getStoredBytes()
+    {
+        return lastStoredBytes;
+    }
+
+    /** @return The estimated bytes that clears and discards avoided moving in the previous frame. */
+    public long getSavedBytes()
+    {
+        return lastSavedBytes;
+    }
+}
@@ -0,0 +1,389 @@
+package com.id11688025.majorassignment.graphics;
+
+import com.id11688025.majorassignment.VertexBufferObject;
+import com.id11688025.majorassignment.math.Matrix;
+import com.id11688025.majorassignment.profiling.PassTimer;
+import com.id11688025.majorassignment.shaders.Shader;
+
+/**
+ * The draw commands of a frame, recorded on any thread and replayed on the OpenGL thread.
+ *
+ * Each command is an op code followed by its arguments, packed into an int array.
+ * Float arguments, such as matrices, are packed into a float array, and the objects
+ * that a command draws with into an object array. The arrays are kept when the list
+ * is reset, so a list that is recorded every frame stops allocating once it has grown
+ * to fit the largest frame.
+ *
+ * Recording does the CPU work of a draw, such as multiplying and packing matrices,
+ * and makes no OpenGL calls. Programs, locations and timer queries are looked up when
+ * the list is replayed, so a shader that is re-compiled after its command was recorded
+ * draws with its new program.
+ */
+public class CommandList
+{
+    /** A program that draws a model's positions alone, such as for depth or overdraw. */
+    public interface PositionProgram
+    {
+        /**
+         * Use the program, with the model's positions bound to it. Called on the OpenGL thread.
+         * @param vertices The model's vertices, whose positions are drawn.
+         * @param matrices An array that holds the model-view matrix, then the projection
+         *                 matrix, each in column-major order.
+         * @param offset The index at which the model-view matrix starts.
+         */
+        void use(VertexBufferObject vertices, float[] matrices, int offset);
+    }
+
+    /** Use a shader with a texture. Ints: op, object index, float index.
+     * Objects: shader, texture. Floats: model-view matrix, projection matrix, time. */
+    private static final int OP_USE_SHADER = 1;
+
+    /** Use a position-only program. Ints: op, object index, float index.
+     * Objects: program, vertices. Floats: model-view matrix, projection matrix. */
+    private static final int OP_USE_POSITION_PROGRAM = 2;
+
+    /** Draw with glDrawArrays. Ints: op, mode, first, count. */
+    private static final int OP_DRAW_ARRAYS = 3;
+
+    /** Enable or disable a capability, through the state cache. Ints: op, capability. */
+    private static final int OP_ENABLE = 4, OP_DISABLE = 5;
+
+    /** Set the scissor box. Ints: op, x, y, width, height. */
+    private static final int OP_SCISSOR = 6;
+
+    /** Set which colour channels are written. Ints: op, red, green, blue, alpha (0 or 1). */
+    private static final int OP_COLOR_MASK = 7;
+
+    /** Set whether depth is written. Ints: op, flag (0 or 1). */
+    private static final int OP_DEPTH_MASK = 8;
+
+    /** Set the depth test's comparison. Ints: op, function. */
+    private static final int OP_DEPTH_FUNC = 9;
+
+    /** Set the blend factors. Ints: op, source factor, destination factor. */
+    private static final int OP_BLEND_FUNC = 10;
+
+    /** Collect a pass timer's results from previous frames. Ints: op, object index. */
+    private static final int OP_COLLECT_TIMER = 11;
+
+    /** Start timing a pass. Ints: op, object index, finish timing (0 or 1). */
+    private static final int OP_BEGIN_TIMER = 12;
+
+    /** Stop timing a pass. Ints: op, object index. */
+    private static final int OP_END_TIMER = 13;
+
+    /** The number of floats that the matrices of a draw take */
+    private static final int MATRIX_FLOATS = 32;
+
+    /** The initial capacity of each array */
+    private static final int INITIAL_INTS = 64, INITIAL_FLOATS = 256, INITIAL_OBJECTS = 16;
+
+    /** The op codes and their arguments */
+    private int[] ints = new int[INITIAL_INTS];
+    private int intCount = 0;
+
+    /** The float arguments of the commands */
+    private float[] floats = new float[INITIAL_FLOATS];
+    private int floatCount = 0;
+
+    /** The objects with which the commands draw */
+    private Object[] objects = new Object[INITIAL_OBJECTS];
+    private int objectCount = 0;
+
+    /** The number of commands recorded */
+    private int commandCount = 0;
+
+    /** Remove every command, keeping the storage. */
+    public void reset()
+    {
+        // Let go of the objects, which may since have been released
+        for(int i=0; i < objectCount; i++)
+            objects[i] = null;
+
+        intCount = floatCount = objectCount = 0;
+        commandCount = 0;
+    }
+
+    /**
+     * Record the use of a shader program. The model-view matrix is computed now.
+     * @param texture The texture bound to the first unit, or null for none.
+     */
+    public void useShader(Shader shader, Texture2D texture, Matrix world, Matrix view,
+                          Matrix projection, float time)
+    {
+        int objectIndex = addObject(shader);
+        addObject(texture);
+
+        int floatIndex = addMatrices(world, view, projection, 1);
+        floats[floatIndex + MATRIX_FLOATS] = time;
+
+        addCommand(OP_USE_SHADER, objectIndex, floatIndex);
+    }
+
+    /**
+     * Record the use of a position-only program. The model-view matrix is computed now.
+     * @param vertices The vertices whose positions the program draws.
+     */
+    public void usePositionProgram(PositionProgram program, VertexBufferObject vertices,
+                                   Matrix world, Matrix view, Matrix projection)
+    {
+        int objectIndex = addObject(program);
+        addObject(vertices);
+
+        addCommand(OP_USE_POSITION_PROGRAM, objectIndex, addMatrices(world, view, projection, 0));
+    }
+
+    /** Record a glDrawArrays call. */
+    public void drawArrays(int mode, int first, int count)
+    {
+        int i = beginCommand(OP_DRAW_ARRAYS, 3);
+        ints[i + 1] = mode;
+        ints[i + 2] = first;
+        ints[i + 3] = count;
+    }
+
+    /** Record the enabling of a capability, which is made through the state cache. */
+    public void enable(int capability)
+    {
+        addCommand(OP_ENABLE, capability);
+    }
+
+    /** Record the disabling of a capability, which is made through the state cache. */
+    public void disable(int capability)
+    {
+        addCommand(OP_DISABLE, capability);
+    }
+
+    /** Record a glScissor call. */
+    public void scissor(int x, int y, int width, int height)
+    {
+        int i = beginCommand(OP_SCISSOR, 4);
+        ints[i + 1] = x;
+        ints[i + 2] = y;
+        ints[i + 3] = width;
+        ints[i + 4] = height;
+    }
+
+    /** Record a glColorMask call. */
+    public void colorMask(boolean red, boolean green, boolean blue, boolean alpha)
+    {
+        int i = beginCommand(OP_COLOR_MASK, 4);
+        ints[i + 1] = red ? 1 : 0;
+        ints[i + 2] = green ? 1 : 0;
+        ints[i + 3] = blue ? 1 : 0;
+        ints[i + 4] = alpha ? 1 : 0;
+    }
+
+    /** Record a glDepthMask call. */
+    public void depthMask(boolean flag)
+    {
+        addCommand(OP_DEPTH_MASK, flag ? 1 : 0);
+    }
+
+    /** Record a glDepthFunc call. */
+    public void depthFunc(int function)
+    {
+        addCommand(OP_DEPTH_FUNC, function);
+    }
+
+    /** Record a glBlendFunc call. */
+    public void blendFunc(int sourceFactor, int destinationFactor)
+    {
+        addCommand(OP_BLEND_FUNC, sourceFactor, destinationFactor);
+    }
+
+    /** Record the collection of a pass timer's results from previous frames. */
+    public void collectTimer(PassTimer timer)
+    {
+        addCommand(OP_COLLECT_TIMER, addObject(timer));
+    }
+
+    /** Record the start of a timed pass.
+     * @param finishTiming True to time the pass with glFinish where timer queries are unsupported. */
+    public void beginTimer(PassTimer timer, boolean finishTiming)
+    {
+        addCommand(OP_BEGIN_TIMER, addObject(timer), finishTiming ? 1 : 0);
+    }
+
+    /** Record the end of a timed pass. */
+    public void endTimer(PassTimer timer)
+    {
+        addCommand(OP_END_TIMER, addObject(timer));
+    }
+
+    /** Carry out the commands, in the order in which they were recorded.
+     * Must be called on the OpenGL thread. */
+    public void replay()
+    {
+        GLStateCache glState = GLStateCache.get();
+        GL gl = GLBackend.get();
+
+        int i = 0;
+        while(i < intCount)
+        {
+            switch (ints[i])
+            {
+                case OP_USE_SHADER:
+                {
+                    Shader shader = (Shader)objects[ints[i + 1]];
+                    Texture2D texture = (Texture2D)objects[ints[i + 1] + 1];
+                    int floatIndex = ints[i + 2];
+
+                    shader.setTexture(texture);
+                    shader.use(floats[floatIndex + MATRIX_FLOATS], floats, floatIndex);
+                    i += 3;
+                    break;
+                }
+                case OP_USE_POSITION_PROGRAM:
+                {
+                    PositionProgram program = (PositionProgram)objects[ints[i + 1]];
+                    VertexBufferObject vertices = (VertexBufferObject)objects[ints[i + 1] + 1];
+                    program.use(vertices, floats, ints[i + 2]);
+                    i += 3;
+                    break;
+                }
+                case OP_DRAW_ARRAYS:
+                    gl.glDrawArrays(ints[i + 1], ints[i + 2], ints[i + 3]);
+                    i += 4;
+                    break;
+                case OP_ENABLE:
+                    glState.enable(ints[i + 1]);
+                    i += 2;
+                    break;
+                case OP_DISABLE:
+                    glState.disable(ints[i + 1]);
+                    i += 2;
+                    break;
+                case OP_SCISSOR:
+                    gl.glScissor(ints[i + 1], ints[i + 2], ints[i + 3], ints[i + 4]);
+                    i += 5;
+                    break;
+                case OP_COLOR_MASK:
+                    gl.glColorMask(ints[i + 1] != 0, ints[i + 2] != 0, ints[i + 3] != 0, ints[i + 4] != 0);
+                    i += 5;
+                    break;
+                case OP_DEPTH_MASK:
+                    gl.glDepthMask(ints[i + 1] != 0);
+                    i += 2;
+                    break;
+                case OP_DEPTH_FUNC:
+                    gl.glDepthFunc(ints[i + 1]);
+                    i += 2;
+                    break;
+                case OP_BLEND_FUNC:
+                    gl.glBlendFunc(ints[i + 1], ints[i + 2]);
+                    i += 3;
+                    break;
+                case OP_COLLECT_TIMER:
+                    ((PassTimer)objects[ints[i + 1]]).collect();
+                    i += 2;
+                    break;
+                case OP_BEGIN_TIMER:
+                    ((PassTimer)objects[ints[i + 1]]).begin(ints[i + 2] != 0);
+                    i += 3;
+                    break;
+                case OP_END_TIMER:
+                    ((PassTimer)objects[ints[i + 1]]).end();
+                    i += 2;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown command " + ints[i] + " at " + i);
+            }
+        }
+    }
+
+    /** @return The number of commands recorded since the list was reset. */
+    public int getCommandCount()
+    {
+        return commandCount;
+    }
+
+    /** @return True if no commands have been recorded since the list was reset. */
+    public boolean isEmpty()
+    {
+        return commandCount == 0;
+    }
+
+    /** Add a command with one int argument. */
+    private void addCommand(int op, int argument)
+    {
+        int i = beginCommand(op, 1);
+        ints[i + 1] = argument;
+    }
+
+    /** Add a command with two int arguments. */
+    private void addCommand(int op, int first, int second)
+    {
+        int i = beginCommand(op, 2);
+        ints[i + 1] = first;
+        ints[i + 2] = second;
+    }
+
+    /** Add a command, leaving room for its int arguments after it.
+     * @return The index of the op code. */
+    private int beginCommand(int op, int argumentCount)
+    {
+        int i = reserveInts(1 + argumentCount);
+        ints[i] = op;
+        commandCount++;
+        return i;
+    }
+
+    /** Compute the model-view matrix, and pack it and the projection matrix into the floats.
+     * @param extra The number of floats to reserve after the matrices.
+     * @return The index of the model-view matrix. */
+    private int addMatrices(Matrix world, Matrix view, Matrix projection, int extra)
+    {
+        int floatIndex = reserveFloats(MATRIX_FLOATS + extra);
+        Matrix.multiply(view, world, floats, floatIndex);
+        projection.asColumnMajorArray(floats, floatIndex + 16);
+        return floatIndex;
+    }
+
+    /** Make room for ints at the end of the list, growing it if need be.
+     * @return The index of the first int reserved. */
+    private int reserveInts(int count)
+    {
+        if(intCount + count > ints.length)
+        {
+            int[] grown = new int[Math.max(intCount + count, ints.length * 2)];
+            System.arraycopy(ints, 0, grown, 0, intCount);
+            ints = grown;
+        }
+
+        int index = intCount;
+        intCount += count;
+        return index;
+    }
+
+    /** Make room for floats at the end of the list, growing it if need be.
+     * @return The index of the first float reserved. */
+    private int reserveFloats(int count)
+    {
+        if(floatCount + count > floats.length)
+        {
+            float[] grown = new float[Math.max(floatCount + count, floats.length * 2)];
+            System.arraycopy(floats, 0, grown, 0, floatCount);
+            floats = grown;
+        }
+
+        int index = floatCount;
+        floatCount += count;
+        return index;
+    }
+
+    /** Add an object to the end of the list, growing it if need be.
+     * @return The object's index. */
+    private int addObject(Object object)
+    {
+        if(objectCount == objects.length)
+        {
+            Object[] grown = new Object[objects.length * 2];
+            System.arraycopy(objects, 0, grown, 0, objectCount);
+            objects = grown;
+        }
+
+        objects[objectCount] = object;
+        return objectCount++;
+    }
+}
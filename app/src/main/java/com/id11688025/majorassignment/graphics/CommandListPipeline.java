@@ -0,0 +1,212 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.util.Log;
+
+/**
+ * Records the command list for the next frame on a worker thread, while the
+ * OpenGL thread replays the list for this one, so that the CPU work of a frame
+ * is spread over two cores.
+ *
+ * Two lists are used in turn, and both are re-used, so steady-state frames
+ * allocate nothing. The OpenGL thread replays one list; the worker records into
+ * the other. A list that was recorded but never replayed is recorded over.
+ *
+ * A frame replayed from a list recorded in the background shows the state of
+ * the previous frame, so this only pays while frames are drawn continuously.
+ * A frame drawn on demand records its list on the OpenGL thread instead.
+ *
+ * Every other method waits for the worker to finish a list that it is recording,
+ * so the OpenGL thread may change what the recorder reads once it has called one
+ * of them, until it next calls recordInBackground(). All methods other than the
+ * recorder's are called on the OpenGL thread.
+ */
+public class CommandListPipeline
+{
+    /** Records the commands of a frame. */
+    public interface Recorder
+    {
+        /**
+         * Record a frame's commands. Called on the worker thread, or on the
+         * OpenGL thread when a frame is recorded at once, but never on both at once.
+         * @param list An empty list, which receives the commands.
+         */
+        void record(CommandList list);
+    }
+
+    /** The class tag for Logcat tracing */
+    private static final String TAG = "COMMAND_LIST_PIPELINE";
+
+    /** Records the commands of each frame */
+    private final Recorder recorder;
+
+    /** The two lists, used in turn */
+    private final CommandList[] lists = { new CommandList(), new CommandList() };
+
+    /** The list being replayed, or last replayed, on the OpenGL thread; -1 if none */
+    private int replayIndex = -1;
+
+    /** The list recorded in the background and not yet replayed; -1 if none */
+    private int readyIndex = -1;
+
+    /** Has a list been requested from the worker, and is it still being recorded? */
+    private boolean requested = false, recording = false;
+
+    /** The number of lists recorded in the background, and recorded over without being replayed */
+    private int recordedLists = 0, droppedLists = 0;
+
+    /** Records lists in the background. Started on demand. */
+    private Thread worker;
+
+    /** @param recorder Records the commands of each frame. */
+    public CommandListPipeline(Recorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Record the commands of the frame on this thread, and return them.
+     * A list recorded in the background, and not yet replayed, is dropped.
+     * @return The list to replay; valid until the next is recorded now or taken.
+     */
+    public synchronized CommandList recordNow()
+    {
+        waitForWorker();
+        if(readyIndex >= 0)
+            droppedLists++;
+        readyIndex = -1;
+
+        replayIndex = replayIndex == 0 ? 1 : 0;
+        CommandList list = lists[replayIndex];
+        list.reset();
+        recorder.record(list);
+        return list;
+    }
+
+    /**
+     * Take the list that was recorded in the background for this frame, waiting
+     * for the worker to finish it if need be.
+     * @return The list to replay, valid until the next is recorded now or taken;
+     *         or null if none was requested since the last was taken or discarded.
+     */
+    public synchronized CommandList takeRecorded()
+    {
+        waitForWorker();
+        if(readyIndex < 0)
+            return null;
+
+        replayIndex = readyIndex;
+        readyIndex = -1;
+        return lists[replayIndex];
+    }
+
+    /** Start recording the list for the next frame on the worker thread. The recorder
+     * must only read state that the OpenGL thread leaves alone until its next call on
+     * this pipeline. */
+    public synchronized void recordInBackground()
+    {
+        waitForWorker();
+        if(readyIndex >= 0)
+            droppedLists++;
+        readyIndex = -1;
+
+        if(worker == null)
+        {
+            worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    recordLoop();
+                }
+            }, "CommandListRecorder");
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        requested = true;
+        notifyAll();
+    }
+
+    /** Drop any list recorded in the background, because what it draws has changed.
+     * The next frame must record its list at once. */
+    public synchronized void discard()
+    {
+        waitForWorker();
+        readyIndex = -1;
+    }
+
+    /** Wait until the worker is neither asked for, nor recording, a list. */
+    private void waitForWorker()
+    {
+        while(requested || recording)
+        {
+            try
+            {
+                wait();
+            }
+            catch (InterruptedException e)
+            {
+                // Keep waiting. The interrupt is not passed on, as it would end the renderer thread
+            }
+        }
+    }
+
+    /** Record each list that is requested, for as long as the application runs. */
+    private void recordLoop()
+    {
+        while(true)
+        {
+            int index;
+            synchronized (this)
+            {
+                while(!requested)
+                {
+                    try
+                    {
+                        wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        // Nothing to stop; the worker lives as long as the process
+                    }
+                }
+                requested = false;
+                recording = true;
+
+                // Record into the list that is not being replayed
+                index = replayIndex == 0 ? 1 : 0;
+            }
+
+            CommandList list = lists[index];
+            list.reset();
+            try
+            {
+                recorder.record(list);
+            }
+            catch (RuntimeException e)
+            {
+                // Draw nothing, rather than leave the OpenGL thread waiting for ever
+                Log.e(TAG, "Recording a command list failed", e);
+                list.reset();
+            }
+
+            synchronized (this)
+            {
+                readyIndex = index;
+                recording = false;
+                recordedLists++;
+                notifyAll();
+            }
+        }
+    }
+
+    /** @return The number of lists recorded in the background since the pipeline was created. */
+    public synchronized int getRecordedLists()
+    {
+        return recordedLists;
+    }
+
+    /** @return The number of lists recorded in the background but never replayed. */
+    public synchronized int getDroppedLists()
+    {
+        return droppedLists;
+    }
+}
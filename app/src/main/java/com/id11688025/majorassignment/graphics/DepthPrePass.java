@@ -0,0 +1,238 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+import com.id11688025.majorassignment.ContentManager;
+import com.id11688025.majorassignment.VertexBufferObject;
+import com.id11688025.majorassignment.math.Matrix;
+import com.id11688025.majorassignment.math.VertexPosition;
+import com.id11688025.majorassignment.profiling.PassTimer;
+import com.id11688025.majorassignment.profiling.RollingStatistics;
+import com.id11688025.majorassignment.shaders.UniformCache;
+import com.id11688025.majorassignment.timing.FrameClock;
+
+/**
+ * Draws a model in two passes, so that its (possibly expensive) fragment
+ * shader runs at most once per pixel.
+ *
+ * The first pass writes only depth, with a trivial program that reads only
+ * vertex positions, from a buffer that holds nothing else. The second pass
+ * draws the model with its own shader, testing depth for equality with depth
+ * writes disabled, so only the nearest fragment at each pixel is shaded. Both
+ * vertex shaders declare gl_Position invariant, so that their depths match.
+ *
+ * The GPU time of each pass is measured separately, so the frame's own draw
+ * timer must not be running.
+ *
+ * Both passes are recorded into a CommandList, which may be done off the OpenGL
+ * thread. Otherwise, must only be used on the OpenGL thread that created it.
+ */
+public class DepthPrePass implements GpuResourceRegistry.Resource, CommandList.PositionProgram
+{
+    /** The asset paths of the depth-only shaders */
+    private static final String VERTEX_SHADER_PATH = "shaders/depth.vs.glsl";
+    private static final String FRAGMENT_SHADER_PATH = "shaders/depth.fs.glsl";
+
+    /** The class tag for Logcat tracing */
+    private static final String TAG = "DEPTH_PRE_PASS";
+
+    /** The shader sources, kept so that the program can be re-created */
+    private final String vertexSource, fragmentSource;
+
+    /** The names (IDs) of the shaders and program */
+    private int vertexShaderName, fragmentShaderName, programName;
+
+    /** The locations of the position attribute and the matrix uniforms */
+    private int positionLocation, modelViewLocation, projectionLocation;
+
+    /** Skips uploads of uniform values that have not changed */
+    private final UniformCache uniforms = new UniformCache();
+
+    /** The positions of the model's vertices, and the vertex buffer they were taken from */
+    private VertexBufferObject<VertexPosition> positions;
+    private VertexBufferObject sourceVertices;
+
+    /** Measure the GPU time of each pass */
+    private final PassTimer depthTimer, shadingTimer;
+
+    /**
+     * Compile the depth-only program. Must be called on the OpenGL thread.
+     * @param content The content manager, from which the shaders are read.
+     * @param clock The source of time for glFinish timing.
+     */
+    public DepthPrePass(ContentManager content, FrameClock clock)
+    {
+        vertexSource = content.fileAsString(VERTEX_SHADER_PATH);
+        fragmentSource = content.fileAsString(FRAGMENT_SHADER_PATH);
+
+        create();
+
+        depthTimer = new PassTimer(clock);
+        shadingTimer = new PassTimer(clock);
+    }
+
+    /** Compile and link the program. */
+    private void create()
+    {
+        GL gl = GLBackend.get();
+        vertexShaderName = compile(GLES20.GL_VERTEX_SHADER, vertexSource);
+        fragmentShaderName = compile(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+
+        programName = gl.glCreateProgram();
+        gl.glAttachShader(programName, vertexShaderName);
+        gl.glAttachShader(programName, fragmentShaderName);
+        gl.glLinkProgram(programName);
+
+        int[] status = new int[1];
+        gl.glGetProgramiv(programName, GLES20.GL_LINK_STATUS, status, 0);
+        if(status[0] == 0)
+            Log.d(TAG, gl.glGetProgramInfoLog(programName));
+
+        positionLocation = gl.glGetAttribLocation(programName, "vPosition");
+        modelViewLocation = gl.glGetUniformLocation(programName, "mv_matrix");
+        projectionLocation = gl.glGetUniformLocation(programName, "projection");
+
+        uniforms.reset();
+    }
+
+    /** Compile a shader module.
+     * @return The name (ID) of the shader module. */
+    private static int compile(int type, String source)
+    {
+        GL gl = GLBackend.get();
+        int name = gl.glCreateShader(type);
+        gl.glShaderSource(name, source);
+        gl.glCompileShader(name);
+        return name;
+    }
+
+    /**
+     * Record the drawing of a model: depth first, then colour, each pass timed. Expects
+     * the depth test to be enabled with GL_LEQUAL, and depth and colour writes enabled,
+     * when the list is replayed, and leaves them so. Recording may be done off the
+     * OpenGL thread, while the OpenGL thread does not publish the model.
+     * @param list The list that receives the commands.
+     * @param model The model to draw, as last published.
+     * @param view The camera's view matrix.
+     * @param projection The camera's projection matrix.
+     * @param time The shader time.
+     * @param finishTiming True to time each pass with glFinish where timer queries
+     *                     are unsupported.
+     */
+    public void record(CommandList list, Model model, Matrix view, Matrix projection, float time,
+                       boolean finishTiming)
+    {
+        // Collect the passes' times from previous frames
+        list.collectTimer(depthTimer);
+        list.collectTimer(shadingTimer);
+
+        list.beginTimer(depthTimer, finishTiming);
+        list.colorMask(false, false, false, false);
+        recordDepth(list, model, view, projection);
+        list.colorMask(true, true, true, true);
+        list.endTimer(depthTimer);
+
+        // Shade only the fragments whose depth was kept by the first pass
+        list.beginTimer(shadingTimer, finishTiming);
+        list.depthFunc(GLES20.GL_EQUAL);
+        list.depthMask(false);
+        model.record(list, view, projection, time);
+        list.depthMask(true);
+        list.depthFunc(GLES20.GL_LEQUAL);
+        list.endTimer(shadingTimer);
+    }
+
+    /** Record the drawing of the model's depth with the position-only program.
+     * Colour writes should be disabled by the caller. */
+    void recordDepth(CommandList list, Model model, Matrix view, Matrix projection)
+    {
+        VertexBufferObject vertices = model.getVertexBuffer();
+        list.usePositionProgram(this, vertices, model.getPublishedWorld(), view, projection);
+        list.drawArrays(GLES20.GL_TRIANGLES, 0, vertices.vertexCount());
+    }
+
+    /** Use the position-only program, as a recorded command list is replayed. */
+    @Override
+    public void use(VertexBufferObject vertices, float[] matrices, int offset)
+    {
+        GLStateCache glState = GLStateCache.get();
+        GL gl = GLBackend.get();
+        glState.useProgram(programName);
+
+        // Take the positions from the model's vertices when the model changes
+        if(vertices != sourceVertices)
+        {
+            if(positions != null)
+                positions.release();
+            positions = vertices.createPositionBuffer();
+            sourceVertices = vertices;
+            glState.invalidateVertexLayout();
+        }
+
+        if(glState.bindVertexLayout(this, 1))
+        {
+            glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, positions.getBufferName());
+            gl.glEnableVertexAttribArray(positionLocation);
+            gl.glVertexAttribPointer(positionLocation, 3, GLES20.GL_FLOAT, false, 0, 0);
+        }
+
+        uniforms.setMatrix4(modelViewLocation, matrices, offset);
+        uniforms.setMatrix4(projectionLocation, matrices, offset + 16);
+    }
+
+    @Override
+    public void discard()
+    {
+        vertexShaderName = fragmentShaderName = programName = 0;
+        if(positions != null)
+            positions.discard();
+        depthTimer.discardQueries();
+        shadingTimer.discardQueries();
+    }
+
+    /** Re-compile the program and re-upload the positions, from the kept copies. */
+    @Override
+    public void restore()
+    {
+        create();
+        if(positions != null)
+            positions.restore();
+        depthTimer.createQueries();
+        shadingTimer.createQueries();
+    }
+
+    /** @return Statistics of recent GPU times of the depth pass, in milliseconds. */
+    public RollingStatistics getDepthTimes()
+    {
+        return depthTimer.getTimes();
+    }
+
+    /** @return Statistics of recent GPU times of the shading pass, in milliseconds. */
+    public RollingStatistics getShadingTimes()
+    {
+        return shadingTimer.getTimes();
+    }
+
+    /** @return The GPU time of both passes that was measured during the current frame,
+     * in milliseconds, or -1 if no new measurement of both became available. */
+    public float getNewTime()
+    {
+        float depth = depthTimer.getNewTime(), shading = shadingTimer.getNewTime();
+        return depth >= 0 && shading >= 0 ? depth + shading : -1;
+    }
+
+    /** Delete the program, the position buffer and the timer queries. */
+    public void release()
+    {
+        GLStateCache glState = GLStateCache.get();
+        GL gl = GLBackend.get();
+        glState.deleteProgram(programName);
+        gl.glDeleteShader(vertexShaderName);
+        gl.glDeleteShader(fragmentShaderName);
+        if(positions != null)
+            positions.release();
+        depthTimer.release();
+        shadingTimer.release();
+    }
+}
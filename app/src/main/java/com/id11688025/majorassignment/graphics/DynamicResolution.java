@@ -0,0 +1,174 @@
+package com.id11688025.majorassignment.graphics;
+
+/**
+ * Chooses the fraction of the viewport resolution at which the scene
+ * is rendered, so that the frame time stays within a budget.
+ *
+ * The cost of a fragment-bound frame is roughly proportional to the number
+ * of pixels shaded, which is the square of the scale. When a frame exceeds
+ * the budget, the scale drops at once to the value that would have met it.
+ * When frames are comfortably under budget, the scale rises gradually, so
+ * that it does not oscillate around the limit.
+ *
+ * A manual scale overrides the controller entirely.
+ */
+public class DynamicResolution
+{
+    /** The default lowest scale; a quarter of the width and height */
+    public static final float DEFAULT_MIN_SCALE = 0.25f;
+
+    /** The default highest scale; the native resolution */
+    public static final float DEFAULT_MAX_SCALE = 1.0f;
+
+    /** The default frame time budget, in milliseconds. Leaves some of a
+     * 60 Hz frame for the upscale and for the rest of the system. */
+    public static final float DEFAULT_TARGET_FRAME_MILLIS = 13.0f;
+
+    /** The scale only rises when frames take less than this fraction of the budget */
+    private static final float HEADROOM = 0.85f;
+
+    /** The fraction of the distance to the desired scale covered per frame, when rising */
+    private static final float RISE_RATE = 0.1f;
+
+    /** The display refresh interval, in milliseconds */
+    private static final float DISPLAY_INTERVAL_MILLIS = 1000f / 60f;
+
+    /** A frame interval longer than this many display intervals means a refresh was missed */
+    private static final float MISSED_REFRESH_FACTOR = 1.25f;
+
+    /** The number of consecutive on-time frames after which the scale rises by one step,
+     * when only frame intervals can be measured */
+    private static final int RISE_DELAY_FRAMES = 30;
+
+    /** Scales are rounded to multiples of this step, so that small changes
+     * in frame time do not change the resolution every frame */
+    private static final float SCALE_STEP = 1f / 32f;
+
+    /** The lowest scale that the controller may choose */
+    private float minScale = DEFAULT_MIN_SCALE;
+
+    /** The highest scale that the controller may choose */
+    private float maxScale = DEFAULT_MAX_SCALE;
+
+    /** The frame time budget, in milliseconds */
+    private float targetFrameMillis = DEFAULT_TARGET_FRAME_MILLIS;
+
+    /** The scale chosen by the controller, before rounding */
+    private float scale = DEFAULT_MAX_SCALE;
+
+    /** The scale set by the user, or 0 to let the controller choose */
+    private float manualScale = 0;
+
+    /** The number of consecutive frames that have met the display refresh */
+    private int onTimeFrames = 0;
+
+    /**
+     * Adjust the scale after a frame has been measured.
+     * @param frameMillis The time taken to render a frame at the current scale, in milliseconds.
+     */
+    public void addFrameTime(float frameMillis)
+    {
+        if(frameMillis <= 0)
+            return;
+
+        // The scale at which the frame would have exactly met the budget
+        float current = getScale();
+        float fitted = current * (float)Math.sqrt(targetFrameMillis / frameMillis);
+
+        if(frameMillis > targetFrameMillis)
+            scale = fitted;
+        else if(frameMillis < targetFrameMillis * HEADROOM)
+            scale += (fitted - scale) * RISE_RATE;
+
+        scale = clamp(scale, minScale, maxScale);
+    }
+
+    /**
+     * Adjust the scale from the interval between presented frames, when the GPU time of a
+     * frame cannot be measured. Intervals are limited by the display refresh, so they do
+     * not show how much time is spare; the scale therefore only rises slowly, after many
+     * frames in a row have met the refresh.
+     * @param intervalMillis The time between the starts of this and the previous frame, in milliseconds.
+     */
+    public void addFrameInterval(float intervalMillis)
+    {
+        if(intervalMillis > DISPLAY_INTERVAL_MILLIS * MISSED_REFRESH_FACTOR)
+        {
+            scale = getScale() * (float)Math.sqrt(DISPLAY_INTERVAL_MILLIS / intervalMillis);
+            onTimeFrames = 0;
+        }
+        else if(++onTimeFrames >= RISE_DELAY_FRAMES)
+        {
+            scale = getScale() + SCALE_STEP;
+            onTimeFrames = 0;
+        }
+
+        scale = clamp(scale, minScale, maxScale);
+    }
+
+    /** @return The fraction of the viewport's width and height to render at. */
+    public float getScale()
+    {
+        if(manualScale > 0)
+            return manualScale;
+
+        // Round down, so that the rounded scale also meets the budget
+        float rounded = (float)Math.floor(scale / SCALE_STEP) * SCALE_STEP;
+        return clamp(rounded, minScale, maxScale);
+    }
+
+    /** Return to the highest scale, for example when the scene changes completely. */
+    public void reset()
+    {
+        scale = maxScale;
+        onTimeFrames = 0;
+    }
+
+    /**
+     * Limit the scales that the controller may choose.
+     * @param minScale The lowest fraction of the viewport resolution, greater than 0.
+     * @param maxScale The highest fraction of the viewport resolution, at most 1.
+     */
+    public void setScaleBounds(float minScale, float maxScale)
+    {
+        if(minScale <= 0 || maxScale > 1 || minScale > maxScale)
+            throw new IllegalArgumentException("Scale bounds must satisfy 0 < min <= max <= 1.");
+
+        this.minScale = minScale;
+        this.maxScale = maxScale;
+        scale = clamp(scale, minScale, maxScale);
+    }
+
+    /** @param manualScale A fixed fraction of the viewport resolution (0 to 1],
+     * or 0 to let the controller choose. */
+    public void setManualScale(float manualScale)
+    {
+        if(manualScale < 0 || manualScale > 1)
+            throw new IllegalArgumentException("The manual scale must be between 0 and 1.");
+
+        this.manualScale = manualScale;
+    }
+
+    /** @return True if the scale is chosen by the controller, rather than the user. */
+    public boolean isAutomatic()
+    {
+        return manualScale == 0;
+    }
+
+    /** @param targetFrameMillis The frame time budget, in milliseconds. */
+    public void setTargetFrameTime(float targetFrameMillis)
+    {
+        this.targetFrameMillis = targetFrameMillis;
+    }
+
+    /** @return The frame time budget, in milliseconds. */
+    public float getTargetFrameTime()
+    {
+        return targetFrameMillis;
+    }
+
+    private static float clamp(float value, float min, float max)
+    {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,200 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Copies rendered pixels into Android bitmaps without blocking
+ * the OpenGL thread or the UI thread.
+ *
+ * The OpenGL thread only reads the pixels into a pooled buffer.
+ * A worker thread then flips the image vertically (OpenGL's origin
+ * is the bottom-left corner) and copies it into an ARGB_8888 bitmap,
+ * whose memory layout matches the RGBA bytes that OpenGL returns,
+ * so no per-channel conversion is needed.
+ */
+public class FrameCapture
+{
+    /** Receives a captured image on the UI thread. */
+    public interface Callback
+    {
+        /** @param bitmap The captured image, or null if nothing could be captured. */
+        void onCaptured(Bitmap bitmap);
+    }
+
+    /** The number of bytes per RGBA pixel */
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /** The maximum number of idle pixel buffers to keep for reuse */
+    private static final int MAX_POOLED_BUFFERS = 2;
+
+    /** The thread on which images are flipped and converted. Shared by every capture,
+     * so that captures made per job do not each start a thread, and a daemon, so that
+     * it never keeps the process alive. */
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "FrameCapture");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** Delivers results to the UI thread */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** Idle pixel buffers that may be reused. Shared by the OpenGL and worker threads. */
+    private final ArrayList<ByteBuffer> bufferPool = new ArrayList<ByteBuffer>();
+
+    /**
+     * Read a region of the currently bound framebuffer, and convert it to a
+     * bitmap in the background. Must be called on the OpenGL thread, after
+     * the frame has been drawn.
+     * @param x The left edge of the region, in pixels.
+     * @param y The bottom edge of the region, in pixels.
+     * @param width The width of the region, in pixels.
+     * @param height The height of the region, in pixels.
+     * @param callback Receives the bitmap on the UI thread. May be null.
+     * @return A future that completes with the bitmap.
+     */
+    public Future<Bitmap> capture(int x, int y, final int width, final int height, final Callback callback)
+    {
+        final ByteBuffer pixels = acquireBuffer(width * height * BYTES_PER_PIXEL);
+
+        // The only work done on the OpenGL thread
+        GLBackend.get().glReadPixels(x, y, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, pixels);
+
+        return worker.submit(new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() {
+                final Bitmap bitmap = convert(pixels, width, height);
+                releaseBuffer(pixels);
+
+                if(callback != null)
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onCaptured(bitmap);
+                        }
+                    });
+
+                return bitmap;
+            }
+        });
+    }
+
+    /** Tell a callback, on the UI thread, that nothing could be captured.
+     * @param callback Receives null on the UI thread. */
+    public void captureNothing(final Callback callback)
+    {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onCaptured(null);
+            }
+        });
+    }
+
+    /**
+     * Read a region of the currently bound framebuffer into a bitmap, entirely on the
+     * calling thread. For use by background threads that own their own OpenGL context.
+     * @param x The left edge of the region, in pixels.
+     * @param y The bottom edge of the region, in pixels.
+     * @param width The width of the region, in pixels.
+     * @param height The height of the region, in pixels.
+     * @return The captured image.
+     */
+    public Bitmap captureNow(int x, int y, int width, int height)
+    {
+        ByteBuffer pixels = acquireBuffer(width * height * BYTES_PER_PIXEL);
+        GLBackend.get().glReadPixels(x, y, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, pixels);
+
+        Bitmap bitmap = convert(pixels, width, height);
+        releaseBuffer(pixels);
+
+        return bitmap;
+    }
+
+    /** Flip bottom-up RGBA pixels to top-down, make them opaque,
+     * and copy them into a new bitmap. */
+    private Bitmap convert(ByteBuffer pixels, int width, int height)
+    {
+        int stride = width * BYTES_PER_PIXEL;
+
+        // Scratch rows, small compared to the bitmap itself
+        byte[] topRow = new byte[stride], bottomRow = new byte[stride];
+
+        // Swap rows from the outside in
+        for(int top = 0, bottom = height - 1; top <= bottom; top++, bottom--)
+        {
+            pixels.position(top * stride);
+            pixels.get(topRow, 0, stride);
+            pixels.position(bottom * stride);
+            pixels.get(bottomRow, 0, stride);
+
+            // The render is opaque, whatever alpha the shader wrote
+            for(int i = BYTES_PER_PIXEL - 1; i < stride; i += BYTES_PER_PIXEL)
+            {
+                topRow[i] = (byte)0xFF;
+                bottomRow[i] = (byte)0xFF;
+            }
+
+            pixels.position(top * stride);
+            pixels.put(bottomRow, 0, stride);
+            pixels.position(bottom * stride);
+            pixels.put(topRow, 0, stride);
+        }
+
+        pixels.rewind();
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        bitmap.copyPixelsFromBuffer(pixels);
+        bitmap.setHasAlpha(false);
+
+        return bitmap;
+    }
+
+    /** Obtain a direct buffer of at least the requested size, reusing an idle one if possible. */
+    private ByteBuffer acquireBuffer(int sizeInBytes)
+    {
+        synchronized (bufferPool)
+        {
+            for(int i=0; i < bufferPool.size(); i++)
+            {
+                ByteBuffer buffer = bufferPool.get(i);
+                if(buffer.capacity() >= sizeInBytes)
+                {
+                    bufferPool.remove(i);
+                    buffer.clear();
+                    buffer.limit(sizeInBytes);
+                    return buffer;
+                }
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(sizeInBytes);
+        buffer.order(ByteOrder.nativeOrder());
+        return buffer;
+    }
+
+    /** Return a buffer to the pool once its pixels have been consumed. */
+    private void releaseBuffer(ByteBuffer buffer)
+    {
+        synchronized (bufferPool)
+        {
+            if(bufferPool.size() < MAX_POOLED_BUFFERS)
+                bufferPool.add(buffer);
+        }
+    }
+}
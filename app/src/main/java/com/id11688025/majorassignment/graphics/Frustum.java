@@ -0,0 +1,65 @@
+package com.id11688025.majorassignment.graphics;
+
+import com.id11688025.majorassignment.math.Matrix;
+
+/**
+ * The volume of space that a camera can see, bounded by six planes.
+ *
+ * The planes are extracted directly from the combined view-projection
+ * matrix, so the test agrees exactly with the clipping that OpenGL
+ * performs, whatever projection the camera uses.
+ */
+public class Frustum
+{
+    /** The number of bounding planes */
+    private static final int PLANE_COUNT = 6;
+
+    /** Each plane as (a, b, c, d), where a point p is inside if a*p.x + b*p.y + c*p.z + d >= 0.
+     * The normal (a, b, c) is normalized, so the expression is a distance. */
+    private final float[] planes = new float[PLANE_COUNT * 4];
+
+    /**
+     * Compute the planes from a view-projection matrix.
+     * @param viewProjection The product of the projection and view matrices.
+     */
+    public void set(Matrix viewProjection)
+    {
+        float[][] m = viewProjection.data;
+
+        // Each plane is the sum or difference of the last row and another row
+        // (left, right, bottom, top, near, far)
+        for(int i=0; i < PLANE_COUNT; i++)
+        {
+            int row = i / 2;
+            float sign = (i % 2 == 0) ? 1f : -1f;
+
+            float a = m[3][0] + sign * m[row][0];
+            float b = m[3][1] + sign * m[row][1];
+            float c = m[3][2] + sign * m[row][2];
+            float d = m[3][3] + sign * m[row][3];
+
+            float length = (float)Math.sqrt(a*a + b*b + c*c);
+            planes[i*4]     = a / length;
+            planes[i*4 + 1] = b / length;
+            planes[i*4 + 2] = c / length;
+            planes[i*4 + 3] = d / length;
+        }
+    }
+
+    /**
+     * Determine whether any part of a sphere may be visible.
+     * @param x The X coordinate of the sphere's centre, in world space.
+     * @param y The Y coordinate of the sphere's centre, in world space.
+     * @param z The Z coordinate of the sphere's centre, in world space.
+     * @param radius The radius of the sphere.
+     * @return False if the sphere lies entirely outside the frustum.
+     */
+    public boolean intersectsSphere(float x, float y, float z, float radius)
+    {
+        for(int i=0; i < PLANE_COUNT * 4; i += 4)
+            if(planes[i]*x + planes[i+1]*y + planes[i+2]*z + planes[i+3] < -radius)
+                return false;
+
+        return true;
+    }
+}
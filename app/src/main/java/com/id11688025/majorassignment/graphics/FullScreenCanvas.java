@@ -0,0 +1,220 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.opengl.GLES20;
+
+import com.id11688025.majorassignment.ContentManager;
+
+/**
+ * Draws the user's fragment shader over the whole viewport, in the manner of
+ * Shadertoy, for shaders that need no model. A single triangle is drawn with a
+ * minimal vertex shader, without depth, so no mesh is parsed or transformed.
+ *
+ * The fragment shader may read:
+ * <ul>
+ *     <li>uniform vec2 resolution: the size of the viewport, in pixels</li>
+ *     <li>uniform float time: the shader time</li>
+ *     <li>uniform vec2 touch: the last touch position, in pixels from the bottom-left</li>
+ *     <li>uniform sampler2D texture: the sampler texture</li>
+ *     <li>varying vec2 fTexture: the position of the pixel, 0 to 1 across the viewport</li>
+ * </ul>
+ * and the fPosition and fNormal varyings of a surface that faces the camera,
+ * so that shaders written for the model still compile.
+ *
+ * Like Shader, a newly compiled program is on probation, with the last trusted
+ * program kept to fall back on, until the GPU watchdog has judged it.
+ *
+ * Must only be used on the OpenGL thread that created it.
+ */
+public class FullScreenCanvas implements GpuResourceRegistry.Resource
+{
+    /** The asset path of the vertex shader, which provides every varying of the model's */
+    private static final String VERTEX_SHADER_PATH = "shaders/benchmark.vs.glsl";
+
+    /** The content manager, from which the vertex shader is read */
+    private final ContentManager content;
+
+    /** The program in use, or null if none has compiled */
+    private FullScreenTriangle program;
+
+    /** The trusted program kept while the one in use is on probation, or null */
+    private FullScreenTriangle fallbackProgram;
+
+    /** The fragment shader sources of the program in use and the fallback program */
+    private String compiledSource, fallbackSource;
+
+    /** The locations of the "resolution", "time", "touch" and "texture" uniforms */
+    private int resolutionLocation, timeLocation, touchLocation, textureLocation;
+
+    /** The compiler log of the last fragment shader supplied */
+    private String fragmentShaderLog = "";
+
+    /** @param content The content manager, from which the vertex shader is read. */
+    public FullScreenCanvas(ContentManager content)
+    {
+        this.content = content;
+    }
+
+    /**
+     * Compile a fragment shader, and use it if it compiles. Otherwise, the program
+     * in use is kept. Must be called on the OpenGL thread.
+     * @param fragmentSource The fragment shader source code.
+     * @return True if the shader compiled, and is now in use.
+     */
+    public boolean provideUserShader(String fragmentSource)
+    {
+        FullScreenTriangle newProgram = new FullScreenTriangle(content, VERTEX_SHADER_PATH, fragmentSource);
+        fragmentShaderLog = newProgram.getFragmentShaderLog();
+
+        if(!newProgram.isCompiled())
+        {
+            newProgram.release();
+            return false;
+        }
+
+        // Keep a trusted program to fall back on; one still on probation is deleted
+        if(fallbackProgram != null)
+            program.release();
+        else if(program != null)
+        {
+            fallbackProgram = program;
+            fallbackSource = compiledSource;
+        }
+
+        program = newProgram;
+        compiledSource = fragmentSource;
+        findUniforms();
+        return true;
+    }
+
+    /** Find the locations of the built-in uniforms in the program in use. */
+    private void findUniforms()
+    {
+        resolutionLocation = program.getUniformLocation("resolution");
+        timeLocation = program.getUniformLocation("time");
+        touchLocation = program.getUniformLocation("touch");
+        textureLocation = program.getUniformLocation("texture");
+    }
+
+    /**
+     * Draw the program in use over the viewport. Depth testing is disabled while
+     * drawing, and enabled again afterwards.
+     * @param texture The texture given to the shader, or null.
+     * @param width The width of the viewport, in pixels.
+     * @param height The height of the viewport, in pixels.
+     * @param time The shader time.
+     * @param touchX The last touch position, in pixels from the left.
+     * @param touchY The last touch position, in pixels from the bottom.
+     */
+    public void draw(Texture2D texture, int width, int height, float time, float touchX, float touchY)
+    {
+        if(program == null)
+            return;
+
+        GLStateCache glState = GLStateCache.get();
+        glState.disable(GLES20.GL_DEPTH_TEST);
+
+        program.use();
+        program.getUniforms().set2f(resolutionLocation, width, height);
+        program.getUniforms().set1f(timeLocation, time);
+        program.getUniforms().set2f(touchLocation, touchX, touchY);
+        if(texture != null)
+        {
+            glState.activeTexture(GLES20.GL_TEXTURE0);
+            glState.bindTexture(texture.getTextureName());
+            program.getUniforms().set1i(textureLocation, 0);
+        }
+        program.draw();
+
+        glState.enable(GLES20.GL_DEPTH_TEST);
+    }
+
+    /** Trust the program in use, as it has drawn frames in good time, and
+     * delete the program that was kept to fall back on.
+     * @param fragmentSource The source of the program that was found to be safe.
+     *                       Ignored unless it is the source of the program in use. */
+    public void trustProgram(String fragmentSource)
+    {
+        if(fallbackProgram == null || !fragmentSource.equals(compiledSource))
+            return;
+
+        fallbackProgram.release();
+        fallbackProgram = null;
+        fallbackSource = null;
+    }
+
+    /** Delete the program in use, as it hung the GPU, and go back to the
+     * last program that was trusted.
+     * @return True if there was a trusted program to go back to. */
+    public boolean revertToTrustedProgram()
+    {
+        if(fallbackProgram == null)
+            return false;
+
+        program.release();
+        program = fallbackProgram;
+        compiledSource = fallbackSource;
+        fallbackProgram = null;
+        fallbackSource = null;
+        findUniforms();
+        return true;
+    }
+
+    /** @return True if the program in use has not yet been trusted, and a trusted
+     * program is kept to fall back on. */
+    public boolean isOnProbation()
+    {
+        return fallbackProgram != null;
+    }
+
+    /** @return The fragment shader source of the program in use, or null if none has compiled. */
+    public String getCompiledFragmentSource()
+    {
+        return compiledSource;
+    }
+
+    /** @return The compiler log of the last fragment shader supplied. */
+    public String getFragmentShaderLog()
+    {
+        return fragmentShaderLog;
+    }
+
+    @Override
+    public void discard()
+    {
+        if(program != null)
+            program.discard();
+        if(fallbackProgram != null)
+            fallbackProgram.discard();
+    }
+
+    /** Re-compile the program in use from its kept source. A program still on
+     * probation is not restored; the trusted one it would have fallen back on is. */
+    @Override
+    public void restore()
+    {
+        if(fallbackProgram != null)
+        {
+            program = fallbackProgram;
+            compiledSource = fallbackSource;
+            fallbackProgram = null;
+            fallbackSource = null;
+        }
+
+        if(program != null)
+        {
+            program.restore();
+            findUniforms();
+        }
+    }
+
+    /** Delete every program. */
+    public void release()
+    {
+        if(program != null)
+            program.release();
+        if(fallbackProgram != null)
+            fallbackProgram.release();
+        program = fallbackProgram = null;
+        compiledSource = fallbackSource = null;
+    }
+}
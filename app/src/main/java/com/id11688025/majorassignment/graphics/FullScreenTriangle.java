@@ -0,0 +1,206 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+import com.id11688025.majorassignment.ContentManager;
+import com.id11688025.majorassignment.shaders.UniformCache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * A fragment shader program that is drawn over the whole viewport.
+ *
+ * A single oversized triangle is used instead of a two-triangle quad,
+ * so that no pixels along the diagonal are shaded twice. The vertex
+ * shader passes texture coordinates from (0,0) at the bottom-left
+ * of the viewport to (1,1) at the top-right, in the "fTexture" varying.
+ */
+public class FullScreenTriangle implements GpuResourceRegistry.Resource
+{
+    /** The asset path of the shared vertex shader */
+    public static final String VERTEX_SHADER_PATH = "shaders/fullscreen.vs.glsl";
+
+    /** The attribute name of the vertex position. */
+    private static final String VPOSITION = "vPosition";
+
+    /** The class tag for Logcat tracing */
+    private static final String TAG = "FULL_SCREEN_TRIANGLE";
+
+    /** The triangle, in normalized device coordinates. Its corners lie outside
+     * the viewport, so that the viewport fits inside it. */
+    private static final float[] VERTICES = {
+            -1f, -1f,
+             3f, -1f,
+            -1f,  3f
+    };
+
+    /** The name (ID) of the vertex shader */
+    private int vertexShaderName;
+    /** The name (ID) of the fragment shader */
+    private int fragmentShaderName;
+    /** The name (ID) of the shader program */
+    private int programName;
+    /** The name (ID) of the buffer that holds the triangle */
+    private int vertexBufferName;
+    /** The location of the "vPosition" attribute */
+    private int positionLocation;
+
+    /** The shader sources, kept so that the program can be re-created */
+    private final String vertexSource, fragmentSource;
+
+    /** Skips uploads of uniform values that have not changed */
+    private final UniformCache uniforms = new UniformCache();
+
+    /** Did the fragment shader compile and link? */
+    private boolean compiled;
+
+    /** The compilation log of the fragment shader */
+    private String fragmentShaderLog;
+
+    /**
+     * Compile a full-screen program. Must be called on the OpenGL thread.
+     * @param content The content manager, from which the vertex shader is read.
+     * @param fragmentSource The fragment shader source code.
+     */
+    public FullScreenTriangle(ContentManager content, String fragmentSource)
+    {
+        this(content, VERTEX_SHADER_PATH, fragmentSource);
+    }
+
+    /**
+     * Compile a full-screen program with another vertex shader, which must read the
+     * triangle from "vPosition". Must be called on the OpenGL thread.
+     * @param content The content manager, from which the vertex shader is read.
+     * @param vertexShaderPath The asset path of the vertex shader.
+     * @param fragmentSource The fragment shader source code.
+     */
+    public FullScreenTriangle(ContentManager content, String vertexShaderPath, String fragmentSource)
+    {
+        this.vertexSource = content.fileAsString(vertexShaderPath);
+        this.fragmentSource = fragmentSource;
+
+        create();
+    }
+
+    /** Compile the program, and upload the triangle. */
+    private void create()
+    {
+        GL gl = GLBackend.get();
+        vertexShaderName = compile(GLES20.GL_VERTEX_SHADER, vertexSource);
+        fragmentShaderName = compile(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+
+        programName = gl.glCreateProgram();
+        gl.glAttachShader(programName, vertexShaderName);
+        gl.glAttachShader(programName, fragmentShaderName);
+        gl.glLinkProgram(programName);
+
+        fragmentShaderLog = gl.glGetShaderInfoLog(fragmentShaderName);
+
+        int[] status = new int[1];
+        gl.glGetProgramiv(programName, GLES20.GL_LINK_STATUS, status, 0);
+        compiled = status[0] != 0;
+        if(!compiled)
+            Log.d(TAG, fragmentShaderLog + gl.glGetProgramInfoLog(programName));
+
+        // A re-linked program's uniforms hold no values
+        uniforms.reset();
+
+        positionLocation = gl.glGetAttribLocation(programName, VPOSITION);
+
+        // Upload the triangle
+        FloatBuffer vertices = ByteBuffer.allocateDirect(VERTICES.length * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        vertices.put(VERTICES).position(0);
+
+        int[] names = new int[1];
+        gl.glGenBuffers(1, names, 0);
+        vertexBufferName = names[0];
+        GLStateCache.get().bindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferName);
+        gl.glBufferData(GLES20.GL_ARRAY_BUFFER, VERTICES.length * 4, vertices, GLES20.GL_STATIC_DRAW);
+    }
+
+    @Override
+    public void discard()
+    {
+        vertexShaderName = fragmentShaderName = programName = vertexBufferName = 0;
+    }
+
+    /** Re-compile the program from the kept sources, and upload the triangle again. */
+    @Override
+    public void restore()
+    {
+        create();
+    }
+
+    /** Compile a shader module.
+     * @return The name (ID) of the shader module. */
+    private static int compile(int type, String source)
+    {
+        GL gl = GLBackend.get();
+        int name = gl.glCreateShader(type);
+        gl.glShaderSource(name, source);
+        gl.glCompileShader(name);
+        return name;
+    }
+
+    /** Make this the current program, so that its uniforms may be set. */
+    public void use()
+    {
+        GLStateCache.get().useProgram(programName);
+    }
+
+    /** Draw the triangle with the current program. Call use() first. */
+    public void draw()
+    {
+        GLStateCache glState = GLStateCache.get();
+        GL gl = GLBackend.get();
+        if(glState.bindVertexLayout(this, 1))
+        {
+            glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferName);
+            gl.glEnableVertexAttribArray(positionLocation);
+            gl.glVertexAttribPointer(positionLocation, 2, GLES20.GL_FLOAT, false, 0, 0);
+        }
+
+        gl.glDrawArrays(GLES20.GL_TRIANGLES, 0, 3);
+    }
+
+    /** @param name The name of a uniform in the program.
+     * @return The uniform's location, or -1 if the program does not use it. */
+    public int getUniformLocation(String name)
+    {
+        return GLBackend.get().glGetUniformLocation(programName, name);
+    }
+
+    /** @return The cache through which the program's uniforms may be set,
+     * skipping unchanged values. Call use() first. */
+    public UniformCache getUniforms()
+    {
+        return uniforms;
+    }
+
+    /** Delete the OpenGL objects owned by this program. */
+    public void release()
+    {
+        GLStateCache glState = GLStateCache.get();
+        GL gl = GLBackend.get();
+        glState.deleteProgram(programName);
+        gl.glDeleteShader(vertexShaderName);
+        gl.glDeleteShader(fragmentShaderName);
+        glState.deleteBuffer(vertexBufferName);
+    }
+
+    /** @return True if the fragment shader compiled, and the program linked. */
+    public boolean isCompiled()
+    {
+        return compiled;
+    }
+
+    /** @return The fragment shader compiler log */
+    public String getFragmentShaderLog()
+    {
+        return fragmentShaderLog;
+    }
+}
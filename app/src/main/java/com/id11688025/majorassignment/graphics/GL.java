@@ -0,0 +1,115 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+
+/**
+ * The OpenGL ES functions that the renderer calls, so that they can be
+ * carried out by something other than the device's driver.
+ *
+ * Each method has the name and arguments of the GLES20 or GLES30 function
+ * it stands for (texImage2D stands for GLUtils.texImage2D), and the same
+ * enumerants are passed. AndroidGL calls through to the driver; RecordingGL
+ * keeps no GPU state, and counts and checks the calls instead, so that the
+ * CPU side of a frame can be run and measured without a device.
+ *
+ * The backend for the calling thread's context is obtained with GLBackend.get().
+ */
+public interface GL
+{
+    // == Shaders and programs ==
+    int glCreateShader(int type);
+    void glShaderSource(int shader, String string);
+    void glCompileShader(int shader);
+    void glGetShaderiv(int shader, int pname, int[] params, int offset);
+    String glGetShaderInfoLog(int shader);
+    void glDeleteShader(int shader);
+    int glCreateProgram();
+    void glAttachShader(int program, int shader);
+    void glLinkProgram(int program);
+    void glGetProgramiv(int program, int pname, int[] params, int offset);
+    String glGetProgramInfoLog(int program);
+    void glUseProgram(int program);
+    void glDeleteProgram(int program);
+    int glGetAttribLocation(int program, String name);
+    int glGetUniformLocation(int program, String name);
+
+    // == Uniforms ==
+    void glUniform1f(int location, float x);
+    void glUniform2f(int location, float x, float y);
+    void glUniform3f(int location, float x, float y, float z);
+    void glUniform4f(int location, float x, float y, float z, float w);
+    void glUniform1i(int location, int x);
+    void glUniform2i(int location, int x, int y);
+    void glUniform3i(int location, int x, int y, int z);
+    void glUniform4i(int location, int x, int y, int z, int w);
+    void glUniform1fv(int location, int count, float[] v, int offset);
+    void glUniform2fv(int location, int count, float[] v, int offset);
+    void glUniform3fv(int location, int count, float[] v, int offset);
+    void glUniform4fv(int location, int count, float[] v, int offset);
+    void glUniformMatrix2fv(int location, int count, boolean transpose, float[] value, int offset);
+    void glUniformMatrix3fv(int location, int count, boolean transpose, float[] value, int offset);
+    void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+
+    // == Buffers and vertex attributes ==
+    void glGenBuffers(int n, int[] buffers, int offset);
+    void glBindBuffer(int target, int buffer);
+    void glBufferData(int target, int size, Buffer data, int usage);
+    void glDeleteBuffers(int n, int[] buffers, int offset);
+    void glEnableVertexAttribArray(int index);
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset);
+
+    // == Textures ==
+    void glGenTextures(int n, int[] textures, int offset);
+    void glActiveTexture(int texture);
+    void glBindTexture(int target, int texture);
+    void glTexParameteri(int target, int pname, int param);
+    void glTexImage2D(int target, int level, int internalformat, int width, int height, int border,
+                      int format, int type, Buffer pixels);
+    void texImage2D(int target, int level, Bitmap bitmap, int border);
+    void glDeleteTextures(int n, int[] textures, int offset);
+
+    // == Framebuffers and renderbuffers ==
+    void glGenFramebuffers(int n, int[] framebuffers, int offset);
+    void glBindFramebuffer(int target, int framebuffer);
+    void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level);
+    void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer);
+    int glCheckFramebufferStatus(int target);
+    void glInvalidateFramebuffer(int target, int numAttachments, int[] attachments, int offset);
+    void glDeleteFramebuffers(int n, int[] framebuffers, int offset);
+    void glGenRenderbuffers(int n, int[] renderbuffers, int offset);
+    void glBindRenderbuffer(int target, int renderbuffer);
+    void glRenderbufferStorage(int target, int internalformat, int width, int height);
+    void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset);
+
+    // == Fixed-function state ==
+    void glEnable(int cap);
+    void glDisable(int cap);
+    void glViewport(int x, int y, int width, int height);
+    void glScissor(int x, int y, int width, int height);
+    void glFrontFace(int mode);
+    void glDepthFunc(int func);
+    void glDepthMask(boolean flag);
+    void glColorMask(boolean red, boolean green, boolean blue, boolean alpha);
+    void glBlendFunc(int sfactor, int dfactor);
+    void glClearColor(float red, float green, float blue, float alpha);
+
+    // == Drawing and reading back ==
+    void glClear(int mask);
+    void glDrawArrays(int mode, int first, int count);
+    void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels);
+    void glFinish();
+
+    // == Queries and synchronization ==
+    String glGetString(int name);
+    void glGetIntegerv(int pname, int[] params, int offset);
+    void glGenQueries(int n, int[] ids, int offset);
+    void glBeginQuery(int target, int id);
+    void glEndQuery(int target);
+    void glGetQueryObjectuiv(int id, int pname, int[] params, int offset);
+    void glDeleteQueries(int n, int[] ids, int offset);
+    long glFenceSync(int condition, int flags);
+    int glClientWaitSync(long sync, int flags, long timeout);
+    void glDeleteSync(long sync);
+}
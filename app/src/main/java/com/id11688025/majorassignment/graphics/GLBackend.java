@@ -0,0 +1,34 @@
+package com.id11688025.majorassignment.graphics;
+
+/**
+ * Chooses the GL through which each thread's OpenGL calls are made.
+ *
+ * Like GLStateCache, there is one per thread, and so per context. Every thread
+ * calls the device's driver unless another backend, such as a RecordingGL, is
+ * set for it. The backend must be set before the thread creates any OpenGL
+ * objects, and the thread's GLStateCache reset afterwards.
+ */
+public final class GLBackend
+{
+    /** The backend of each thread; the driver, unless another is set */
+    private static final ThreadLocal<GL> backends = new ThreadLocal<GL>() {
+        @Override
+        protected GL initialValue() {
+            return new AndroidGL();
+        }
+    };
+
+    private GLBackend() {}
+
+    /** @return The GL through which the calling thread makes OpenGL calls. */
+    public static GL get()
+    {
+        return backends.get();
+    }
+
+    /** @param gl The GL through which the calling thread is to make OpenGL calls. */
+    public static void set(GL gl)
+    {
+        backends.set(gl);
+    }
+}
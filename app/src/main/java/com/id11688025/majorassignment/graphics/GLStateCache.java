@@ -0,0 +1,305 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.opengl.GLES20;
+
+/**
+ * Shadows the OpenGL state that is changed most often, and drops calls
+ * that would set it to the value it already has.
+ *
+ * Tracks the current program, the active texture unit, the 2D texture bound
+ * to each unit, the array and element array buffers, the framebuffer, the
+ * common capabilities (depth test, face culling, blending, scissor test)
+ * and the viewport.
+ *
+ * OpenGL state belongs to a context, and a context to a thread, so each
+ * thread has its own cache, obtained with get(). The shadowed state is
+ * unknown until reset() is called for a new context; while unknown, every
+ * call is issued. Objects must be deleted through this class, because OpenGL
+ * unbinds an object that is deleted while bound.
+ */
+public class GLStateCache
+{
+    /** The number of texture units whose bindings are tracked */
+    private static final int MAX_TEXTURE_UNITS = 8;
+
+    /** Shadowed state that is not yet known */
+    private static final int UNKNOWN = -1;
+
+    /** The capabilities whose enabled state is tracked */
+    private static final int[] TRACKED_CAPS = {
+            GLES20.GL_DEPTH_TEST,
+            GLES20.GL_CULL_FACE,
+            GLES20.GL_BLEND,
+            GLES20.GL_SCISSOR_TEST
+    };
+
+    /** One cache per thread, and so per context */
+    private static final ThreadLocal<GLStateCache> caches = new ThreadLocal<GLStateCache>() {
+        @Override
+        protected GLStateCache initialValue() {
+            return new GLStateCache();
+        }
+    };
+
+    private int program;
+    private int activeTextureUnit;
+    private final int[] textures = new int[MAX_TEXTURE_UNITS];
+    private int arrayBuffer;
+    private int elementArrayBuffer;
+    private int framebuffer;
+
+    /** The object whose vertex attribute pointers are current, or null if unknown */
+    private Object vertexLayout;
+
+    /** The enabled state of each tracked capability: 1, 0 or UNKNOWN */
+    private final int[] caps = new int[TRACKED_CAPS.length];
+
+    private int viewportX, viewportY, viewportWidth, viewportHeight;
+
+    /** The GL through which the calls are made, taken when the cache is reset */
+    private GL gl;
+
+    /** State-changing calls made to OpenGL, and dropped, in the current frame */
+    private int issuedCalls, skippedCalls;
+
+    /** State-changing calls made to OpenGL, and dropped, in the previous frame */
+    private volatile int lastIssuedCalls, lastSkippedCalls;
+
+    /** Holds the single name passed to each glDelete call */
+    private final int[] deletedName = new int[1];
+
+    private GLStateCache()
+    {
+        reset();
+    }
+
+    /** @return The state cache for the calling thread's OpenGL context. */
+    public static GLStateCache get()
+    {
+        return caches.get();
+    }
+
+    /** Forget all shadowed state. Must be called when a new context is made current,
+     * or after OpenGL state has been changed without going through this cache.
+     * Calls are then made through the thread's current GLBackend. */
+    public void reset()
+    {
+        gl = GLBackend.get();
+        program = UNKNOWN;
+        activeTextureUnit = UNKNOWN;
+        for(int i=0; i < textures.length; i++)
+            textures[i] = UNKNOWN;
+        arrayBuffer = UNKNOWN;
+        elementArrayBuffer = UNKNOWN;
+        framebuffer = UNKNOWN;
+        vertexLayout = null;
+        for(int i=0; i < caps.length; i++)
+            caps[i] = UNKNOWN;
+        viewportX = viewportY = viewportWidth = viewportHeight = UNKNOWN;
+    }
+
+    /** Start counting calls for a new frame, keeping the previous frame's counts. */
+    public void beginFrame()
+    {
+        lastIssuedCalls = issuedCalls;
+        lastSkippedCalls = skippedCalls;
+        issuedCalls = 0;
+        skippedCalls = 0;
+    }
+
+    /** Equivalent to glUseProgram. */
+    public void useProgram(int program)
+    {
+        if(this.program == program) { skippedCalls++; return; }
+
+        gl.glUseProgram(program);
+        this.program = program;
+        issuedCalls++;
+    }
+
+    /** Equivalent to glActiveTexture.
+     * @param unit The texture unit, from GL_TEXTURE0. */
+    public void activeTexture(int unit)
+    {
+        int index = unit - GLES20.GL_TEXTURE0;
+        if(activeTextureUnit == index) { skippedCalls++; return; }
+
+        gl.glActiveTexture(unit);
+        activeTextureUnit = index;
+        issuedCalls++;
+    }
+
+    /** Equivalent to glBindTexture with GL_TEXTURE_2D, on the active texture unit. */
+    public void bindTexture(int texture)
+    {
+        boolean tracked = activeTextureUnit >= 0 && activeTextureUnit < MAX_TEXTURE_UNITS;
+        if(tracked && textures[activeTextureUnit] == texture) { skippedCalls++; return; }
+
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+        if(tracked)
+            textures[activeTextureUnit] = texture;
+        issuedCalls++;
+    }
+
+    /** Equivalent to glBindBuffer.
+     * @param target GL_ARRAY_BUFFER or GL_ELEMENT_ARRAY_BUFFER. */
+    public void bindBuffer(int target, int buffer)
+    {
+        int current = target == GLES20.GL_ARRAY_BUFFER ? arrayBuffer : elementArrayBuffer;
+        if(current == buffer) { skippedCalls++; return; }
+
+        gl.glBindBuffer(target, buffer);
+        if(target == GLES20.GL_ARRAY_BUFFER)
+            arrayBuffer = buffer;
+        else
+            elementArrayBuffer = buffer;
+        issuedCalls++;
+    }
+
+    /** Equivalent to glBindFramebuffer with GL_FRAMEBUFFER. */
+    public void bindFramebuffer(int framebuffer)
+    {
+        if(this.framebuffer == framebuffer) { skippedCalls++; return; }
+
+        gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffer);
+        this.framebuffer = framebuffer;
+        issuedCalls++;
+    }
+
+    /**
+     * Record which object last pointed the vertex attributes at its vertex data.
+     * OpenGL ES 2.0 has a single set of attribute pointers, shared by all programs,
+     * so they only need to be set again when a different object has changed them.
+     * @param layout The object (for example, a shader) that is about to draw.
+     * @param attributes The number of attributes that the caller points, each with a
+     *                   glEnableVertexAttribArray and a glVertexAttribPointer call.
+     *                   Those calls are counted as issued, or as dropped.
+     * @return True if the caller must set its attribute pointers; false if they are current.
+     */
+    public boolean bindVertexLayout(Object layout, int attributes)
+    {
+        if(vertexLayout == layout) { skippedCalls += 2 * attributes; return false; }
+
+        vertexLayout = layout;
+        issuedCalls += 2 * attributes;
+        return true;
+    }
+
+    /** Forget which object's attribute pointers are current, because its
+     * vertex data or attribute locations have changed. */
+    public void invalidateVertexLayout()
+    {
+        vertexLayout = null;
+    }
+
+    /** Equivalent to glEnable. */
+    public void enable(int cap)
+    {
+        setCap(cap, true);
+    }
+
+    /** Equivalent to glDisable. */
+    public void disable(int cap)
+    {
+        setCap(cap, false);
+    }
+
+    private void setCap(int cap, boolean enabled)
+    {
+        int index = capIndex(cap);
+        int value = enabled ? 1 : 0;
+        if(index >= 0 && caps[index] == value) { skippedCalls++; return; }
+
+        if(enabled)
+            gl.glEnable(cap);
+        else
+            gl.glDisable(cap);
+        if(index >= 0)
+            caps[index] = value;
+        issuedCalls++;
+    }
+
+    /** @return The index of a capability in TRACKED_CAPS, or -1 if it is not tracked. */
+    private static int capIndex(int cap)
+    {
+        for(int i=0; i < TRACKED_CAPS.length; i++)
+            if(TRACKED_CAPS[i] == cap)
+                return i;
+        return -1;
+    }
+
+    /** Equivalent to glViewport. */
+    public void viewport(int x, int y, int width, int height)
+    {
+        if(viewportX == x && viewportY == y && viewportWidth == width && viewportHeight == height)
+        {
+            skippedCalls++;
+            return;
+        }
+
+        gl.glViewport(x, y, width, height);
+        viewportX = x;
+        viewportY = y;
+        viewportWidth = width;
+        viewportHeight = height;
+        issuedCalls++;
+    }
+
+    /** Equivalent to glDeleteProgram. */
+    public void deleteProgram(int program)
+    {
+        gl.glDeleteProgram(program);
+
+        // A program in use is only deleted once it is replaced, and its name may then be
+        // reused by a new program, so the next glUseProgram must always be issued
+        if(this.program == program)
+            this.program = UNKNOWN;
+    }
+
+    /** Equivalent to glDeleteTextures, for a single texture. */
+    public void deleteTexture(int texture)
+    {
+        deletedName[0] = texture;
+        gl.glDeleteTextures(1, deletedName, 0);
+
+        // OpenGL unbinds the texture from every unit to which it was bound
+        for(int i=0; i < textures.length; i++)
+            if(textures[i] == texture)
+                textures[i] = 0;
+    }
+
+    /** Equivalent to glDeleteBuffers, for a single buffer. */
+    public void deleteBuffer(int buffer)
+    {
+        deletedName[0] = buffer;
+        gl.glDeleteBuffers(1, deletedName, 0);
+
+        if(arrayBuffer == buffer)
+            arrayBuffer = 0;
+        if(elementArrayBuffer == buffer)
+            elementArrayBuffer = 0;
+    }
+
+    /** Equivalent to glDeleteFramebuffers, for a single framebuffer. */
+    public void deleteFramebuffer(int framebuffer)
+    {
+        deletedName[0] = framebuffer;
+        gl.glDeleteFramebuffers(1, deletedName, 0);
+
+        // Deleting the bound framebuffer reverts to the default framebuffer
+        if(this.framebuffer == framebuffer)
+            this.framebuffer = 0;
+    }
+
+    /** @return The number of state-changing calls made to OpenGL in the previous frame. */
+    public int getIssuedCalls()
+    {
+        return lastIssuedCalls;
+    }
+
+    /** @return The number of redundant state-changing calls dropped in the previous frame. */
+    public int getSkippedCalls()
+    {
+        return lastSkippedCalls;
+    }
+}
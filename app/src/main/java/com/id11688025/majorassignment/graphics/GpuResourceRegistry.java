@@ -0,0 +1,65 @@
+package com.id11688025.majorassignment.graphics;
+
+import java.util.ArrayList;
+
+/**
+ * The OpenGL objects that must be re-created when the context is lost,
+ * for example when the activity is paused.
+ *
+ * Each resource keeps the CPU-side copy from which it was created (vertex
+ * arrays, shader sources, decoded bitmaps), so restoring does no file access
+ * or parsing. Restoring happens in two passes: every resource first forgets
+ * its names from the lost context, and only then is re-created, so that a
+ * resource that uses another (a shader using a vertex buffer) never sees a
+ * stale name.
+ *
+ * Must only be used on the OpenGL thread.
+ */
+public class GpuResourceRegistry
+{
+    /** An object that owns OpenGL objects, and can re-create them. */
+    public interface Resource
+    {
+        /** Forget the names of OpenGL objects, which belonged to a context that
+         * has been lost. Must not call OpenGL, as the objects no longer exist. */
+        void discard();
+
+        /** Re-create the OpenGL objects in the current context, from CPU-side copies. */
+        void restore();
+    }
+
+    /** The registered resources, in the order in which they were added */
+    private final ArrayList<Resource> resources = new ArrayList<Resource>();
+
+    /** Register a resource to be restored with the context. Does nothing if it is already registered. */
+    public void add(Resource resource)
+    {
+        if(resource != null && !resources.contains(resource))
+            resources.add(resource);
+    }
+
+    /** Forget every registered resource. */
+    public void clear()
+    {
+        resources.clear();
+    }
+
+    /** Re-create every registered resource in a new context.
+     * @return The number of resources restored. */
+    public int restoreAll()
+    {
+        for(int i=0; i < resources.size(); i++)
+            resources.get(i).discard();
+
+        for(int i=0; i < resources.size(); i++)
+            resources.get(i).restore();
+
+        return resources.size();
+    }
+
+    /** @return The number of registered resources. */
+    public int size()
+    {
+        return resources.size();
+    }
+}
@@ -0,0 +1,14 @@
+package com.id11688025.majorassignment.graphics;
+
+/**
+ * What a render pass does with an attachment's contents when it begins.
+ */
+public enum LoadAction
+{
+    /** Fill with the clear value */
+    CLEAR,
+    /** Keep the contents from before the pass */
+    LOAD,
+    /** The contents are not read, and may be anything */
+    DONT_CARE
+}
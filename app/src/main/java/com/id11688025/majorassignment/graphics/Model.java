@@ -13,6 +13,7 @@ import com.id11688025.majorassignment.VertexBufferObject;
 import com.id11688025.majorassignment.math.Matrix;
 import com.id11688025.majorassignment.math.VertexPositionNormalTextureTangent;
 import com.id11688025.majorassignment.objparser.OBJModel;
+import com.id11688025.majorassignment.profiling.Tracing;
 
 import java.io.InputStream;
 
@@ -22,8 +23,15 @@ import java.io.InputStream;
  */
 public class Model
 {
-    /** The world transform matrix for this object */
-    private Matrix world = Matrix.createIdentity();
+    /** The world transform matrix for this object, changed in place */
+    private final Matrix world = Matrix.createIdentity();
+
+    /** The state from which command lists are recorded: copies of the world transformation,
+     * shader and texture, published on the OpenGL thread while no list is being recorded.
+     * A recorder on another thread reads these, and never the state being changed. */
+    private final Matrix publishedWorld = Matrix.createIdentity();
+    private Shader publishedShader;
+    private Texture2D publishedTexture;
 
     /** The shader that renders the object */
     private Shader shader;
@@ -37,6 +45,9 @@ public class Model
     /** The object's vertices */
     private VertexPositionNormalTextureTangent vertices[];
 
+    /** A sphere, centred on the origin, that contains the object however it is rotated */
+    private float boundingRadius;
+
     private ContentManager content;
 
     /** Should the model rotate by itself every update? */
@@ -78,6 +89,12 @@ public class Model
         // Provide the vertex buffer with the object's vertices
         vertexBuffer = new VertexBufferObject<VertexPositionNormalTextureTangent>(vertices);
 
+        // Find the vertex furthest from the origin, about which the object rotates
+        float maxDistanceSquared = 0;
+        for(VertexPositionNormalTextureTangent vertex : vertices)
+            maxDistanceSquared = Math.max(maxDistanceSquared, vertex.position.magnitudeSquared());
+        boundingRadius = (float)Math.sqrt(maxDistanceSquared);
+
         // TODO: Make texture image loading better
         //texture = content.loadTexture2D(R.drawable.concrete);
 
@@ -107,8 +124,8 @@ public class Model
     private void autoRotate(float gameTime)
     {
         // Rotation animation
-        world = Matrix.createRotationY(gameTime * 4f);
-        world = world.multiply(Matrix.createRotationZ(gameTime * 6f));
+        world.set(Matrix.createRotationY(gameTime * 4f));
+        Matrix.multiply(world, Matrix.createRotationZ(gameTime * 6f), world);
     }
 
     /** Draw the object to the OpenGL context */
@@ -122,19 +139,44 @@ public class Model
         shader.use(time);
 
         // Draw the object with triangles
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, vertices.length);
+        Tracing.begin("glDrawArrays");
+        GLBackend.get().glDrawArrays(GLES20.GL_TRIANGLES, 0, vertices.length);
+        Tracing.end();
+    }
+
+    /** Copy the object's world transformation, shader and texture into the state from
+     * which command lists are recorded. Call on the OpenGL thread, while no list is. */
+    public void publish()
+    {
+        publishedWorld.set(world);
+        publishedShader = shader;
+        publishedTexture = texture;
+    }
+
+    /** Record the drawing of the object, as last published, into a command list. */
+    public void record(CommandList list, Matrix view, Matrix projection, float time)
+    {
+        record(list, view, projection, time, publishedShader);
+    }
+
+    /** Record the drawing of the object, as last published, with another shader.
+     * @param shader A shader that has been given this model's vertices. */
+    public void record(CommandList list, Matrix view, Matrix projection, float time, Shader shader)
+    {
+        list.useShader(shader, publishedTexture, publishedWorld, view, projection, time);
+        list.drawArrays(GLES20.GL_TRIANGLES, 0, vertices.length);
     }
 
-    /** Set this model's world transformation */
+    /** Set this model's world transformation. The matrix is copied. */
     public void setTransform(Matrix matrix)
     {
-        world = matrix;
+        world.set(matrix);
     }
 
-    /** Transform this model by a matrix */
+    /** Transform this model by a matrix, in place, without allocating */
     public void transform(Matrix matrix)
     {
-        world = world.multiply(matrix);
+        Matrix.multiply(world, matrix, world);
     }
 
     /** Specify whether the model should rotate automatically,
@@ -146,6 +188,40 @@ public class Model
         rotateAudomatically = condition;
     }
 
+    /** @return True if the model's appearance changes over time,
+     * because it rotates automatically, or its shader reads the time. */
+    public boolean isAnimated()
+    {
+        return rotateAudomatically || shader.usesTime();
+    }
+
+    /** @return This model's world transformation. The same matrix object
+     * is changed in place whenever the transformation changes. */
+    public Matrix getWorld()
+    {
+        return world;
+    }
+
+    /** @return The world transformation as last published, from which command lists are
+     * recorded. The same matrix object is changed in place by each publish(). */
+    public Matrix getPublishedWorld()
+    {
+        return publishedWorld;
+    }
+
+    /** @return The texture as last published, from which command lists are recorded. */
+    public Texture2D getPublishedTexture()
+    {
+        return publishedTexture;
+    }
+
+    /** @return The radius of a sphere, centred on the origin, that contains
+     * the object in any orientation. */
+    public float getBoundingRadius()
+    {
+        return boundingRadius;
+    }
+
     public Shader getCurrentShader()
     {
         return shader;
@@ -165,7 +241,21 @@ public class Model
         texture = content.loadTexture2D(textureDataStream);
     }
 
+    /** Register the OpenGL objects that draw this model (vertex buffer, shader and
+     * texture), so that they are re-created if the context is lost. */
+    public void registerResources(GpuResourceRegistry registry)
+    {
+        registry.add(vertexBuffer);
+        registry.add(shader);
+        registry.add(texture);
+    }
+
     public Texture2D getTexture() {
         return texture;
     }
+
+    /** @return The "Vertex Buffer Object" that stores the vertices for this object. */
+    public VertexBufferObject<VertexPositionNormalTextureTangent> getVertexBuffer() {
+        return vertexBuffer;
+    }
 }
@@ -0,0 +1,389 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.id11688025.majorassignment.ContentManager;
+import com.id11688025.majorassignment.VertexBufferObject;
+import com.id11688025.majorassignment.math.Matrix;
+import com.id11688025.majorassignment.math.VertexPosition;
+import com.id11688025.majorassignment.shaders.UniformCache;
+import com.id11688025.majorassignment.timing.FrameClock;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Shows how many times each pixel is shaded when the model is drawn, to tell
+ * overdraw apart from the cost of the fragment shader itself.
+ *
+ * The model's positions are drawn into a small offscreen target with additive
+ * blending, each fragment that passes the depth test adding one to the pixel's
+ * red channel. The depth test is kept, so the counts are of the fragments that
+ * would be shaded in the model's current draw order; if a depth pre-pass is
+ * given, its depth is drawn first and only equal fragments are counted, as
+ * when the pre-pass is drawn for real. The counts are shown as a heatmap, and
+ * read back now and then for summary statistics.
+ *
+ * Counting at a low resolution keeps the read-back cheap, at the cost of
+ * missing triangles thinner than a low-resolution pixel. Counts saturate at 255.
+ *
+ * The counting draws are recorded into a CommandList, which may be done off the
+ * OpenGL thread, and replayed between begin() and end(). Otherwise, must only be
+ * used on the OpenGL thread that created it.
+ */
+public class OverdrawView implements GpuResourceRegistry.Resource, CommandList.PositionProgram
+{
+    /** Receives summary statistics on the UI thread. */
+    public interface Listener
+    {
+        /**
+         * @param averageOverdraw The mean number of fragments shaded per pixel that the model covers.
+         * @param maxOverdraw The largest number of fragments shaded at any pixel.
+         * @param coverage The fraction of the viewport that the model covers, from 0 to 1.
+         * @param fragments The estimated number of fragments shaded per frame at native resolution.
+         */
+        void onMeasured(float averageOverdraw, int maxOverdraw, float coverage, long fragments);
+    }
+
+    /** The asset paths of the counting and heatmap shaders */
+    private static final String VERTEX_SHADER_PATH = "shaders/depth.vs.glsl";
+    private static final String FRAGMENT_SHADER_PATH = "shaders/overdraw.fs.glsl";
+    private static final String HEATMAP_SHADER_PATH = "shaders/heatmap.fs.glsl";
+
+    /** The class tag for Logcat tracing */
+    private static final String TAG = "OVERDRAW_VIEW";
+
+    /** The largest width or height, in pixels, at which fragments are counted */
+    private static final int MAX_TARGET_SIZE = 256;
+
+    /** The shortest time between read-backs, so that the stall is not paid every frame */
+    private static final long READBACK_INTERVAL_NANOS = 250 * 1000000L;
+
+    /** The number of bytes per RGBA pixel */
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /** The shader sources, kept so that the program can be re-created */
+    private final String vertexSource, fragmentSource;
+
+    /** The names (IDs) of the shaders and program */
+    private int vertexShaderName, fragmentShaderName, programName;
+
+    /** The locations of the position attribute and the matrix uniforms */
+    private int positionLocation, modelViewLocation, projectionLocation;
+
+    /** Skips uploads of uniform values that have not changed */
+    private final UniformCache uniforms = new UniformCache();
+
+    /** The positions of the model's vertices, and the vertex buffer they were taken from */
+    private VertexBufferObject<VertexPosition> positions;
+    private VertexBufferObject sourceVertices;
+
+    /** Shows the counts on the screen */
+    private final FullScreenTriangle heatmap;
+
+    /** The location of the heatmap shader's texture uniform */
+    private int heatmapTextureLocation;
+
+    /** The target in which fragments are counted. Created on demand. */
+    private RenderTarget2D target;
+
+    /** Counts from zero; the depth is only needed while counting */
+    private final RenderPass countPass = new RenderPass(LoadAction.CLEAR, StoreAction.STORE,
+            LoadAction.CLEAR, StoreAction.DONT_CARE);
+
+    /** The counts read back from the target, reused between read-backs */
+    private ByteBuffer pixels;
+
+    /** The source of time for spacing read-backs */
+    private final FrameClock clock;
+
+    /** The time of the last read-back */
+    private long lastReadbackNanos;
+
+    /** Has a frame been counted since the last read-back? */
+    private boolean measurementPending = false;
+
+    /** Receives summary statistics, or null */
+    private final Listener listener;
+
+    /** Delivers statistics to the UI thread */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Compile the counting and heatmap programs. Must be called on the OpenGL thread.
+     * @param content The content manager, from which the shaders are read.
+     * @param clock The source of time for spacing read-backs.
+     * @param listener Receives summary statistics on the UI thread, or null.
+     */
+    public OverdrawView(ContentManager content, FrameClock clock, Listener listener)
+    {
+        this.clock = clock;
+        this.listener = listener;
+
+        vertexSource = content.fileAsString(VERTEX_SHADER_PATH);
+        fragmentSource = content.fileAsString(FRAGMENT_SHADER_PATH);
+        create();
+
+        heatmap = new FullScreenTriangle(content, content.fileAsString(HEATMAP_SHADER_PATH));
+        heatmapTextureLocation = heatmap.getUniformLocation("texture");
+    }
+
+    /** Compile and link the counting program. */
+    private void create()
+    {
+        GL gl = GLBackend.get();
+        vertexShaderName = compile(GLES20.GL_VERTEX_SHADER, vertexSource);
+        fragmentShaderName = compile(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+
+        programName = gl.glCreateProgram();
+        gl.glAttachShader(programName, vertexShaderName);
+        gl.glAttachShader(programName, fragmentShaderName);
+        gl.glLinkProgram(programName);
+
+        int[] status = new int[1];
+        gl.glGetProgramiv(programName, GLES20.GL_LINK_STATUS, status, 0);
+        if(status[0] == 0)
+            Log.d(TAG, gl.glGetProgramInfoLog(programName));
+
+        positionLocation = gl.glGetAttribLocation(programName, "vPosition");
+        modelViewLocation = gl.glGetUniformLocation(programName, "mv_matrix");
+        projectionLocation = gl.glGetUniformLocation(programName, "projection");
+
+        uniforms.reset();
+    }
+
+    /** Compile a shader module.
+     * @return The name (ID) of the shader module. */
+    private static int compile(int type, String source)
+    {
+        GL gl = GLBackend.get();
+        int name = gl.glCreateShader(type);
+        gl.glShaderSource(name, source);
+        gl.glCompileShader(name);
+        return name;
+    }
+
+    /**
+     * Start counting into the offscreen target. Replay the counting draws next, then call end().
+     * @param viewportWidth The width of the viewport, in pixels, whose aspect ratio is kept.
+     * @param viewportHeight The height of the viewport, in pixels.
+     */
+    public void begin(int viewportWidth, int viewportHeight)
+    {
+        createTarget(viewportWidth, viewportHeight);
+        countPass.begin(target);
+    }
+
+    /**
+     * Record the draws that count the fragments shaded at each pixel when the model is drawn.
+     * Recording may be done off the OpenGL thread, while the OpenGL thread does not publish
+     * the model.
+     * @param list The list that receives the commands.
+     * @param model The model to draw, as last published.
+     * @param prePass The depth pre-pass whose depth is drawn first, or null.
+     * @param view The camera's view matrix.
+     * @param projection The camera's projection matrix.
+     */
+    public void record(CommandList list, Model model, DepthPrePass prePass, Matrix view, Matrix projection)
+    {
+        // Lay down the nearest depth first, as the pre-pass would
+        if(prePass != null)
+        {
+            list.colorMask(false, false, false, false);
+            prePass.recordDepth(list, model, view, projection);
+            list.colorMask(true, true, true, true);
+            list.depthFunc(GLES20.GL_EQUAL);
+            list.depthMask(false);
+        }
+
+        VertexBufferObject vertices = model.getVertexBuffer();
+        list.enable(GLES20.GL_BLEND);
+        list.blendFunc(GLES20.GL_ONE, GLES20.GL_ONE);
+        list.usePositionProgram(this, vertices, model.getPublishedWorld(), view, projection);
+        list.drawArrays(GLES20.GL_TRIANGLES, 0, vertices.vertexCount());
+        list.disable(GLES20.GL_BLEND);
+
+        if(prePass != null)
+        {
+            list.depthMask(true);
+            list.depthFunc(GLES20.GL_LEQUAL);
+        }
+    }
+
+    /**
+     * Stop counting, and read the counts back if enough time has passed since the last
+     * read-back. Leaves the screen's framebuffer bound; the caller must begin a pass on
+     * the screen, then call drawHeatmap().
+     * @param viewportPixels The number of pixels in the viewport.
+     */
+    public void end(int viewportPixels)
+    {
+        measurementPending = true;
+        if(clock.nanoTime() - lastReadbackNanos >= READBACK_INTERVAL_NANOS)
+            readBack(viewportPixels);
+
+        countPass.end();
+        target.unbind();
+    }
+
+    /** Create the counting target, or re-create it if the viewport's shape has changed. */
+    private void createTarget(int viewportWidth, int viewportHeight)
+    {
+        GL gl = GLBackend.get();
+        float scale = Math.min(1.0f, (float)MAX_TARGET_SIZE / Math.max(viewportWidth, viewportHeight));
+        int width = Math.max(1, Math.round(viewportWidth * scale));
+        int height = Math.max(1, Math.round(viewportHeight * scale));
+
+        if(target == null || target.getWidth() != width || target.getHeight() != height)
+        {
+            if(target != null)
+                target.release();
+            target = new RenderTarget2D(width, height);
+
+            // Counts must not be blended with their neighbours when shown
+            GLStateCache.get().bindTexture(target.getColorTextureName());
+            gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+            gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+
+            pixels = ByteBuffer.allocateDirect(width * height * BYTES_PER_PIXEL).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /** Use the counting program, as a recorded command list is replayed. */
+    @Override
+    public void use(VertexBufferObject vertices, float[] matrices, int offset)
+    {
+        GLStateCache glState = GLStateCache.get();
+        GL gl = GLBackend.get();
+        glState.useProgram(programName);
+
+        // Take the positions from the model's vertices when the model changes
+        if(vertices != sourceVertices)
+        {
+            if(positions != null)
+                positions.release();
+            positions = vertices.createPositionBuffer();
+            sourceVertices = vertices;
+            glState.invalidateVertexLayout();
+        }
+
+        if(glState.bindVertexLayout(this, 1))
+        {
+            glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, positions.getBufferName());
+            gl.glEnableVertexAttribArray(positionLocation);
+            gl.glVertexAttribPointer(positionLocation, 3, GLES20.GL_FLOAT, false, 0, 0);
+        }
+
+        uniforms.setMatrix4(modelViewLocation, matrices, offset);
+        uniforms.setMatrix4(projectionLocation, matrices, offset + 16);
+    }
+
+    /** Read the counts back while the target is bound, and deliver their summary.
+     * @param viewportPixels The number of pixels in the viewport. */
+    private void readBack(int viewportPixels)
+    {
+        int width = target.getWidth(), height = target.getHeight();
+
+        pixels.clear();
+        GLBackend.get().glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, pixels);
+        lastReadbackNanos = clock.nanoTime();
+        measurementPending = false;
+
+        // Only the red channel holds a count
+        long total = 0;
+        int covered = 0, max = 0;
+        for(int i=0; i < width * height * BYTES_PER_PIXEL; i += BYTES_PER_PIXEL)
+        {
+            int count = pixels.get(i) & 0xFF;
+            if(count == 0)
+                continue;
+
+            total += count;
+            covered++;
+            if(count > max)
+                max = count;
+        }
+
+        if(listener == null)
+            return;
+
+        // Each counted pixel stands for this many pixels at native resolution
+        float pixelsPerCount = (float)viewportPixels / (width * height);
+
+        final float averageOverdraw = covered > 0 ? (float)total / covered : 0;
+        final int maxOverdraw = max;
+        final float coverage = (float)covered / (width * height);
+        final long fragments = Math.round(total * pixelsPerCount);
+
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onMeasured(averageOverdraw, maxOverdraw, coverage, fragments);
+            }
+        });
+    }
+
+    /** Show the counts over the whole viewport. Call end() first. */
+    public void drawHeatmap()
+    {
+        GLStateCache glState = GLStateCache.get();
+        glState.disable(GLES20.GL_DEPTH_TEST);
+
+        heatmap.use();
+        glState.activeTexture(GLES20.GL_TEXTURE0);
+        glState.bindTexture(target.getColorTextureName());
+        heatmap.getUniforms().set1i(heatmapTextureLocation, 0);
+        heatmap.draw();
+
+        glState.enable(GLES20.GL_DEPTH_TEST);
+    }
+
+    /** @return True if the last frame's counts have not been read back yet,
+     * so another frame must be drawn for the statistics to be up to date. */
+    public boolean isMeasurementPending()
+    {
+        return measurementPending;
+    }
+
+    @Override
+    public void discard()
+    {
+        vertexShaderName = fragmentShaderName = programName = 0;
+        if(positions != null)
+            positions.discard();
+        heatmap.discard();
+
+        // The target is re-created on demand
+        target = null;
+    }
+
+    /** Re-compile the programs and re-upload the positions, from the kept copies. */
+    @Override
+    public void restore()
+    {
+        create();
+        if(positions != null)
+            positions.restore();
+        heatmap.restore();
+        heatmapTextureLocation = heatmap.getUniformLocation("texture");
+    }
+
+    /** Delete the programs, the position buffer and the counting target. */
+    public void release()
+    {
+        GLStateCache glState = GLStateCache.get();
+        GL gl = GLBackend.get();
+        glState.deleteProgram(programName);
+        gl.glDeleteShader(vertexShaderName);
+        gl.glDeleteShader(fragmentShaderName);
+        if(positions != null)
+            positions.release();
+        heatmap.release();
+        if(target != null)
+            target.release();
+        target = null;
+    }
+}
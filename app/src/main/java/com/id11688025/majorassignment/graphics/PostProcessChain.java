@@ -0,0 +1,241 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.opengl.GLES20;
+
+import com.id11688025.majorassignment.ContentManager;
+import com.id11688025.majorassignment.profiling.PassTimer;
+import com.id11688025.majorassignment.profiling.RollingStatistics;
+import com.id11688025.majorassignment.timing.FrameClock;
+
+import java.util.ArrayList;
+
+/**
+ * Screen-space effects, such as blur, bloom or colour grading, written as
+ * fragment shaders that run one after another over the rendered scene.
+ *
+ * Each pass is drawn over the whole viewport, and may read:
+ * <ul>
+ *     <li>uniform sampler2D texture: the output of the previous pass, or the scene</li>
+ *     <li>uniform vec2 resolution: the size of the image, in pixels</li>
+ *     <li>uniform float time: the shader time</li>
+ *     <li>varying vec2 fTexture: the texture coordinates of the pixel, 0 to 1</li>
+ * </ul>
+ * The last pass draws on the screen. The passes before it draw into targets
+ * borrowed from a pool and given back as soon as the next pass has read them,
+ * so two targets are ping-ponged, however many passes there are.
+ *
+ * The GPU time of each pass is measured separately, so the frame's own draw
+ * timer must not be running.
+ *
+ * Must only be used on the OpenGL thread that created it.
+ */
+public class PostProcessChain implements GpuResourceRegistry.Resource
+{
+    /** The programs of the passes, in the order in which they are drawn */
+    private final ArrayList<FullScreenTriangle> programs = new ArrayList<FullScreenTriangle>();
+
+    /** The fragment shader source of each pass */
+    private final ArrayList<String> sources = new ArrayList<String>();
+
+    /** Measure the GPU time of each pass */
+    private final ArrayList<PassTimer> timers = new ArrayList<PassTimer>();
+
+    /** The locations of each pass's "texture", "resolution" and "time" uniforms */
+    private final ArrayList<int[]> locations = new ArrayList<int[]>();
+
+    /** Each intermediate image is drawn over entirely, and has no depth */
+    private final RenderPass intermediatePass = new RenderPass(LoadAction.DONT_CARE, StoreAction.STORE,
+            LoadAction.DONT_CARE, StoreAction.DONT_CARE);
+
+    /** The source of time for glFinish timing */
+    private final FrameClock clock;
+
+    /** The compiler log of the last pass that was added */
+    private String compilerLog = "";
+
+    /** @param clock The source of time for glFinish timing. */
+    public PostProcessChain(FrameClock clock)
+    {
+        this.clock = clock;
+    }
+
+    /**
+     * Compile a pass, and add it after the others. Must be called on the OpenGL thread.
+     * @param content The content manager, from which the vertex shader is read.
+     * @param fragmentSource The fragment shader source code.
+     * @return True if the pass compiled and was added; the log is kept either way.
+     */
+    public boolean add(ContentManager content, String fragmentSource)
+    {
+        FullScreenTriangle program = new FullScreenTriangle(content, fragmentSource);
+        compilerLog = program.getFragmentShaderLog();
+
+        if(!program.isCompiled())
+        {
+            program.release();
+            return false;
+        }
+
+        programs.add(program);
+        sources.add(fragmentSource);
+        timers.add(new PassTimer(clock));
+        locations.add(getLocations(program));
+        return true;
+    }
+
+    /** @return The locations of a program's "texture", "resolution" and "time" uniforms. */
+    private static int[] getLocations(FullScreenTriangle program)
+    {
+        return new int[] {
+                program.getUniformLocation("texture"),
+                program.getUniformLocation("resolution"),
+                program.getUniformLocation("time")
+        };
+    }
+
+    /**
+     * Remove the pass that was added with a source, such as one that hung the GPU.
+     * @param fragmentSource The source that was added.
+     * @return True if a pass was removed.
+     */
+    public boolean remove(String fragmentSource)
+    {
+        for(int i=0; i < sources.size(); i++)
+            if(sources.get(i).equals(fragmentSource))
+            {
+                programs.remove(i).release();
+                timers.remove(i).release();
+                sources.remove(i);
+                locations.remove(i);
+                return true;
+            }
+
+        return false;
+    }
+
+    /** Remove every pass. */
+    public void clear()
+    {
+        for(int i=0; i < programs.size(); i++)
+        {
+            programs.get(i).release();
+            timers.get(i).release();
+        }
+        programs.clear();
+        timers.clear();
+        sources.clear();
+        locations.clear();
+    }
+
+    /**
+     * Draw every pass, the last on the screen. Depth testing is disabled while drawing,
+     * and enabled again afterwards.
+     * @param scene The rendered scene, which is given back to the pool once read.
+     * @param pool The pool from which intermediate targets are borrowed.
+     * @param screenPass The pass in which the last pass draws on the screen. It is
+     *                   begun here, and must be ended by the caller.
+     * @param time The shader time.
+     * @param finishTiming True to time each pass with glFinish where timer queries
+     *                     are unsupported.
+     */
+    public void draw(RenderTarget2D scene, RenderTargetPool pool, RenderPass screenPass,
+                     float time, boolean finishTiming)
+    {
+        GLStateCache glState = GLStateCache.get();
+        glState.disable(GLES20.GL_DEPTH_TEST);
+
+        int width = scene.getWidth(), height = scene.getHeight();
+        RenderTarget2D input = scene;
+
+        for(int i=0; i < programs.size(); i++)
+        {
+            boolean last = i == programs.size() - 1;
+            FullScreenTriangle program = programs.get(i);
+            PassTimer timer = timers.get(i);
+            int[] location = locations.get(i);
+
+            // Collect the pass's times from previous frames
+            timer.collect();
+
+            RenderTarget2D output = null;
+            if(last)
+                screenPass.beginOnScreen(width, height);
+            else
+            {
+                output = pool.acquire(width, height, false);
+                intermediatePass.begin(output);
+            }
+
+            timer.begin(finishTiming);
+            program.use();
+            glState.activeTexture(GLES20.GL_TEXTURE0);
+            glState.bindTexture(input.getColorTextureName());
+            program.getUniforms().set1i(location[0], 0);
+            program.getUniforms().set2f(location[1], width, height);
+            program.getUniforms().set1f(location[2], time);
+            program.draw();
+            timer.end();
+
+            if(!last)
+                intermediatePass.end();
+
+            // The input has been read, and may be drawn over by a later pass
+            pool.release(input);
+            input = output;
+        }
+
+        glState.enable(GLES20.GL_DEPTH_TEST);
+    }
+
+    /** @return The number of passes. */
+    public int size()
+    {
+        return programs.size();
+    }
+
+    /** @return The fragment shader source of a pass. */
+    public String getSource(int pass)
+    {
+        return sources.get(pass);
+    }
+
+    /** @return Statistics of recent GPU times of a pass, in milliseconds. */
+    public RollingStatistics getTimes(int pass)
+    {
+        return timers.get(pass).getTimes();
+    }
+
+    /** @return The compiler log of the last pass that was added. */
+    public String getCompilerLog()
+    {
+        return compilerLog;
+    }
+
+    @Override
+    public void discard()
+    {
+        for(int i=0; i < programs.size(); i++)
+        {
+            programs.get(i).discard();
+            timers.get(i).discardQueries();
+        }
+    }
+
+    /** Re-compile every pass from its kept source. */
+    @Override
+    public void restore()
+    {
+        for(int i=0; i < programs.size(); i++)
+        {
+            programs.get(i).restore();
+            timers.get(i).createQueries();
+            locations.set(i, getLocations(programs.get(i)));
+        }
+    }
+
+    /** Delete every pass's program and timer queries. */
+    public void release()
+    {
+        clear();
+    }
+}
@@ -0,0 +1,868 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A GL that draws nothing, but counts and checks the calls made to it, so that
+ * the CPU side of a frame can be run, timed and profiled for allocations on a
+ * plain JVM, without a device.
+ *
+ * It counts calls, draws, state changes, uniform uploads, and bytes uploaded to
+ * and read back from the GPU. It checks that objects exist when they are bound,
+ * used or deleted, that a program is in use when drawing or setting uniforms,
+ * and that something is bound to receive buffer, texture and renderbuffer data.
+ * Each failed check is recorded as an error, which a real driver would have
+ * raised with glGetError, or ignored.
+ *
+ * Every shader compiles and every program links, with an empty log; uniforms and
+ * attributes of the same name share a location in every program. The context
+ * reports OpenGL ES 2.0 without extensions, so the renderer takes its ES 2.0 paths.
+ *
+ * Once objects are created, recording a frame allocates nothing, unless a check fails.
+ */
+public class RecordingGL implements GL
+{
+    /** The version string reported; an ES 2.0 context */
+    private static final String VERSION = "OpenGL ES 2.0 RecordingGL";
+
+    /** The kinds of object that a name may refer to */
+    private static final int NONE = 0, SHADER = 1, PROGRAM = 2, BUFFER = 3, TEXTURE = 4,
+            FRAMEBUFFER = 5, RENDERBUFFER = 6, QUERY = 7;
+
+    /** The number of texture units whose bindings are tracked */
+    private static final int TEXTURE_UNITS = 32;
+
+    /** The largest texture and renderbuffer size reported */
+    private static final int MAX_SIZE = 4096;
+
+    /** The number of error messages kept; later errors are only counted */
+    private static final int MAX_ERROR_MESSAGES = 32;
+
+    /** The kind of object that each name refers to, indexed by name */
+    private int[] kinds = new int[64];
+
+    /** The next name to give out. Names are unique across kinds, as in no driver,
+     * so that an object of one kind used as another is caught */
+    private int nextName = 1;
+
+    /** The next fence to give out */
+    private long nextSync = 1;
+
+    /** The bound or current objects */
+    private int program, arrayBuffer, framebuffer, renderbuffer, activeUnit, activeQueryTarget;
+    private final int[] textures = new int[TEXTURE_UNITS];
+
+    /** The location given to each uniform and attribute name */
+    private final HashMap<String, Integer> uniformLocations = new HashMap<String, Integer>();
+    private final HashMap<String, Integer> attribLocations = new HashMap<String, Integer>();
+
+    /** Counts since the last resetCounters() */
+    private int calls, drawCalls, stateChanges, uniformUploads;
+    private long verticesDrawn, uploadedBytes, readBackBytes;
+
+    /** The number of failed checks, and the first of their messages */
+    private int errorCount;
+    private final ArrayList<String> errors = new ArrayList<String>();
+
+    // == Counters ==
+
+    /** Reset the counts of calls, draws, state changes and bytes, for example at
+     * the start of each frame. Errors are kept. */
+    public void resetCounters()
+    {
+        calls = drawCalls = stateChanges = uniformUploads = 0;
+        verticesDrawn = uploadedBytes = readBackBytes = 0;
+    }
+
+    /** @return The number of calls made. */
+    public int getCalls()
+    {
+        return calls;
+    }
+
+    /** @return The number of glDrawArrays calls made. */
+    public int getDrawCalls()
+    {
+        return drawCalls;
+    }
+
+    /** @return The number of vertices drawn. */
+    public long getVerticesDrawn()
+    {
+        return verticesDrawn;
+    }
+
+    /** @return The number of calls that change the pipeline's state: binds,
+     * capabilities, the viewport and scissor, and fixed-function settings. */
+    public int getStateChanges()
+    {
+        return stateChanges;
+    }
+
+    /** @return The number of glUniform calls made. */
+    public int getUniformUploads()
+    {
+        return uniformUploads;
+    }
+
+    /** @return The number of bytes of buffer, texture and uniform data uploaded. */
+    public long getUploadedBytes()
+    {
+        return uploadedBytes;
+    }
+
+    /** @return The number of bytes read back with glReadPixels. */
+    public long getReadBackBytes()
+    {
+        return readBackBytes;
+    }
+
+    /** @return The number of objects created and not yet deleted. */
+    public int getLiveObjectCount()
+    {
+        int count = 0;
+        for(int i=1; i < nextName; i++)
+            if(kinds[i] != NONE)
+                count++;
+        return count;
+    }
+
+    /** @return The number of failed checks since the GL was created. */
+    public int getErrorCount()
+    {
+        return errorCount;
+    }
+
+    /** @return The messages of the first failed checks. */
+    public List<String> getErrors()
+    {
+        return errors;
+    }
+
+    // == Checks ==
+
+    /** Record a failed check. */
+    private void error(String function, String problem, int name)
+    {
+        errorCount++;
+        if(errors.size() < MAX_ERROR_MESSAGES)
+            errors.add(function + ": " + problem + " (" + name + ")");
+    }
+
+    /** @return True if a name refers to an object of a kind. */
+    private boolean is(int name, int kind)
+    {
+        return name > 0 && name < nextName && kinds[name] == kind;
+    }
+
+    /** Check that a name is 0 or refers to an object of a kind. */
+    private void checkBindable(String function, int name, int kind)
+    {
+        if(name != 0 && !is(name, kind))
+            error(function, "no such object", name);
+    }
+
+    /** Give out names for new objects of a kind. */
+    private void generate(int kind, int n, int[] names, int offset)
+    {
+        calls++;
+        for(int i=0; i < n; i++)
+            names[offset + i] = create(kind);
+    }
+
+    /** @return The name of a new object of a kind. */
+    private int create(int kind)
+    {
+        if(nextName == kinds.length)
+        {
+            int[] grown = new int[kinds.length * 2];
+            System.arraycopy(kinds, 0, grown, 0, kinds.length);
+            kinds = grown;
+        }
+
+        kinds[nextName] = kind;
+        return nextName++;
+    }
+
+    /** Delete objects of a kind, ignoring the name 0. */
+    private void delete(String function, int kind, int n, int[] names, int offset)
+    {
+        calls++;
+        for(int i=0; i < n; i++)
+            delete(function, kind, names[offset + i]);
+    }
+
+    /** Delete an object of a kind, unbinding it, and ignoring the name 0. */
+    private void delete(String function, int kind, int name)
+    {
+        if(name == 0)
+            return;
+        if(!is(name, kind))
+        {
+            error(function, "no such object", name);
+            return;
+        }
+
+        kinds[name] = NONE;
+        if(program == name) program = 0;
+        if(arrayBuffer == name) arrayBuffer = 0;
+        if(framebuffer == name) framebuffer = 0;
+        if(renderbuffer == name) renderbuffer = 0;
+        for(int i=0; i < textures.length; i++)
+            if(textures[i] == name)
+                textures[i] = 0;
+    }
+
+    /** Check that a program is in use, as a uniform is about to be set. */
+    private void uniform(String function, int location, int bytes)
+    {
+        calls++;
+        if(program == 0)
+            error(function, "no program in use", location);
+        else if(location != -1)
+        {
+            uniformUploads++;
+            uploadedBytes += bytes;
+        }
+    }
+
+    /** @return The bytes per pixel of an image format and type. */
+    private static int bytesPerPixel(int format, int type)
+    {
+        if(type != GLES20.GL_UNSIGNED_BYTE)
+            return 2;
+
+        switch(format)
+        {
+            case GLES20.GL_RGBA: return 4;
+            case GLES20.GL_RGB: return 3;
+            case GLES20.GL_LUMINANCE_ALPHA: return 2;
+            default: return 1;
+        }
+    }
+
+    /** @return The location of a name, given out the first time the name is seen. */
+    private static int locationOf(HashMap<String, Integer> locations, String name)
+    {
+        Integer location = locations.get(name);
+        if(location == null)
+        {
+            location = locations.size();
+            locations.put(name, location);
+        }
+        return location;
+    }
+
+    // == Shaders and programs ==
+
+    @Override
+    public int glCreateShader(int type)
+    {
+        calls++;
+        return create(SHADER);
+    }
+
+    @Override
+    public void glShaderSource(int shader, String string)
+    {
+        calls++;
+        if(!is(shader, SHADER))
+            error("glShaderSource", "no such shader", shader);
+    }
+
+    @Override
+    public void glCompileShader(int shader)
+    {
+        calls++;
+        if(!is(shader, SHADER))
+            error("glCompileShader", "no such shader", shader);
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset)
+    {
+        calls++;
+        params[offset] = pname == GLES20.GL_COMPILE_STATUS ? GLES20.GL_TRUE : 0;
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader)
+    {
+        calls++;
+        return "";
+    }
+
+    @Override
+    public void glDeleteShader(int shader)
+    {
+        calls++;
+        delete("glDeleteShader", SHADER, shader);
+    }
+
+    @Override
+    public int glCreateProgram()
+    {
+        calls++;
+        return create(PROGRAM);
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader)
+    {
+        calls++;
+        if(!is(program, PROGRAM))
+            error("glAttachShader", "no such program", program);
+        if(!is(shader, SHADER))
+            error("glAttachShader", "no such shader", shader);
+    }
+
+    @Override
+    public void glLinkProgram(int program)
+    {
+        calls++;
+        if(!is(program, PROGRAM))
+            error("glLinkProgram", "no such program", program);
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset)
+    {
+        calls++;
+        params[offset] = pname == GLES20.GL_LINK_STATUS ? GLES20.GL_TRUE : 0;
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program)
+    {
+        calls++;
+        return "";
+    }
+
+    @Override
+    public void glUseProgram(int program)
+    {
+        calls++;
+        stateChanges++;
+        checkBindable("glUseProgram", program, PROGRAM);
+        this.program = program;
+    }
+
+    @Override
+    public void glDeleteProgram(int program)
+    {
+        calls++;
+        delete("glDeleteProgram", PROGRAM, program);
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name)
+    {
+        calls++;
+        if(!is(program, PROGRAM))
+            error("glGetAttribLocation", "no such program", program);
+        return locationOf(attribLocations, name);
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name)
+    {
+        calls++;
+        if(!is(program, PROGRAM))
+            error("glGetUniformLocation", "no such program", program);
+        return locationOf(uniformLocations, name);
+    }
+
+    // == Uniforms ==
+
+    @Override
+    public void glUniform1f(int location, float x)
+    {
+        uniform("glUniform1f", location, 4);
+    }
+
+    @Override
+    public void glUniform2f(int location, float x, float y)
+    {
+        uniform("glUniform2f", location, 8);
+    }
+
+    @Override
+    public void glUniform3f(int location, float x, float y, float z)
+    {
+        uniform("glUniform3f", location, 12);
+    }
+
+    @Override
+    public void glUniform4f(int location, float x, float y, float z, float w)
+    {
+        uniform("glUniform4f", location, 16);
+    }
+
+    @Override
+    public void glUniform1i(int location, int x)
+    {
+        uniform("glUniform1i", location, 4);
+    }
+
+    @Override
+    public void glUniform2i(int location, int x, int y)
+    {
+        uniform("glUniform2i", location, 8);
+    }
+
+    @Override
+    public void glUniform3i(int location, int x, int y, int z)
+    {
+        uniform("glUniform3i", location, 12);
+    }
+
+    @Override
+    public void glUniform4i(int location, int x, int y, int z, int w)
+    {
+        uniform("glUniform4i", location, 16);
+    }
+
+    @Override
+    public void glUniform1fv(int location, int count, float[] v, int offset)
+    {
+        uniform("glUniform1fv", location, 4 * count);
+    }
+
+    @Override
+    public void glUniform2fv(int location, int count, float[] v, int offset)
+    {
+        uniform("glUniform2fv", location, 8 * count);
+    }
+
+    @Override
+    public void glUniform3fv(int location, int count, float[] v, int offset)
+    {
+        uniform("glUniform3fv", location, 12 * count);
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, float[] v, int offset)
+    {
+        uniform("glUniform4fv", location, 16 * count);
+    }
+
+    @Override
+    public void glUniformMatrix2fv(int location, int count, boolean transpose, float[] value, int offset)
+    {
+        uniform("glUniformMatrix2fv", location, 16 * count);
+    }
+
+    @Override
+    public void glUniformMatrix3fv(int location, int count, boolean transpose, float[] value, int offset)
+    {
+        uniform("glUniformMatrix3fv", location, 36 * count);
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset)
+    {
+        uniform("glUniformMatrix4fv", location, 64 * count);
+    }
+
+    // == Buffers and vertex attributes ==
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset)
+    {
+        generate(BUFFER, n, buffers, offset);
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer)
+    {
+        calls++;
+        stateChanges++;
+        checkBindable("glBindBuffer", buffer, BUFFER);
+        if(target == GLES20.GL_ARRAY_BUFFER)
+            arrayBuffer = buffer;
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage)
+    {
+        calls++;
+        if(target == GLES20.GL_ARRAY_BUFFER && arrayBuffer == 0)
+            error("glBufferData", "no buffer bound", size);
+        else if(data != null)
+            uploadedBytes += size;
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset)
+    {
+        delete("glDeleteBuffers", BUFFER, n, buffers, offset);
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index)
+    {
+        calls++;
+        if(index < 0)
+            error("glEnableVertexAttribArray", "no such attribute", index);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset)
+    {
+        calls++;
+        stateChanges++;
+        if(index < 0)
+            error("glVertexAttribPointer", "no such attribute", index);
+        else if(arrayBuffer == 0)
+            error("glVertexAttribPointer", "no buffer bound", index);
+    }
+
+    // == Textures ==
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset)
+    {
+        generate(TEXTURE, n, textures, offset);
+    }
+
+    @Override
+    public void glActiveTexture(int texture)
+    {
+        calls++;
+        stateChanges++;
+        activeUnit = texture - GLES20.GL_TEXTURE0;
+        if(activeUnit < 0 || activeUnit >= TEXTURE_UNITS)
+        {
+            error("glActiveTexture", "no such texture unit", texture);
+            activeUnit = 0;
+        }
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture)
+    {
+        calls++;
+        stateChanges++;
+        checkBindable("glBindTexture", texture, TEXTURE);
+        textures[activeUnit] = texture;
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param)
+    {
+        calls++;
+        if(textures[activeUnit] == 0)
+            error("glTexParameteri", "no texture bound", pname);
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height,
+                             int border, int format, int type, Buffer pixels)
+    {
+        calls++;
+        if(textures[activeUnit] == 0)
+            error("glTexImage2D", "no texture bound", level);
+        else if(pixels != null)
+            uploadedBytes += (long)width * height * bytesPerPixel(format, type);
+    }
+
+    @Override
+    public void texImage2D(int target, int level, Bitmap bitmap, int border)
+    {
+        calls++;
+        if(textures[activeUnit] == 0)
+            error("texImage2D", "no texture bound", level);
+        else
+            uploadedBytes += (long)bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset)
+    {
+        delete("glDeleteTextures", TEXTURE, n, textures, offset);
+    }
+
+    // == Framebuffers and renderbuffers ==
+
+    @Override
+    public void glGenFramebuffers(int n, int[] framebuffers, int offset)
+    {
+        generate(FRAMEBUFFER, n, framebuffers, offset);
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer)
+    {
+        calls++;
+        stateChanges++;
+        checkBindable("glBindFramebuffer", framebuffer, FRAMEBUFFER);
+        this.framebuffer = framebuffer;
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level)
+    {
+        calls++;
+        if(framebuffer == 0)
+            error("glFramebufferTexture2D", "no framebuffer bound", texture);
+        checkBindable("glFramebufferTexture2D", texture, TEXTURE);
+    }
+
+    @Override
+    public void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget,
+                                          int renderbuffer)
+    {
+        calls++;
+        if(framebuffer == 0)
+            error("glFramebufferRenderbuffer", "no framebuffer bound", renderbuffer);
+        checkBindable("glFramebufferRenderbuffer", renderbuffer, RENDERBUFFER);
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target)
+    {
+        calls++;
+        return GLES20.GL_FRAMEBUFFER_COMPLETE;
+    }
+
+    @Override
+    public void glInvalidateFramebuffer(int target, int numAttachments, int[] attachments, int offset)
+    {
+        calls++;
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int n, int[] framebuffers, int offset)
+    {
+        delete("glDeleteFramebuffers", FRAMEBUFFER, n, framebuffers, offset);
+    }
+
+    @Override
+    public void glGenRenderbuffers(int n, int[] renderbuffers, int offset)
+    {
+        generate(RENDERBUFFER, n, renderbuffers, offset);
+    }
+
+    @Override
+    public void glBindRenderbuffer(int target, int renderbuffer)
+    {
+        calls++;
+        stateChanges++;
+        checkBindable("glBindRenderbuffer", renderbuffer, RENDERBUFFER);
+        this.renderbuffer = renderbuffer;
+    }
+
+    @Override
+    public void glRenderbufferStorage(int target, int internalformat, int width, int height)
+    {
+        calls++;
+        if(renderbuffer == 0)
+            error("glRenderbufferStorage", "no renderbuffer bound", internalformat);
+    }
+
+    @Override
+    public void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset)
+    {
+        delete("glDeleteRenderbuffers", RENDERBUFFER, n, renderbuffers, offset);
+    }
+
+    // == Fixed-function state ==
+
+    @Override
+    public void glEnable(int cap)
+    {
+        calls++;
+        stateChanges++;
+    }
+
+    @Override
+    public void glDisable(int cap)
+    {
+        calls++;
+        stateChanges++;
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height)
+    {
+        calls++;
+        stateChanges++;
+    }
+
+    @Override
+    public void glScissor(int x, int y, int width, int height)
+    {
+        calls++;
+        stateChanges++;
+    }
+
+    @Override
+    public void glFrontFace(int mode)
+    {
+        calls++;
+        stateChanges++;
+    }
+
+    @Override
+    public void glDepthFunc(int func)
+    {
+        calls++;
+        stateChanges++;
+    }
+
+    @Override
+    public void glDepthMask(boolean flag)
+    {
+        calls++;
+        stateChanges++;
+    }
+
+    @Override
+    public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha)
+    {
+        calls++;
+        stateChanges++;
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor)
+    {
+        calls++;
+        stateChanges++;
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha)
+    {
+        calls++;
+        stateChanges++;
+    }
+
+    // == Drawing and reading back ==
+
+    @Override
+    public void glClear(int mask)
+    {
+        calls++;
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count)
+    {
+        calls++;
+        if(program == 0)
+            error("glDrawArrays", "no program in use", count);
+        else
+        {
+            drawCalls++;
+            verticesDrawn += count;
+        }
+    }
+
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels)
+    {
+        calls++;
+        readBackBytes += (long)width * height * bytesPerPixel(format, type);
+    }
+
+    @Override
+    public void glFinish()
+    {
+        calls++;
+    }
+
+    // == Queries and synchronization ==
+
+    @Override
+    public String glGetString(int name)
+    {
+        calls++;
+        switch(name)
+        {
+            case GLES20.GL_VERSION: return VERSION;
+            case GLES20.GL_RENDERER: return "RecordingGL";
+            case GLES20.GL_SHADING_LANGUAGE_VERSION: return "OpenGL ES GLSL ES 1.00";
+            default: return "";
+        }
+    }
+
+    @Override
+    public void glGetIntegerv(int pname, int[] params, int offset)
+    {
+        calls++;
+        params[offset] = pname == GLES20.GL_MAX_TEXTURE_SIZE || pname == GLES20.GL_MAX_RENDERBUFFER_SIZE
+                ? MAX_SIZE : 0;
+    }
+
+    @Override
+    public void glGenQueries(int n, int[] ids, int offset)
+    {
+        generate(QUERY, n, ids, offset);
+    }
+
+    @Override
+    public void glBeginQuery(int target, int id)
+    {
+        calls++;
+        if(!is(id, QUERY))
+            error("glBeginQuery", "no such query", id);
+        else if(activeQueryTarget != 0)
+            error("glBeginQuery", "a query is already active", id);
+        else
+            activeQueryTarget = target;
+    }
+
+    @Override
+    public void glEndQuery(int target)
+    {
+        calls++;
+        if(activeQueryTarget != target)
+            error("glEndQuery", "no query is active", target);
+        activeQueryTarget = 0;
+    }
+
+    @Override
+    public void glGetQueryObjectuiv(int id, int pname, int[] params, int offset)
+    {
+        calls++;
+        if(!is(id, QUERY))
+            error("glGetQueryObjectuiv", "no such query", id);
+
+        // Every result is available at once, and took no time
+        params[offset] = pname == GLES30.GL_QUERY_RESULT_AVAILABLE ? GLES20.GL_TRUE : 0;
+    }
+
+    @Override
+    public void glDeleteQueries(int n, int[] ids, int offset)
+    {
+        delete("glDeleteQueries", QUERY, n, ids, offset);
+    }
+
+    @Override
+    public long glFenceSync(int condition, int flags)
+    {
+        calls++;
+        return nextSync++;
+    }
+
+    @Override
+    public int glClientWaitSync(long sync, int flags, long timeout)
+    {
+        calls++;
+        return GLES30.GL_ALREADY_SIGNALED;
+    }
+
+    @Override
+    public void glDeleteSync(long sync)
+    {
+        calls++;
+    }
+}
@@ -0,0 +1,173 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+/**
+ * A span of drawing into one framebuffer, with declared actions for the colour
+ * and depth attachments at its start and end, so that a tile-based GPU moves
+ * no more of the framebuffer through memory than it must.
+ *
+ * At the start of the pass, attachments to CLEAR are cleared, and attachments
+ * that are DONT_CARE are discarded, or cleared where they cannot be (a clear
+ * costs next to nothing on a tiler, and also avoids the load). At the end,
+ * attachments that are DONT_CARE are discarded, so they are not written back.
+ * The traffic of each pass is added to the thread's BandwidthCounters.
+ *
+ * The colour is assumed to be RGBA8, and the depth 16-bit, as in RenderTarget2D
+ * and the default EGL configuration of a GLSurfaceView.
+ *
+ * Must only be used on an OpenGL thread. A pass may be begun again once ended.
+ */
+public class RenderPass
+{
+    /** The bytes per pixel of the colour and depth attachments */
+    private static final int COLOR_BYTES_PER_PIXEL = 4;
+    private static final int DEPTH_BYTES_PER_PIXEL = 2;
+
+    /** The actions for the colour attachment */
+    private final LoadAction colorLoad;
+    private final StoreAction colorStore;
+
+    /** The actions for the depth attachment */
+    private final LoadAction depthLoad;
+    private final StoreAction depthStore;
+
+    /** The colour to which the colour attachment is cleared */
+    private float clearRed, clearGreen, clearBlue, clearAlpha;
+
+    /** Is the current pass drawn on the screen, rather than on a render target? */
+    private boolean onScreen;
+
+    /** Does the current pass's framebuffer have a depth attachment? */
+    private boolean hasDepth;
+
+    /** The number of pixels in the current pass's framebuffer */
+    private long pixels;
+
+    /** The attachments to discard, reused between passes */
+    private final int[] attachments = new int[2];
+
+    /**
+     * @param colorLoad What is done with the colour at the start of the pass.
+     * @param colorStore What is done with the colour at the end of the pass.
+     * @param depthLoad What is done with the depth at the start of the pass.
+     * @param depthStore What is done with the depth at the end of the pass.
+     */
+    public RenderPass(LoadAction colorLoad, StoreAction colorStore, LoadAction depthLoad, StoreAction depthStore)
+    {
+        this.colorLoad = colorLoad;
+        this.colorStore = colorStore;
+        this.depthLoad = depthLoad;
+        this.depthStore = depthStore;
+    }
+
+    /** Set the colour to which the colour attachment is cleared. Black by default. */
+    public void setClearColor(float red, float green, float blue, float alpha)
+    {
+        this.clearRed = red;
+        this.clearGreen = green;
+        this.clearBlue = blue;
+        this.clearAlpha = alpha;
+    }
+
+    /** Begin drawing into a render target, over its whole area.
+     * The caller may then narrow the viewport. */
+    public void begin(RenderTarget2D target)
+    {
+        target.bind();
+        begin(false, target.hasDepth(), target.getWidth(), target.getHeight());
+    }
+
+    /** Begin drawing on the screen.
+     * @param width The width of the screen's framebuffer, in pixels.
+     * @param height The height of the screen's framebuffer, in pixels. */
+    public void beginOnScreen(int width, int height)
+    {
+        GLStateCache glState = GLStateCache.get();
+        glState.bindFramebuffer(0);
+        glState.viewport(0, 0, width, height);
+        begin(true, true, width, height);
+    }
+
+    /** Carry out the load actions on the bound framebuffer. */
+    private void begin(boolean onScreen, boolean hasDepth, int width, int height)
+    {
+        GL gl = GLBackend.get();
+        BandwidthCounters counters = BandwidthCounters.get();
+        this.onScreen = onScreen;
+        this.hasDepth = hasDepth;
+        this.pixels = (long)width * height;
+
+        int count = 0, clearBits = 0;
+
+        if(colorLoad == LoadAction.LOAD)
+            counters.addLoaded(pixels * COLOR_BYTES_PER_PIXEL);
+        else
+        {
+            counters.addSaved(pixels * COLOR_BYTES_PER_PIXEL);
+            if(colorLoad == LoadAction.DONT_CARE && counters.canInvalidate())
+                attachments[count++] = colorAttachment();
+            else
+                clearBits |= GLES20.GL_COLOR_BUFFER_BIT;
+        }
+
+        if(hasDepth && depthLoad == LoadAction.LOAD)
+            counters.addLoaded(pixels * DEPTH_BYTES_PER_PIXEL);
+        else if(hasDepth)
+        {
+            counters.addSaved(pixels * DEPTH_BYTES_PER_PIXEL);
+            if(depthLoad == LoadAction.DONT_CARE && counters.canInvalidate())
+                attachments[count++] = depthAttachment();
+            else
+                clearBits |= GLES20.GL_DEPTH_BUFFER_BIT;
+        }
+
+        if(count > 0)
+            gl.glInvalidateFramebuffer(GLES20.GL_FRAMEBUFFER, count, attachments, 0);
+
+        if((clearBits & GLES20.GL_COLOR_BUFFER_BIT) != 0)
+            gl.glClearColor(clearRed, clearGreen, clearBlue, clearAlpha);
+        if(clearBits != 0)
+            gl.glClear(clearBits);
+    }
+
+    /** End the pass, carrying out the store actions. The pass's framebuffer must still be bound. */
+    public void end()
+    {
+        BandwidthCounters counters = BandwidthCounters.get();
+        int count = 0;
+
+        // An attachment that cannot be discarded is stored anyway
+        if(colorStore == StoreAction.DONT_CARE && counters.canInvalidate())
+        {
+            attachments[count++] = colorAttachment();
+            counters.addSaved(pixels * COLOR_BYTES_PER_PIXEL);
+        }
+        else
+            counters.addStored(pixels * COLOR_BYTES_PER_PIXEL);
+
+        if(hasDepth && depthStore == StoreAction.DONT_CARE && counters.canInvalidate())
+        {
+            attachments[count++] = depthAttachment();
+            counters.addSaved(pixels * DEPTH_BYTES_PER_PIXEL);
+        }
+        else if(hasDepth)
+            counters.addStored(pixels * DEPTH_BYTES_PER_PIXEL);
+
+        if(count > 0)
+            GLBackend.get().glInvalidateFramebuffer(GLES20.GL_FRAMEBUFFER, count, attachments, 0);
+    }
+
+    /** @return The name of the colour attachment in the current pass's framebuffer. */
+    private int colorAttachment()
+    {
+        return onScreen ? GLES30.GL_COLOR : GLES20.GL_COLOR_ATTACHMENT0;
+    }
+
+    /** @return The name of the depth attachment in the current pass's framebuffer. */
+    private int depthAttachment()
+    {
+        return onScreen ? GLES30.GL_DEPTH : GLES20.GL_DEPTH_ATTACHMENT;
+    }
+}
@@ -0,0 +1,144 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.opengl.GLES20;
+
+/**
+ * An offscreen surface that can be drawn to instead of the screen.
+ *
+ * Wraps an OpenGL framebuffer object with a colour texture attachment,
+ * which may later be sampled, and optionally a depth renderbuffer attachment.
+ */
+public class RenderTarget2D
+{
+    /** The framebuffer name supplied by OpenGL */
+    private int framebufferName;
+
+    /** The name of the texture that receives colour */
+    private int colorTextureName;
+
+    /** The name of the renderbuffer that receives depth, or 0 if there is none */
+    private int depthRenderbufferName;
+
+    /** The width of the surface in pixels */
+    private final int width;
+
+    /** The height of the surface in pixels */
+    private final int height;
+
+    /**
+     * Create a render target with a depth buffer. Must be called on the OpenGL thread.
+     * @param width The width of the surface in pixels.
+     * @param height The height of the surface in pixels.
+     */
+    public RenderTarget2D(int width, int height)
+    {
+        this(width, height, true);
+    }
+
+    /**
+     * Create a render target. Must be called on the OpenGL thread.
+     * @param width The width of the surface in pixels.
+     * @param height The height of the surface in pixels.
+     * @param depth True to attach a depth buffer; images that are only drawn
+     *              over, such as post-processing passes, need none.
+     */
+    public RenderTarget2D(int width, int height, boolean depth)
+    {
+        GL gl = GLBackend.get();
+        this.width = width;
+        this.height = height;
+
+        GLStateCache glState = GLStateCache.get();
+        int[] names = new int[1];
+
+        // Allocate the colour texture, with no mipmaps, so that it is complete
+        gl.glGenTextures(1, names, 0);
+        colorTextureName = names[0];
+        glState.bindTexture(colorTextureName);
+        gl.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0,
+                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+
+        // Allocate the depth buffer
+        if(depth)
+        {
+            gl.glGenRenderbuffers(1, names, 0);
+            depthRenderbufferName = names[0];
+            gl.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, depthRenderbufferName);
+            gl.glRenderbufferStorage(GLES20.GL_RENDERBUFFER, GLES20.GL_DEPTH_COMPONENT16, width, height);
+        }
+
+        // Attach both to a new framebuffer
+        gl.glGenFramebuffers(1, names, 0);
+        framebufferName = names[0];
+        glState.bindFramebuffer(framebufferName);
+        gl.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+                GLES20.GL_TEXTURE_2D, colorTextureName, 0);
+        if(depth)
+            gl.glFramebufferRenderbuffer(GLES20.GL_FRAMEBUFFER, GLES20.GL_DEPTH_ATTACHMENT,
+                    GLES20.GL_RENDERBUFFER, depthRenderbufferName);
+
+        int status = gl.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+
+        // Return to drawing on the screen
+        glState.bindFramebuffer(0);
+
+        if(status != GLES20.GL_FRAMEBUFFER_COMPLETE)
+        {
+            release();
+            throw new RuntimeException("OpenGL ES could not create a " + width + "x" + height
+                    + " render target (status 0x" + Integer.toHexString(status) + ").");
+        }
+    }
+
+    /** Direct all drawing to this render target, covering its whole area. */
+    public void bind()
+    {
+        GLStateCache glState = GLStateCache.get();
+        glState.bindFramebuffer(framebufferName);
+        glState.viewport(0, 0, width, height);
+    }
+
+    /** Direct all drawing back to the screen. The caller must restore the viewport. */
+    public void unbind()
+    {
+        GLStateCache.get().bindFramebuffer(0);
+    }
+
+    /** Delete the OpenGL objects owned by this render target. */
+    public void release()
+    {
+        GLStateCache glState = GLStateCache.get();
+        glState.deleteFramebuffer(framebufferName);
+        if(depthRenderbufferName != 0)
+            GLBackend.get().glDeleteRenderbuffers(1, new int[]{depthRenderbufferName}, 0);
+        glState.deleteTexture(colorTextureName);
+    }
+
+    /** @return The name of the texture that receives colour */
+    public int getColorTextureName()
+    {
+        return colorTextureName;
+    }
+
+    /** @return True if the surface has a depth buffer */
+    public boolean hasDepth()
+    {
+        return depthRenderbufferName != 0;
+    }
+
+    /** @return The width of the surface in pixels */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /** @return The height of the surface in pixels */
+    public int getHeight()
+    {
+        return height;
+    }
+}
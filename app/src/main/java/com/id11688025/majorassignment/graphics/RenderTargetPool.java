@@ -0,0 +1,136 @@
+package com.id11688025.majorassignment.graphics;
+
+import java.util.ArrayList;
+
+/**
+ * Lends out render targets by size and format, so that passes which need an
+ * intermediate image every frame share a few targets, instead of creating
+ * new ones.
+ *
+ * A target that has been given back is lent again to the next request for its
+ * size and format, in the same frame or a later one. Targets that stay idle for
+ * a number of frames, such as those of a size the viewport no longer has, are
+ * deleted. Once every size in use has been requested, no more are created.
+ *
+ * Must only be used on the OpenGL thread.
+ */
+public class RenderTargetPool implements GpuResourceRegistry.Resource
+{
+    /** The number of frames after which an idle target is deleted */
+    private static final int MAX_IDLE_FRAMES = 60;
+
+    /** A target, and whether it is lent out */
+    private static class Entry
+    {
+        final RenderTarget2D target;
+        boolean inUse;
+        int lastUsedFrame;
+
+        Entry(RenderTarget2D target)
+        {
+            this.target = target;
+        }
+    }
+
+    /** Every target owned by the pool, lent out or idle */
+    private final ArrayList<Entry> entries = new ArrayList<Entry>();
+
+    /** The number of frames begun */
+    private int frame = 0;
+
+    /** The number of targets created since the pool was made */
+    private int createdCount = 0;
+
+    /** Start a new frame, deleting the targets that have been idle for too long. */
+    public void beginFrame()
+    {
+        frame++;
+
+        for(int i = entries.size() - 1; i >= 0; i--)
+        {
+            Entry entry = entries.get(i);
+            if(!entry.inUse && frame - entry.lastUsedFrame > MAX_IDLE_FRAMES)
+            {
+                entry.target.release();
+                entries.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Borrow a target, creating one only if none of its size and format is idle.
+     * @param width The width of the target, in pixels.
+     * @param height The height of the target, in pixels.
+     * @param depth True if the target needs a depth buffer.
+     * @return The target, to be given back with release() once its contents are consumed.
+     */
+    public RenderTarget2D acquire(int width, int height, boolean depth)
+    {
+        for(int i=0; i < entries.size(); i++)
+        {
+            Entry entry = entries.get(i);
+            RenderTarget2D target = entry.target;
+            if(!entry.inUse && target.getWidth() == width && target.getHeight() == height
+                    && target.hasDepth() == depth)
+            {
+                entry.inUse = true;
+                return target;
+            }
+        }
+
+        Entry entry = new Entry(new RenderTarget2D(width, height, depth));
+        entry.inUse = true;
+        entries.add(entry);
+        createdCount++;
+        return entry.target;
+    }
+
+    /** Give back a borrowed target, so that it may be lent again. */
+    public void release(RenderTarget2D target)
+    {
+        for(int i=0; i < entries.size(); i++)
+        {
+            Entry entry = entries.get(i);
+            if(entry.target == target)
+            {
+                entry.inUse = false;
+                entry.lastUsedFrame = frame;
+                return;
+            }
+        }
+    }
+
+    /** @return The number of targets owned by the pool, lent out or idle. */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /** @return The number of targets created since the pool was made. Stays constant
+     * while the sizes in use do not change. */
+    public int getCreatedCount()
+    {
+        return createdCount;
+    }
+
+    /** Forget every target, as they belonged to a context that has been lost. */
+    @Override
+    public void discard()
+    {
+        entries.clear();
+    }
+
+    /** Targets are re-created on demand. */
+    @Override
+    public void restore()
+    {
+    }
+
+    /** Delete every target. None may be lent out. */
+    public void releaseAll()
+    {
+        for(Entry entry : entries)
+            entry.target.release();
+        entries.clear();
+    }
+}
@@ -0,0 +1,270 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.opengl.GLES20;
+
+import com.id11688025.majorassignment.math.Matrix;
+import com.id11688025.majorassignment.math.Vector3;
+import com.id11688025.majorassignment.shaders.Shader;
+
+import java.util.ArrayList;
+
+/**
+ * A set of models laid out in a grid, for comparing one shader on several
+ * models, or several shaders on one model.
+ *
+ * Each cell is tested against the camera's frustum, and the visible cells
+ * are drawn in order of program, then texture, then vertex buffer, so that
+ * consecutive draws share as much OpenGL state as possible. Together with
+ * the state and uniform caches, a draw that shares its program and vertex
+ * buffer with the previous one costs only its model-view upload.
+ *
+ * The scene is drawn by recording it into a CommandList, which may be done off
+ * the OpenGL thread: culling, sorting and the matrix products are done while
+ * recording, from the state that each model last published. Recording allocates
+ * nothing once the list has grown to fit the grid.
+ */
+public class Scene
+{
+    /** The fraction of a cell that each model fills, leaving a margin between cells */
+    private static final float CELL_FILL = 0.9f;
+
+    /** A model, drawn with a particular shader, in one cell of the grid. */
+    private static class Entry
+    {
+        final Model model;
+        final Shader shader;
+
+        /** Places the model in its cell: a translation and a uniform scale */
+        Matrix cell;
+
+        /** The cell transformation combined with the model's own */
+        final Matrix world = new Matrix();
+
+        /** The centre of the cell, and the radius of the sphere that bounds the model in it */
+        float x, y, radius;
+
+        Entry(Model model, Shader shader)
+        {
+            this.model = model;
+            this.shader = shader;
+        }
+
+        /** @return The combined transformation, with the model's as last published.
+         * The model's is changed in place, so it is re-computed, into the same matrix,
+         * on every call. */
+        Matrix getWorld()
+        {
+            return Matrix.multiply(cell, model.getPublishedWorld(), world);
+        }
+    }
+
+    /** Every model in the scene, in grid order */
+    private final ArrayList<Entry> entries = new ArrayList<Entry>();
+
+    /** The visible entries of the current frame, in draw order */
+    private Entry[] visible = new Entry[0];
+
+    /** The number of visible entries in the current frame */
+    private int visibleCount;
+
+    /** The half-height of the region, at the origin, into which the grid is fitted */
+    private final float halfHeight;
+
+    /** The ratio of the viewport's width to its height */
+    private float aspectRatio = 1;
+
+    /** Must the cells be laid out again? */
+    private boolean layoutDirty = true;
+
+    /** The camera's view volume */
+    private final Frustum frustum = new Frustum();
+
+    /** The product of the projection and view, from which the frustum is computed */
+    private final Matrix viewProjection = new Matrix();
+
+    /**
+     * Create an empty scene.
+     * @param halfHeight Half the height of the region, around the origin,
+     *                   in which the grid is laid out. Usually the visible
+     *                   half-height at the camera's default distance.
+     */
+    public Scene(float halfHeight)
+    {
+        this.halfHeight = halfHeight;
+    }
+
+    /**
+     * Add a model to the next cell of the grid.
+     * @param model The model to draw.
+     * @param shader The shader with which to draw it. Must already have the
+     *               model's vertices (Shader.provideVertices).
+     */
+    public void add(Model model, Shader shader)
+    {
+        entries.add(new Entry(model, shader));
+        visible = new Entry[entries.size()];
+        layoutDirty = true;
+    }
+
+    /** @param aspectRatio The ratio of the viewport's width to its height. */
+    public void setAspectRatio(float aspectRatio)
+    {
+        this.aspectRatio = aspectRatio;
+        layoutDirty = true;
+    }
+
+    /** Arrange the cells in a grid with roughly the viewport's aspect ratio,
+     * and scale each model to fit its cell. */
+    private void layout()
+    {
+        int count = entries.size();
+        if(count == 0)
+            return;
+
+        int columns = (int)Math.ceil(Math.sqrt(count * aspectRatio));
+        columns = Math.max(1, Math.min(count, columns));
+        int rows = (count + columns - 1) / columns;
+
+        float cellSize = Math.min(2f * halfHeight * aspectRatio / columns, 2f * halfHeight / rows);
+
+        for(int i=0; i < count; i++)
+        {
+            Entry entry = entries.get(i);
+            int column = i % columns, row = i / columns;
+
+            entry.x = (column - (columns - 1) * 0.5f) * cellSize;
+            entry.y = ((rows - 1) * 0.5f - row) * cellSize;
+            entry.radius = cellSize * 0.5f * CELL_FILL;
+
+            float scale = entry.radius / Math.max(entry.model.getBoundingRadius(), 1e-6f);
+            entry.cell = Matrix.multiply(
+                    Matrix.createTranslation(new Vector3(entry.x, entry.y, 0)),
+                    Matrix.createScale(scale));
+        }
+
+        layoutDirty = false;
+    }
+
+    /**
+     * Record the drawing of every visible model. Call on one thread at a time, while
+     * the OpenGL thread neither changes the scene nor publishes its models.
+     * @param list The list that receives the commands.
+     * @param view The camera's view matrix.
+     * @param projection The camera's projection matrix.
+     * @param time The shader time.
+     */
+    public void record(CommandList list, Matrix view, Matrix projection, float time)
+    {
+        if(layoutDirty)
+            layout();
+
+        // The view and projection may be changed in place between recordings, so the frustum
+        // is re-computed every time; it costs little beside the cull
+        frustum.set(Matrix.multiply(projection, view, viewProjection));
+
+        // Cull: each model stays within its cell's sphere, however it rotates
+        visibleCount = 0;
+        for(int i=0; i < entries.size(); i++)
+        {
+            Entry entry = entries.get(i);
+            if(frustum.intersectsSphere(entry.x, entry.y, 0, entry.radius))
+                visible[visibleCount++] = entry;
+        }
+
+        sortByState(visible, visibleCount);
+
+        for(int i=0; i < visibleCount; i++)
+        {
+            Entry entry = visible[i];
+            list.useShader(entry.shader, entry.model.getPublishedTexture(), entry.getWorld(),
+                    view, projection, time);
+            list.drawArrays(GLES20.GL_TRIANGLES, 0, entry.model.getVertexBuffer().vertexCount());
+        }
+    }
+
+    /** Sort entries by program, then texture, then vertex buffer. An insertion sort
+     * allocates nothing, and is linear when the order is unchanged since the last frame. */
+    private static void sortByState(Entry[] entries, int count)
+    {
+        for(int i=1; i < count; i++)
+        {
+            Entry entry = entries[i];
+            int j = i - 1;
+            while(j >= 0 && compareState(entries[j], entry) > 0)
+            {
+                entries[j + 1] = entries[j];
+                j--;
+            }
+            entries[j + 1] = entry;
+        }
+    }
+
+    private static int compareState(Entry a, Entry b)
+    {
+        int order = compare(a.shader.getProgramName(), b.shader.getProgramName());
+        if(order != 0)
+            return order;
+
+        order = compare(textureName(a), textureName(b));
+        if(order != 0)
+            return order;
+
+        return compare(System.identityHashCode(a.model.getVertexBuffer()),
+                System.identityHashCode(b.model.getVertexBuffer()));
+    }
+
+    private static int textureName(Entry entry)
+    {
+        Texture2D texture = entry.model.getPublishedTexture();
+        return texture == null ? 0 : texture.getTextureName();
+    }
+
+    private static int compare(int a, int b)
+    {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+
+    /** @return True if any model's appearance changes over time. */
+    public boolean isAnimated()
+    {
+        for(int i=0; i < entries.size(); i++)
+        {
+            Entry entry = entries.get(i);
+            if(entry.shader.usesTime() || entry.model.isAnimated())
+                return true;
+        }
+        return false;
+    }
+
+    /** @return The number of models in the last list recorded. */
+    public int getVisibleCount()
+    {
+        return visibleCount;
+    }
+
+    /** @return The number of models in the scene. */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /** Register every shader in the scene, so that they are re-created if the context is lost. */
+    public void registerResources(GpuResourceRegistry registry)
+    {
+        for(int i=0; i < entries.size(); i++)
+            registry.add(entries.get(i).shader);
+    }
+
+    /** Delete every shader in the scene, except one that must be kept.
+     * @param keep A shader that is still used elsewhere, or null. */
+    public void release(Shader keep)
+    {
+        for(int i=0; i < entries.size(); i++)
+        {
+            Shader shader = entries.get(i).shader;
+            if(shader != keep)
+                shader.release();
+        }
+        entries.clear();
+    }
+}
@@ -0,0 +1,102 @@
+package com.id11688025.majorassignment.graphics;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+import javax.microedition.khronos.egl.EGLSurface;
+
+/**
+ * An OpenGL ES 2.0 context for a background thread, which shares
+ * textures, buffers and programs with the renderer's context.
+ *
+ * The context draws to a tiny pbuffer surface, which is never displayed;
+ * all useful drawing goes to render targets.
+ */
+public class SharedEGLContext
+{
+    /** EGL 1.3: Requests the client API version when creating a context */
+    private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+
+    /** EGL 1.3: Configurations that support OpenGL ES 2.0 */
+    private static final int EGL_OPENGL_ES2_BIT = 4;
+
+    /** The EGL interface */
+    private final EGL10 egl;
+
+    /** The display to which the context belongs */
+    private final EGLDisplay display;
+
+    /** The shared context */
+    private EGLContext context;
+
+    /** The placeholder surface that the context draws to */
+    private EGLSurface surface;
+
+    /**
+     * Create a context that shares resources with another.
+     * May be called on any thread.
+     * @param shareContext The renderer's context, from eglGetCurrentContext() on the renderer thread.
+     */
+    public SharedEGLContext(EGLContext shareContext)
+    {
+        egl = (EGL10) EGLContext.getEGL();
+
+        // The display is already initialized by the renderer; this only adds a reference
+        display = egl.eglGetDisplay(EGL10.EGL_DEFAULT_DISPLAY);
+        egl.eglInitialize(display, new int[2]);
+
+        // Choose a configuration that supports both ES 2.0 and pbuffers
+        int[] configAttributes = {
+                EGL10.EGL_RED_SIZE, 8,
+                EGL10.EGL_GREEN_SIZE, 8,
+                EGL10.EGL_BLUE_SIZE, 8,
+                EGL10.EGL_RENDERABLE_TYPE, EGL_OPENGL_ES2_BIT,
+                EGL10.EGL_SURFACE_TYPE, EGL10.EGL_PBUFFER_BIT,
+                EGL10.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] configCount = new int[1];
+        if(!egl.eglChooseConfig(display, configAttributes, configs, 1, configCount) || configCount[0] == 0)
+            throw new RuntimeException("EGL has no configuration that supports pbuffers.");
+
+        // Create the context in the same share group as the renderer
+        int[] contextAttributes = { EGL_CONTEXT_CLIENT_VERSION, 2, EGL10.EGL_NONE };
+        context = egl.eglCreateContext(display, configs[0], shareContext, contextAttributes);
+        if(context == null || context == EGL10.EGL_NO_CONTEXT)
+            throw new RuntimeException("EGL could not create a shared context (error 0x"
+                    + Integer.toHexString(egl.eglGetError()) + ").");
+
+        int[] surfaceAttributes = { EGL10.EGL_WIDTH, 1, EGL10.EGL_HEIGHT, 1, EGL10.EGL_NONE };
+        surface = egl.eglCreatePbufferSurface(display, configs[0], surfaceAttributes);
+        if(surface == null || surface == EGL10.EGL_NO_SURFACE)
+        {
+            egl.eglDestroyContext(display, context);
+            throw new RuntimeException("EGL could not create a pbuffer surface (error 0x"
+                    + Integer.toHexString(egl.eglGetError()) + ").");
+        }
+    }
+
+    /** Bind the context to the calling thread. */
+    public void makeCurrent()
+    {
+        if(!egl.eglMakeCurrent(display, surface, surface, context))
+            throw new RuntimeException("EGL could not make the shared context current (error 0x"
+                    + Integer.toHexString(egl.eglGetError()) + ").");
+    }
+
+    /** Unbind the context from the calling thread, and destroy it.
+     * Must be called on the thread that made the context current. */
+    public void release()
+    {
+        egl.eglMakeCurrent(display, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_CONTEXT);
+        egl.eglDestroySurface(display, surface);
+        egl.eglDestroyContext(display, context);
+    }
+
+    /** @return The renderer's current context. Must be called on the renderer thread. */
+    public static EGLContext getCurrentContext()
+    {
+        return ((EGL10) EGLContext.getEGL()).eglGetCurrentContext();
+    }
+}
@@ -0,0 +1,174 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.opengl.GLES20;
+
+import com.id11688025.majorassignment.ContentManager;
+import com.id11688025.majorassignment.math.Matrix;
+import com.id11688025.majorassignment.profiling.PassTimer;
+import com.id11688025.majorassignment.profiling.RollingStatistics;
+import com.id11688025.majorassignment.shaders.Shader;
+import com.id11688025.majorassignment.timing.FrameClock;
+
+/**
+ * Draws a model twice in one frame, split by a vertical divider: with a
+ * reference shader to the left, and with the model's own shader to the right.
+ *
+ * Both halves are drawn over the full viewport, with the scissor test limiting
+ * each to its side of the divider, so the model appears once, and the divider
+ * wipes between the two versions. Both shaders share the model's vertex buffer,
+ * and receive the same matrices and time.
+ *
+ * The GPU time of each half is measured separately. Timer queries cannot be
+ * nested, so the frame's own draw timer must not be running. Where timer
+ * queries are unsupported, each half may instead be timed by waiting for the
+ * GPU to finish (glFinish), which stalls.
+ *
+ * Must only be used on the OpenGL thread that created it, except to record.
+ */
+public class SplitScreenComparison implements GpuResourceRegistry.Resource
+{
+    /** Draws the left half */
+    private final Shader referenceShader;
+
+    /** The divider's position, as a fraction of the viewport width from the left */
+    private float divider = 0.5f;
+
+    /** Measure the GPU time of each half */
+    private final PassTimer referenceTimer, editorTimer;
+
+    /**
+     * Compile the reference shader. Must be called on the OpenGL thread.
+     * @param content The content manager, from which the vertex shader is read.
+     * @param referenceSource The fragment shader drawn to the left of the divider.
+     *                        Must compile.
+     * @param model The model being compared, whose vertices the reference shader shares.
+     * @param clock The source of time for glFinish timing.
+     */
+    public SplitScreenComparison(ContentManager content, String referenceSource, Model model, FrameClock clock)
+    {
+        referenceShader = new Shader(content, referenceSource);
+        referenceShader.provideVertices(model.getVertexBuffer());
+
+        referenceTimer = new PassTimer(clock);
+        editorTimer = new PassTimer(clock);
+    }
+
+    @Override
+    public void discard()
+    {
+        referenceShader.discard();
+        referenceTimer.discardQueries();
+        editorTimer.discardQueries();
+    }
+
+    /** Re-compile the reference shader, and create new timer queries. */
+    @Override
+    public void restore()
+    {
+        referenceShader.restore();
+        referenceTimer.createQueries();
+        editorTimer.createQueries();
+    }
+
+    /**
+     * Record the drawing of both halves, and their timing, into a command list that is
+     * replayed into the current framebuffer. Recording may be done off the OpenGL thread,
+     * while the OpenGL thread neither moves the divider nor publishes the model.
+     * @param list The list that receives the commands.
+     * @param model The model to draw, as last published.
+     * @param view The camera's view matrix.
+     * @param projection The camera's projection matrix.
+     * @param time The shader time.
+     * @param width The width of the viewport, in pixels.
+     * @param height The height of the viewport, in pixels.
+     * @param finishTiming True to time each half with glFinish where timer queries
+     *                     are unsupported.
+     */
+    public void record(CommandList list, Model model, Matrix view, Matrix projection, float time,
+                       int width, int height, boolean finishTiming)
+    {
+        // Collect the halves' times from previous frames
+        list.collectTimer(referenceTimer);
+        list.collectTimer(editorTimer);
+
+        int split = Math.round(width * divider);
+
+        list.enable(GLES20.GL_SCISSOR_TEST);
+
+        list.scissor(0, 0, split, height);
+        list.beginTimer(referenceTimer, finishTiming);
+        model.record(list, view, projection, time, referenceShader);
+        list.endTimer(referenceTimer);
+
+        list.scissor(split, 0, width - split, height);
+        list.beginTimer(editorTimer, finishTiming);
+        model.record(list, view, projection, time);
+        list.endTimer(editorTimer);
+
+        list.disable(GLES20.GL_SCISSOR_TEST);
+    }
+
+    /** Give the reference shader the vertices of a new model. */
+    public void setModel(Model model)
+    {
+        referenceShader.provideVertices(model.getVertexBuffer());
+    }
+
+    /**
+     * Move the divider. Each half's cost depends on its area, so the
+     * statistics of both halves are cleared.
+     * @param divider The divider's position, as a fraction of the viewport width.
+     */
+    public void setDivider(float divider)
+    {
+        divider = Math.max(0, Math.min(1, divider));
+        if(divider == this.divider)
+            return;
+
+        this.divider = divider;
+        referenceTimer.getTimes().clear();
+        editorTimer.getTimes().clear();
+    }
+
+    /** @return The divider's position, as a fraction of the viewport width from the left. */
+    public float getDivider()
+    {
+        return divider;
+    }
+
+    /** @return The shader drawn to the left of the divider. */
+    public Shader getReferenceShader()
+    {
+        return referenceShader;
+    }
+
+    /** @return Statistics of recent GPU times of the left (reference) half, in milliseconds.
+     * Empty if GPU time cannot be measured. */
+    public RollingStatistics getReferenceTimes()
+    {
+        return referenceTimer.getTimes();
+    }
+
+    /** @return Statistics of recent GPU times of the right (editor) half, in milliseconds.
+     * Empty if GPU time cannot be measured. */
+    public RollingStatistics getEditorTimes()
+    {
+        return editorTimer.getTimes();
+    }
+
+    /** @return The GPU time of both halves that was measured during the current frame,
+     * in milliseconds, or -1 if no new measurement of both became available. */
+    public float getNewTime()
+    {
+        float reference = referenceTimer.getNewTime(), editor = editorTimer.getNewTime();
+        return reference >= 0 && editor >= 0 ? reference + editor : -1;
+    }
+
+    /** Delete the reference shader and the timer queries. */
+    public void release()
+    {
+        referenceShader.release();
+        referenceTimer.release();
+        editorTimer.release();
+    }
+}
@@ -0,0 +1,12 @@
+package com.id11688025.majorassignment.graphics;
+
+/**
+ * What a render pass does with an attachment's contents when it ends.
+ */
+public enum StoreAction
+{
+    /** Keep the contents, to be sampled, read back or presented */
+    STORE,
+    /** The contents are not needed after the pass, and may be discarded */
+    DONT_CARE
+}
@@ -7,10 +7,10 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.opengl.GLES20;
-import android.opengl.GLUtils;
 
 import com.id11688025.majorassignment.Constants;
 import com.id11688025.majorassignment.ContentManager;
+import com.id11688025.majorassignment.profiling.Tracing;
 
 import java.io.InputStream;
 
@@ -18,7 +18,7 @@ import java.io.InputStream;
  * A structure that defines a two-dimensional texture,
  * and its OpenGL texture name.
  */
-public class Texture2D
+public class Texture2D implements GpuResourceRegistry.Resource
 {
     private SharedPreferences preferences;
 
@@ -51,7 +51,9 @@ public class Texture2D
         this.preferences = preferences;
 
         // Decode the bitmap from the Android resource ID provided
+        Tracing.begin("Texture2D.decode");
         textureBmp = BitmapFactory.decodeResource(content.getResources(), resourceID);
+        Tracing.end();
 
         initialize(textureBmp);
     }
@@ -61,16 +63,28 @@ public class Texture2D
         this.preferences = preferences;
 
         // Decode the bitmap from the InputStream data
+        Tracing.begin("Texture2D.decode");
         textureBmp = BitmapFactory.decodeStream(texture);
+        Tracing.end();
 
         initialize(textureBmp);
     }
 
     private void initialize(Bitmap textureBmp)
     {
+        textureFilteringMode = TextureFilteringMode.values()[preferences.getInt(Constants.KEY_SAMPLER_FILTER_MODE, 0)];
+        textureWrapMode = TextureWrapMode.values()[preferences.getInt(Constants.KEY_SAMPLER_TEXTURE_WRAP_MODE, 0)];
+
+        createTexture(textureBmp);
+    }
+
+    /** Create the OpenGL texture from the bitmap, with the current filtering and wrap modes. */
+    private void createTexture(Bitmap textureBmp)
+    {
+        GL gl = GLBackend.get();
         // Allocate a new texture in the OpenGL environment.
         int[] glTextureNames = new int[1];
-        GLES20.glGenTextures(1, glTextureNames, 0);
+        gl.glGenTextures(1, glTextureNames, 0);
         glTextureName = glTextureNames[0];
 
         // A texture name of '0' indicates a failure
@@ -78,20 +92,36 @@ public class Texture2D
             throw new RuntimeException("OpenGL ES could not allocate a new texture name.");
 
         // Bind the texture name to the texture-2D binding point
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, glTextureName);
+        GLStateCache.get().bindTexture(glTextureName);
 
         // Configure filtering mode
-        setTextureFilteringMode(TextureFilteringMode.values()[preferences.getInt(Constants.KEY_SAMPLER_FILTER_MODE, 0)]);
-        setTextureWrapMode(TextureWrapMode.values()[preferences.getInt(Constants.KEY_SAMPLER_TEXTURE_WRAP_MODE, 0)]);
+        setTextureFilteringMode(textureFilteringMode);
+        setTextureWrapMode(textureWrapMode);
 
         // Provide the texel data (mipmap 0, bitmap, 0 border)
-        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, textureBmp, 0);
+        Tracing.begin("Texture2D.upload");
+        gl.texImage2D(GLES20.GL_TEXTURE_2D, 0, textureBmp, 0);
+        Tracing.end();
 
         // Free the bitmap memory; OpenGL has it now
         // NOTE: We don't recycle anymore! We keep it!
         //textureBmp.recycle();
     }
 
+    @Override
+    public void discard()
+    {
+        glTextureName = 0;
+    }
+
+    /** Re-create the texture from the decoded bitmap, which is kept for this purpose. */
+    @Override
+    public void restore()
+    {
+        if(textureBmp != null)
+            createTexture(textureBmp);
+    }
+
     /** @return The OpenGL texture name for this texture */
     public int getTextureName()
     {
@@ -110,6 +140,7 @@ public class Texture2D
 
     public void setTextureFilteringMode(TextureFilteringMode mode)
     {
+        GL gl = GLBackend.get();
         this.textureFilteringMode = mode;
 
         int glFilteringMode = -1;
@@ -119,12 +150,16 @@ public class Texture2D
             case NEAREST: glFilteringMode = GLES20.GL_NEAREST; break;
         }
 
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, glFilteringMode);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, glFilteringMode);
+        // Texture parameters apply to the bound texture, which may not be this one
+        GLStateCache.get().bindTexture(glTextureName);
+
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, glFilteringMode);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, glFilteringMode);
     }
 
     public void setTextureWrapMode(TextureWrapMode textureWrapMode)
     {
+        GL gl = GLBackend.get();
         this.textureWrapMode = textureWrapMode;
 
         int glWrapMode = -1;
@@ -135,7 +170,9 @@ public class Texture2D
             case CLAMP_EDGE: glWrapMode = GLES20.GL_CLAMP_TO_EDGE;   break;
         }
 
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, glWrapMode);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, glWrapMode);
+        GLStateCache.get().bindTexture(glTextureName);
+
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, glWrapMode);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, glWrapMode);
     }
 }
@@ -72,6 +72,6 @@ public class Triangle
         shader.use(time);
 
         // Draw the triangle
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, vertices.length);
+        GLBackend.get().glDrawArrays(GLES20.GL_TRIANGLES, 0, vertices.length);
     }
 }
@@ -51,6 +51,35 @@ public class Matrix
         this.data = data.clone();
     }
 
+    /** Overwrite this matrix with an array of floating point data, in the order
+     * that the constructor takes, without allocating.
+     * @param data Array of floats that define the 4x4 matrix. Must be 16 elements long.
+     * @return This matrix.
+     */
+    public Matrix set(float[] data)
+    {
+        if(data.length != ROWS * COLS)
+            throw new RuntimeException(
+                    "The 1-D floating point array passed to the matrix must be of size 16.");
+
+        for(int i=0; i < ROWS; i++)
+            for(int j=0; j < COLS; j++)
+                this.data[i][j] = data[i * COLS + j];
+
+        return this;
+    }
+
+    /** Overwrite this matrix with a copy of another, without allocating.
+     * @return This matrix.
+     */
+    public Matrix set(Matrix other)
+    {
+        for(int i=0; i < ROWS; i++)
+            System.arraycopy(other.data[i], 0, data[i], 0, COLS);
+
+        return this;
+    }
+
     /**
      * @return This matrix as a one-dimensional floating-point array.
      */
@@ -65,6 +94,31 @@ public class Matrix
         return result;
     }
 
+    /**
+     * Copy this matrix into an array in column-major order, as OpenGL ES expects.
+     * @param result An array of at least 16 elements, which receives the matrix.
+     * @return The result array.
+     */
+    public float[] asColumnMajorArray(float[] result)
+    {
+        return asColumnMajorArray(result, 0);
+    }
+
+    /**
+     * Copy this matrix into part of an array in column-major order, as OpenGL ES expects.
+     * @param result An array that receives the matrix in 16 elements, from the offset on.
+     * @param offset The index at which the matrix starts.
+     * @return The result array.
+     */
+    public float[] asColumnMajorArray(float[] result, int offset)
+    {
+        for(int i=0; i < ROWS; i++)
+            for(int j=0; j < COLS; j++)
+                result[offset + j * ROWS + i] = data[i][j];
+
+        return result;
+    }
+
     public static Matrix multiply(Matrix lhs, Matrix rhs)
     {
         float[][] matA = lhs.data;
@@ -85,6 +139,53 @@ public class Matrix
         return multiply(this, other);
     }
 
+    /**
+     * Compute a matrix-matrix product into an existing matrix, without allocating.
+     * @param result The matrix that receives the product. May be lhs, but not rhs.
+     * @return The result matrix.
+     */
+    public static Matrix multiply(Matrix lhs, Matrix rhs, Matrix result)
+    {
+        float[][] matB = rhs.data;
+
+        // Each row of the product depends only on the same row of lhs,
+        // so a row may be written once it has been computed
+        for(int i=0; i < ROWS; i++)
+        {
+            float[] rowA = lhs.data[i];
+            float a0 = rowA[0], a1 = rowA[1], a2 = rowA[2], a3 = rowA[3];
+            float[] row = result.data[i];
+            for(int j=0; j < COLS; j++)
+                row[j] = a0 * matB[0][j] + a1 * matB[1][j] + a2 * matB[2][j] + a3 * matB[3][j];
+        }
+
+        return result;
+    }
+
+    /**
+     * Compute a matrix-matrix product into an array, in column-major order, as
+     * OpenGL ES expects, without allocating.
+     * @param result An array of at least offset + 16 elements, which receives the product.
+     * @param offset The index at which the product starts.
+     * @return The result array.
+     */
+    public static float[] multiply(Matrix lhs, Matrix rhs, float[] result, int offset)
+    {
+        float[][] matA = lhs.data;
+        float[][] matB = rhs.data;
+
+        for(int i=0; i < ROWS; i++)
+            for(int j=0; j < COLS; j++)
+            {
+                float sum = 0;
+                for(int k=0; k < COLS; k++)
+                    sum += matA[i][k] * matB[k][j];
+                result[offset + j * ROWS + i] = sum;
+            }
+
+        return result;
+    }
+
     /**
      * Create an identity matrix.
      * @return A new identity matrix.
@@ -4,6 +4,7 @@ import com.id11688025.majorassignment.ContentManager;
 import com.id11688025.majorassignment.MainActivity;
 import com.id11688025.majorassignment.math.Vector3;
 import com.id11688025.majorassignment.math.VertexPositionNormalTextureTangent;
+import com.id11688025.majorassignment.profiling.Tracing;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -35,7 +36,7 @@ public class OBJModel
      * Create and parse a new OBJ model.
      * @param content The content manager.
      * @param path The path to the asset file of the OBJ model.
-     * @param asyncTask The OBJLoaderTask that displays the progress dialog.
+     * @param asyncTask The OBJLoaderTask that displays the progress dialog, or null if none does.
      */
     public OBJModel(ContentManager content, final String path, OBJLoaderTask asyncTask)
     {
@@ -52,12 +53,15 @@ public class OBJModel
      * Parse a Wavefront OBJ model file from an Android resource.
      * @param content The content manager.
      * @param path The path to the asset file of the OBJ model.
-     * @param asyncTask The OBJLoaderTask that displays the progress dialog.
+     * @param asyncTask The OBJLoaderTask that displays the progress dialog, or null if none does.
      */
     private void load(ContentManager content, final String path, OBJLoaderTask asyncTask)
     {
+        Tracing.begin("OBJModel.load");
+
         // Obtain the number of lines in the file for the progress dialog
-        asyncTask.setMaxProgress(content.countLines(path));
+        if(asyncTask != null)
+            asyncTask.setMaxProgress(content.countLines(path));
 
         // Obtain a data stream from the asset
         BufferedReader lineReader = content.getBufferedReader(path);
@@ -70,7 +74,8 @@ public class OBJModel
             while ((currentLine = lineReader.readLine()) != null)
             {
                 loadLine(currentLine);
-                asyncTask.setProgress(++i);
+                if(asyncTask != null)
+                    asyncTask.setProgress(++i);
             }
 
             // Dispose the streams
@@ -83,6 +88,8 @@ public class OBJModel
         {
             e.printStackTrace();
         }
+
+        Tracing.end();
     }
 
     /** Populate the array of vertices with the newly parsed vertex data */
@@ -0,0 +1,309 @@
+package com.id11688025.majorassignment.profiling;
+
+import android.util.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The results of a fragment shader benchmark: the GPU times of drawing one or
+ * two shaders over offscreen targets of several sizes, and the cost per
+ * megapixel of each shader, derived from them.
+ *
+ * The cost per megapixel is the slope of a least-squares line through every
+ * measured time, against the area drawn. The line's intercept absorbs the
+ * costs that do not grow with the area, such as submitting the draw and
+ * waiting for the GPU, so the slope is the cost of the shader itself, whatever
+ * model it is later drawn on. Confidence intervals are 95%, from Student's t
+ * distribution.
+ *
+ * Times are recorded on the OpenGL thread. Once the benchmark has finished,
+ * the report is no longer modified, and may be read from any thread.
+ */
+public class BenchmarkReport
+{
+    /** The number of pixels in one megapixel */
+    private static final double PIXELS_PER_MEGAPIXEL = 1000000.0;
+
+    /** Two-sided 95% quantiles of Student's t distribution, for 1 to 30 degrees of freedom */
+    private static final double[] T_95 = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+
+    /** The two-sided 95% quantile of the normal distribution */
+    private static final double Z_95 = 1.960;
+
+    /** The fragment shader sources that were measured */
+    private final String[] sources;
+
+    /** The width and height, in pixels, of each square target */
+    private final int[] sizes;
+
+    /** The number of rounds drawn before measuring, and measured */
+    private final int warmupRounds, measuredRounds;
+
+    /** The GPU that was measured, as OpenGL names it */
+    private final String renderer;
+
+    /** The time at which the benchmark started, in milliseconds since the epoch */
+    private final long startTimeMillis;
+
+    /** The measured GPU times, in milliseconds, by source, size and round */
+    private final float[][][] millis;
+
+    /**
+     * Create an empty report.
+     * @param sources The fragment shader sources that are measured.
+     * @param sizes The width and height, in pixels, of each square target.
+     * @param warmupRounds The number of rounds drawn before measuring.
+     * @param measuredRounds The number of rounds measured.
+     * @param renderer The GPU that is measured, as OpenGL names it.
+     * @param startTimeMillis The time at which the benchmark started, in milliseconds since the epoch.
+     */
+    BenchmarkReport(String[] sources, int[] sizes, int warmupRounds, int measuredRounds,
+                    String renderer, long startTimeMillis)
+    {
+        this.sources = sources;
+        this.sizes = sizes;
+        this.warmupRounds = warmupRounds;
+        this.measuredRounds = measuredRounds;
+        this.renderer = renderer;
+        this.startTimeMillis = startTimeMillis;
+
+        millis = new float[sources.length][sizes.length][measuredRounds];
+    }
+
+    /** Record a measured time. */
+    void set(int source, int size, int round, float gpuMillis)
+    {
+        millis[source][size][round] = gpuMillis;
+    }
+
+    /** @return The number of shaders measured: 1, or 2 for an A/B comparison. */
+    public int getSourceCount()
+    {
+        return sources.length;
+    }
+
+    /** @return The fragment shader source of a measured shader. */
+    public String getSource(int source)
+    {
+        return sources[source];
+    }
+
+    /** @return The number of target sizes. */
+    public int getSizeCount()
+    {
+        return sizes.length;
+    }
+
+    /** @return The width and height, in pixels, of a square target. */
+    public int getSize(int size)
+    {
+        return sizes[size];
+    }
+
+    /** @return The number of rounds measured. Each round draws every shader once at every size. */
+    public int getMeasuredRounds()
+    {
+        return measuredRounds;
+    }
+
+    /** @return The mean GPU time, in milliseconds, of a shader at a size. */
+    public float getMeanMillis(int source, int size)
+    {
+        return (float)mean(millis[source][size]);
+    }
+
+    /** @return The half-width of the 95% confidence interval of getMeanMillis(). */
+    public float getMeanMillisConfidence(int source, int size)
+    {
+        float[] samples = millis[source][size];
+        if(samples.length < 2)
+            return 0;
+
+        double mean = mean(samples), sumOfSquares = 0;
+        for(float sample : samples)
+            sumOfSquares += (sample - mean) * (sample - mean);
+
+        double standardError = Math.sqrt(sumOfSquares / (samples.length - 1) / samples.length);
+        return (float)(t95(samples.length - 1) * standardError);
+    }
+
+    /** @return The GPU time, in milliseconds, that a shader adds per megapixel drawn. */
+    public float getMillisPerMegapixel(int source)
+    {
+        return (float)fit(source)[0];
+    }
+
+    /** @return The half-width of the 95% confidence interval of getMillisPerMegapixel(). */
+    public float getMillisPerMegapixelConfidence(int source)
+    {
+        double[] fit = fit(source);
+        return (float)(t95((int)fit[3]) * fit[1]);
+    }
+
+    /** @return The GPU time, in milliseconds, of a draw that covers no pixels:
+     * the overhead of each measurement, which is not part of the shader's cost. */
+    public float getOverheadMillis(int source)
+    {
+        return (float)fit(source)[2];
+    }
+
+    /** @return The cost per megapixel of shader B minus that of shader A, in milliseconds.
+     * Negative if B is cheaper. Only meaningful for an A/B comparison. */
+    public float getDifference()
+    {
+        return getMillisPerMegapixel(1) - getMillisPerMegapixel(0);
+    }
+
+    /** @return The half-width of the 95% confidence interval of getDifference(). */
+    public float getDifferenceConfidence()
+    {
+        double[] a = fit(0), b = fit(1);
+        int degreesOfFreedom = (int)Math.min(a[3], b[3]);
+        return (float)(t95(degreesOfFreedom) * Math.sqrt(a[1] * a[1] + b[1] * b[1]));
+    }
+
+    /** @return True if the confidence interval of getDifference() excludes zero,
+     * so that one shader is measurably cheaper than the other. */
+    public boolean isDifferenceSignificant()
+    {
+        return Math.abs(getDifference()) > getDifferenceConfidence();
+    }
+
+    /**
+     * Fit a line through a shader's times against the megapixels drawn.
+     * @return The slope, the standard error of the slope, the intercept,
+     * and the degrees of freedom of the residuals.
+     */
+    private double[] fit(int source)
+    {
+        int count = sizes.length * measuredRounds;
+
+        double meanX = 0, meanY = 0;
+        for(int size=0; size < sizes.length; size++)
+        {
+            meanX += megapixels(size) * measuredRounds;
+            for(float sample : millis[source][size])
+                meanY += sample;
+        }
+        meanX /= count;
+        meanY /= count;
+
+        double sxx = 0, sxy = 0;
+        for(int size=0; size < sizes.length; size++)
+        {
+            double dx = megapixels(size) - meanX;
+            for(float sample : millis[source][size])
+            {
+                sxx += dx * dx;
+                sxy += dx * (sample - meanY);
+            }
+        }
+
+        double slope = sxy / sxx;
+        double intercept = meanY - slope * meanX;
+
+        double residuals = 0;
+        for(int size=0; size < sizes.length; size++)
+            for(float sample : millis[source][size])
+            {
+                double residual = sample - intercept - slope * megapixels(size);
+                residuals += residual * residual;
+            }
+
+        int degreesOfFreedom = Math.max(1, count - 2);
+        double standardError = Math.sqrt(residuals / degreesOfFreedom / sxx);
+
+        return new double[] { slope, standardError, intercept, degreesOfFreedom };
+    }
+
+    /** @return The area of a target, in megapixels. */
+    private double megapixels(int size)
+    {
+        return (double)sizes[size] * sizes[size] / PIXELS_PER_MEGAPIXEL;
+    }
+
+    /** @return The arithmetic mean of some samples. */
+    private static double mean(float[] samples)
+    {
+        double sum = 0;
+        for(float sample : samples)
+            sum += sample;
+        return samples.length > 0 ? sum / samples.length : 0;
+    }
+
+    /** @return The two-sided 95% quantile of Student's t distribution. Beyond the
+     * table, the first-order Cornish-Fisher expansion about the normal quantile is used. */
+    private static double t95(int degreesOfFreedom)
+    {
+        if(degreesOfFreedom <= T_95.length)
+            return T_95[Math.max(1, degreesOfFreedom) - 1];
+
+        return Z_95 + (Z_95 * Z_95 * Z_95 + Z_95) / (4.0 * degreesOfFreedom);
+    }
+
+    /**
+     * Write the report as a JSON document, with every measured time.
+     * @param writer Receives the document. Not closed.
+     * @throws IOException If the writer fails.
+     */
+    public void writeJson(Writer writer) throws IOException
+    {
+        JsonWriter json = new JsonWriter(writer);
+        json.setIndent("  ");
+
+        json.beginObject();
+        json.name("renderer").value(renderer);
+        json.name("startTimeMillis").value(startTimeMillis);
+        json.name("warmupRounds").value(warmupRounds);
+        json.name("measuredRounds").value(measuredRounds);
+        json.name("confidenceLevel").value(0.95);
+
+        json.name("shaders").beginArray();
+        for(int source=0; source < sources.length; source++)
+        {
+            json.beginObject();
+            json.name("label").value(String.valueOf((char)('A' + source)));
+            json.name("millisPerMegapixel").value(getMillisPerMegapixel(source));
+            json.name("millisPerMegapixelConfidence").value(getMillisPerMegapixelConfidence(source));
+            json.name("overheadMillis").value(getOverheadMillis(source));
+
+            json.name("sizes").beginArray();
+            for(int size=0; size < sizes.length; size++)
+            {
+                json.beginObject();
+                json.name("width").value(sizes[size]);
+                json.name("height").value(sizes[size]);
+                json.name("meanMillis").value(getMeanMillis(source, size));
+                json.name("meanMillisConfidence").value(getMeanMillisConfidence(source, size));
+
+                json.name("millis").beginArray();
+                for(float sample : millis[source][size])
+                    json.value(sample);
+                json.endArray();
+                json.endObject();
+            }
+            json.endArray();
+
+            json.name("source").value(sources[source]);
+            json.endObject();
+        }
+        json.endArray();
+
+        if(sources.length == 2)
+        {
+            json.name("comparison").beginObject();
+            json.name("differenceMillisPerMegapixel").value(getDifference());
+            json.name("differenceConfidence").value(getDifferenceConfidence());
+            json.name("significant").value(isDifferenceSignificant());
+            json.endObject();
+        }
+
+        json.endObject();
+        json.flush();
+    }
+}
@@ -0,0 +1,179 @@
+package com.id11688025.majorassignment.profiling;
+
+
+import com.id11688025.majorassignment.graphics.GLBackend;
+import com.id11688025.majorassignment.timing.FrameClock;
+
+/**
+ * Measures the CPU and GPU cost of each frame, and keeps
+ * rolling statistics (median, 95th and 99th percentile) of both.
+ *
+ * GPU time is measured with timer queries when the device supports them.
+ * Otherwise, GPU time can only be estimated by waiting for the GPU to finish
+ * (glFinish) before and after drawing. That stalls the pipeline, and so it is
+ * only done in the explicit profiling mode.
+ *
+ * CPU time is the time spent on the OpenGL thread preparing and submitting
+ * the frame, excluding any time spent waiting in glFinish for profiling.
+ *
+ * All frame times are in milliseconds. The begin / end methods must be called
+ * on the OpenGL thread; the statistics may be read from any thread.
+ */
+public class FrameProfiler
+{
+    /** The number of recent frames over which statistics are computed */
+    private static final int SAMPLE_COUNT = 120;
+
+    /** The number of nanoseconds in one millisecond */
+    private static final float NANOS_PER_MILLI = 1000000.0f;
+
+    /** Recent GPU draw times, in milliseconds */
+    private final RollingStatistics gpuFrameTimes = new RollingStatistics(SAMPLE_COUNT);
+
+    /** Recent CPU frame times, in milliseconds */
+    private final RollingStatistics cpuFrameTimes = new RollingStatistics(SAMPLE_COUNT);
+
+    /** The source of time for CPU measurements */
+    private FrameClock clock;
+
+    /** Measures GPU time with timer queries, or null if they are unsupported */
+    private GpuTimer gpuTimer;
+
+    /** Should GPU time be estimated with glFinish, if timer queries are unsupported? */
+    private volatile boolean isProfiling = false;
+
+    /** The time at which the current frame began */
+    private long frameStartNanos;
+
+    /** The time at which the GPU finished the work that preceded the draw */
+    private long drawStartNanos;
+
+    /** The time spent waiting in glFinish during the current frame */
+    private long finishWaitNanos;
+
+    /** The most recent GPU draw time that became available during the current frame,
+     * in milliseconds, or -1 if none did */
+    private float newGpuFrameMillis = -1;
+
+    /** Create a frame profiler.
+     * @param clock The source of time for CPU measurements.
+     */
+    public FrameProfiler(FrameClock clock)
+    {
+        this.clock = clock;
+    }
+
+    /** Prepare GPU resources. Must be called whenever a new OpenGL context is created. */
+    public void onSurfaceCreated()
+    {
+        // Query objects from a previous context are no longer valid
+        gpuTimer = GpuTimer.isSupported() ? new GpuTimer() : null;
+
+        gpuFrameTimes.clear();
+        cpuFrameTimes.clear();
+    }
+
+    /** Mark the start of a frame, and collect GPU results from previous frames. */
+    public void beginFrame()
+    {
+        frameStartNanos = clock.nanoTime();
+        finishWaitNanos = 0;
+        newGpuFrameMillis = -1;
+
+        if(gpuTimer == null)
+            return;
+
+        // Collect every result that has become available, without waiting
+        long elapsedNanos;
+        while((elapsedNanos = gpuTimer.poll()) >= 0)
+            gpuFrameTimes.add(newGpuFrameMillis = elapsedNanos / NANOS_PER_MILLI);
+    }
+
+    /** Mark the start of the draw calls that should be measured on the GPU. */
+    public void beginDraw()
+    {
+        if(gpuTimer != null)
+            gpuTimer.begin();
+        else if(isProfiling)
+            drawStartNanos = finish();
+    }
+
+    /** Mark the end of the draw calls that should be measured on the GPU. */
+    public void endDraw()
+    {
+        if(gpuTimer != null)
+            gpuTimer.end();
+        else if(isProfiling)
+            gpuFrameTimes.add(newGpuFrameMillis = (finish() - drawStartNanos) / NANOS_PER_MILLI);
+    }
+
+    /** Record a GPU draw time that was measured in parts, by pass timers, instead of
+     * between beginDraw() and endDraw(). Timer queries cannot be nested, so passes that
+     * are timed individually must not also be enclosed by beginDraw() and endDraw().
+     * @param millis The GPU time of the whole draw, in milliseconds. */
+    public void addGpuDrawTime(float millis)
+    {
+        gpuFrameTimes.add(newGpuFrameMillis = millis);
+    }
+
+    /** Mark the end of a frame. */
+    public void endFrame()
+    {
+        long cpuNanos = clock.nanoTime() - frameStartNanos - finishWaitNanos;
+        cpuFrameTimes.add(cpuNanos / NANOS_PER_MILLI);
+    }
+
+    /** Wait for the GPU to complete all submitted commands.
+     * @return The time at which the GPU finished. */
+    private long finish()
+    {
+        long start = clock.nanoTime();
+        GLBackend.get().glFinish();
+        long end = clock.nanoTime();
+
+        finishWaitNanos += end - start;
+        return end;
+    }
+
+    /** Enable or disable the explicit profiling mode, in which GPU time is
+     * estimated with glFinish when timer queries are unsupported. This stalls
+     * the pipeline, and reduces the frame rate.
+     * @param profiling True to enable profiling mode.
+     */
+    public void setProfiling(boolean profiling)
+    {
+        this.isProfiling = profiling;
+    }
+
+    /** @return True if the explicit profiling mode is enabled. */
+    public boolean isProfiling()
+    {
+        return isProfiling;
+    }
+
+    /** @return True if GPU time is measured with timer queries, which never stall. */
+    public boolean hasGpuTimer()
+    {
+        return gpuTimer != null;
+    }
+
+    /** @return Statistics of recent GPU draw times, in milliseconds. Empty if GPU time
+     * cannot be measured (no timer queries, and not in profiling mode). */
+    public RollingStatistics getGpuFrameTimes()
+    {
+        return gpuFrameTimes;
+    }
+
+    /** @return The most recent GPU draw time that was measured during the current
+     * frame, in milliseconds, or -1 if no new measurement became available. */
+    public float getNewGpuFrameTime()
+    {
+        return newGpuFrameMillis;
+    }
+
+    /** @return Statistics of recent CPU frame times, in milliseconds. */
+    public RollingStatistics getCpuFrameTimes()
+    {
+        return cpuFrameTimes;
+    }
+}
@@ -0,0 +1,151 @@
+package com.id11688025.majorassignment.profiling;
+
+import com.id11688025.majorassignment.graphics.GL;
+import com.id11688025.majorassignment.graphics.GLBackend;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.os.Build;
+
+/**
+ * Measures how long the GPU spends executing a span of commands,
+ * using the EXT_disjoint_timer_query extension.
+ *
+ * Results become available a few frames after they are measured.
+ * A ring of queries is cycled, and each is only read back once the
+ * driver reports that its result is available, so the CPU never
+ * waits for the GPU. Frames are skipped, not stalled, if every query
+ * in the ring is still in flight.
+ *
+ * Must only be used on the OpenGL thread that created it.
+ */
+public class GpuTimer
+{
+    /** The extension that provides timer queries */
+    private static final String EXTENSION = "GL_EXT_disjoint_timer_query";
+
+    /** EXT_disjoint_timer_query: The query target for elapsed time */
+    private static final int GL_TIME_ELAPSED_EXT = 0x88BF;
+
+    /** EXT_disjoint_timer_query: Set when timer results have become unreliable */
+    private static final int GL_GPU_DISJOINT_EXT = 0x8FBB;
+
+    /** The default number of queries in flight: results are read this many frames late */
+    private static final int DEFAULT_QUERY_COUNT = 4;
+
+    /** The query object names */
+    private final int[] queries;
+
+    /** Has a result been requested from the query at each index, and not yet been read? */
+    private final boolean[] pending;
+
+    /** The index of the query to issue next */
+    private int next = 0;
+
+    /** The index of the oldest query that has not been read */
+    private int oldest = 0;
+
+    /** Is a query currently open (between begin() and end())? */
+    private boolean isTiming = false;
+
+    /** Scratch space for query results, to avoid per-frame allocation */
+    private final int[] result = new int[1];
+
+    /** Create a GPU timer. Must be called on the OpenGL thread,
+     * and only if isSupported() returns true. */
+    public GpuTimer()
+    {
+        this(DEFAULT_QUERY_COUNT);
+    }
+
+    /** Create a GPU timer. Must be called on the OpenGL thread,
+     * and only if isSupported() returns true.
+     * @param queryCount The number of measurements that may be in flight at once.
+     */
+    public GpuTimer(int queryCount)
+    {
+        queries = new int[queryCount];
+        pending = new boolean[queryCount];
+
+        GLBackend.get().glGenQueries(queryCount, queries, 0);
+    }
+
+    /** Determine whether GPU timer queries are available in the current context.
+     * Timer queries are exposed to Java through the OpenGL ES 3.0 bindings,
+     * so an ES 3.0 context, and the extension, are both required.
+     * @return True if a GpuTimer may be created.
+     */
+    public static boolean isSupported()
+    {
+        GL gl = GLBackend.get();
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2)
+            return false;
+
+        String version = gl.glGetString(GLES20.GL_VERSION);
+        String extensions = gl.glGetString(GLES20.GL_EXTENSIONS);
+
+        return version != null && version.startsWith("OpenGL ES 3")
+                && extensions != null && extensions.contains(EXTENSION);
+    }
+
+    /** Start timing GPU commands. If every query is still in flight,
+     * this measurement is skipped.
+     * @return True if the measurement was started.
+     */
+    public boolean begin()
+    {
+        if(pending[next])
+            return false;
+
+        GLBackend.get().glBeginQuery(GL_TIME_ELAPSED_EXT, queries[next]);
+        isTiming = true;
+        return true;
+    }
+
+    /** Stop timing GPU commands that were started by begin(). */
+    public void end()
+    {
+        if(!isTiming)
+            return;
+
+        GLBackend.get().glEndQuery(GL_TIME_ELAPSED_EXT);
+        isTiming = false;
+
+        pending[next] = true;
+        next = (next + 1) % queries.length;
+    }
+
+    /** Read the oldest completed measurement, if one is available.
+     * Never waits for the GPU.
+     * @return The elapsed GPU time in nanoseconds, or -1 if no result is ready,
+     * or if the result was invalidated by a disjoint event (e.g. a clock change).
+     */
+    public long poll()
+    {
+        GL gl = GLBackend.get();
+        if(!pending[oldest])
+            return -1;
+
+        gl.glGetQueryObjectuiv(queries[oldest], GLES30.GL_QUERY_RESULT_AVAILABLE, result, 0);
+        if(result[0] == 0)
+            return -1;
+
+        gl.glGetQueryObjectuiv(queries[oldest], GLES30.GL_QUERY_RESULT, result, 0);
+        pending[oldest] = false;
+        oldest = (oldest + 1) % queries.length;
+
+        // Discard results that the GPU has marked as unreliable
+        long elapsed = result[0] & 0xFFFFFFFFL;  // The 32-bit result is unsigned
+        gl.glGetIntegerv(GL_GPU_DISJOINT_EXT, result, 0);
+        if(result[0] != 0)
+            return -1;
+
+        return elapsed;
+    }
+
+    /** Release the query objects. */
+    public void release()
+    {
+        GLBackend.get().glDeleteQueries(queries.length, queries, 0);
+    }
+}
@@ -0,0 +1,168 @@
+package com.id11688025.majorassignment.profiling;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.os.Build;
+
+import com.id11688025.majorassignment.graphics.GL;
+import com.id11688025.majorassignment.graphics.GLBackend;
+import com.id11688025.majorassignment.timing.FrameClock;
+
+/**
+ * Detects frames that the GPU takes too long to complete, such as those
+ * drawn with a shader that loops for seconds.
+ *
+ * Something new, such as a program that has just compiled, is put on
+ * probation for its first few frames. After each of those frames, a fence is
+ * inserted and waited on, for no longer than the threshold. If every fence
+ * completes, the watched object is reported safe; the first that does not
+ * complete in time reports it hung. Waiting right after the frame, rather
+ * than frames later, keeps a blocked buffer swap from hiding the hang.
+ * Frames drawn while nothing is on probation are not waited on.
+ *
+ * Fences are exposed to Java through the OpenGL ES 3.0 bindings. In an
+ * OpenGL ES 2.0 context, each probation frame is instead timed by a
+ * glFinish(), which cannot give up early, so a hang is only reported once the
+ * frame completes. Probation lasts a few frames, so the stall is brief.
+ *
+ * Must only be used on the OpenGL thread.
+ */
+public class GpuWatchdog
+{
+    /** The default time, in milliseconds, beyond which a frame is considered hung */
+    public static final float DEFAULT_THRESHOLD_MILLIS = 1000.0f;
+
+    /** The default number of frames for which a watched object is on probation */
+    public static final int DEFAULT_PROBATION_FRAMES = 3;
+
+    /** The number of nanoseconds in one millisecond */
+    private static final float NANOS_PER_MILLI = 1000000.0f;
+
+    /** The time beyond which a frame is considered hung */
+    private final long thresholdNanos;
+
+    /** The number of frames for which a watched object is on probation */
+    private final int probationFrames;
+
+    /** The source of fence times */
+    private final FrameClock clock;
+
+    /** Are fences available in the current context? */
+    private boolean supported;
+
+    /** The object on probation, or null if nothing is */
+    private Object watched;
+
+    /** The number of probation frames that remain */
+    private int framesLeft;
+
+    /** The object found safe, or found hung, by the last endFrame(); null if none was */
+    private Object safeTag, hungTag;
+
+    /** The time, in milliseconds, that the hung frame had been running when it was given up on */
+    private float hungMillis;
+
+    /**
+     * @param thresholdMillis The time, in milliseconds, beyond which a frame is considered hung.
+     * @param probationFrames The number of frames for which a watched object is on probation.
+     * @param clock The source of fence times.
+     */
+    public GpuWatchdog(float thresholdMillis, int probationFrames, FrameClock clock)
+    {
+        this.thresholdNanos = (long)(thresholdMillis * NANOS_PER_MILLI);
+        this.probationFrames = probationFrames;
+        this.clock = clock;
+    }
+
+    /** Determine whether fences are available in the current context.
+     * @return True if the watchdog can give up on hung frames without waiting for them. */
+    public static boolean isSupported()
+    {
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2)
+            return false;
+
+        String version = GLBackend.get().glGetString(GLES20.GL_VERSION);
+        return version != null && version.startsWith("OpenGL ES 3");
+    }
+
+    /** Check for fences in a new OpenGL context. Must be called whenever one is created. */
+    public void onSurfaceCreated()
+    {
+        supported = isSupported();
+    }
+
+    /** Put an object on probation, replacing any other.
+     * @param tag Identifies what is drawn from now on; reported by getSafeTag() or getHungTag(). */
+    public void watch(Object tag)
+    {
+        watched = tag;
+        framesLeft = probationFrames;
+    }
+
+    /** @return True if an object is on probation, so more frames must be drawn to judge it. */
+    public boolean isWatching()
+    {
+        return watched != null;
+    }
+
+    /** Mark the end of a frame's commands. If an object is on probation,
+     * waits for the GPU to complete the frame, for up to the threshold. */
+    public void endFrame()
+    {
+        GL gl = GLBackend.get();
+        safeTag = hungTag = null;
+        if(watched == null)
+            return;
+
+        long startNanos = clock.nanoTime();
+        boolean hung;
+        if(supported)
+        {
+            long fence = gl.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            int status = gl.glClientWaitSync(fence, GLES30.GL_SYNC_FLUSH_COMMANDS_BIT, thresholdNanos);
+
+            // A fence that has not completed is deleted once it does
+            gl.glDeleteSync(fence);
+            hung = status == GLES30.GL_TIMEOUT_EXPIRED;
+        }
+        else
+        {
+            // Without fences, wait for the whole frame, and judge it by how long that took
+            gl.glFinish();
+            hung = clock.nanoTime() - startNanos > thresholdNanos;
+        }
+
+        if(hung)
+        {
+            hungTag = watched;
+            hungMillis = (clock.nanoTime() - startNanos) / NANOS_PER_MILLI;
+            watched = null;
+            return;
+        }
+
+        if(--framesLeft == 0)
+        {
+            safeTag = watched;
+            watched = null;
+        }
+    }
+
+    /** @return The object that completed its probation in the last endFrame(), or null. */
+    public Object getSafeTag()
+    {
+        return safeTag;
+    }
+
+    /** @return The object whose frame hung in the last endFrame(), or null. */
+    public Object getHungTag()
+    {
+        return hungTag;
+    }
+
+    /** @return The time, in milliseconds, that the hung frame had been waited on.
+     * At least the threshold. */
+    public float getHungTime()
+    {
+        return hungMillis;
+    }
+}
@@ -0,0 +1,126 @@
+package com.id11688025.majorassignment.profiling;
+
+
+import com.id11688025.majorassignment.graphics.GLBackend;
+import com.id11688025.majorassignment.timing.FrameClock;
+
+/**
+ * Measures the GPU time of one pass of a frame, and keeps rolling
+ * statistics of it, in milliseconds.
+ *
+ * Timer queries are used where supported. Timer queries cannot be nested,
+ * so no other timer (such as the frame profiler's) may be running while a
+ * pass is timed. Otherwise, a pass may be timed by waiting for the GPU to
+ * finish (glFinish) before and after it, which stalls.
+ *
+ * Must only be used on the OpenGL thread.
+ */
+public class PassTimer
+{
+    /** The number of recent frames over which statistics are computed */
+    private static final int SAMPLE_COUNT = 120;
+
+    /** The number of nanoseconds in one millisecond */
+    private static final float NANOS_PER_MILLI = 1000000.0f;
+
+    /** Measures the pass with timer queries, or null if they are unsupported */
+    private GpuTimer gpuTimer;
+
+    /** Recent GPU times of the pass, in milliseconds */
+    private final RollingStatistics times = new RollingStatistics(SAMPLE_COUNT);
+
+    /** The source of time for glFinish timing */
+    private final FrameClock clock;
+
+    /** The time at which the GPU finished the work that preceded the pass,
+     * or -1 if the pass is not being timed with glFinish */
+    private long startNanos = -1;
+
+    /** The most recent time that became available in the current frame, or -1 if none did */
+    private float newMillis = -1;
+
+    /** Create a pass timer, with timer queries if the current context supports them.
+     * Must be called on the OpenGL thread.
+     * @param clock The source of time for glFinish timing. */
+    public PassTimer(FrameClock clock)
+    {
+        this.clock = clock;
+        createQueries();
+    }
+
+    /** Create timer queries in the current context, if it supports them. */
+    public void createQueries()
+    {
+        gpuTimer = GpuTimer.isSupported() ? new GpuTimer() : null;
+    }
+
+    /** Forget the timer queries, which belonged to a context that has been lost. */
+    public void discardQueries()
+    {
+        gpuTimer = null;
+    }
+
+    /** Collect results from previous frames, without waiting. Call once per frame, before begin(). */
+    public void collect()
+    {
+        newMillis = -1;
+        if(gpuTimer == null)
+            return;
+
+        long elapsedNanos;
+        while((elapsedNanos = gpuTimer.poll()) >= 0)
+            times.add(newMillis = elapsedNanos / NANOS_PER_MILLI);
+    }
+
+    /** Start timing the pass.
+     * @param finishTiming True to time the pass with glFinish if timer queries are unsupported. */
+    public void begin(boolean finishTiming)
+    {
+        if(gpuTimer != null)
+            gpuTimer.begin();
+        else if(finishTiming)
+            startNanos = finish();
+    }
+
+    /** Stop timing the pass. */
+    public void end()
+    {
+        if(gpuTimer != null)
+            gpuTimer.end();
+        else if(startNanos >= 0)
+        {
+            times.add(newMillis = (finish() - startNanos) / NANOS_PER_MILLI);
+            startNanos = -1;
+        }
+    }
+
+    /** Wait for the GPU to complete all submitted commands.
+     * @return The time at which the GPU finished. */
+    private long finish()
+    {
+        GLBackend.get().glFinish();
+        return clock.nanoTime();
+    }
+
+    /** @return Statistics of recent GPU times of the pass, in milliseconds.
+     * Empty if GPU time cannot be measured. */
+    public RollingStatistics getTimes()
+    {
+        return times;
+    }
+
+    /** @return The most recent time that was measured during the current frame,
+     * in milliseconds, or -1 if no new measurement became available. */
+    public float getNewTime()
+    {
+        return newMillis;
+    }
+
+    /** Release the timer queries. */
+    public void release()
+    {
+        if(gpuTimer != null)
+            gpuTimer.release();
+        gpuTimer = null;
+    }
+}
@@ -0,0 +1,166 @@
+package com.id11688025.majorassignment.profiling;
+
+import com.id11688025.majorassignment.timing.FrameClock;
+import com.id11688025.majorassignment.timing.SystemFrameClock;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+
+/**
+ * Records sections in memory, in a fixed-size ring of events that keeps the
+ * most recent ones, and exports them in the Chrome trace event format, which
+ * chrome://tracing and Perfetto open.
+ *
+ * Recording allocates nothing: each event is a name, a time, a thread ID and
+ * a phase, stored in preallocated arrays. Recording is synchronized, as
+ * sections arrive from the renderer and from background threads.
+ */
+public class RingBufferTracer implements Tracer
+{
+    /** The default number of events kept */
+    public static final int DEFAULT_CAPACITY = 16384;
+
+    /** The number of nanoseconds in one microsecond, the unit of trace event times */
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    /** The source of event times */
+    private final FrameClock clock;
+
+    /** The events, as parallel arrays. The name of an end event is null. */
+    private final String[] names;
+    private final long[] times;
+    private final long[] threadIds;
+
+    /** The index at which the next event is stored */
+    private int next = 0;
+
+    /** The number of events stored, up to the capacity */
+    private int count = 0;
+
+    /** Record the most recent DEFAULT_CAPACITY events, timed by the system clock. */
+    public RingBufferTracer()
+    {
+        this(DEFAULT_CAPACITY, new SystemFrameClock());
+    }
+
+    /**
+     * @param capacity The number of events kept. Older events are overwritten.
+     * @param clock The source of event times.
+     */
+    public RingBufferTracer(int capacity, FrameClock clock)
+    {
+        this.clock = clock;
+
+        names = new String[capacity];
+        times = new long[capacity];
+        threadIds = new long[capacity];
+    }
+
+    @Override
+    public void beginSection(String name)
+    {
+        record(name);
+    }
+
+    @Override
+    public void endSection()
+    {
+        record(null);
+    }
+
+    private synchronized void record(String name)
+    {
+        names[next] = name;
+        times[next] = clock.nanoTime();
+        threadIds[next] = Thread.currentThread().getId();
+
+        next = (next + 1) % names.length;
+        if(count < names.length)
+            count++;
+    }
+
+    /** Discard every recorded event. */
+    public synchronized void clear()
+    {
+        next = 0;
+        count = 0;
+    }
+
+    /** @return The number of events recorded, up to the capacity. */
+    public synchronized int size()
+    {
+        return count;
+    }
+
+    /**
+     * Write the recorded events as a Chrome trace event JSON document.
+     * End events whose begin event has been overwritten are left out.
+     * @param writer Receives the document. Not closed.
+     * @throws IOException If the writer fails.
+     */
+    public synchronized void writeChromeTrace(Writer writer) throws IOException
+    {
+        // The number of sections open on each thread, to find unmatched end events
+        HashMap<Long, Integer> depths = new HashMap<Long, Integer>();
+
+        writer.write("{\"traceEvents\":[");
+
+        boolean first = true;
+        int oldest = (next - count + names.length) % names.length;
+        long origin = count > 0 ? times[oldest] : 0;
+
+        for(int i=0; i < count; i++)
+        {
+            int index = (oldest + i) % names.length;
+            Long threadId = threadIds[index];
+            Integer depth = depths.get(threadId);
+            if(depth == null)
+                depth = 0;
+
+            boolean begin = names[index] != null;
+            if(!begin && depth == 0)
+                continue;
+            depths.put(threadId, begin ? depth + 1 : depth - 1);
+
+            if(!first)
+                writer.write(",");
+            first = false;
+
+            writer.write("\n{\"ph\":\"");
+            writer.write(begin ? "B" : "E");
+            writer.write("\",\"ts\":");
+            writer.write(String.valueOf((times[index] - origin) / NANOS_PER_MICRO));
+            writer.write(",\"pid\":0,\"tid\":");
+            writer.write(String.valueOf(threadIds[index]));
+            if(begin)
+            {
+                writer.write(",\"name\":\"");
+                writeEscaped(writer, names[index]);
+                writer.write("\"");
+            }
+            writer.write("}");
+        }
+
+        writer.write("\n]}\n");
+        writer.flush();
+    }
+
+    /** Write a string's characters, escaped for use in a JSON string. */
+    private static void writeEscaped(Writer writer, String value) throws IOException
+    {
+        for(int i=0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if(c == '"' || c == '\\')
+            {
+                writer.write('\\');
+                writer.write(c);
+            }
+            else if(c < 0x20)
+                writer.write(String.format("\\u%04x", (int)c));
+            else
+                writer.write(c);
+        }
+    }
+}
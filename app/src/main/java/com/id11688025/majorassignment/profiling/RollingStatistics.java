@@ -0,0 +1,123 @@
+package com.id11688025.majorassignment.profiling;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent samples of a measurement (such as a frame time),
+ * and computes statistics over them.
+ *
+ * Storage is allocated once, so adding samples never allocates.
+ * Samples are added on the OpenGL thread and read from the UI thread,
+ * and so all access is synchronized.
+ */
+public class RollingStatistics
+{
+    /** The ring buffer of recent samples */
+    private final float[] samples;
+
+    /** Scratch space in which samples are sorted to find percentiles */
+    private final float[] sorted;
+
+    /** The index at which the next sample will be written */
+    private int next = 0;
+
+    /** The number of valid samples in the ring buffer */
+    private int count = 0;
+
+    /** Create an empty set of statistics.
+     * @param capacity The number of recent samples to keep.
+     */
+    public RollingStatistics(int capacity)
+    {
+        if(capacity <= 0)
+            throw new IllegalArgumentException("The sample capacity must be positive.");
+
+        samples = new float[capacity];
+        sorted = new float[capacity];
+    }
+
+    /** Record a sample, replacing the oldest one if full.
+     * @param sample The measured value.
+     */
+    public synchronized void add(float sample)
+    {
+        samples[next] = sample;
+        next = (next + 1) % samples.length;
+
+        if(count < samples.length)
+            count++;
+    }
+
+    /** Discard all samples. */
+    public synchronized void clear()
+    {
+        next = 0;
+        count = 0;
+    }
+
+    /** Compute a percentile of the recent samples, using the nearest-rank method.
+     * @param percentile The percentile, from 0 to 100.
+     * @return The value below which the given percentage of samples fall,
+     * or 0 if there are no samples.
+     */
+    public synchronized float percentile(float percentile)
+    {
+        if(count == 0)
+            return 0;
+
+        System.arraycopy(samples, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+
+        // Nearest rank: the smallest sample that is >= p% of all samples
+        int rank = (int)Math.ceil(percentile / 100.0f * count);
+        int index = Math.max(0, Math.min(count - 1, rank - 1));
+
+        return sorted[index];
+    }
+
+    /** @return The median of the recent samples. */
+    public float p50()
+    {
+        return percentile(50);
+    }
+
+    /** @return The 95th percentile of the recent samples. */
+    public float p95()
+    {
+        return percentile(95);
+    }
+
+    /** @return The 99th percentile of the recent samples. */
+    public float p99()
+    {
+        return percentile(99);
+    }
+
+    /** @return The arithmetic mean of the recent samples, or 0 if there are none. */
+    public synchronized float mean()
+    {
+        if(count == 0)
+            return 0;
+
+        double sum = 0;
+        for(int i=0; i < count; i++)
+            sum += samples[i];
+
+        return (float)(sum / count);
+    }
+
+    /** @return The most recently added sample, or 0 if there are none. */
+    public synchronized float latest()
+    {
+        if(count == 0)
+            return 0;
+
+        return samples[(next - 1 + samples.length) % samples.length];
+    }
+
+    /** @return The number of samples currently held. */
+    public synchronized int count()
+    {
+        return count;
+    }
+}
@@ -0,0 +1,329 @@
+package com.id11688025.majorassignment.profiling;
+
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.id11688025.majorassignment.ContentManager;
+import com.id11688025.majorassignment.graphics.FullScreenTriangle;
+import com.id11688025.majorassignment.graphics.GL;
+import com.id11688025.majorassignment.graphics.GLBackend;
+import com.id11688025.majorassignment.graphics.GLStateCache;
+import com.id11688025.majorassignment.graphics.LoadAction;
+import com.id11688025.majorassignment.graphics.RenderPass;
+import com.id11688025.majorassignment.graphics.RenderTarget2D;
+import com.id11688025.majorassignment.graphics.StoreAction;
+import com.id11688025.majorassignment.graphics.Texture2D;
+import com.id11688025.majorassignment.timing.FrameClock;
+
+/**
+ * Measures how expensive one fragment shader is, or compares two, independently
+ * of any model: each shader is drawn over the whole of offscreen targets of
+ * several sizes, and timed on the GPU.
+ *
+ * Draws are made in rounds. Each round draws every shader once at every size,
+ * interleaved, so that both shaders of a comparison see the same thermal and
+ * clock conditions. The first rounds warm up the caches and clocks, and are
+ * not measured. Each measured draw is timed by waiting for the GPU to finish
+ * (glFinish) before and after it, so every time belongs to exactly one draw;
+ * the constant cost of waiting is separated out by the report's line fit.
+ *
+ * The benchmark runs in steps, one per frame, so that the OpenGL thread is
+ * never blocked for long. Must only be used on the OpenGL thread.
+ */
+public class ShaderBenchmark
+{
+    /** Receives the outcome of a benchmark on the UI thread. */
+    public interface Listener
+    {
+        /** @param report The measurements, and the cost of each shader per megapixel. */
+        void onFinished(BenchmarkReport report);
+
+        /** @param log The compiler log of a shader that could not be benchmarked,
+         * or null if the benchmark was interrupted by the loss of the OpenGL context. */
+        void onFailed(String log);
+    }
+
+    /** The default width and height, in pixels, of the square targets */
+    public static final int[] DEFAULT_SIZES = { 256, 512, 768, 1024 };
+
+    /** The default number of rounds drawn before measuring */
+    public static final int DEFAULT_WARMUP_ROUNDS = 5;
+
+    /** The default number of rounds measured */
+    public static final int DEFAULT_MEASURED_ROUNDS = 30;
+
+    /** The asset path of the vertex shader, which provides every input of a user fragment shader */
+    private static final String VERTEX_SHADER_PATH = "shaders/benchmark.vs.glsl";
+
+    /** The longest time spent drawing in one step, so that the OpenGL thread stays responsive */
+    private static final long STEP_BUDGET_NANOS = 30 * 1000000L;
+
+    /** The number of nanoseconds in one millisecond */
+    private static final float NANOS_PER_MILLI = 1000000.0f;
+
+    /** The shaders, drawn over the whole target */
+    private final FullScreenTriangle[] programs;
+
+    /** The locations of each program's "time" and "texture" uniforms */
+    private final int[] timeLocations, textureLocations;
+
+    /** The targets, one per size, created once the shaders have compiled */
+    private RenderTarget2D[] targets;
+
+    /** Each draw covers its target, whose depth is not used */
+    private final RenderPass pass = new RenderPass(LoadAction.CLEAR, StoreAction.STORE,
+            LoadAction.DONT_CARE, StoreAction.DONT_CARE);
+
+    /** The texture given to the shaders, or null */
+    private final Texture2D texture;
+
+    /** The shader time, which is held constant so that every draw does the same work */
+    private final float time;
+
+    /** The source of time for measurements */
+    private final FrameClock clock;
+
+    /** Receives the outcome, or null */
+    private final Listener listener;
+
+    /** Delivers the outcome to the UI thread */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** Receives the measurements */
+    private final BenchmarkReport report;
+
+    /** The number of rounds drawn before measuring */
+    private final int warmupRounds;
+
+    /** The round, size and shader of the next draw */
+    private int round = 0, size = 0, source = 0;
+
+    /**
+     * Compile the shaders. Must be called on the OpenGL thread. If a shader does not
+     * compile, the listener is told, and step() finishes immediately.
+     * @param content The content manager, from which the vertex shader is read.
+     * @param sources The fragment shaders to measure: one, or two to compare (A and B).
+     * @param texture The texture given to the shaders, or null.
+     * @param time The shader time.
+     * @param clock The source of time for measurements.
+     * @param listener Receives the outcome, or null.
+     */
+    public ShaderBenchmark(ContentManager content, String[] sources, Texture2D texture, float time,
+                           FrameClock clock, Listener listener)
+    {
+        this(content, sources, DEFAULT_SIZES, DEFAULT_WARMUP_ROUNDS, DEFAULT_MEASURED_ROUNDS,
+                texture, time, clock, listener);
+    }
+
+    /**
+     * Compile the shaders. Must be called on the OpenGL thread. If a shader does not
+     * compile, the listener is told, and step() finishes immediately.
+     * @param content The content manager, from which the vertex shader is read.
+     * @param sources The fragment shaders to measure: one, or two to compare (A and B).
+     * @param sizes The width and height, in pixels, of each square target. At least two
+     *              sizes must fit within the device's limits.
+     * @param warmupRounds The number of rounds drawn before measuring.
+     * @param measuredRounds The number of rounds measured. At least two.
+     * @param texture The texture given to the shaders, or null.
+     * @param time The shader time.
+     * @param clock The source of time for measurements.
+     * @param listener Receives the outcome, or null.
+     */
+    public ShaderBenchmark(ContentManager content, String[] sources, int[] sizes, int warmupRounds,
+                           int measuredRounds, Texture2D texture, float time, FrameClock clock,
+                           Listener listener)
+    {
+        if(measuredRounds < 2)
+            throw new IllegalArgumentException("At least two rounds must be measured.");
+
+        this.texture = texture;
+        this.time = time;
+        this.clock = clock;
+        this.listener = listener;
+        this.warmupRounds = warmupRounds;
+
+        sizes = fitSizes(sizes);
+        if(sizes.length < 2)
+            throw new IllegalArgumentException("At least two target sizes must be supported.");
+
+        report = new BenchmarkReport(sources, sizes, warmupRounds, measuredRounds,
+                GLBackend.get().glGetString(GLES20.GL_RENDERER), System.currentTimeMillis());
+
+        programs = new FullScreenTriangle[sources.length];
+        timeLocations = new int[sources.length];
+        textureLocations = new int[sources.length];
+
+        for(int i=0; i < sources.length; i++)
+        {
+            programs[i] = new FullScreenTriangle(content, VERTEX_SHADER_PATH, sources[i]);
+            if(!programs[i].isCompiled())
+            {
+                fail(programs[i].getFragmentShaderLog());
+                return;
+            }
+
+            timeLocations[i] = programs[i].getUniformLocation("time");
+            textureLocations[i] = programs[i].getUniformLocation("texture");
+        }
+
+        targets = new RenderTarget2D[sizes.length];
+        for(int i=0; i < sizes.length; i++)
+            targets[i] = new RenderTarget2D(sizes[i], sizes[i]);
+    }
+
+    /** @return The sizes that fit within the device's largest texture and renderbuffer. */
+    private static int[] fitSizes(int[] sizes)
+    {
+        GL gl = GLBackend.get();
+        int[] limits = new int[2];
+        gl.glGetIntegerv(GLES20.GL_MAX_TEXTURE_SIZE, limits, 0);
+        gl.glGetIntegerv(GLES20.GL_MAX_RENDERBUFFER_SIZE, limits, 1);
+        int limit = Math.min(limits[0], limits[1]);
+
+        int count = 0;
+        for(int size : sizes)
+            if(size <= limit)
+                count++;
+
+        int[] fitting = new int[count];
+        count = 0;
+        for(int size : sizes)
+            if(size <= limit)
+                fitting[count++] = size;
+
+        return fitting;
+    }
+
+    /** Tell the listener, on the UI thread, that a shader could not be benchmarked. */
+    private void fail(final String log)
+    {
+        targets = null;
+        if(listener == null)
+            return;
+
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onFailed(log);
+            }
+        });
+    }
+
+    /**
+     * Make as many draws as fit in one step. Leaves the screen's framebuffer bound;
+     * the caller must restore the viewport. When the last draw has been measured,
+     * the report is delivered to the listener.
+     * @return True if the benchmark has finished, and may be released.
+     */
+    public boolean step()
+    {
+        if(targets == null)
+            return true;
+
+        GLStateCache glState = GLStateCache.get();
+        glState.disable(GLES20.GL_DEPTH_TEST);
+
+        int totalRounds = warmupRounds + report.getMeasuredRounds();
+        long stepStart = clock.nanoTime();
+
+        while(round < totalRounds && clock.nanoTime() - stepStart < STEP_BUDGET_NANOS)
+        {
+            float gpuMillis = draw(source, size);
+            if(round >= warmupRounds)
+                report.set(source, size, round - warmupRounds, gpuMillis);
+
+            // Every shader at this size, then every size, then the next round
+            if(++source == programs.length)
+            {
+                source = 0;
+                if(++size == targets.length)
+                {
+                    size = 0;
+                    round++;
+                }
+            }
+        }
+
+        targets[0].unbind();
+        glState.enable(GLES20.GL_DEPTH_TEST);
+
+        if(round < totalRounds)
+            return false;
+
+        if(listener != null)
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onFinished(report);
+                }
+            });
+        return true;
+    }
+
+    /** Draw one shader over one target, and time it.
+     * @return The GPU time, in milliseconds. */
+    private float draw(int source, int size)
+    {
+        GLStateCache glState = GLStateCache.get();
+        GL gl = GLBackend.get();
+        FullScreenTriangle program = programs[source];
+
+        program.use();
+        program.getUniforms().set1f(timeLocations[source], time);
+        if(texture != null)
+        {
+            glState.activeTexture(GLES20.GL_TEXTURE0);
+            glState.bindTexture(texture.getTextureName());
+            program.getUniforms().set1i(textureLocations[source], 0);
+        }
+
+        gl.glFinish();
+        long start = clock.nanoTime();
+
+        // The pass keeps tiled GPUs from loading the previous contents, or storing
+        // the depth; what remains is a cost of the shader and the area drawn
+        pass.begin(targets[size]);
+        program.draw();
+        pass.end();
+        gl.glFinish();
+
+        return (clock.nanoTime() - start) / NANOS_PER_MILLI;
+    }
+
+    /** @return The measurements so far. */
+    public BenchmarkReport getReport()
+    {
+        return report;
+    }
+
+    /** Forget the programs and targets, which belonged to a context that has been lost,
+     * and tell the listener that the benchmark was interrupted. */
+    public void abandon()
+    {
+        targets = null;
+        for(int i=0; i < programs.length; i++)
+            programs[i] = null;
+
+        if(listener != null)
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onFailed(null);
+                }
+            });
+    }
+
+    /** Delete the programs and targets. */
+    public void release()
+    {
+        for(FullScreenTriangle program : programs)
+            if(program != null)
+                program.release();
+
+        if(targets != null)
+            for(RenderTarget2D target : targets)
+                target.release();
+        targets = null;
+    }
+}
@@ -0,0 +1,31 @@
+package com.id11688025.majorassignment.profiling;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Reports sections to the Android system trace, where they are shown
+ * alongside the framework's and the GPU driver's own sections by
+ * systrace and Perfetto. Sections are only recorded while a system
+ * trace is being captured.
+ */
+public class SystraceTracer implements Tracer
+{
+    /** @return True if the system trace API is available (Android 4.3 and later). */
+    public static boolean isSupported()
+    {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    }
+
+    @Override
+    public void beginSection(String name)
+    {
+        Trace.beginSection(name);
+    }
+
+    @Override
+    public void endSection()
+    {
+        Trace.endSection();
+    }
+}
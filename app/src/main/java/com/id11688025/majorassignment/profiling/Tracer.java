@@ -0,0 +1,18 @@
+package com.id11688025.majorassignment.profiling;
+
+/**
+ * Receives the begin and end of named sections of work, so that they
+ * can be shown on a timeline.
+ *
+ * Sections nest, and must be ended on the thread that began them, in the
+ * reverse order. Implementations must accept calls from any thread.
+ */
+public interface Tracer
+{
+    /** Begin a section of work on the calling thread.
+     * @param name The name of the section. Should be a constant, so that no string is built per call. */
+    void beginSection(String name);
+
+    /** End the most recently begun section on the calling thread. */
+    void endSection();
+}
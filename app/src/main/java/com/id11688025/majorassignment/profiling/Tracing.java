@@ -0,0 +1,48 @@
+package com.id11688025.majorassignment.profiling;
+
+/**
+ * The tracer to which instrumented code reports its sections of work.
+ *
+ * Tracing is disabled until a tracer is set. While disabled, begin() and end()
+ * cost a single field read and comparison, and allocate nothing, so they may
+ * be left in per-frame code.
+ *
+ * A tracer should only be set or removed between frames; a section that is
+ * open at the time is ended on a different tracer, or not at all.
+ */
+public final class Tracing
+{
+    /** The current tracer, or null if tracing is disabled */
+    private static volatile Tracer tracer;
+
+    private Tracing() {}
+
+    /** @param tracer The tracer that receives sections from every thread, or null to disable tracing. */
+    public static void setTracer(Tracer tracer)
+    {
+        Tracing.tracer = tracer;
+    }
+
+    /** @return The current tracer, or null if tracing is disabled. */
+    public static Tracer getTracer()
+    {
+        return tracer;
+    }
+
+    /** Begin a section of work on the calling thread.
+     * @param name The name of the section. Should be a constant. */
+    public static void begin(String name)
+    {
+        Tracer current = tracer;
+        if(current != null)
+            current.beginSection(name);
+    }
+
+    /** End the most recently begun section on the calling thread. */
+    public static void end()
+    {
+        Tracer current = tracer;
+        if(current != null)
+            current.endSection();
+    }
+}
@@ -5,8 +5,13 @@ import android.util.Log;
 
 import com.id11688025.majorassignment.ContentManager;
 import com.id11688025.majorassignment.VertexBufferObject;
+import com.id11688025.majorassignment.graphics.GL;
+import com.id11688025.majorassignment.graphics.GLBackend;
+import com.id11688025.majorassignment.graphics.GLStateCache;
+import com.id11688025.majorassignment.graphics.GpuResourceRegistry;
 import com.id11688025.majorassignment.graphics.Texture2D;
 import com.id11688025.majorassignment.math.Matrix;
+import com.id11688025.majorassignment.profiling.Tracing;
 
 /**
  * A basic GLSL shader wrapper that provides flat shading.
@@ -14,7 +19,7 @@ import com.id11688025.majorassignment.math.Matrix;
  * This class should be extended in order to implement more
  * advanced lighting effects.
  */
-public class Shader
+public class Shader implements GpuResourceRegistry.Resource
 {
     /** The attribute name of the vertex position. */
     private static final String VPOSITION = "vPosition";
@@ -61,6 +66,13 @@ public class Shader
     private String vertexSource;
     /** The fragment shader source code */
     private String fragmentSource;
+    /** The fragment shader source code of the program in use, which compiled */
+    private String compiledFragmentSource;
+
+    /** The program, fragment shader and source that last drew frames in good time, kept
+     * while the program in use is on probation; 0 and null if the program in use is trusted */
+    private int fallbackProgramName, fallbackFragmentShaderName;
+    private String fallbackFragmentSource;
 
     /** The vertex buffer that currently stores the object's vertices */
     private VertexBufferObject vertexBuffer;
@@ -78,15 +90,28 @@ public class Shader
     /** The location of the "time" uniform */
     private int timeLocation;
 
-    /** The compilation log of the fragment shader */
+    /** Skips uploads of uniform values that have not changed */
+    private final UniformCache uniforms = new UniformCache();
+
+    /** The projection matrix that was last copied into the projection array */
+    private Matrix copiedProjection;
+
+    /** The model-view and projection matrices, in the layout uploaded to OpenGL */
+    private final float[] modelViewArray = new float[16], projectionArray = new float[16];
+
+    /** The compilation log of the fragment shader, and the link log if it failed to link */
     private String fragmentShaderLog;
 
+    /** Did the most recently supplied fragment shader compile, and link? */
+    private boolean compiled;
+
     public Shader(ContentManager content, String fragmentSource)
     {
         this.vertexSource = readShaderFile(content, "shaders/phong_basic.vs.glsl");
         this.fragmentSource = fragmentSource;
 
-        compile(vertexSource, fragmentSource);
+        compileVertexShader();
+        compile(fragmentSource);
     }
 
     public Shader(ContentManager content)
@@ -95,58 +120,159 @@ public class Shader
         vertexSource = readShaderFile(content, "shaders/phong_basic.vs.glsl");
         fragmentSource = readShaderFile(content, "shaders/phong_basic.fs.glsl");
 
-        compile(vertexSource, fragmentSource);
+        compileVertexShader();
+        compile(fragmentSource);
     }
 
     /** Supply a fragment shader to use on the object (from the user).
+     * If it compiles, the program in use is kept to fall back on, until
+     * the new program is trusted (see trustProgram()).
      * @param fragmentSource The fragment shader source as a String.
-     * @return True if compilation was successful.
+     * @return True if compilation and linking were successful.
      */
     public boolean provideUserShader (String fragmentSource)
     {
         // Update source code
         this.fragmentSource = fragmentSource;
 
-        // Delete old program and fragment shader
-        GLES20.glDeleteProgram(programName);
-        GLES20.glDeleteShader(fragmentShaderName);
-
-        // Re-compile and re-link the shader
-        boolean compiled = compile(vertexSource, fragmentSource);
+        // Re-compile the fragment shader, and re-link it with the vertex shader.
+        // The program in use is only replaced if the new one compiles and links.
+        boolean compiled = compile(fragmentSource);
 
         // Re-supply shader attribute / uniform data
-        provideVertices(vertexBuffer);
+        if(compiled)
+            provideVertices(vertexBuffer);
 
         // Return compiler status
         return compiled;
     }
 
-    private boolean compile(String vertexSource, String fragmentSource)
+    /** Compile the vertex shader, which every program this shader links shares. */
+    private void compileVertexShader()
     {
-        // Compile the vertex and fragment shaders
         vertexShaderName = compile(GLES20.GL_VERTEX_SHADER, vertexSource);
-        fragmentShaderName = compile(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+        Log.d(TAG_VERTEX_SHADER, GLBackend.get().glGetShaderInfoLog(vertexShaderName));
+    }
+
+    /** Compile a fragment shader, link it with the vertex shader,
+     * and use the program if the fragment shader compiled and the program linked.
+     * @return True if the fragment shader compiled, and the program linked. */
+    private boolean compile(String fragmentSource)
+    {
+        GL gl = GLBackend.get();
+        Tracing.begin("Shader.compile");
+
+        int newFragmentShaderName = compile(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
 
         // Link the two shaders into a shader program
-        int newProgramName = GLES20.glCreateProgram();
-        GLES20.glAttachShader(newProgramName, vertexShaderName);
-        GLES20.glAttachShader(newProgramName, fragmentShaderName);
-        GLES20.glLinkProgram(newProgramName);
+        int newProgramName = gl.glCreateProgram();
+        gl.glAttachShader(newProgramName, vertexShaderName);
+        gl.glAttachShader(newProgramName, newFragmentShaderName);
+        gl.glLinkProgram(newProgramName);
+
+        // Check compile and link status:
+        // '0' indicates that OpenGL could not compile the shader, or link the program.
+        int compileStatus[] = new int[1], linkStatus[] = new int[1];
+        gl.glGetShaderiv(newFragmentShaderName, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
+        gl.glGetProgramiv(newProgramName, GLES20.GL_LINK_STATUS, linkStatus, 0);
+
+        // Print a debug log in case of errors, and keep the fragment log.
+        // A shader that compiles may still fail to link, such as with a varying
+        // that the vertex shader does not write, so the link log is kept too.
+        fragmentShaderLog = gl.glGetShaderInfoLog(newFragmentShaderName);
+        if(compileStatus[0] > 0 && linkStatus[0] == 0)
+            fragmentShaderLog += gl.glGetProgramInfoLog(newProgramName);
+        Log.d(TAG_FRAGMENT_SHADER, fragmentShaderLog);
+
+        // If the program linked, start using it. Otherwise, keep the program in use.
+        compiled = compileStatus[0] > 0 && linkStatus[0] != 0;
+        if(compiled)
+        {
+            replaceProgram(newProgramName, newFragmentShaderName);
+            this.compiledFragmentSource = fragmentSource;
+        }
+        else
+        {
+            GLStateCache.get().deleteProgram(newProgramName);
+            gl.glDeleteShader(newFragmentShaderName);
+        }
+
+        Tracing.end();
+        return compiled;
+    }
+
+    /** Start using a new program. A trusted program in use is kept to fall back on;
+     * one that is still on probation is deleted, keeping the older trusted one. */
+    private void replaceProgram(int newProgramName, int newFragmentShaderName)
+    {
+        if(programName != 0)
+        {
+            if(fallbackProgramName == 0)
+            {
+                fallbackProgramName = programName;
+                fallbackFragmentShaderName = fragmentShaderName;
+                fallbackFragmentSource = compiledFragmentSource;
+            }
+            else
+                deleteProgram(programName, fragmentShaderName);
+        }
+
+        programName = newProgramName;
+        fragmentShaderName = newFragmentShaderName;
+
+        // The new program's uniforms hold no values yet
+        uniforms.reset();
+    }
+
+    /** Delete a program, and the fragment shader that was linked into it. */
+    private static void deleteProgram(int programName, int fragmentShaderName)
+    {
+        GLStateCache.get().deleteProgram(programName);
+        GLBackend.get().glDeleteShader(fragmentShaderName);
+    }
 
-        // Print a debug log in case of compilation errors, and keep the fragment log.
-        handleLog();
+    /** Trust the program in use, as it has drawn frames in good time, and
+     * delete the program that was kept to fall back on.
+     * @param fragmentSource The source of the program that was found to be safe.
+     *                       Ignored unless it is the source of the program in use. */
+    public void trustProgram(String fragmentSource)
+    {
+        if(fallbackProgramName == 0 || !fragmentSource.equals(compiledFragmentSource))
+            return;
 
-        // Check compile status:
-        // '0' indicate that OpenGL could not link the shader.
-        int compileStatus[] = new int[1];
-        GLES20.glGetShaderiv(fragmentShaderName, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
+        deleteProgram(fallbackProgramName, fallbackFragmentShaderName);
+        fallbackProgramName = fallbackFragmentShaderName = 0;
+        fallbackFragmentSource = null;
+    }
 
-        // If the shader compiled, start using it.
-        boolean compiled = compileStatus[0] > 0;
-        if(compiled)
-            this.programName = newProgramName;
+    /** Stop using the program in use, which is on probation, and go back to the
+     * last program that was trusted. The supplied source is no longer in use, so
+     * isCompiled() becomes false.
+     * @return True if there was a trusted program to go back to. */
+    public boolean revertToTrustedProgram()
+    {
+        if(fallbackProgramName == 0)
+            return false;
+
+        deleteProgram(programName, fragmentShaderName);
+        programName = fallbackProgramName;
+        fragmentShaderName = fallbackFragmentShaderName;
+        compiledFragmentSource = fallbackFragmentSource;
+        fallbackProgramName = fallbackFragmentShaderName = 0;
+        fallbackFragmentSource = null;
+        compiled = false;
+
+        uniforms.reset();
+        if(vertexBuffer != null)
+            provideVertices(vertexBuffer);
+        return true;
+    }
 
-        return compiled;
+    /** @return True if the program in use has not yet been trusted, and a trusted
+     * program is kept to fall back on. */
+    public boolean isOnProbation()
+    {
+        return fallbackProgramName != 0;
     }
 
     /** Read in shader source code from a file.
@@ -166,11 +292,12 @@ public class Shader
      */
     private int compile(int type, String source)
     {
-        int name = GLES20.glCreateShader(type);
+        GL gl = GLBackend.get();
+        int name = gl.glCreateShader(type);
 
         // Provide source code and compile
-        GLES20.glShaderSource(name, source);
-        GLES20.glCompileShader(name);
+        gl.glShaderSource(name, source);
+        gl.glCompileShader(name);
 
         // Return shader name (ID)
         return name;
@@ -180,42 +307,52 @@ public class Shader
      * @param vertexBuffer The vertex buffer that stores vertex data. */
     public void provideVertices(VertexBufferObject vertexBuffer)
     {
+        GL gl = GLBackend.get();
         // Store the vertex buffer
         this.vertexBuffer = vertexBuffer;
 
         // Give the state machine the shader program to use
-        GLES20.glUseProgram(programName);
+        GLStateCache.get().useProgram(programName);
 
         // The location of the "vPosition" attribute
-        vPositionLocation = GLES20.glGetAttribLocation(programName, VPOSITION);
+        vPositionLocation = gl.glGetAttribLocation(programName, VPOSITION);
         // The location of the "vNormal" attribute
-        vNormalLocation = GLES20.glGetAttribLocation(programName, VNORMAL);
+        vNormalLocation = gl.glGetAttribLocation(programName, VNORMAL);
         // The location of the "vTexture" attribute
-        vTextureLocation = GLES20.glGetAttribLocation(programName, VTEXTURE);
+        vTextureLocation = gl.glGetAttribLocation(programName, VTEXTURE);
         // The location of the "model-view" matrix uniform
-        modelViewLocation = GLES20.glGetUniformLocation(programName, MV_MATRIX);
+        modelViewLocation = gl.glGetUniformLocation(programName, MV_MATRIX);
         // The location of the "projection" uniform
-        projectionLocation = GLES20.glGetUniformLocation(programName, PROJECTION_MATRIX);
+        projectionLocation = gl.glGetUniformLocation(programName, PROJECTION_MATRIX);
         // The location of the "time" uniform
-        timeLocation = GLES20.glGetUniformLocation(programName, TIME_UNIFORM);
-
-        // Create a buffer that will store the vertex data (coordinates, normal, texture)
-        int[] bufferName = new int[1];
-        GLES20.glGenBuffers(1, bufferName, 0);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, bufferName[0]);
-        GLES20.glBufferData(
-                GLES20.GL_ARRAY_BUFFER,
-                vertexBuffer.sizeInBytes(),
-                vertexBuffer.getFloatBuffer(),
-                GLES20.GL_STATIC_DRAW);
+        timeLocation = gl.glGetUniformLocation(programName, TIME_UNIFORM);
+
+        // The attribute locations or the vertex data may have changed
+        GLStateCache.get().invalidateVertexLayout();
+        bindVertices();
+    }
+
+    /** Point the shader's attributes at the vertex buffer.
+     * OpenGL ES 2.0 keeps a single set of attribute pointers for all programs,
+     * so this must be repeated whenever other geometry has been drawn since. */
+    private void bindVertices()
+    {
+        GLStateCache glState = GLStateCache.get();
+        GL gl = GLBackend.get();
+
+        // Three attributes: position, normal and texture coordinate
+        if(!glState.bindVertexLayout(this, 3))
+            return;
+
+        glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBuffer.getBufferName());
 
         // The amount (in bytes) to stride over the buffer to reach the next vertex
         int stride = vertexBuffer.vertexSizeInBytes();
 
         // Enable a vertex array attribute on the attribute named "vPosition"
-        GLES20.glEnableVertexAttribArray(vPositionLocation);
+        gl.glEnableVertexAttribArray(vPositionLocation);
         // Pass the vertex buffer data to the vPosition vertex attribute array
-        GLES20.glVertexAttribPointer(
+        gl.glVertexAttribPointer(
                 vPositionLocation, // Attribute name
                 3,                 // Attribute size
                 GLES20.GL_FLOAT,   // Data type (float)
@@ -224,9 +361,9 @@ public class Shader
                 0);                // Offset into vertex array
 
         // Enable a vertex array attribute on the attribute named "vNormal"
-        GLES20.glEnableVertexAttribArray(vNormalLocation);
+        gl.glEnableVertexAttribArray(vNormalLocation);
         // Pass the vertex buffer data to the vNormal vertex attribute array
-        GLES20.glVertexAttribPointer(
+        gl.glVertexAttribPointer(
                 vNormalLocation,   // Attribute name
                 3,                 // Attribute size
                 GLES20.GL_FLOAT,   // Data type (float)
@@ -235,9 +372,9 @@ public class Shader
                 4*3);              // Offset into vertex array
 
         // Enable a vertex array attribute on the attribute named "vTexture"
-        GLES20.glEnableVertexAttribArray(vTextureLocation);
+        gl.glEnableVertexAttribArray(vTextureLocation);
         // Pass the vertex buffer data to the vTexture vertex attribute array
-        GLES20.glVertexAttribPointer(
+        gl.glVertexAttribPointer(
                 vTextureLocation,  // Attribute name
                 2,                 // Attribute size
                 GLES20.GL_FLOAT,   // Data type (float)
@@ -246,6 +383,46 @@ public class Shader
                 4*6);              // Offset into vertex array
     }
 
+    /** Delete the OpenGL program and shaders owned by this shader.
+     * The vertex buffer belongs to the model, and is not deleted. */
+    public void release()
+    {
+        deleteProgram(programName, fragmentShaderName);
+        if(fallbackProgramName != 0)
+            deleteProgram(fallbackProgramName, fallbackFragmentShaderName);
+        GLBackend.get().glDeleteShader(vertexShaderName);
+    }
+
+    @Override
+    public void discard()
+    {
+        vertexShaderName = fragmentShaderName = programName = 0;
+        fallbackProgramName = fallbackFragmentShaderName = 0;
+    }
+
+    /** Re-compile the program from the sources of the one that was in use, without
+     * reading any files, and give it the vertex buffer again. A program on probation
+     * is not restored; the trusted one it would have fallen back on is. */
+    @Override
+    public void restore()
+    {
+        // Keep the state of the most recent compile, which may have failed
+        boolean lastCompiled = compiled;
+        String lastLog = fragmentShaderLog;
+
+        String source = fallbackFragmentSource != null ? fallbackFragmentSource
+                : compiledFragmentSource != null ? compiledFragmentSource : fragmentSource;
+        fallbackFragmentSource = null;
+
+        compileVertexShader();
+        compile(source);
+        if(vertexBuffer != null)
+            provideVertices(vertexBuffer);
+
+        compiled = lastCompiled && fragmentSource != null && fragmentSource.equals(source);
+        fragmentShaderLog = lastLog;
+    }
+
     /** Set the shader's texture */
     public void setTexture(Texture2D texture)
     {
@@ -256,39 +433,97 @@ public class Shader
      * @param time The time, in fractional seconds, since the program started. */
     public void use(float time)
     {
-        // Compute the model-view matrix
-        Matrix modelView = Matrix.multiply(view, world);
+        Tracing.begin("Shader.use");
+        bindProgram();
+
+        // A model's world is changed in place, so the model-view matrix is computed on
+        // every use; it costs less than an upload, and the cache skips unchanged uploads
+        Matrix.multiply(view, world, modelViewArray, 0);
+        if(projection != copiedProjection)
+        {
+            projection.asColumnMajorArray(projectionArray);
+            copiedProjection = projection;
+        }
+
+        // Provide the uniforms; unchanged values are not uploaded again
+        uniforms.setMatrix4(modelViewLocation, modelViewArray);
+        uniforms.setMatrix4(projectionLocation, projectionArray);
+        uniforms.set1f(timeLocation, time);
+        Tracing.end();
+    }
+
+    /** Set the OpenGL state machine to use this shader program, with a model-view and
+     * projection matrix that were computed elsewhere, such as while recording a CommandList.
+     * The world, view and projection set on this shader are ignored.
+     * @param time The time, in fractional seconds, since the program started.
+     * @param matrices An array that holds the model-view matrix, then the projection
+     *                 matrix, each in column-major order.
+     * @param offset The index at which the model-view matrix starts. */
+    public void use(float time, float[] matrices, int offset)
+    {
+        Tracing.begin("Shader.use");
+        bindProgram();
+
+        uniforms.setMatrix4(modelViewLocation, matrices, offset);
+        uniforms.setMatrix4(projectionLocation, matrices, offset + 16);
+        uniforms.set1f(timeLocation, time);
+        Tracing.end();
+    }
+
+    /** Use the program, and bind the vertex buffer and texture to it. */
+    private void bindProgram()
+    {
+        GLStateCache glState = GLStateCache.get();
 
         // Enable the shader program
-        GLES20.glUseProgram(programName);
+        glState.useProgram(programName);
+
+        // Other passes may have re-pointed the vertex attributes
+        if(vertexBuffer != null)
+            bindVertices();
 
         // If the texture has been set, use it.
         if(texture != null)
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture.getTextureName());
-
-        // Provide matrix uniforms
-        GLES20.glUniformMatrix4fv(
-                modelViewLocation,       // Uniform name
-                1,                       // Matrix count
-                true,                    // Transpose the matrix
-                modelView.as1DArray(),   // The matrix as an array
-                0                        // Offset into the array
-        );
-        GLES20.glUniformMatrix4fv(
-                projectionLocation,      // Uniform name
-                1,                       // Matrix count
-                true,                    // Transpose the matrix
-                projection.as1DArray(),  // The matrix as an array
-                0                        // Offset into the array
-        );
-        GLES20.glUniform1f(timeLocation, time);
+        {
+            glState.activeTexture(GLES20.GL_TEXTURE0);
+            glState.bindTexture(texture.getTextureName());
+        }
+    }
+
+    /** @return The name (ID) of the current shader program */
+    public int getProgramName()
+    {
+        return programName;
+    }
+
+    /** @return The location of a uniform in the current program, or -1 if it is unused. */
+    public int getUniformLocation(String name)
+    {
+        return GLBackend.get().glGetUniformLocation(programName, name);
+    }
+
+    /** @return The cache through which any of this program's uniforms may be set,
+     * skipping unchanged values. The program must be in use. */
+    public UniformCache getUniforms()
+    {
+        return uniforms;
+    }
+
+    /** Determine whether the shader program reads the "time" uniform.
+     * The GLSL linker removes uniforms that are never used, so such
+     * a uniform has no location.
+     * @return True if the rendered image depends on time. */
+    public boolean usesTime()
+    {
+        return timeLocation != -1;
     }
 
     /** Print the shader info log to the debugging stream. */
     public void handleLog()
     {
-        Log.d(TAG_VERTEX_SHADER, GLES20.glGetShaderInfoLog(vertexShaderName));
-        Log.d(TAG_FRAGMENT_SHADER, fragmentShaderLog = GLES20.glGetShaderInfoLog(fragmentShaderName));
+        GL gl = GLBackend.get();
+        Log.d(TAG_VERTEX_SHADER, gl.glGetShaderInfoLog(vertexShaderName));
+        Log.d(TAG_FRAGMENT_SHADER, fragmentShaderLog = gl.glGetShaderInfoLog(fragmentShaderName));
     }
 
     /** Set the world (model) matrix transform */
@@ -306,11 +541,24 @@ public class Shader
         this.projection = projection;
     }
 
+    /** @return True if the most recently supplied fragment shader compiled,
+     * and is the one in use. */
+    public boolean isCompiled()
+    {
+        return compiled;
+    }
+
     /** @return The fragment shader source code */
     public String getFragmentSource() {
         return fragmentSource;
     }
 
+    /** @return The fragment shader source code of the program in use. This is the last
+     * source that compiled, which differs from getFragmentSource() after a failed compile. */
+    public String getCompiledFragmentSource() {
+        return compiledFragmentSource;
+    }
+
     /** @return The fragment shader compiler log */
     public String getFragmentShaderLog() {
         return fragmentShaderLog;
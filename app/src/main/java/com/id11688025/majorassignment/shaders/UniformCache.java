@@ -0,0 +1,331 @@
+package com.id11688025.majorassignment.shaders;
+
+import com.id11688025.majorassignment.graphics.GL;
+import com.id11688025.majorassignment.graphics.GLBackend;
+
+
+/**
+ * Remembers the values last uploaded to a program's uniforms, and skips
+ * uploads of values that have not changed.
+ *
+ * Uniform values belong to a program, so each program needs its own cache,
+ * which must be reset whenever the program is re-linked. Values are compared
+ * bit for bit, so any change, however small, is uploaded. The program must
+ * be in use when a value is set.
+ *
+ * Locations are opaque values chosen by the driver, and may be large or
+ * sparse, so each is given a dense index, in the order in which locations are
+ * first set. Programs have few uniforms, so the index is found by a linear
+ * search. Storage for each index is allocated when it is first used, and kept
+ * when the cache is reset, so that steady-state frames allocate nothing.
+ */
+public class UniformCache
+{
+    /** The initial number of uniform locations with storage */
+    private static final int INITIAL_LOCATIONS = 8;
+
+    /** The location given each index */
+    private int[] locations = new int[INITIAL_LOCATIONS];
+
+    /** The number of indices given to locations since the cache was reset */
+    private int locationCount = 0;
+
+    /** The last uploaded value of each index's location, as raw bits. Null if never uploaded. */
+    private int[][] values = new int[INITIAL_LOCATIONS][];
+
+    /** Does each index's location hold the value last uploaded? */
+    private boolean[] known = new boolean[INITIAL_LOCATIONS];
+
+    /** The number of uploads made to OpenGL, and skipped */
+    private int uploads, skippedUploads;
+
+    /** Forget all uploaded values and locations, as the program has been re-linked. */
+    public void reset()
+    {
+        // Keep the storage, so that re-linking allocates nothing
+        for(int i=0; i < known.length; i++)
+            known[i] = false;
+        locationCount = 0;
+    }
+
+    /** Equivalent to glUniform1f. */
+    public void set1f(int location, float x)
+    {
+        int index = slot(location, 1);
+        if(index < 0) return;
+        int[] cached = values[index];
+
+        int bx = Float.floatToRawIntBits(x);
+        if(known[index] && cached[0] == bx) { skippedUploads++; return; }
+
+        cached[0] = bx;
+        GLBackend.get().glUniform1f(location, x);
+        known[index] = true;
+        uploads++;
+    }
+
+    /** Equivalent to glUniform2f. */
+    public void set2f(int location, float x, float y)
+    {
+        int index = slot(location, 2);
+        if(index < 0) return;
+        int[] cached = values[index];
+
+        int bx = Float.floatToRawIntBits(x), by = Float.floatToRawIntBits(y);
+        if(known[index] && cached[0] == bx && cached[1] == by) { skippedUploads++; return; }
+
+        cached[0] = bx; cached[1] = by;
+        GLBackend.get().glUniform2f(location, x, y);
+        known[index] = true;
+        uploads++;
+    }
+
+    /** Equivalent to glUniform3f. */
+    public void set3f(int location, float x, float y, float z)
+    {
+        int index = slot(location, 3);
+        if(index < 0) return;
+        int[] cached = values[index];
+
+        int bx = Float.floatToRawIntBits(x), by = Float.floatToRawIntBits(y),
+            bz = Float.floatToRawIntBits(z);
+        if(known[index] && cached[0] == bx && cached[1] == by && cached[2] == bz) { skippedUploads++; return; }
+
+        cached[0] = bx; cached[1] = by; cached[2] = bz;
+        GLBackend.get().glUniform3f(location, x, y, z);
+        known[index] = true;
+        uploads++;
+    }
+
+    /** Equivalent to glUniform4f. */
+    public void set4f(int location, float x, float y, float z, float w)
+    {
+        int index = slot(location, 4);
+        if(index < 0) return;
+        int[] cached = values[index];
+
+        int bx = Float.floatToRawIntBits(x), by = Float.floatToRawIntBits(y),
+            bz = Float.floatToRawIntBits(z), bw = Float.floatToRawIntBits(w);
+        if(known[index] && cached[0] == bx && cached[1] == by && cached[2] == bz && cached[3] == bw)
+        {
+            skippedUploads++;
+            return;
+        }
+
+        cached[0] = bx; cached[1] = by; cached[2] = bz; cached[3] = bw;
+        GLBackend.get().glUniform4f(location, x, y, z, w);
+        known[index] = true;
+        uploads++;
+    }
+
+    /** Equivalent to glUniform1i. Also used for samplers. */
+    public void set1i(int location, int x)
+    {
+        int index = slot(location, 1);
+        if(index < 0) return;
+        int[] cached = values[index];
+
+        if(known[index] && cached[0] == x) { skippedUploads++; return; }
+
+        cached[0] = x;
+        GLBackend.get().glUniform1i(location, x);
+        known[index] = true;
+        uploads++;
+    }
+
+    /** Equivalent to glUniform2i. */
+    public void set2i(int location, int x, int y)
+    {
+        int index = slot(location, 2);
+        if(index < 0) return;
+        int[] cached = values[index];
+
+        if(known[index] && cached[0] == x && cached[1] == y) { skippedUploads++; return; }
+
+        cached[0] = x; cached[1] = y;
+        GLBackend.get().glUniform2i(location, x, y);
+        known[index] = true;
+        uploads++;
+    }
+
+    /** Equivalent to glUniform3i. */
+    public void set3i(int location, int x, int y, int z)
+    {
+        int index = slot(location, 3);
+        if(index < 0) return;
+        int[] cached = values[index];
+
+        if(known[index] && cached[0] == x && cached[1] == y && cached[2] == z) { skippedUploads++; return; }
+
+        cached[0] = x; cached[1] = y; cached[2] = z;
+        GLBackend.get().glUniform3i(location, x, y, z);
+        known[index] = true;
+        uploads++;
+    }
+
+    /** Equivalent to glUniform4i. */
+    public void set4i(int location, int x, int y, int z, int w)
+    {
+        int index = slot(location, 4);
+        if(index < 0) return;
+        int[] cached = values[index];
+
+        if(known[index] && cached[0] == x && cached[1] == y && cached[2] == z && cached[3] == w)
+        {
+            skippedUploads++;
+            return;
+        }
+
+        cached[0] = x; cached[1] = y; cached[2] = z; cached[3] = w;
+        GLBackend.get().glUniform4i(location, x, y, z, w);
+        known[index] = true;
+        uploads++;
+    }
+
+    /** Equivalent to glUniform1fv, glUniform2fv, glUniform3fv or glUniform4fv,
+     * for uniforms of any float vector type, and arrays of them.
+     * @param size The number of components per element (1 to 4).
+     * @param count The number of array elements.
+     * @param value The components of every element. */
+    public void setfv(int location, int size, int count, float[] value)
+    {
+        GL gl = GLBackend.get();
+        int length = size * count;
+        int index = slot(location, length);
+        if(index < 0) return;
+        int[] cached = values[index];
+        if(!update(cached, value, 0, length) && known[index]) { skippedUploads++; return; }
+
+        switch (size)
+        {
+            case 1: gl.glUniform1fv(location, count, value, 0); break;
+            case 2: gl.glUniform2fv(location, count, value, 0); break;
+            case 3: gl.glUniform3fv(location, count, value, 0); break;
+            case 4: gl.glUniform4fv(location, count, value, 0); break;
+            default: throw new IllegalArgumentException("Uniform vectors have 1 to 4 components.");
+        }
+        known[index] = true;
+        uploads++;
+    }
+
+    /** Equivalent to glUniformMatrix2fv for a single matrix, without transposition.
+     * @param matrix The matrix in column-major order, as OpenGL ES expects. */
+    public void setMatrix2(int location, float[] matrix)
+    {
+        int index = slot(location, 4);
+        if(index < 0) return;
+        int[] cached = values[index];
+        if(!update(cached, matrix, 0, 4) && known[index]) { skippedUploads++; return; }
+
+        GLBackend.get().glUniformMatrix2fv(location, 1, false, matrix, 0);
+        known[index] = true;
+        uploads++;
+    }
+
+    /** Equivalent to glUniformMatrix3fv for a single matrix, without transposition.
+     * @param matrix The matrix in column-major order, as OpenGL ES expects. */
+    public void setMatrix3(int location, float[] matrix)
+    {
+        int index = slot(location, 9);
+        if(index < 0) return;
+        int[] cached = values[index];
+        if(!update(cached, matrix, 0, 9) && known[index]) { skippedUploads++; return; }
+
+        GLBackend.get().glUniformMatrix3fv(location, 1, false, matrix, 0);
+        known[index] = true;
+        uploads++;
+    }
+
+    /** Equivalent to glUniformMatrix4fv for a single matrix, without transposition.
+     * @param matrix The matrix in column-major order, as OpenGL ES expects. */
+    public void setMatrix4(int location, float[] matrix)
+    {
+        setMatrix4(location, matrix, 0);
+    }
+
+    /** Equivalent to glUniformMatrix4fv for a single matrix, without transposition.
+     * @param matrix An array that holds the matrix in column-major order, as OpenGL ES expects.
+     * @param offset The index at which the matrix starts. */
+    public void setMatrix4(int location, float[] matrix, int offset)
+    {
+        int index = slot(location, 16);
+        if(index < 0) return;
+        int[] cached = values[index];
+        if(!update(cached, matrix, offset, 16) && known[index]) { skippedUploads++; return; }
+
+        GLBackend.get().glUniformMatrix4fv(location, 1, false, matrix, offset);
+        known[index] = true;
+        uploads++;
+    }
+
+    /** Copy new values into a cache slot.
+     * @return True if any value differed from the cached one. */
+    private static boolean update(int[] cached, float[] value, int offset, int length)
+    {
+        boolean changed = false;
+        for(int i=0; i < length; i++)
+        {
+            int bits = Float.floatToRawIntBits(value[offset + i]);
+            if(cached[i] != bits)
+            {
+                cached[i] = bits;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /** Find the index of a location, giving it the next index, and storage, on first use.
+     * @return The index, or -1 if the location is -1 (the uniform is unused). */
+    private int slot(int location, int length)
+    {
+        if(location < 0)
+            return -1;
+
+        int index = 0;
+        while(index < locationCount && locations[index] != location)
+            index++;
+
+        if(index == locationCount)
+        {
+            if(index == locations.length)
+            {
+                int newLength = locations.length * 2;
+                int[] grownLocations = new int[newLength];
+                int[][] grownValues = new int[newLength][];
+                boolean[] grownKnown = new boolean[newLength];
+                System.arraycopy(locations, 0, grownLocations, 0, locations.length);
+                System.arraycopy(values, 0, grownValues, 0, values.length);
+                System.arraycopy(known, 0, grownKnown, 0, known.length);
+                locations = grownLocations;
+                values = grownValues;
+                known = grownKnown;
+            }
+
+            locations[index] = location;
+            known[index] = false;
+            locationCount++;
+        }
+
+        int[] cached = values[index];
+        if(cached == null || cached.length < length)
+        {
+            values[index] = new int[length];
+            known[index] = false;
+        }
+
+        return index;
+    }
+
+    /** @return The number of uniform uploads made to OpenGL since the cache was created. */
+    public int getUploads()
+    {
+        return uploads;
+    }
+
+    /** @return The number of unchanged uniform uploads skipped since the cache was created. */
+    public int getSkippedUploads()
+    {
+        return skippedUploads;
+    }
+}
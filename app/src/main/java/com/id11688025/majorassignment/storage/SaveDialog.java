@@ -12,8 +12,10 @@ import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.Toast;
 
+import com.id11688025.majorassignment.Constants;
 import com.id11688025.majorassignment.ContentManager;
 import com.id11688025.majorassignment.R;
+import com.id11688025.majorassignment.profiling.BenchmarkReport;
 import com.id11688025.majorassignment.shaders.Shader;
 
 /**
@@ -35,6 +37,18 @@ public class SaveDialog extends AlertDialog
      * @param render An image of a render produced with the shader
      */
     public SaveDialog(final Context context, final Shader shader, final Bitmap render)
+    {
+        this(context, shader, render, null);
+    }
+
+    /**
+     * Create a "Save Shader" dialog
+     * @param context An application context
+     * @param shader The shader to save
+     * @param render An image of a render produced with the shader, or null if none could be made
+     * @param report A benchmark of the shader, saved beside it, or null
+     */
+    public SaveDialog(final Context context, final Shader shader, final Bitmap render, final BenchmarkReport report)
     {
         super(context);
 
@@ -66,6 +80,10 @@ public class SaveDialog extends AlertDialog
                 // Save the shader
                 database.save(description);
 
+                // Save the benchmark beside it
+                if(report != null && description.getPath() != null)
+                    ContentManager.saveBenchmarkReport(context, description, report);
+
                 // Display a short Toast
                 Toast.makeText(context, R.string.shader_saved, Toast.LENGTH_SHORT).show();
             }
@@ -96,15 +114,22 @@ public class SaveDialog extends AlertDialog
         return description;
     }
 
-    /** Crops and resamples a bitmap to a 255 * 255 pixel square */
+    /** Crops and resamples a bitmap to a thumbnail-sized square */
     private Bitmap createThumbnail(Bitmap original)
     {
-        // 512 x 512 pixels
-        final int SIZE = 512;
+        final int SIZE = Constants.THUMBNAIL_SIZE;
+
+        // No render could be made, as no model was loaded
+        if(original == null)
+            return null;
 
         int originalWidth = original.getWidth();
         int originalHeight = original.getHeight();
 
+        // Renders made offscreen are already thumbnails
+        if(originalWidth == SIZE && originalHeight == SIZE)
+            return original;
+
         // Determine which dimension should be constrained
         Bitmap cropped;
         if(originalWidth > originalHeight)
@@ -97,7 +97,8 @@ public class ShaderDescription
             return;
 
         ContentManager.saveShader(context, this, shaderSource);
-        ContentManager.saveRender(context, this, render);
+        if(render != null)
+            ContentManager.saveRender(context, this, render);
     }
 
     /** Read the shader data and its render from storage */
@@ -0,0 +1,310 @@
+package com.id11688025.majorassignment.storage;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.id11688025.majorassignment.Camera;
+import com.id11688025.majorassignment.Constants;
+import com.id11688025.majorassignment.ContentManager;
+import com.id11688025.majorassignment.VertexBufferObject;
+import com.id11688025.majorassignment.graphics.FrameCapture;
+import com.id11688025.majorassignment.graphics.BandwidthCounters;
+import com.id11688025.majorassignment.graphics.GL;
+import com.id11688025.majorassignment.graphics.GLBackend;
+import com.id11688025.majorassignment.graphics.GLStateCache;
+import com.id11688025.majorassignment.graphics.LoadAction;
+import com.id11688025.majorassignment.graphics.RenderPass;
+import com.id11688025.majorassignment.graphics.RenderTarget2D;
+import com.id11688025.majorassignment.graphics.StoreAction;
+import com.id11688025.majorassignment.graphics.SharedEGLContext;
+import com.id11688025.majorassignment.graphics.Texture2D;
+import com.id11688025.majorassignment.math.Matrix;
+import com.id11688025.majorassignment.math.Vector3;
+import com.id11688025.majorassignment.shaders.Shader;
+
+import java.io.IOException;
+
+import javax.microedition.khronos.egl.EGLContext;
+
+/**
+ * A background thread that re-renders the thumbnail of every
+ * user shader in the local shader database, with the current
+ * model and texture.
+ *
+ * Rendering happens in a second OpenGL context which shares the
+ * renderer's vertex data and texture. The thread runs at background
+ * priority and pauses between shaders, so that the interactive view
+ * keeps priority on the GPU.
+ */
+public class ThumbnailRegenerator extends Thread
+{
+    /** Receives progress updates on the UI thread. */
+    public interface Listener
+    {
+        /** @param completed The number of shaders processed so far.
+         * @param total The number of shaders in the database. */
+        void onProgress(int completed, int total);
+
+        /** @param regenerated The number of thumbnails that were written.
+         * @param cancelled True if the job was cancelled before it completed. */
+        void onFinished(int regenerated, boolean cancelled);
+    }
+
+    /** The class tag for Logcat tracing */
+    private static final String TAG = "THUMBNAIL_REGENERATOR";
+
+    /** The pause between shaders, which leaves the GPU to the interactive view */
+    private static final long THROTTLE_MILLIS = 100;
+
+    /** An application context */
+    private final Context context;
+
+    /** The renderer's context, with which resources are shared */
+    private final EGLContext shareContext;
+
+    /** The model's vertex data */
+    private final VertexBufferObject vertexBuffer;
+
+    /** The model's texture, which lives in the shared context */
+    private final Texture2D texture;
+
+    /** The width and height of each thumbnail, in pixels */
+    private final int size;
+
+    /** Receives progress updates, or null */
+    private final Listener listener;
+
+    /** Delivers progress updates to the UI thread */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** Clears each thumbnail to the renderer's background; the depth is not kept */
+    private final RenderPass pass = new RenderPass(LoadAction.CLEAR, StoreAction.STORE,
+            LoadAction.CLEAR, StoreAction.DONT_CARE);
+
+    /** Has the job been cancelled? */
+    private volatile boolean isCancelled = false;
+
+    /** The number of shaders processed so far */
+    private volatile int completed = 0;
+
+    /** The number of shaders in the database */
+    private volatile int total = 0;
+
+    /** The number of thumbnails that were written */
+    private int regenerated = 0;
+
+    /**
+     * Create a thumbnail regeneration job. Call start() to run it.
+     * @param context An application context.
+     * @param shareContext The renderer's EGL context.
+     * @param vertexBuffer The vertices of the model to render.
+     * @param texture The texture to render the model with.
+     * @param size The width and height of each thumbnail, in pixels.
+     * @param listener Receives progress updates on the UI thread. May be null.
+     */
+    public ThumbnailRegenerator(Context context, EGLContext shareContext,
+                                VertexBufferObject vertexBuffer, Texture2D texture,
+                                int size, Listener listener)
+    {
+        super(TAG);
+
+        this.context = context.getApplicationContext();
+        this.shareContext = shareContext;
+        this.vertexBuffer = vertexBuffer;
+        this.texture = texture;
+        this.size = size;
+        this.listener = listener;
+
+        pass.setClearColor(0.1f, 0.1f, 0.1f, 1.0f);
+    }
+
+    @Override
+    public void run()
+    {
+        GL gl = GLBackend.get();
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        SharedEGLContext eglContext = null;
+        RenderTarget2D target = null;
+
+        try
+        {
+            eglContext = new SharedEGLContext(shareContext);
+            eglContext.makeCurrent();
+
+            // The new context starts with default state
+            GLStateCache glState = GLStateCache.get();
+            glState.reset();
+            BandwidthCounters.get().reset();
+            glState.enable(GLES20.GL_CULL_FACE);
+            gl.glFrontFace(GLES20.GL_CCW);
+            glState.enable(GLES20.GL_DEPTH_TEST);
+            gl.glDepthFunc(GLES20.GL_LEQUAL);
+
+            target = new RenderTarget2D(size, size);
+
+            regenerateAll(target);
+        }
+        catch (RuntimeException e)
+        {
+            Log.e(TAG, "Thumbnail regeneration failed", e);
+        }
+        finally
+        {
+            if(target != null)
+                target.release();
+            if(eglContext != null)
+                eglContext.release();
+        }
+
+        postFinished();
+    }
+
+    /** Walk the database, and re-render each user shader's thumbnail. */
+    private void regenerateAll(RenderTarget2D target)
+    {
+        if(!ContentManager.isExternalStorageWritable())
+            return;
+
+        LocalShaderDatabase database = new LocalShaderDatabase(context);
+        ContentManager content = new ContentManager(context);
+        FrameCapture capture = new FrameCapture();
+
+        // A square camera, as used for thumbnails in the renderer
+        Camera camera = new Camera(new Vector3(0,0,1.5f), Vector3.zero, Vector3.up);
+
+        total = database.count();
+
+        for(int position = 0; position < total && !isCancelled; position++)
+        {
+            ShaderDescription description = database.load(database.getIdOfItemAtPosition(position));
+
+            // Built-in shaders keep the renders that ship in the assets
+            if(description != null && !description.isRequired())
+            {
+                try
+                {
+                    String source = ContentManager.loadShader(context, description.getPath());
+
+                    // A shader known to hang the GPU is not compiled; a placeholder is rendered instead
+                    if(UnsafeShaders.isUnsafe(context, source))
+                        source = content.fileAsString(Constants.PLACEHOLDER_SHADER);
+
+                    Bitmap render = renderThumbnail(target, content, camera, capture, source);
+
+                    if(render != null)
+                    {
+                        ContentManager.saveRender(context, description, render);
+                        regenerated++;
+                    }
+                }
+                catch (IOException e)
+                {
+                    // The source file is missing; there is nothing to render
+                }
+            }
+
+            completed = position + 1;
+            postProgress();
+
+            // Leave the GPU to the interactive view for a while
+            try { Thread.sleep(THROTTLE_MILLIS); }
+            catch (InterruptedException e) { break; }
+        }
+    }
+
+    /** Compile a fragment shader, and render the model with it into the render target.
+     * @return The rendered thumbnail, or null if the shader does not compile. */
+    private Bitmap renderThumbnail(RenderTarget2D target, ContentManager content, Camera camera,
+                                   FrameCapture capture, String fragmentSource)
+    {
+        Shader shader = new Shader(content, fragmentSource);
+
+        try
+        {
+            if(!shader.isCompiled())
+                return null;
+
+            shader.provideVertices(vertexBuffer);
+
+            pass.begin(target);
+
+            shader.setWorld(Matrix.createIdentity());
+            shader.setView(camera.getView());
+            shader.setProjection(camera.getProjection());
+            shader.setTexture(texture);
+            shader.use(0);
+
+            GLBackend.get().glDrawArrays(GLES20.GL_TRIANGLES, 0, vertexBuffer.vertexCount());
+
+            // Reading back waits for this thumbnail alone to finish
+            Bitmap render = capture.captureNow(0, 0, size, size);
+            pass.end();
+            return render;
+        }
+        finally
+        {
+            target.unbind();
+            shader.release();
+        }
+    }
+
+    /** Stop the job after the current shader. */
+    public void cancel()
+    {
+        isCancelled = true;
+        interrupt();
+    }
+
+    /** @return True if the job has been cancelled. */
+    public boolean isCancelled()
+    {
+        return isCancelled;
+    }
+
+    /** @return The number of shaders processed so far. */
+    public int getCompleted()
+    {
+        return completed;
+    }
+
+    /** @return The number of shaders in the database, once known. */
+    public int getTotal()
+    {
+        return total;
+    }
+
+    private void postProgress()
+    {
+        if(listener == null)
+            return;
+
+        final int completed = this.completed, total = this.total;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onProgress(completed, total);
+            }
+        });
+    }
+
+    private void postFinished()
+    {
+        if(listener == null)
+            return;
+
+        final int regenerated = this.regenerated;
+        final boolean cancelled = this.isCancelled;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onFinished(regenerated, cancelled);
+            }
+        });
+    }
+}
@@ -0,0 +1,157 @@
+package com.id11688025.majorassignment.storage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import com.id11688025.majorassignment.Constants;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Remembers the fragment shaders that hung the GPU, so that they are not
+ * compiled again unless they are changed.
+ *
+ * Each shader is identified by a digest of its exact source, kept in the
+ * application's shared preferences, so it is remembered across restarts.
+ *
+ * A shader on probation is kept in memory. Its digest is also stored with the
+ * unsafe ones, so that a hang that kills the process before it is detected is
+ * still remembered. That mark is written with commit(), not apply(), as the
+ * process may be killed by a hang before an asynchronous write reaches the
+ * disk. Shaders are compiled as the user types, so writes are made on a worker
+ * thread, never on the OpenGL thread, and in the order in which they were
+ * asked for. Clearing the mark cannot lose a hang, so it uses apply().
+ *
+ * The probation methods must be called on a single thread.
+ */
+public class UnsafeShaders
+{
+    /** The digest algorithm by which sources are identified */
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+
+    /** Writes the unsafe set, in order, off the thread that asked for each write */
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "UnsafeShaders");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** The source on probation, whose digest is stored as unsafe; null if none is */
+    private static String probationSource;
+
+    /** Remember that a fragment shader hung the GPU.
+     * @param context An application context.
+     * @param source The fragment shader source code. */
+    public static void markUnsafe(Context context, String source)
+    {
+        // Its probation mark is kept for good
+        if(source.equals(probationSource))
+            probationSource = null;
+
+        write(context, null, source, true);
+    }
+
+    /** Count a fragment shader as unsafe from before its first frame is drawn, until
+     * its probation ends. Ends the probation of any other shader, which is no longer
+     * drawn, in the same write.
+     * @param context An application context.
+     * @param source The fragment shader source code. */
+    public static void beginProbation(Context context, String source)
+    {
+        if(source.equals(probationSource))
+            return;
+
+        String previous = probationSource;
+        probationSource = source;
+        write(context, previous, source, true);
+    }
+
+    /** Forget that a fragment shader was on probation, as it has drawn frames in good time.
+     * @param context An application context.
+     * @param source The fragment shader source code. */
+    public static void endProbation(Context context, String source)
+    {
+        if(!source.equals(probationSource))
+            return;
+
+        probationSource = null;
+        write(context, source, null, false);
+    }
+
+    /**
+     * Remove one source's digest from the unsafe set and add another's, in one
+     * edit, on the worker thread.
+     * @param removed The source to remove, or null.
+     * @param added The source to add, or null.
+     * @param wait True to write with commit(), so that the change survives the
+     *             process being killed once it returns; false to use apply().
+     */
+    private static void write(Context context, final String removed, final String added, final boolean wait)
+    {
+        final SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                // The returned set must not be modified
+                Set<String> digests = new HashSet<String>(
+                        preferences.getStringSet(Constants.KEY_UNSAFE_SHADERS, new HashSet<String>()));
+                boolean changed = removed != null && digests.remove(digest(removed));
+                changed |= added != null && digests.add(digest(added));
+                if(!changed)
+                    return;
+
+                SharedPreferences.Editor editor = preferences.edit()
+                        .putStringSet(Constants.KEY_UNSAFE_SHADERS, digests);
+                if(wait)
+                    editor.commit();
+                else
+                    editor.apply();
+            }
+        });
+    }
+
+    /** @return True if this exact fragment shader source has hung the GPU before.
+     * @param context An application context.
+     * @param source The fragment shader source code. */
+    public static boolean isUnsafe(Context context, String source)
+    {
+        Set<String> digests = PreferenceManager.getDefaultSharedPreferences(context)
+                .getStringSet(Constants.KEY_UNSAFE_SHADERS, null);
+
+        return digests != null && digests.contains(digest(source));
+    }
+
+    /** @return The digest of a source, as a hexadecimal string. */
+    private static String digest(String source)
+    {
+        try
+        {
+            byte[] hash = MessageDigest.getInstance(DIGEST_ALGORITHM).digest(source.getBytes("UTF-8"));
+
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for(byte b : hash)
+                hex.append(String.format("%02x", b));
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.id11688025.majorassignment.timing;
+
+/**
+ * A source of monotonic time for the renderer.
+ *
+ * The renderer never reads the system clock directly, so that
+ * a fake clock can be supplied when frame timing must be controlled.
+ */
+public interface FrameClock
+{
+    /** @return The current time in nanoseconds. Only differences between values are meaningful. */
+    long nanoTime();
+}
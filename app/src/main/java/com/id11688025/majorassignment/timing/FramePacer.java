@@ -0,0 +1,250 @@
+package com.id11688025.majorassignment.timing;
+
+/**
+ * Limits the rate at which the renderer draws frames, so that long editing
+ * sessions do not run the GPU flat out and heat the device until it throttles.
+ *
+ * Frames are given evenly spaced start times at the capped rate. Each frame waits
+ * for its slot; slots advance by whole intervals from the previous slot, not from
+ * when the previous frame actually started, so that small delays do not shift
+ * the cadence. After a pause or a long frame, the slots start again from now.
+ *
+ * A lower cap may apply while the user edits code, when the image matters less.
+ * If frames keep taking longer than the capped interval, the cap drops to the
+ * next rate that divides the display's refresh rate evenly (60, 30, 20, 15 fps),
+ * so that frames are presented at a steady rate rather than an uneven one. Once
+ * frames would comfortably fit the next higher rate, the cap rises again.
+ *
+ * Time is read from a FrameClock, so the pacer can be driven by a fake clock.
+ */
+public class FramePacer
+{
+    /** A cap of this value means that frames are not limited */
+    public static final int UNCAPPED = 0;
+
+    /** The default cap, in frames per second: the usual display refresh rate */
+    public static final int DEFAULT_FPS = 60;
+
+    /** The default cap while the user edits code, in frames per second */
+    public static final int DEFAULT_EDITING_FPS = 30;
+
+    /** The rates to which the cap may drop, highest first. Each divides the
+     * 60 Hz refresh rate, so that every frame is shown for as many refreshes. */
+    private static final int[] STEPS_FPS = { 60, 30, 20, 15 };
+
+    /** The number of continuous frames over which the cap is judged */
+    private static final int WINDOW_FRAMES = 30;
+
+    /** The cap drops when at least this fraction of a window's frames overran */
+    private static final float LOWER_MISS_FRACTION = 0.5f;
+
+    /** The cap rises when every frame of a window took less than this fraction
+     * of the higher rate's interval */
+    private static final float RAISE_HEADROOM = 0.75f;
+
+    /** A frame overran if it was busy for longer than this many intervals,
+     * allowing for jitter in the clock and in waking from sleep */
+    private static final float MISS_TOLERANCE = 1.1f;
+
+    /** The source of time */
+    private final FrameClock clock;
+
+    /** The cap set by the user, and the cap while the user edits code */
+    private int targetFps = DEFAULT_FPS;
+    private int editingFps = DEFAULT_EDITING_FPS;
+
+    /** Is the user editing code? */
+    private boolean editing = false;
+
+    /** The highest rate allowed by the measured frame times, or UNCAPPED */
+    private int adaptiveFps = UNCAPPED;
+
+    /** The time at which the next frame may start, or -1 to start at once */
+    private long nextFrameNanos = -1;
+
+    /** The time at which the previous frame was requested, or -1 before the first */
+    private long lastRequestNanos = -1;
+
+    /** The time the previous frame was made to wait */
+    private long lastWaitNanos = 0;
+
+    /** The frames measured in the current window, and how many overran */
+    private int windowFrames = 0, windowMisses = 0;
+
+    /** The longest busy time in the current window, in nanoseconds */
+    private long windowMaxBusyNanos = 0;
+
+    /** @param clock The source of time. */
+    public FramePacer(FrameClock clock)
+    {
+        this.clock = clock;
+    }
+
+    /**
+     * Request the start of a frame, and find out how long it must wait for its slot.
+     * The caller should sleep for the returned time before drawing.
+     * @param continuous True if the previous frame was followed straight away by this
+     *                   one, rather than by an idle period, so that its time is measured.
+     * @return The time to wait before drawing, in nanoseconds; 0 to draw at once.
+     */
+    public long beginFrame(boolean continuous)
+    {
+        long now = clock.nanoTime();
+
+        // The time between requests, less the wait, was spent drawing the previous frame
+        if(continuous && lastRequestNanos >= 0)
+            addBusyTime(now - lastRequestNanos - lastWaitNanos);
+
+        long interval = getFrameIntervalNanos();
+        long wait = 0;
+
+        if(interval > 0)
+        {
+            // Start again from now after a pause or a frame that overran its slot
+            if(nextFrameNanos < 0 || now - nextFrameNanos > interval)
+                nextFrameNanos = now;
+
+            wait = Math.max(0, nextFrameNanos - now);
+            nextFrameNanos += interval;
+        }
+        else
+            nextFrameNanos = -1;
+
+        lastRequestNanos = now;
+        lastWaitNanos = wait;
+        return wait;
+    }
+
+    /** Judge the cap by the time that a frame was busy, once a window is complete. */
+    private void addBusyTime(long busyNanos)
+    {
+        long interval = getFrameIntervalNanos();
+        if(interval == 0)
+            return;
+
+        windowFrames++;
+        if(busyNanos > interval * MISS_TOLERANCE)
+            windowMisses++;
+        windowMaxBusyNanos = Math.max(windowMaxBusyNanos, busyNanos);
+
+        if(windowFrames < WINDOW_FRAMES)
+            return;
+
+        int fps = getCurrentFps();
+        int higherFps = getHigherStep(fps);
+
+        if(windowMisses >= WINDOW_FRAMES * LOWER_MISS_FRACTION)
+            adaptiveFps = getLowerStep(fps);
+        else if(higherFps != fps && windowMaxBusyNanos
+                < FrameScheduler.NANOS_PER_SECOND / higherFps * RAISE_HEADROOM)
+            adaptiveFps = higherFps;
+
+        // Drop the limit altogether once it no longer holds the cap down
+        if(adaptiveFps >= getRequestedFps() && getRequestedFps() != UNCAPPED)
+            adaptiveFps = UNCAPPED;
+
+        windowFrames = windowMisses = 0;
+        windowMaxBusyNanos = 0;
+    }
+
+    /** @return The highest step below a rate, or the lowest step if there is none. */
+    private static int getLowerStep(int fps)
+    {
+        for(int step : STEPS_FPS)
+            if(step < fps)
+                return step;
+        return STEPS_FPS[STEPS_FPS.length - 1];
+    }
+
+    /** @return The lowest step above a rate, no higher than the requested cap,
+     * or the rate itself if there is none. */
+    private int getHigherStep(int fps)
+    {
+        int requested = getRequestedFps();
+        for(int i = STEPS_FPS.length - 1; i >= 0; i--)
+            if(STEPS_FPS[i] > fps)
+                return requested == UNCAPPED ? STEPS_FPS[i] : Math.min(STEPS_FPS[i], requested);
+        return fps;
+    }
+
+    /** @return The cap set by the user, taking editing into account, or UNCAPPED. */
+    private int getRequestedFps()
+    {
+        if(editing && editingFps != UNCAPPED)
+            return targetFps == UNCAPPED ? editingFps : Math.min(targetFps, editingFps);
+        return targetFps;
+    }
+
+    /** @return The rate to which frames are currently limited, in frames per second,
+     * or UNCAPPED. Lower than the requested cap while frames keep overrunning. */
+    public int getCurrentFps()
+    {
+        int requested = getRequestedFps();
+        if(adaptiveFps == UNCAPPED)
+            return requested;
+        return requested == UNCAPPED ? adaptiveFps : Math.min(requested, adaptiveFps);
+    }
+
+    /** @return The time between frame starts at the current cap, in nanoseconds, or 0 if uncapped. */
+    public long getFrameIntervalNanos()
+    {
+        int fps = getCurrentFps();
+        return fps == UNCAPPED ? 0 : FrameScheduler.NANOS_PER_SECOND / fps;
+    }
+
+    /** @return The time that the latest frame was made to wait, in nanoseconds. */
+    public long getLastWaitNanos()
+    {
+        return lastWaitNanos;
+    }
+
+    /** Start measuring afresh, with no limit from earlier frame times. */
+    private void resetMeasurements()
+    {
+        adaptiveFps = UNCAPPED;
+        nextFrameNanos = -1;
+        windowFrames = windowMisses = 0;
+        windowMaxBusyNanos = 0;
+    }
+
+    /** @param fps The cap, in frames per second, or UNCAPPED. */
+    public void setTargetFps(int fps)
+    {
+        if(fps < 0)
+            throw new IllegalArgumentException("The frame rate cap must not be negative.");
+
+        targetFps = fps;
+        resetMeasurements();
+    }
+
+    /** @param fps The cap while the user edits code, in frames per second,
+     * or UNCAPPED to use the same cap as otherwise. */
+    public void setEditingFps(int fps)
+    {
+        if(fps < 0)
+            throw new IllegalArgumentException("The frame rate cap must not be negative.");
+
+        editingFps = fps;
+        resetMeasurements();
+    }
+
+    /** @param editing True while the user edits code, so that the editing cap applies. */
+    public void setEditing(boolean editing)
+    {
+        if(this.editing == editing)
+            return;
+
+        this.editing = editing;
+
+        // Frames measured at the other cap say little about this one
+        windowFrames = windowMisses = 0;
+        windowMaxBusyNanos = 0;
+        nextFrameNanos = -1;
+    }
+
+    /** @return True while the user edits code. */
+    public boolean isEditing()
+    {
+        return editing;
+    }
+}
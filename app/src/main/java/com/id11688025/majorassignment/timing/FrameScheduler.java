@@ -0,0 +1,241 @@
+package com.id11688025.majorassignment.timing;
+
+/**
+ * Schedules the renderer's time-keeping.
+ *
+ * Simulation updates are run at a fixed time step, independent of the
+ * rate at which frames are drawn. Each call to beginFrame() measures the
+ * time since the previous frame and determines how many fixed updates are
+ * due; the renderer then consumes those updates before drawing.
+ *
+ * In deterministic mode, every frame advances time by exactly the same
+ * amount, regardless of how long the frame really took. This makes the
+ * sequence of rendered frames reproducible for profiling.
+ */
+public class FrameScheduler
+{
+    /** The number of nanoseconds in one second */
+    public static final long NANOS_PER_SECOND = 1000000000L;
+
+    /** The default fixed update step: 60 updates per second */
+    public static final long DEFAULT_UPDATE_STEP_NANOS = NANOS_PER_SECOND / 60;
+
+    /** The longest frame that is simulated in full. Longer frames (e.g. after
+     * a pause, or a debugger break) are clamped to avoid a burst of updates. */
+    private static final long MAX_FRAME_NANOS = NANOS_PER_SECOND / 4;
+
+    /** The source of real time */
+    private FrameClock clock;
+
+    /** The length of one fixed update, in nanoseconds */
+    private long updateStepNanos = DEFAULT_UPDATE_STEP_NANOS;
+
+    /** The number of simulation time units that elapse per real second */
+    private float timeScale = 1.0f;
+
+    /** Is the simulation time paused? */
+    private boolean isPaused = false;
+
+    /** Is deterministic mode enabled? */
+    private boolean isDeterministic = false;
+
+    /** The exact time step applied per frame in deterministic mode */
+    private long deterministicFrameNanos = DEFAULT_UPDATE_STEP_NANOS;
+
+    /** The clock reading at the start of the previous frame, or -1 before the first frame */
+    private long lastFrameNanos = -1;
+
+    /** The real (unscaled, unpaused) duration of the previous frame */
+    private long frameDeltaNanos = 0;
+
+    /** The simulation time that has elapsed since the last reset */
+    private long elapsedNanos = 0;
+
+    /** The simulation time at which the last fixed update was run */
+    private long updateNanos = 0;
+
+    /** Simulation time that has elapsed, but not yet been consumed by fixed updates */
+    private long accumulatorNanos = 0;
+
+    /** The number of frames that have begun since the last reset */
+    private long frameCount = 0;
+
+    /** Does the next frame follow an idle gap, and so advance by no more than one update? */
+    private boolean resuming = false;
+
+    /** Create a scheduler that reads the system's monotonic clock. */
+    public FrameScheduler()
+    {
+        this(new SystemFrameClock());
+    }
+
+    /** Create a scheduler that reads the supplied clock.
+     * @param clock The source of real time.
+     */
+    public FrameScheduler(FrameClock clock)
+    {
+        this.clock = clock;
+    }
+
+    /** Mark the start of a new frame, and advance time accordingly.
+     * Must be called once at the beginning of each drawn frame. */
+    public void beginFrame()
+    {
+        long now = clock.nanoTime();
+
+        // Measure the real duration of the previous frame
+        frameDeltaNanos = lastFrameNanos < 0 ? 0 : now - lastFrameNanos;
+        lastFrameNanos = now;
+        frameCount++;
+
+        boolean resumed = resuming;
+        resuming = false;
+        if(isPaused)
+            return;
+
+        // Determine how far the simulation should advance this frame.
+        // A frame that follows an idle gap steps by at most one update.
+        long advance;
+        if(isDeterministic)
+            advance = deterministicFrameNanos;
+        else
+            advance = Math.min(frameDeltaNanos, resumed ? updateStepNanos : MAX_FRAME_NANOS);
+
+        elapsedNanos += advance;
+        accumulatorNanos += advance;
+    }
+
+    /** Consume one pending fixed update, if one is due.
+     * Intended to be used as the condition of a loop:
+     * <pre>while(scheduler.consumeUpdate()) model.update(scheduler.getUpdateTime());</pre>
+     * @return True if an update is due, and should be run now.
+     */
+    public boolean consumeUpdate()
+    {
+        if(accumulatorNanos < updateStepNanos)
+            return false;
+
+        accumulatorNanos -= updateStepNanos;
+        updateNanos += updateStepNanos;
+        return true;
+    }
+
+    /** Let the next frame advance by no more than one fixed update, however long ago
+     * the previous frame began. Called while frames are only drawn on demand, so that
+     * when they are drawn continuously again, the scene resumes rather than jumps. */
+    public void resync()
+    {
+        resuming = true;
+    }
+
+    /** Restart simulation time from zero. */
+    public void reset()
+    {
+        elapsedNanos = 0;
+        updateNanos = 0;
+        accumulatorNanos = 0;
+        frameCount = 0;
+    }
+
+    /** @return The scaled simulation time at which the current fixed update runs. */
+    public float getUpdateTime()
+    {
+        return toScaledSeconds(updateNanos);
+    }
+
+    /** @return The scaled simulation time of the frame being drawn. */
+    public float getTime()
+    {
+        return toScaledSeconds(elapsedNanos);
+    }
+
+    /** @return The fraction (0 to 1) of a fixed update step that has elapsed
+     * since the last update. Useful for interpolating between updates. */
+    public float getUpdateAlpha()
+    {
+        return (float)accumulatorNanos / (float)updateStepNanos;
+    }
+
+    /** @return The real duration of the previous frame in nanoseconds.
+     * Unaffected by pausing, time scale, or deterministic mode. */
+    public long getFrameDeltaNanos()
+    {
+        return frameDeltaNanos;
+    }
+
+    /** @return The number of frames that have begun since the last reset. */
+    public long getFrameCount()
+    {
+        return frameCount;
+    }
+
+    /** Convert simulation nanoseconds to scaled seconds */
+    private float toScaledSeconds(long nanos)
+    {
+        return (float)((double)nanos / NANOS_PER_SECOND * timeScale);
+    }
+
+    /** @param updateStepNanos The length of one fixed update, in nanoseconds. */
+    public void setUpdateStepNanos(long updateStepNanos)
+    {
+        if(updateStepNanos <= 0)
+            throw new IllegalArgumentException("The update step must be a positive duration.");
+
+        this.updateStepNanos = updateStepNanos;
+    }
+
+    /** @param timeScale The number of simulation time units that elapse per real second. */
+    public void setTimeScale(float timeScale)
+    {
+        this.timeScale = timeScale;
+    }
+
+    /** @param paused True if simulation time should stop advancing. */
+    public void setPaused(boolean paused)
+    {
+        this.isPaused = paused;
+    }
+
+    /** @return True if simulation time is paused. */
+    public boolean isPaused()
+    {
+        return isPaused;
+    }
+
+    /** Advance time by exactly the same amount every frame.
+     * @param frameNanos The time step applied per frame, in nanoseconds.
+     */
+    public void setDeterministic(long frameNanos)
+    {
+        if(frameNanos <= 0)
+            throw new IllegalArgumentException("The deterministic frame step must be a positive duration.");
+
+        this.deterministicFrameNanos = frameNanos;
+        this.isDeterministic = true;
+    }
+
+    /** Return to advancing time by the real, measured frame duration. */
+    public void setRealTime()
+    {
+        this.isDeterministic = false;
+    }
+
+    /** @return True if deterministic mode is enabled. */
+    public boolean isDeterministic()
+    {
+        return isDeterministic;
+    }
+
+    /** @param clock The source of real time. */
+    public void setClock(FrameClock clock)
+    {
+        this.clock = clock;
+        this.lastFrameNanos = -1;
+    }
+
+    /** @return The source of real time. */
+    public FrameClock getClock()
+    {
+        return clock;
+    }
+}
@@ -0,0 +1,14 @@
+package com.id11688025.majorassignment.timing;
+
+/**
+ * A frame clock backed by System.nanoTime(), which is
+ * monotonic and unaffected by changes to the wall clock.
+ */
+public class SystemFrameClock implements FrameClock
+{
+    @Override
+    public long nanoTime()
+    {
+        return System.nanoTime();
+    }
+}
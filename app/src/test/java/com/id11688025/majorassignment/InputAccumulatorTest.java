@@ -0,0 +1,102 @@
+package com.id11688025.majorassignment;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that an InputAccumulator sums deltas and multiplies scales, starts
+ * again from nothing once taken, and loses nothing to concurrent producers.
+ */
+public class InputAccumulatorTest
+{
+    /** The number of producer threads, and the changes each makes */
+    private static final int THREADS = 4, CHANGES = 100000;
+
+    private InputAccumulator input;
+
+    @Before
+    public void setUp()
+    {
+        input = new InputAccumulator();
+    }
+
+    @Test
+    public void nothingTakenIsNoChange()
+    {
+        input.take();
+        assertEquals(0, input.getX(), 0);
+        assertEquals(0, input.getY(), 0);
+        assertEquals(1, input.getScale(), 0);
+    }
+
+    @Test
+    public void deltasAreSummedAndScalesMultiplied()
+    {
+        input.add(0.25f, -1.0f);
+        input.add(0.5f, 3.0f);
+        input.multiply(2.0f);
+        input.multiply(0.75f);
+
+        input.take();
+        assertEquals(0.75f, input.getX(), 0);
+        assertEquals(2.0f, input.getY(), 0);
+        assertEquals(1.5f, input.getScale(), 0);
+    }
+
+    @Test
+    public void negativeDeltasKeepTheirSign()
+    {
+        // The y delta is packed in the low half of a long, below the x delta
+        input.add(-2.0f, -0.5f);
+
+        input.take();
+        assertEquals(-2.0f, input.getX(), 0);
+        assertEquals(-0.5f, input.getY(), 0);
+    }
+
+    @Test
+    public void takingStartsAgainFromNothing()
+    {
+        input.add(1, 1);
+        input.multiply(4);
+        input.take();
+
+        input.add(2, 3);
+        input.take();
+        assertEquals(2, input.getX(), 0);
+        assertEquals(3, input.getY(), 0);
+        assertEquals(1, input.getScale(), 0);
+    }
+
+    @Test
+    public void concurrentChangesAreNotLost() throws InterruptedException
+    {
+        Thread[] producers = new Thread[THREADS];
+        for(int t=0; t < THREADS; t++)
+        {
+            producers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    // Whole numbers, and powers of two, are summed and multiplied exactly
+                    for(int i=0; i < CHANGES; i++)
+                    {
+                        input.add(1, 2);
+                        input.multiply(2);
+                        input.multiply(0.5f);
+                    }
+                }
+            });
+            producers[t].start();
+        }
+
+        for(Thread producer : producers)
+            producer.join();
+
+        input.take();
+        assertEquals(THREADS * CHANGES, input.getX(), 0);
+        assertEquals(2 * THREADS * CHANGES, input.getY(), 0);
+        assertEquals(1, input.getScale(), 0);
+    }
+}
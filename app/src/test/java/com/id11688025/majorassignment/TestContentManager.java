@@ -0,0 +1,33 @@
+package com.id11688025.majorassignment;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+
+/**
+ * A content manager for JVM tests, which reads assets from the source tree
+ * rather than from an application context.
+ */
+public class TestContentManager extends ContentManager
+{
+    /** The asset directory, relative to the module, in which tests are run */
+    private static final String ASSET_DIRECTORY = "src/main/assets/";
+
+    public TestContentManager()
+    {
+        super(null);
+    }
+
+    @Override
+    public InputStream getResourceStreamFromPath(String path)
+    {
+        try
+        {
+            return new FileInputStream(ASSET_DIRECTORY + path);
+        }
+        catch (FileNotFoundException e)
+        {
+            throw new IllegalArgumentException("No asset at " + path, e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.opengl.GLES20;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks which thread records each list, and that the list being replayed is
+ * never the one recorded over. The nth list recorded holds n commands, so that
+ * the lists can be told apart.
+ */
+public class CommandListPipelineTest
+{
+    /** The number of lists recorded, and the thread that recorded the last */
+    private int recorded;
+    private volatile Thread recordingThread;
+
+    private final CommandListPipeline pipeline = new CommandListPipeline(new CommandListPipeline.Recorder() {
+        @Override
+        public void record(CommandList list) {
+            recordingThread = Thread.currentThread();
+            recorded++;
+            for(int i=0; i < recorded; i++)
+                list.enable(GLES20.GL_BLEND);
+        }
+    });
+
+    @Test
+    public void listRecordedNowIsRecordedOnThisThread()
+    {
+        CommandList list = pipeline.recordNow();
+
+        assertSame(Thread.currentThread(), recordingThread);
+        assertEquals(1, list.getCommandCount());
+    }
+
+    @Test
+    public void backgroundListIsRecordedOnTheWorker()
+    {
+        pipeline.recordInBackground();
+        CommandList list = pipeline.takeRecorded();
+
+        assertNotNull(list);
+        assertNotSame(Thread.currentThread(), recordingThread);
+        assertEquals(1, list.getCommandCount());
+        assertEquals(1, pipeline.getRecordedLists());
+    }
+
+    @Test
+    public void backgroundListDoesNotRecordOverTheReplayedOne()
+    {
+        CommandList replayed = pipeline.recordNow();
+        pipeline.recordInBackground();
+        CommandList next = pipeline.takeRecorded();
+
+        assertNotSame(replayed, next);
+        assertEquals(1, replayed.getCommandCount());
+        assertEquals(2, next.getCommandCount());
+
+        // The next background list goes into the one replayed before
+        pipeline.recordInBackground();
+        assertSame(replayed, pipeline.takeRecorded());
+        assertEquals(3, replayed.getCommandCount());
+    }
+
+    @Test
+    public void discardDropsTheBackgroundList()
+    {
+        pipeline.recordInBackground();
+        pipeline.discard();
+
+        assertNull(pipeline.takeRecorded());
+        assertEquals(1, recorded);
+    }
+
+    @Test
+    public void listNotTakenIsCountedAsDropped()
+    {
+        pipeline.recordInBackground();
+        pipeline.recordNow();
+
+        assertEquals(1, pipeline.getDroppedLists());
+    }
+}
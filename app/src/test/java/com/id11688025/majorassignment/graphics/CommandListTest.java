@@ -0,0 +1,199 @@
+package com.id11688025.majorassignment.graphics;
+
+import android.opengl.GLES20;
+
+import com.id11688025.majorassignment.Camera;
+import com.id11688025.majorassignment.ContentManager;
+import com.id11688025.majorassignment.TestContentManager;
+import com.id11688025.majorassignment.math.Matrix;
+import com.id11688025.majorassignment.math.Vector3;
+import com.id11688025.majorassignment.objparser.OBJModel;
+import com.id11688025.majorassignment.shaders.Shader;
+import com.id11688025.majorassignment.timing.FakeFrameClock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Records frames into command lists without a GL, replays them through a
+ * RecordingGL, and checks that they draw as the direct draws did.
+ */
+public class CommandListTest
+{
+    /** The bytes of the model-view and projection matrices, and the time */
+    private static final int UNIFORM_BYTES = 64 + 64 + 4;
+
+    private RecordingGL gl;
+    private ContentManager content;
+    private Model model;
+    private Camera camera;
+    private CommandList list;
+
+    @Before
+    public void setUp()
+    {
+        gl = new RecordingGL();
+        GLBackend.set(gl);
+        GLStateCache.get().reset();
+
+        content = new TestContentManager();
+        OBJModel cube = new OBJModel(content, "models/normal_cube.obj", null);
+        model = new Model(content, cube, new Shader(content), null);
+        camera = new Camera(new Vector3(0, 0, 3), Vector3.zero, new Vector3(0, 1, 0));
+        list = new CommandList();
+
+        model.publish();
+        gl.resetCounters();
+    }
+
+    @After
+    public void tearDown()
+    {
+        GLBackend.set(new AndroidGL());
+        GLStateCache.get().reset();
+    }
+
+    /** Record the model alone, as the renderer does. */
+    private void recordModel(float time)
+    {
+        list.reset();
+        model.record(list, camera.getView(), camera.getProjection(), time);
+    }
+
+    /** Replay the list as a frame, counting only its own calls. */
+    private void replayFrame()
+    {
+        gl.resetCounters();
+        GLStateCache.get().beginFrame();
+        list.replay();
+    }
+
+    @Test
+    public void recordingMakesNoCalls()
+    {
+        recordModel(0);
+
+        assertEquals(0, gl.getCalls());
+        assertEquals(2, list.getCommandCount());
+    }
+
+    @Test
+    public void replayDrawsTheModelAndUploadsItsUniforms()
+    {
+        recordModel(0);
+        replayFrame();
+
+        assertEquals(gl.getErrors().toString(), 0, gl.getErrorCount());
+        assertEquals(1, gl.getDrawCalls());
+        assertEquals(model.getVertexBuffer().vertexCount(), gl.getVerticesDrawn());
+        assertEquals(3, gl.getUniformUploads());
+        assertEquals(UNIFORM_BYTES, gl.getUploadedBytes());
+    }
+
+    @Test
+    public void recordingReadsOnlyThePublishedWorld()
+    {
+        recordModel(0);
+        replayFrame();
+
+        // Rotating the model in place is not seen until it is published
+        model.transform(Matrix.createRotationY(0.5f));
+        recordModel(0);
+        replayFrame();
+        assertEquals(0, gl.getUniformUploads());
+
+        model.publish();
+        recordModel(0);
+        replayFrame();
+        assertEquals(1, gl.getUniformUploads());
+        assertEquals(64, gl.getUploadedBytes());
+    }
+
+    @Test
+    public void stateCommandsReplayWithoutErrors()
+    {
+        list.enable(GLES20.GL_SCISSOR_TEST);
+        list.scissor(0, 0, 16, 16);
+        list.colorMask(false, false, false, false);
+        list.depthMask(false);
+        list.depthFunc(GLES20.GL_EQUAL);
+        list.blendFunc(GLES20.GL_ONE, GLES20.GL_ONE);
+        list.depthFunc(GLES20.GL_LEQUAL);
+        list.depthMask(true);
+        list.colorMask(true, true, true, true);
+        list.disable(GLES20.GL_SCISSOR_TEST);
+        replayFrame();
+
+        assertEquals(gl.getErrors().toString(), 0, gl.getErrorCount());
+        assertEquals(10, gl.getCalls());
+    }
+
+    @Test
+    public void resetKeepsNoCommands()
+    {
+        // Grow every array past its initial capacity
+        for(int i=0; i < 100; i++)
+            model.record(list, camera.getView(), camera.getProjection(), i);
+        assertEquals(200, list.getCommandCount());
+
+        list.reset();
+        assertTrue(list.isEmpty());
+
+        recordModel(0);
+        replayFrame();
+        assertEquals(1, gl.getDrawCalls());
+    }
+
+    @Test
+    public void gridDrawsEachVisibleModelOnce()
+    {
+        Scene scene = new Scene(1);
+        for(int i=0; i < 4; i++)
+        {
+            Shader shader = new Shader(content);
+            shader.provideVertices(model.getVertexBuffer());
+            scene.add(model, shader);
+        }
+
+        scene.record(list, camera.getView(), camera.getProjection(), 0);
+        replayFrame();
+
+        assertEquals(gl.getErrors().toString(), 0, gl.getErrorCount());
+        assertEquals(scene.getVisibleCount(), gl.getDrawCalls());
+        assertEquals(4, scene.getVisibleCount());
+    }
+
+    @Test
+    public void splitScreenDrawsBothHalves()
+    {
+        SplitScreenComparison split = new SplitScreenComparison(content,
+                content.fileAsString("shaders/normals.fs.glsl"), model, new FakeFrameClock());
+        gl.resetCounters();
+
+        split.record(list, model, camera.getView(), camera.getProjection(), 0, 64, 32, false);
+        assertEquals(0, gl.getCalls());
+        replayFrame();
+
+        assertEquals(gl.getErrors().toString(), 0, gl.getErrorCount());
+        assertEquals(2, gl.getDrawCalls());
+    }
+
+    @Test
+    public void depthPrePassDrawsDepthThenShading()
+    {
+        DepthPrePass prePass = new DepthPrePass(content, new FakeFrameClock());
+        gl.resetCounters();
+
+        prePass.record(list, model, camera.getView(), camera.getProjection(), 0, false);
+        assertEquals(0, gl.getCalls());
+        replayFrame();
+
+        assertEquals(gl.getErrors().toString(), 0, gl.getErrorCount());
+        assertEquals(2, gl.getDrawCalls());
+        assertEquals(2 * model.getVertexBuffer().vertexCount(), gl.getVerticesDrawn());
+    }
+}
@@ -0,0 +1,120 @@
+package com.id11688025.majorassignment.graphics;
+
+import com.id11688025.majorassignment.Camera;
+import com.id11688025.majorassignment.ContentManager;
+import com.id11688025.majorassignment.TestContentManager;
+import com.id11688025.majorassignment.math.Matrix;
+import com.id11688025.majorassignment.math.Vector3;
+import com.id11688025.majorassignment.objparser.OBJModel;
+import com.id11688025.majorassignment.shaders.Shader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Draws frames of a model on the JVM through a RecordingGL, and checks
+ * their cost in calls, uniform uploads and bytes, and that no call was invalid.
+ */
+public class RecordingGLTest
+{
+    /** The bytes of the model-view and projection matrices, and the time */
+    private static final int UNIFORM_BYTES = 64 + 64 + 4;
+
+    private RecordingGL gl;
+    private Model model;
+    private Camera camera;
+
+    @Before
+    public void setUp()
+    {
+        gl = new RecordingGL();
+        GLBackend.set(gl);
+        GLStateCache.get().reset();
+
+        ContentManager content = new TestContentManager();
+        OBJModel cube = new OBJModel(content, "models/normal_cube.obj", null);
+        model = new Model(content, cube, new Shader(content), null);
+        camera = new Camera(new Vector3(0, 0, 3), Vector3.zero, new Vector3(0, 1, 0));
+    }
+
+    @After
+    public void tearDown()
+    {
+        GLBackend.set(new AndroidGL());
+        GLStateCache.get().reset();
+    }
+
+    /** Draw a frame, counting only its own calls. */
+    private void drawFrame(float time)
+    {
+        gl.resetCounters();
+        GLStateCache.get().beginFrame();
+        model.draw(camera, time);
+    }
+
+    @Test
+    public void firstFrameDrawsTheModelAndUploadsItsUniforms()
+    {
+        drawFrame(0);
+
+        assertEquals(gl.getErrors().toString(), 0, gl.getErrorCount());
+        assertEquals(1, gl.getDrawCalls());
+        assertEquals(model.getVertexBuffer().vertexCount(), gl.getVerticesDrawn());
+        assertEquals(3, gl.getUniformUploads());
+        assertEquals(UNIFORM_BYTES, gl.getUploadedBytes());
+    }
+
+    @Test
+    public void unchangedFrameMakesOnlyTheDrawCall()
+    {
+        drawFrame(0);
+        drawFrame(0);
+
+        assertEquals(gl.getErrors().toString(), 0, gl.getErrorCount());
+        assertEquals(1, gl.getCalls());
+        assertEquals(0, gl.getStateChanges());
+        assertEquals(0, gl.getUniformUploads());
+        assertEquals(0, gl.getUploadedBytes());
+    }
+
+    @Test
+    public void frameUploadsOnlyTheUniformsThatChanged()
+    {
+        drawFrame(0);
+
+        drawFrame(1);
+        assertEquals(1, gl.getUniformUploads());
+        assertEquals(4, gl.getUploadedBytes());
+
+        model.transform(Matrix.createRotationY(0.5f));
+        drawFrame(1);
+        assertEquals(1, gl.getUniformUploads());
+        assertEquals(64, gl.getUploadedBytes());
+
+        assertEquals(gl.getErrors().toString(), 0, gl.getErrorCount());
+    }
+
+    @Test
+    public void replacingTheShaderLeavesNoObjectsBehind()
+    {
+        drawFrame(0);
+        int liveObjects = gl.getLiveObjectCount();
+
+        // Each program is on probation until trusted, and then the one it replaced is deleted
+        Shader shader = model.getCurrentShader();
+        String source = "void main() { gl_FragColor = vec4(1.0); }\n";
+        for(int i=0; i < 3; i++)
+        {
+            String variant = source + "// " + i + "\n";
+            shader.provideUserShader(variant);
+            shader.trustProgram(variant);
+            drawFrame(i);
+        }
+
+        assertEquals(gl.getErrors().toString(), 0, gl.getErrorCount());
+        assertEquals(liveObjects, gl.getLiveObjectCount());
+    }
+}
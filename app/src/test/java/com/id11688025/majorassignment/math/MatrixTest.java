@@ -0,0 +1,59 @@
+package com.id11688025.majorassignment.math;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that the products computed in place, or into arrays,
+ * match those of the allocating Matrix.multiply().
+ */
+public class MatrixTest
+{
+    private static final float EPSILON = 1e-5f;
+
+    private final Matrix lhs = Matrix.createRotationY(0.7f).multiply(Matrix.createTranslation(new Vector3(1, 2, 3)));
+    private final Matrix rhs = Matrix.createRotationZ(-1.3f).multiply(Matrix.createScale(2, 0.5f, 3));
+
+    @Test
+    public void productIntoAnotherMatrixMatches()
+    {
+        Matrix result = new Matrix();
+
+        assertSame(result, Matrix.multiply(lhs, rhs, result));
+        assertArrayEquals(Matrix.multiply(lhs, rhs).as1DArray(), result.as1DArray(), EPSILON);
+    }
+
+    @Test
+    public void productIntoTheLeftOperandMatches()
+    {
+        float[] expected = Matrix.multiply(lhs, rhs).as1DArray();
+
+        Matrix.multiply(lhs, rhs, lhs);
+        assertArrayEquals(expected, lhs.as1DArray(), EPSILON);
+    }
+
+    @Test
+    public void productIntoAnArrayIsColumnMajor()
+    {
+        float[] product = Matrix.multiply(lhs, rhs).asColumnMajorArray(new float[16]);
+        float[] expected = new float[20], result = new float[20];
+        System.arraycopy(product, 0, expected, 4, 16);
+
+        Matrix.multiply(lhs, rhs, result, 4);
+        assertArrayEquals(expected, result, EPSILON);
+    }
+
+    @Test
+    public void setCopiesWithoutSharing()
+    {
+        Matrix copy = new Matrix().set(lhs);
+        assertArrayEquals(lhs.as1DArray(), copy.as1DArray(), 0);
+
+        copy.set(rhs.as1DArray());
+        assertArrayEquals(rhs.as1DArray(), copy.as1DArray(), 0);
+        assertArrayEquals(Matrix.createRotationY(0.7f).multiply(Matrix.createTranslation(new Vector3(1, 2, 3))).as1DArray(),
+                lhs.as1DArray(), 0);
+    }
+}
@@ -0,0 +1,104 @@
+package com.id11688025.majorassignment.profiling;
+
+import com.id11688025.majorassignment.graphics.AndroidGL;
+import com.id11688025.majorassignment.graphics.GLBackend;
+import com.id11688025.majorassignment.graphics.RecordingGL;
+import com.id11688025.majorassignment.timing.FakeFrameClock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Judges programs on probation in an OpenGL ES 2.0 context, where each frame
+ * is timed by a glFinish() that takes as long as the fake clock is told to.
+ */
+public class GpuWatchdogTest
+{
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final float THRESHOLD_MILLIS = 100;
+    private static final int PROBATION_FRAMES = 3;
+
+    private FakeFrameClock clock;
+    private GpuWatchdog watchdog;
+
+    /** The time that the next glFinish() takes, in milliseconds */
+    private long finishMillis;
+
+    /** The number of glFinish() calls made */
+    private int finishes;
+
+    @Before
+    public void setUp()
+    {
+        clock = new FakeFrameClock();
+        GLBackend.set(new RecordingGL() {
+            @Override
+            public void glFinish() {
+                finishes++;
+                clock.advance(finishMillis * NANOS_PER_MILLI);
+            }
+        });
+
+        watchdog = new GpuWatchdog(THRESHOLD_MILLIS, PROBATION_FRAMES, clock);
+        watchdog.onSurfaceCreated();
+    }
+
+    @After
+    public void tearDown()
+    {
+        GLBackend.set(new AndroidGL());
+    }
+
+    @Test
+    public void programIsSafeAfterEveryProbationFrameFinishesInTime()
+    {
+        finishMillis = 16;
+        watchdog.watch("program");
+
+        for(int i=0; i < PROBATION_FRAMES - 1; i++)
+        {
+            watchdog.endFrame();
+            assertNull(watchdog.getSafeTag());
+            assertTrue(watchdog.isWatching());
+        }
+
+        watchdog.endFrame();
+        assertEquals("program", watchdog.getSafeTag());
+        assertNull(watchdog.getHungTag());
+        assertFalse(watchdog.isWatching());
+        assertEquals(PROBATION_FRAMES, finishes);
+    }
+
+    @Test
+    public void slowFrameReportsTheProgramHung()
+    {
+        finishMillis = 16;
+        watchdog.watch("program");
+        watchdog.endFrame();
+
+        finishMillis = 2500;
+        watchdog.endFrame();
+
+        assertEquals("program", watchdog.getHungTag());
+        assertNull(watchdog.getSafeTag());
+        assertEquals(2500, watchdog.getHungTime(), 0.01f);
+        assertFalse(watchdog.isWatching());
+    }
+
+    @Test
+    public void framesAreNotWaitedOnOutsideProbation()
+    {
+        watchdog.endFrame();
+        watchdog.endFrame();
+
+        assertEquals(0, finishes);
+        assertNull(watchdog.getSafeTag());
+        assertNull(watchdog.getHungTag());
+    }
+}
@@ -0,0 +1,108 @@
+package com.id11688025.majorassignment.shaders;
+
+import com.id11688025.majorassignment.graphics.AndroidGL;
+import com.id11688025.majorassignment.graphics.GLBackend;
+import com.id11688025.majorassignment.graphics.RecordingGL;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Sets uniforms of every type through a UniformCache, drawing through a
+ * RecordingGL, and checks that only changed values are uploaded.
+ */
+public class UniformCacheTest
+{
+    /** Locations far apart, as a driver may hand out */
+    private static final int FIRST = 7, SECOND = 1 << 20, THIRD = 123456789;
+
+    private RecordingGL gl;
+    private UniformCache cache;
+
+    @Before
+    public void setUp()
+    {
+        gl = new RecordingGL();
+        GLBackend.set(gl);
+        gl.glUseProgram(gl.glCreateProgram());
+        gl.resetCounters();
+
+        cache = new UniformCache();
+    }
+
+    @After
+    public void tearDown()
+    {
+        GLBackend.set(new AndroidGL());
+    }
+
+    @Test
+    public void unchangedValuesAreSkipped()
+    {
+        for(int i=0; i < 2; i++)
+        {
+            cache.set1f(FIRST, 1);
+            cache.set2i(SECOND, 1, 2);
+            cache.set3i(THIRD, 1, 2, 3);
+        }
+
+        assertEquals(gl.getErrors().toString(), 0, gl.getErrorCount());
+        assertEquals(3, gl.getUniformUploads());
+        assertEquals(3, cache.getUploads());
+        assertEquals(3, cache.getSkippedUploads());
+    }
+
+    @Test
+    public void changedValuesAreUploaded()
+    {
+        cache.set4i(FIRST, 1, 2, 3, 4);
+        cache.set4i(FIRST, 1, 2, 3, 5);
+        cache.set3i(SECOND, 0, 0, 0);
+        cache.set3i(SECOND, 0, -1, 0);
+
+        assertEquals(4, gl.getUniformUploads());
+        assertEquals(0, cache.getSkippedUploads());
+    }
+
+    @Test
+    public void matricesAreComparedElementByElement()
+    {
+        float[] mat2 = { 1, 0, 0, 1 };
+        float[] mat3 = { 1, 0, 0, 0, 1, 0, 0, 0, 1 };
+
+        cache.setMatrix2(FIRST, mat2);
+        cache.setMatrix3(SECOND, mat3);
+        cache.setMatrix2(FIRST, mat2);
+        cache.setMatrix3(SECOND, mat3);
+        assertEquals(2, gl.getUniformUploads());
+        assertEquals(16 + 36, gl.getUploadedBytes());
+
+        mat3[8] = 2;
+        cache.setMatrix3(SECOND, mat3);
+        assertEquals(3, gl.getUniformUploads());
+        assertEquals(2, cache.getSkippedUploads());
+    }
+
+    @Test
+    public void resetForgetsUploadedValues()
+    {
+        cache.set2i(THIRD, 4, 5);
+        cache.reset();
+        cache.set2i(THIRD, 4, 5);
+
+        assertEquals(2, gl.getUniformUploads());
+    }
+
+    @Test
+    public void unusedUniformsAreIgnored()
+    {
+        cache.set4i(-1, 1, 2, 3, 4);
+        cache.setMatrix3(-1, new float[9]);
+
+        assertEquals(0, gl.getCalls());
+        assertEquals(0, cache.getUploads());
+    }
+}
@@ -0,0 +1,23 @@
+package com.id11688025.majorassignment.timing;
+
+/**
+ * A frame clock for tests, which only moves when it is told to.
+ */
+public class FakeFrameClock implements FrameClock
+{
+    /** The current time, in nanoseconds */
+    private long nanos = 0;
+
+    @Override
+    public long nanoTime()
+    {
+        return nanos;
+    }
+
+    /** Move the time forward.
+     * @param nanos The time to add, in nanoseconds. */
+    public void advance(long nanos)
+    {
+        this.nanos += nanos;
+    }
+}
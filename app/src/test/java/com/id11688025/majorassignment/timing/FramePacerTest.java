@@ -0,0 +1,172 @@
+package com.id11688025.majorassignment.timing;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Drives a FramePacer with a fake clock, checking the spacing of frame slots,
+ * the editing cap, and how the cap adapts to the time frames take.
+ */
+public class FramePacerTest
+{
+    /** The number of nanoseconds in one millisecond */
+    private static final long MILLIS = 1000000L;
+
+    /** The time between frames at 60 and 30 fps */
+    private static final long INTERVAL_60 = FrameScheduler.NANOS_PER_SECOND / 60;
+    private static final long INTERVAL_30 = FrameScheduler.NANOS_PER_SECOND / 30;
+
+    /** The number of frames over which the cap is judged */
+    private static final int WINDOW = 30;
+
+    private FakeFrameClock clock;
+    private FramePacer pacer;
+
+    @Before
+    public void setUp()
+    {
+        clock = new FakeFrameClock();
+        pacer = new FramePacer(clock);
+
+        // The first frame has no frame before it to measure
+        pacer.beginFrame(true);
+    }
+
+    /** Finish frames, each busy for a time after its wait, and begin the next each time.
+     * Measures exactly as many frames as are finished. */
+    private void finishFrames(int count, long busyNanos)
+    {
+        for(int i=0; i < count; i++)
+        {
+            clock.advance(pacer.getLastWaitNanos() + busyNanos);
+            pacer.beginFrame(true);
+        }
+    }
+
+    @Test
+    public void slotsAreOneIntervalApartAt60Fps()
+    {
+        assertEquals(0, pacer.getLastWaitNanos());
+
+        finishFrames(1, 5 * MILLIS);
+        assertEquals(INTERVAL_60 - 5 * MILLIS, pacer.getLastWaitNanos());
+        assertEquals(INTERVAL_60, clock.nanoTime() + pacer.getLastWaitNanos());
+    }
+
+    @Test
+    public void slotsAreOneIntervalApartAt30Fps()
+    {
+        pacer.setTargetFps(30);
+        pacer.beginFrame(true);
+        long start = clock.nanoTime();
+
+        finishFrames(1, 5 * MILLIS);
+        assertEquals(INTERVAL_30 - 5 * MILLIS, pacer.getLastWaitNanos());
+        assertEquals(start + INTERVAL_30, clock.nanoTime() + pacer.getLastWaitNanos());
+    }
+
+    @Test
+    public void slotsKeepTheirCadenceWhenFramesVary()
+    {
+        long[] busy = { 3 * MILLIS, 15 * MILLIS, 9 * MILLIS, 1 * MILLIS };
+        for(int i=0; i < busy.length; i++)
+        {
+            finishFrames(1, busy[i]);
+            assertEquals((i + 1) * INTERVAL_60, clock.nanoTime() + pacer.getLastWaitNanos());
+        }
+    }
+
+    @Test
+    public void slotsStartAgainAfterAFrameOverruns()
+    {
+        finishFrames(1, 50 * MILLIS);
+        assertEquals(0, pacer.getLastWaitNanos());
+
+        long start = clock.nanoTime();
+        finishFrames(1, 5 * MILLIS);
+        assertEquals(start + INTERVAL_60, clock.nanoTime() + pacer.getLastWaitNanos());
+    }
+
+    @Test
+    public void uncappedFramesNeverWait()
+    {
+        pacer.setTargetFps(FramePacer.UNCAPPED);
+        pacer.beginFrame(true);
+
+        finishFrames(1, MILLIS);
+        assertEquals(0, pacer.getLastWaitNanos());
+        assertEquals(0, pacer.getFrameIntervalNanos());
+    }
+
+    @Test
+    public void editingCapAppliesWhileEditing()
+    {
+        pacer.setEditing(true);
+        assertEquals(FramePacer.DEFAULT_EDITING_FPS, pacer.getCurrentFps());
+        assertEquals(INTERVAL_30, pacer.getFrameIntervalNanos());
+
+        pacer.beginFrame(true);
+        finishFrames(1, 5 * MILLIS);
+        assertEquals(INTERVAL_30 - 5 * MILLIS, pacer.getLastWaitNanos());
+
+        pacer.setEditing(false);
+        assertEquals(FramePacer.DEFAULT_FPS, pacer.getCurrentFps());
+    }
+
+    @Test
+    public void editingCapNeverRaisesALowerCap()
+    {
+        pacer.setTargetFps(20);
+        pacer.setEditingFps(30);
+        pacer.setEditing(true);
+        assertEquals(20, pacer.getCurrentFps());
+
+        pacer.setEditingFps(FramePacer.UNCAPPED);
+        assertEquals(20, pacer.getCurrentFps());
+    }
+
+    @Test
+    public void capDropsWhenHalfOfAWindowOverruns()
+    {
+        finishFrames(WINDOW / 2, 20 * MILLIS);
+        finishFrames(WINDOW / 2, 5 * MILLIS);
+
+        assertEquals(30, pacer.getCurrentFps());
+        assertEquals(INTERVAL_30, pacer.getFrameIntervalNanos());
+    }
+
+    @Test
+    public void capHoldsWhenFewerThanHalfOverrun()
+    {
+        finishFrames(WINDOW / 2 - 1, 20 * MILLIS);
+        finishFrames(WINDOW / 2 + 1, 5 * MILLIS);
+
+        assertEquals(60, pacer.getCurrentFps());
+    }
+
+    @Test
+    public void capDropsOneStepPerWindow()
+    {
+        finishFrames(WINDOW, 20 * MILLIS);
+        assertEquals(30, pacer.getCurrentFps());
+
+        finishFrames(WINDOW, 40 * MILLIS);
+        assertEquals(20, pacer.getCurrentFps());
+    }
+
+    @Test
+    public void capRisesWhenAWindowHasHeadroom()
+    {
+        finishFrames(WINDOW, 20 * MILLIS);
+        assertEquals(30, pacer.getCurrentFps());
+
+        // Frames that fit 30 fps, but not comfortably within 60 fps, keep the lower cap
+        finishFrames(WINDOW, 14 * MILLIS);
+        assertEquals(30, pacer.getCurrentFps());
+
+        finishFrames(WINDOW, 10 * MILLIS);
+        assertEquals(60, pacer.getCurrentFps());
+    }
+}
@@ -0,0 +1,177 @@
+package com.id11688025.majorassignment.timing;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives a FrameScheduler with a fake clock, checking fixed-step updates,
+ * the clamp on long frames, and deterministic mode.
+ */
+public class FrameSchedulerTest
+{
+    /** The number of nanoseconds in one millisecond */
+    private static final long MILLIS = 1000000L;
+
+    /** The default fixed update step */
+    private static final long STEP = FrameScheduler.DEFAULT_UPDATE_STEP_NANOS;
+
+    /** The tolerance of comparisons of times in seconds, which are floats */
+    private static final float EPSILON = 1e-5f;
+
+    private FakeFrameClock clock;
+    private FrameScheduler scheduler;
+
+    @Before
+    public void setUp()
+    {
+        clock = new FakeFrameClock();
+        scheduler = new FrameScheduler(clock);
+
+        // The first frame has no frame before it, and does not advance time
+        scheduler.beginFrame();
+    }
+
+    /** Begin a frame a time after the previous one.
+     * @return The number of fixed updates that were due. */
+    private int frame(long nanos)
+    {
+        clock.advance(nanos);
+        scheduler.beginFrame();
+
+        int updates = 0;
+        while(scheduler.consumeUpdate())
+            updates++;
+        return updates;
+    }
+
+    @Test
+    public void firstFrameDoesNotAdvanceTime()
+    {
+        assertEquals(0, scheduler.getTime(), 0);
+        assertFalse(scheduler.consumeUpdate());
+    }
+
+    @Test
+    public void updatesRunAtTheFixedStepWhateverTheFrameRate()
+    {
+        // Frames shorter than a step carry their time over to the next frame
+        assertEquals(0, frame(STEP / 2));
+        assertEquals(1, frame(STEP / 2 + 1));
+
+        // A frame of several steps runs each of them
+        assertEquals(3, frame(3 * STEP));
+        assertEquals(4 * STEP / (float)FrameScheduler.NANOS_PER_SECOND, scheduler.getUpdateTime(), EPSILON);
+    }
+
+    @Test
+    public void longFramesAreClamped()
+    {
+        frame(10 * FrameScheduler.NANOS_PER_SECOND);
+        assertEquals(0.25f, scheduler.getTime(), EPSILON);
+        assertEquals(10 * FrameScheduler.NANOS_PER_SECOND, scheduler.getFrameDeltaNanos());
+    }
+
+    @Test
+    public void frameAfterAnIdleGapStepsAtMostOneUpdate()
+    {
+        frame(STEP);
+        float time = scheduler.getTime();
+
+        // The view then sat idle for five seconds. Without resync(), the clamp would
+        // still advance time by a quarter of a second, and the animation would jump
+        scheduler.resync();
+        assertEquals(1, frame(5 * FrameScheduler.NANOS_PER_SECOND));
+        assertEquals(time + STEP / 1e9f, scheduler.getTime(), EPSILON);
+
+        // Frames drawn continuously afterwards advance by their real time again
+        assertEquals(2, frame(2 * STEP));
+    }
+
+    @Test
+    public void deterministicModeAdvancesByTheExactStep()
+    {
+        long step = 20 * MILLIS;
+        scheduler.setDeterministic(step);
+        scheduler.setUpdateStepNanos(step);
+
+        long[] realFrames = { 1 * MILLIS, 50 * MILLIS, 16 * MILLIS, 400 * MILLIS };
+        for(int i=0; i < realFrames.length; i++)
+        {
+            assertEquals(1, frame(realFrames[i]));
+            assertEquals((i + 1) * 0.02f, scheduler.getTime(), EPSILON);
+
+            // The real frame time is still measured
+            assertEquals(realFrames[i], scheduler.getFrameDeltaNanos());
+        }
+    }
+
+    @Test
+    public void deterministicRunsRepeatExactly()
+    {
+        float[] first = deterministicRun(new long[] { 3, 17, 40, 9, 250 });
+        float[] second = deterministicRun(new long[] { 30, 2, 11, 90, 5 });
+
+        for(int i=0; i < first.length; i++)
+            assertEquals(first[i], second[i], 0);
+    }
+
+    /** Run frames of real durations, in milliseconds, on a new scheduler in deterministic mode.
+     * @return The time of each frame. */
+    private static float[] deterministicRun(long[] realMillis)
+    {
+        FakeFrameClock clock = new FakeFrameClock();
+        FrameScheduler scheduler = new FrameScheduler(clock);
+        scheduler.setDeterministic(FrameScheduler.NANOS_PER_SECOND / 30);
+        scheduler.beginFrame();
+
+        float[] times = new float[realMillis.length];
+        for(int i=0; i < realMillis.length; i++)
+        {
+            clock.advance(realMillis[i] * MILLIS);
+            scheduler.beginFrame();
+            times[i] = scheduler.getTime();
+        }
+        return times;
+    }
+
+    @Test
+    public void realTimeResumesAfterDeterministicMode()
+    {
+        scheduler.setDeterministic(STEP);
+        frame(100 * MILLIS);
+        assertTrue(scheduler.isDeterministic());
+
+        scheduler.setRealTime();
+        frame(100 * MILLIS);
+        assertEquals(STEP / 1e9f + 0.1f, scheduler.getTime(), EPSILON);
+    }
+
+    @Test
+    public void pausedTimeDoesNotAdvance()
+    {
+        frame(STEP);
+        float time = scheduler.getTime();
+
+        scheduler.setPaused(true);
+        assertEquals(0, frame(5 * STEP));
+        assertEquals(time, scheduler.getTime(), 0);
+    }
+
+    @Test
+    public void timeScaleScalesSimulationTime()
+    {
+        scheduler.setTimeScale(2);
+        frame(100 * MILLIS);
+        assertEquals(0.2f, scheduler.getTime(), EPSILON);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deterministicStepMustBePositive()
+    {
+        scheduler.setDeterministic(0);
+    }
+}